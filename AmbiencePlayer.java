@@ -0,0 +1,231 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Plays an {@link AmbientBed} under the music, inside the engine's render.
+ * <p>
+ * Every pool of the bed is one event on a {@link TimingWheel} driven by the frames the engine renders, so the
+ * audio itself is the clock. When a pool comes due, one of its sounds starts on a free voice at that exact frame
+ * within the block, and the pool is scheduled again a random wait later. However many pools there are, a block
+ * only costs the pools that come due in it, plus mixing the voices that are sounding.
+ * <p>
+ * Everything the render thread touches is made beforehand: the voices here, and a bed's decoded sounds and
+ * random state in its {@link Scene}. Each voice reads compressed sounds through a cursor of its own, so voices
+ * playing the same sound never evict each other's decoded blocks. While no bed plays, the wheel's clock is kept
+ * up with the audio, so starting a bed later never has to catch up. Only used from the render thread, apart
+ * from building a Scene.
+ */
+public class AmbiencePlayer {
+    // Scales the pan law so a centred sound plays at its own level. Panned fully to one side, it is 3 dB up there
+    private static final double SQRT_TWO = Math.sqrt(2);
+
+    /**
+     * A bed with its sounds decoded, ready to start. Built on a background thread, then owned by the render thread.
+     */
+    public static final class Scene {
+        private final AmbientBed bed;
+        private final PcmSource[][] sounds;
+        private final SplittableRandom random;
+        // -- Per pool, the sounds played most recently, as a ring --
+        private final int[][] recent;
+        private final int[] recentCount;
+        private final int[] recentNext;
+
+        /**
+         * @param bed    The bed
+         * @param sounds Each pool's decoded sounds at the engine rate, in pool order. Every pool needs at least one
+         * @param seed   Seeds the random waits, gains, pans and picks
+         */
+        public Scene(AmbientBed bed, List<PcmSource[]> sounds, long seed) {
+            if (bed.pools().size() > Constants.GB_AMBIENCE_MAX_POOLS) {
+                throw new IllegalArgumentException(bed.name() + " has more than " + Constants.GB_AMBIENCE_MAX_POOLS + " pools");
+            }
+            this.bed = bed;
+            this.sounds = sounds.toArray(new PcmSource[0][]);
+            this.random = new SplittableRandom(seed);
+            this.recent = new int[this.sounds.length][];
+            this.recentCount = new int[this.sounds.length];
+            this.recentNext = new int[this.sounds.length];
+            for (int pool = 0; pool < this.sounds.length; pool++) {
+                if (this.sounds[pool].length == 0) throw new IllegalArgumentException(bed.pools().get(pool).name() + " has no sounds");
+                // A pool can never rule out all of its sounds
+                recent[pool] = new int[Math.min(bed.pools().get(pool).noRepeat(), this.sounds[pool].length - 1)];
+            }
+        }
+
+        /**
+         * @return The bed being played
+         */
+        public AmbientBed bed() {
+            return bed;
+        }
+
+        /**
+         * Picks one of a pool's sounds at random, leaving out the ones played most recently.
+         */
+        private int pick(int pool) {
+            int[] ring = recent[pool];
+            int count = recentCount[pool];
+            int choice = random.nextInt(sounds[pool].length - count);
+            // Walk to the chosen sound, stepping over the recent ones
+            int sound = -1;
+            for (int candidates = -1; candidates < choice; ) {
+                sound++;
+                if (!contains(ring, count, sound)) candidates++;
+            }
+            if (ring.length > 0) {
+                ring[recentNext[pool]] = sound;
+                recentNext[pool] = (recentNext[pool] + 1) % ring.length;
+                recentCount[pool] = Math.min(count + 1, ring.length);
+            }
+            return sound;
+        }
+
+        private static boolean contains(int[] ring, int count, int sound) {
+            for (int i = 0; i < count; i++) {
+                if (ring[i] == sound) return true;
+            }
+            return false;
+        }
+
+        private double between(double low, double high) {
+            return low == high ? low : low + random.nextDouble() * (high - low);
+        }
+    }
+
+    private final TimingWheel wheel = new TimingWheel(Constants.GB_AMBIENCE_MAX_POOLS, 0);
+    private Scene scene;
+    // The first frame of the next block
+    private long clock;
+
+    // -- Voices, each playing one sound through to its end --
+    // What each voice reads from: the sound itself, or the voice's cursor into it if it is compressed
+    private final PcmSource[] voiceSounds = new PcmSource[Constants.GB_AMBIENCE_VOICES];
+    private final CompressedTrack.Cursor[] voiceCursors = new CompressedTrack.Cursor[Constants.GB_AMBIENCE_VOICES];
+    private final long[] voicePositions = new long[Constants.GB_AMBIENCE_VOICES];
+    private final long[] voiceStarts = new long[Constants.GB_AMBIENCE_VOICES];
+    private final float[] voiceLeft = new float[Constants.GB_AMBIENCE_VOICES];
+    private final float[] voiceRight = new float[Constants.GB_AMBIENCE_VOICES];
+    // How far into the current block a voice starts, 0 once it is under way
+    private final int[] voiceOffsets = new int[Constants.GB_AMBIENCE_VOICES];
+    private int activeVoices;
+    private final float[] voiceBuffer = new float[Constants.GB_RENDER_BLOCK_FRAMES * 2];
+
+    /**
+     * Makes every voice's cursor up front, so starting a sound allocates nothing.
+     */
+    public AmbiencePlayer() {
+        for (int voice = 0; voice < voiceCursors.length; voice++) voiceCursors[voice] = new CompressedTrack.Cursor();
+    }
+
+    /**
+     * Starts a bed in place of any playing now. Sounds already playing finish on their own. Each pool's first
+     * sound comes within its shortest wait, so a bed is heard soon after it starts without everything at once.
+     *
+     * @param next The bed to play
+     */
+    public void start(Scene next) {
+        wheel.cancelAll();
+        scene = next;
+        List<AmbientBed.Pool> pools = next.bed.pools();
+        for (int pool = 0; pool < pools.size(); pool++) {
+            double wait = next.between(0, pools.get(pool).minIntervalSeconds());
+            wheel.schedule(pool, clock + toFrames(wait));
+        }
+    }
+
+    /**
+     * Stops the bed. Sounds already playing finish on their own.
+     */
+    public void stop() {
+        wheel.cancelAll();
+        scene = null;
+    }
+
+    /**
+     * @return How many sounds are playing
+     */
+    public int getActiveVoices() {
+        return activeVoices;
+    }
+
+    /**
+     * Starts the sounds that come due in the next block, then mixes every sounding voice into it.
+     *
+     * @param out    Interleaved stereo to add to
+     * @param frames How many frames the block is, at most {@link Constants#GB_RENDER_BLOCK_FRAMES}
+     */
+    public void mix(float[] out, int frames) {
+        long blockEnd = clock + frames;
+        if (scene != null) {
+            int pool;
+            while ((pool = wheel.poll(blockEnd)) >= 0) trigger(pool, wheel.lastFrame());
+        } else {
+            wheel.advanceTo(blockEnd);
+        }
+        if (activeVoices > 0) {
+            for (int voice = 0; voice < voiceSounds.length; voice++) {
+                if (voiceSounds[voice] != null) mixVoice(voice, out, frames);
+            }
+        }
+        clock = blockEnd;
+    }
+
+    /**
+     * Plays one of a pool's sounds from a frame in the coming block, and schedules the pool's next turn.
+     */
+    private void trigger(int pool, long frame) {
+        AmbientBed.Pool settings = scene.bed.pools().get(pool);
+        PcmSource sound = scene.sounds[pool][scene.pick(pool)];
+        double gain = Math.pow(10, scene.between(settings.minGainDb(), settings.maxGainDb()) / 20);
+        double angle = (scene.between(settings.minPan(), settings.maxPan()) + 1) * Math.PI / 4;
+
+        int voice = freeVoice();
+        voiceSounds[voice] = sound instanceof CompressedTrack compressed ? voiceCursors[voice].open(compressed) : sound;
+        voicePositions[voice] = 0;
+        voiceStarts[voice] = frame;
+        voiceOffsets[voice] = (int) Math.max(0, frame - clock);
+        voiceLeft[voice] = (float) (gain * Math.cos(angle) * SQRT_TWO);
+        voiceRight[voice] = (float) (gain * Math.sin(angle) * SQRT_TWO);
+
+        double wait = scene.between(settings.minIntervalSeconds(), settings.maxIntervalSeconds());
+        wheel.schedule(pool, frame + Math.max(1, toFrames(wait)));
+    }
+
+    /**
+     * @return A silent voice, or the one that started longest ago if every voice is sounding
+     */
+    private int freeVoice() {
+        int oldest = 0;
+        for (int voice = 0; voice < voiceSounds.length; voice++) {
+            if (voiceSounds[voice] == null) {
+                activeVoices++;
+                return voice;
+            }
+            if (voiceStarts[voice] < voiceStarts[oldest]) oldest = voice;
+        }
+        return oldest;
+    }
+
+    private void mixVoice(int voice, float[] out, int frames) {
+        PcmSource sound = voiceSounds[voice];
+        int offset = voiceOffsets[voice];
+        int count = (int) Math.min(frames - offset, sound.frameCount() - voicePositions[voice]);
+        sound.read(voicePositions[voice], voiceBuffer, 0, count);
+        float left = voiceLeft[voice], right = voiceRight[voice];
+        for (int i = 0; i < count; i++) {
+            out[(offset + i) * 2] += voiceBuffer[i * 2] * left;
+            out[(offset + i) * 2 + 1] += voiceBuffer[i * 2 + 1] * right;
+        }
+        voicePositions[voice] += count;
+        voiceOffsets[voice] = 0;
+        if (voicePositions[voice] >= sound.frameCount()) {
+            voiceSounds[voice] = null;
+            activeVoices--;
+        }
+    }
+
+    private static long toFrames(double seconds) {
+        return Math.round(seconds * Constants.GB_ENGINE_FRAME_RATE);
+    }
+}
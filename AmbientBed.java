@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A bed of sound effects that recur at random under the music, such as distant thunder, footsteps and a
+ * heartbeat, read from the plain text files under {@code resources/ambience}.
+ * <p>
+ * A bed is a list of pools, each starting with its name in square brackets. A pool's settings follow one per
+ * line, and ranges are written with two dots:
+ * <pre>
+ * [distant thunder]
+ * sounds = thunder_1.wav, thunder_2.wav, thunder_3.wav
+ * every = 25..60
+ * gain = -14..-6
+ * pan = -0.9..0.9
+ * no repeat = 2
+ * </pre>
+ * Each time a pool comes round it plays one of its sounds, waits a random number of seconds from its
+ * {@code every} range and comes round again. The sound's gain in dB and its pan, from -1 for left to 1 for right,
+ * are picked from their ranges each time, and a sound played within the last {@code no repeat} turns is not
+ * picked again. Only {@code sounds} and {@code every} are needed; lines starting with # are comments.
+ *
+ * @param name  What the bed is called, from its file name
+ * @param pools The pools, in the order listed
+ */
+public record AmbientBed(String name, List<Pool> pools) {
+
+    /**
+     * Sounds that take turns recurring
+     *
+     * @param name               What the pool is called
+     * @param sounds             The sound files, relative to the bed's folder
+     * @param minIntervalSeconds The shortest wait between sounds
+     * @param maxIntervalSeconds The longest wait between sounds
+     * @param minGainDb          The quietest a sound plays
+     * @param maxGainDb          The loudest a sound plays
+     * @param minPan             The furthest left a sound plays, from -1
+     * @param maxPan             The furthest right a sound plays, up to 1
+     * @param noRepeat           How many of the latest sounds are not picked again
+     */
+    public record Pool(String name, List<String> sounds, double minIntervalSeconds, double maxIntervalSeconds,
+                       double minGainDb, double maxGainDb, double minPan, double maxPan, int noRepeat) {
+        public Pool {
+            sounds = List.copyOf(sounds);
+        }
+    }
+
+    public AmbientBed {
+        pools = List.copyOf(pools);
+    }
+
+    // -- Parsing --
+    /**
+     * Reads a bed from a file.
+     *
+     * @param file The bed's text file
+     * @return The bed, named after the file
+     * @throws IOException if the file cannot be read or is not a valid bed
+     */
+    public static AmbientBed parse(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), dot > 0 ? fileName.substring(0, dot) : fileName);
+    }
+
+    /**
+     * Reads a bed from its lines of text.
+     *
+     * @param lines The bed, one setting per line
+     * @param name  What the bed is called, also used in error messages
+     * @return The bed
+     * @throws IOException if the lines are not a valid bed
+     */
+    public static AmbientBed parse(List<String> lines, String name) throws IOException {
+        List<Pool> pools = new ArrayList<>();
+        PoolBuilder pool = null;
+        int lineNumber = 0;
+        for (String rawLine : lines) {
+            lineNumber++;
+            String line = rawLine.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            if (line.startsWith("[") && line.endsWith("]")) {
+                if (pool != null) pools.add(pool.build(name));
+                pool = new PoolBuilder(line.substring(1, line.length() - 1).strip());
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals < 0) throw new IOException(name + " line " + lineNumber + ": expected a setting such as 'every = 20..40'");
+            if (pool == null) throw new IOException(name + " line " + lineNumber + ": settings must follow a [pool name]");
+            String key = line.substring(0, equals).strip().toLowerCase(Locale.ROOT);
+            String value = line.substring(equals + 1).strip();
+            try {
+                switch (key) {
+                    case "sounds" -> {
+                        for (String sound : value.split(",")) {
+                            if (!sound.isBlank()) pool.sounds.add(sound.strip());
+                        }
+                    }
+                    case "every" -> pool.interval = parseRange(value);
+                    case "gain" -> pool.gain = parseRange(value);
+                    case "pan" -> pool.pan = parseRange(value);
+                    case "no repeat" -> pool.noRepeat = Integer.parseInt(value);
+                    default -> throw new IOException(name + " line " + lineNumber + ": unknown setting '" + key + "'");
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException(name + " line " + lineNumber + ": '" + value + "' is not a number or range", e);
+            }
+        }
+        if (pool != null) pools.add(pool.build(name));
+        if (pools.isEmpty()) throw new IOException(name + ": a bed needs at least one [pool]");
+        return new AmbientBed(name, pools);
+    }
+
+    /**
+     * Reads {@code low..high}, or a single number for both.
+     */
+    private static double[] parseRange(String value) {
+        int dots = value.indexOf("..");
+        if (dots < 0) {
+            double single = Double.parseDouble(value);
+            return new double[]{single, single};
+        }
+        double low = Double.parseDouble(value.substring(0, dots).strip());
+        double high = Double.parseDouble(value.substring(dots + 2).strip());
+        return new double[]{Math.min(low, high), Math.max(low, high)};
+    }
+
+    /**
+     * Collects a pool's settings as they are read, defaulting to centred sounds at their own level.
+     */
+    private static final class PoolBuilder {
+        private final String name;
+        private final List<String> sounds = new ArrayList<>();
+        private double[] interval;
+        private double[] gain = {0, 0};
+        private double[] pan = {0, 0};
+        private int noRepeat;
+
+        private PoolBuilder(String name) {
+            this.name = name;
+        }
+
+        private Pool build(String bedName) throws IOException {
+            if (sounds.isEmpty()) throw new IOException(bedName + ": [" + name + "] needs some sounds");
+            if (interval == null) throw new IOException(bedName + ": [" + name + "] needs an 'every' range in seconds");
+            if (interval[0] <= 0) throw new IOException(bedName + ": [" + name + "] must wait more than 0 seconds");
+            return new Pool(name, sounds, interval[0], interval[1], gain[0], gain[1],
+                    Math.max(-1, pan[0]), Math.min(1, pan[1]), Math.max(0, noRepeat));
+        }
+    }
+}
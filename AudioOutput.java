@@ -0,0 +1,339 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feeds a {@link PlaybackEngine} to the sound card. A dedicated thread asks the engine for a block
+ * at a time and writes it to a {@link SourceDataLine}, which paces the thread at the speed of playback.
+ * <p>
+ * The output level (the track's loudness normalisation times the volume) is folded into the scale that
+ * converts each sample to 16 bits, so it costs nothing per sample. A change glides across one block rather
+ * than jumping, and the optional {@link PeakLimiter} sits after it.
+ * <p>
+ * The line is opened on the chosen device with a buffer and block size set by a {@link Preset}, rather than
+ * whatever the system default would pick. While it plays, how far the audio written is ahead of the audio heard
+ * is measured from the line's frame position, and every time the line runs dry is counted as an underrun.
+ */
+public class AudioOutput implements FrameSink {
+    private static final Logger LOGGER = Logger.getLogger(AudioOutput.class.getName());
+    // How much of each new latency reading goes into the reported average
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    /**
+     * How much audio is queued ahead of the speakers, trading latency against the risk of running dry
+     */
+    public enum Preset {
+        SAFE("Safe", Constants.GB_RENDER_BLOCK_FRAMES, Constants.GB_OUTPUT_BUFFER_FRAMES),
+        LOW_LATENCY("Low latency", Constants.GB_LOW_LATENCY_BLOCK_FRAMES, Constants.GB_LOW_LATENCY_BUFFER_FRAMES);
+
+        private final String label;
+        // How many frames the engine renders at a time
+        private final int blockFrames;
+        // How many frames the line holds
+        private final int bufferFrames;
+
+        Preset(String label, int blockFrames, int bufferFrames) {
+            this.label = label;
+            this.blockFrames = blockFrames;
+            this.bufferFrames = bufferFrames;
+        }
+
+        public int getBlockFrames() {
+            return blockFrames;
+        }
+
+        public int getBufferFrames() {
+            return bufferFrames;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Where and how audio is played
+     *
+     * @param deviceName The name of the mixer to open the line on, or null for the system default
+     * @param preset     The buffer and block sizes
+     */
+    public record Settings(String deviceName, Preset preset) {
+        public static final Settings DEFAULT = new Settings(null, Preset.SAFE);
+    }
+
+    /**
+     * How the output is doing
+     *
+     * @param deviceName    The device the line is open on, or null for the system default
+     * @param preset        The preset in use
+     * @param bufferFrames  The line's buffer as the device granted it, which may differ from the preset's request
+     * @param latencyMillis The measured time from a frame being written to it being played, averaged
+     * @param underruns     How many times the line has run dry since it was opened
+     * @param isOpen        false if no line is open, in which case the other figures are from the last one
+     */
+    public record Stats(String deviceName, Preset preset, int bufferFrames, double latencyMillis, long underruns,
+                        boolean isOpen) {
+    }
+
+    private final PlaybackEngine engine;
+    private SourceDataLine line;
+    private Settings settings = Settings.DEFAULT;
+    private String openDeviceName;
+    private int openBufferFrames;
+    private Thread renderThread;
+    private volatile boolean isRunning;
+    private byte[] lineBuffer;
+    // -- Level, written from any thread and picked up at the next block --
+    private volatile float trackGain = 1f;
+    private volatile float volume = 1f;
+    private volatile boolean isLimiterEnabled;
+    // -- Measurements, written by the render thread --
+    private volatile double latencyMillis;
+    private volatile long underruns;
+    // -- Render thread only --
+    private PeakLimiter limiter;
+    private float appliedGain = 1f;
+    private int blockFrames;
+    private long framesWritten;
+
+    /**
+     * @param engine The engine to pull audio from
+     */
+    public AudioOutput(PlaybackEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return The names of the devices that can play the engine's format, for {@link Settings#deviceName()}
+     */
+    public static List<String> listDevices() {
+        DataLine.Info wanted = new DataLine.Info(SourceDataLine.class, formatFor(Constants.GB_ENGINE_FRAME_RATE));
+        List<String> names = new ArrayList<>();
+        for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+            if (AudioSystem.getMixer(info).isLineSupported(wanted)) names.add(info.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Changes the device or preset. An open line is reopened straight away with the new settings.
+     *
+     * @param newSettings The settings to use
+     * @throws LineUnavailableException if a line was open and could not be reopened
+     */
+    public synchronized void setSettings(Settings newSettings) throws LineUnavailableException {
+        if (newSettings.equals(settings)) return;
+        settings = newSettings;
+        if (line == null) return;
+        float frameRate = line.getFormat().getFrameRate();
+        close();
+        open(frameRate);
+    }
+
+    /**
+     * @return The device and preset in use, or to be used when a line next opens
+     */
+    public synchronized Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Makes sure a line is open at the given rate, reopening it only if the rate has changed.
+     * If the chosen device is missing or refuses the format, the system default is used instead.
+     *
+     * @param frameRate The frame rate of the track about to play
+     * @throws LineUnavailableException if the sound card refuses the format
+     */
+    public synchronized void open(float frameRate) throws LineUnavailableException {
+        if (line != null && line.getFormat().getFrameRate() == frameRate) return;
+        close();
+
+        AudioFormat format = formatFor(frameRate);
+        Preset preset = settings.preset();
+        openDeviceName = settings.deviceName();
+        try {
+            line = openLine(format, openDeviceName, preset);
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            if (openDeviceName == null) throw e;
+            LOGGER.log(Level.WARNING, "Could not open " + openDeviceName + ", using the default device", e);
+            openDeviceName = null;
+            line = openLine(format, null, preset);
+        }
+        line.start();
+        openBufferFrames = line.getBufferSize() / format.getFrameSize();
+        // A device may grant a smaller buffer than asked for, and a block must always fit in it
+        blockFrames = Math.min(preset.getBlockFrames(), Math.max(1, openBufferFrames / 2));
+        lineBuffer = new byte[blockFrames * format.getFrameSize()];
+        limiter = new PeakLimiter(Constants.GB_TRUE_PEAK_CEILING_DBTP, Constants.GB_LIMITER_RELEASE_MS / 1000.0, frameRate);
+        framesWritten = 0;
+        latencyMillis = 0;
+        underruns = 0;
+
+        isRunning = true;
+        renderThread = new Thread(this::renderLoop, "GrooveBuddy-Render");
+        renderThread.setDaemon(true);
+        renderThread.setPriority(Thread.MAX_PRIORITY);
+        renderThread.start();
+        LOGGER.log(Level.INFO, "Opened output line at {0} Hz on {1}: {2} preset, {3} frame buffer, {4} frame blocks",
+                new Object[]{frameRate, openDeviceName == null ? "the default device" : openDeviceName, preset,
+                        openBufferFrames, blockFrames});
+    }
+
+    private static SourceDataLine openLine(AudioFormat format, String deviceName, Preset preset) throws LineUnavailableException {
+        SourceDataLine opened = null;
+        if (deviceName != null) {
+            for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+                if (info.getName().equals(deviceName)) {
+                    opened = AudioSystem.getSourceDataLine(format, info);
+                    break;
+                }
+            }
+            if (opened == null) throw new LineUnavailableException(deviceName + " is not connected");
+        } else {
+            opened = AudioSystem.getSourceDataLine(format);
+        }
+        opened.open(format, preset.getBufferFrames() * format.getFrameSize());
+        return opened;
+    }
+
+    private static AudioFormat formatFor(float frameRate) {
+        return new AudioFormat(frameRate, 16, 2, true, false);
+    }
+
+    /**
+     * Stops the render thread and releases the sound card.
+     */
+    public synchronized void close() {
+        isRunning = false;
+        if (renderThread != null) {
+            try {
+                renderThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            renderThread = null;
+        }
+        if (line != null) {
+            line.close();
+            line = null;
+            LOGGER.log(Level.INFO, "Closed the output line after {0} underruns", underruns);
+        }
+    }
+
+    /**
+     * @return The latest latency and underrun figures
+     */
+    public synchronized Stats getStats() {
+        return new Stats(openDeviceName, settings.preset(), openBufferFrames, latencyMillis, underruns, line != null);
+    }
+
+    /**
+     * Sets the gain that brings the current track to the target loudness.
+     *
+     * @param gain The linear gain, 1 to leave the track as it is
+     */
+    public void setTrackGain(float gain) {
+        this.trackGain = gain;
+    }
+
+    /**
+     * @param volume The listener's volume, 0 for silent and 1 for full
+     */
+    public void setVolume(float volume) {
+        this.volume = Math.max(0f, volume);
+    }
+
+    /**
+     * @param enabled true to hold peaks under {@link Constants#GB_TRUE_PEAK_CEILING_DBTP}
+     */
+    public void setLimiterEnabled(boolean enabled) {
+        this.isLimiterEnabled = enabled;
+    }
+
+    /**
+     * Converts a rendered block to 16-bit little-endian PCM at the current level and writes it to the line.
+     * Blocks until the line has room, which is what keeps the render thread in step with playback.
+     */
+    @Override
+    public void write(float[] interleaved, int frames) {
+        int samples = frames * 2;
+        float targetGain = trackGain * volume;
+        if (targetGain == appliedGain && !isLimiterEnabled) {
+            float scale = targetGain * 32767f;
+            for (int i = 0; i < samples; i++) {
+                float scaled = Math.max(-32767f, Math.min(32767f, interleaved[i] * scale));
+                int sample = (int) scaled;
+                lineBuffer[i * 2] = (byte) sample;
+                lineBuffer[i * 2 + 1] = (byte) (sample >> 8);
+            }
+        } else {
+            writeRamped(interleaved, frames, targetGain);
+        }
+        appliedGain = targetGain;
+
+        // An empty line once playback is under way means the speakers ran out of audio before this block came
+        if (framesWritten >= openBufferFrames && line.available() >= line.getBufferSize()) {
+            underruns++;
+            LOGGER.log(Level.FINE, "Output underrun, {0} so far", underruns);
+        }
+        line.write(lineBuffer, 0, samples * 2);
+        framesWritten += frames;
+
+        // Everything written but not yet played, including what the device holds beyond the line's own buffer
+        long queuedFrames = framesWritten - line.getLongFramePosition();
+        double latency = queuedFrames * 1000.0 / line.getFormat().getFrameRate();
+        latencyMillis = latencyMillis == 0 ? latency : latencyMillis + (latency - latencyMillis) * LATENCY_SMOOTHING;
+    }
+
+    /**
+     * The slower path, taken while the level is changing or the limiter is on: the gain moves a little every
+     * frame towards its new value, and the limiter sees each frame after the gain.
+     */
+    private void writeRamped(float[] interleaved, int frames, float targetGain) {
+        float gain = appliedGain;
+        float step = (targetGain - appliedGain) / frames;
+        boolean limit = isLimiterEnabled;
+        for (int f = 0; f < frames; f++) {
+            gain += step;
+            float left = interleaved[f * 2] * gain;
+            float right = interleaved[f * 2 + 1] * gain;
+            if (limit) {
+                float reduction = limiter.next(left, right);
+                left *= reduction;
+                right *= reduction;
+            }
+            int l = (int) (Math.max(-1f, Math.min(1f, left)) * 32767f);
+            int r = (int) (Math.max(-1f, Math.min(1f, right)) * 32767f);
+            lineBuffer[f * 4] = (byte) l;
+            lineBuffer[f * 4 + 1] = (byte) (l >> 8);
+            lineBuffer[f * 4 + 2] = (byte) r;
+            lineBuffer[f * 4 + 3] = (byte) (r >> 8);
+        }
+    }
+
+    /**
+     * @return How much audio is queued in the line ahead of the speakers, in microseconds, or 0 if no line is open
+     */
+    public synchronized long getBufferedMicroseconds() {
+        if (line == null) return 0;
+        AudioFormat format = line.getFormat();
+        long bufferedFrames = (line.getBufferSize() - line.available()) / format.getFrameSize();
+        return Math.round(bufferedFrames * 1_000_000d / format.getFrameRate());
+    }
+
+    private void renderLoop() {
+        float[] block = new float[blockFrames * 2];
+        while (isRunning) {
+            engine.render(block, blockFrames);
+            write(block, blockFrames);
+        }
+    }
+}
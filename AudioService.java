@@ -12,8 +12,16 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -29,20 +37,57 @@ public class AudioService {
     private final Supplier<LoopConfig> loopConfigProvider;
     private final Supplier<Boolean> isLoopEnabledProvider;
     private final Runnable onLoopFinishCallback;
-    //A storage area for loaded audio data
-    private Clip clpAudioClip;
+    // Renders the loaded audio, and the line it plays through
+    private final PlaybackEngine playbackEngine = new PlaybackEngine();
+    private final AudioOutput audioOutput = new AudioOutput(playbackEngine);
+    // Decoded tracks at the engine rate, so revisiting one is instant
+    private final TrackCache trackCache = new TrackCache(
+            Math.min(Constants.GB_TRACK_CACHE_MAX_BYTES, Runtime.getRuntime().maxMemory() / 2));
+    // Tracks just decoded and waiting to be compressed into the cache, so loading one again meanwhile skips the decode
+    private final Map<File, PcmTrack> compressing = new ConcurrentHashMap<>();
     // Timer for updating timeline slider
     private Timer tmrTimeline;
-    //Counter for repeats
-    private int intRepeatsRemaining;
-    private File currentlyLoadedFile;
+    // Written on the EDT, read by the remote control
+    private volatile File currentlyLoadedFile;
+    // The stems currently playing, if a stem set rather than a single file is loaded
+    private StemSet currentStemSet;
+    // Decodes in the background, the selected track ahead of its neighbours
+    private final TaskScheduler taskScheduler = new TaskScheduler();
+    // Bumped on the EDT by every load, so a slow load finishing after a newer one is ignored
+    private long loadGeneration;
+    // Bumped on the EDT by starting or stopping ambience, so a bed that finishes loading after it was replaced is ignored
+    private long ambienceGeneration;
+    // Scenes waiting to play, oldest first. Each holds only its decoded head until it is on its way in
+    private final ArrayDeque<QueuedScene> sceneQueue = new ArrayDeque<>();
+    // The scene the engine will hand off to at its next seam, if one has been started
+    private PendingScene pendingScene;
+    // The engine's source generation the UI last caught up with, so loop edits for one track never reach the next
+    private long installedGeneration;
+    // The scene playing while the rest of it decodes, so seeks past its head can be decoded straight from the file
+    private StreamingScene streamingScene;
+    private CompletableFuture<Void> windowFuture;
+    // The frame the window being decoded starts at
+    private long windowRequestFrame;
+    // -- MP3 Frame Indexes --
+    // Where the frames of each MP3 in the open folder start, filled in by background indexing
+    private Mp3FrameIndexStore frameIndexStore = new Mp3FrameIndexStore(null);
+    private int frameJobsPending;
+    // The last session, saved on exit and restored on the next launch
+    private final WorkspaceStore workspaceStore = WorkspaceStore.inHomeDirectory();
+    // -- Loudness --
+    // The measured loudness of the tracks in the open folder, filled in by background indexing
+    private LoudnessIndex loudnessIndex = new LoudnessIndex(null);
+    private int loudnessJobsPending;
+    private long loudnessIndexStartNanos;
+    private boolean isNormalising = true;
+    private boolean isLimiterEnabled;
 
     private static final String CONFIG_FILE_NAME = "groovebuddy_loops.properties";
 
     // Variable to track the currently open folder
     private File currentConfigFolder;
     // Variables to connect the service to the GUI
-    private final DefaultListModel<File> fileListModel;
+    private final FileListModel fileListModel;
     private final Component parentComponent; // For centering dialogs
 
     /**
@@ -53,7 +98,7 @@ public class AudioService {
      * @param isLoopEnabledProvider A function that returns true if the loop checkbox is enabled.
      * @param onLoopFinishCallback  A function to call when the looping finishes.
      */
-    public AudioService(Component parentComponent, DefaultListModel<File> fileListModel,
+    public AudioService(Component parentComponent, FileListModel fileListModel,
                         Consumer<Long> onTimeUpdate, Supplier<LoopConfig> loopConfigProvider,
                         Supplier<Boolean> isLoopEnabledProvider, Runnable onLoopFinishCallback) {
         this.parentComponent = parentComponent;
@@ -63,6 +108,20 @@ public class AudioService {
         this.isLoopEnabledProvider = isLoopEnabledProvider;
         this.onLoopFinishCallback = onLoopFinishCallback;
         this.setupTimer();
+        // The engine calls back on the render thread, so hop over to the EDT
+        playbackEngine.setListeners(
+                () -> SwingUtilities.invokeLater(() -> {
+                    onLoopFinishCallback.run();
+                    LOGGER.info("Looping has finished.");
+                }),
+                () -> SwingUtilities.invokeLater(this::stop));
+        playbackEngine.setHandoffListener(() -> SwingUtilities.invokeLater(this::finishSceneHandoff));
+        try {
+            // No line is open yet, so this only records where the first one will go
+            audioOutput.setSettings(workspaceStore.loadOutputSettings());
+        } catch (LineUnavailableException e) {
+            LOGGER.log(Level.WARNING, "Could not apply the saved output settings", e);
+        }
     }
 
     /**
@@ -74,48 +133,645 @@ public class AudioService {
     public record AudioDetails(long durationMicroseconds, LoopConfig config) {
     }
 
+    /**
+     * A scene waiting in the queue
+     *
+     * @param file The track to play
+     * @param head The first few seconds of the track, decoding in the background
+     */
+    private record QueuedScene(File file, CompletableFuture<PrefetchedTrack> head) {
+    }
+
+    /**
+     * A scene handed to the engine, waiting for the current track to reach its handoff frame
+     *
+     * @param file      The track being handed off to
+     * @param onStarted Called on the EDT once the track has started
+     */
+    private record PendingScene(File file, PrefetchedTrack track, Mp3FrameIndex index, Consumer<AudioDetails> onStarted) {
+    }
 
     /**
-     * Loads the selected audio file, retrieving its loop config if it exists.
+     * A scene that has started playing before it finished decoding
+     *
+     * @param file  The track playing
+     * @param track Its audio so far
+     * @param index Its frame index if it is an MP3 that has been indexed, otherwise null
+     */
+    private record StreamingScene(File file, PrefetchedTrack track, Mp3FrameIndex index) {
+    }
+
+
+    /**
+     * Loads the selected audio file in the background, retrieving its loop config if it exists.
+     * Any earlier load or prefetch still in progress is cancelled, and only the latest load is ever installed.
      *
      * @param fileToLoad The file to load.
+     * @param onLoaded   Called on the EDT with the AudioDetails on success, or null on failure. Not called if superseded.
+     */
+    public void loadFile(File fileToLoad, Consumer<AudioDetails> onLoaded) {
+        submitLoad(fileToLoad, fileToLoad.getName(), token -> forPlayback(loadTrack(fileToLoad, token)), onLoaded);
+    }
+
+    /**
+     * Loads several same-length files in the background as stems of one piece, played locked together.
+     * The loop config is stored against the first stem.
+     *
+     * @param stemFiles The files to layer, in the order their gain controls should appear
+     * @param onLoaded  Called on the EDT with the AudioDetails on success, or null on failure. Not called if superseded.
+     */
+    public void loadStemSet(List<File> stemFiles, Consumer<AudioDetails> onLoaded) {
+        submitLoad(stemFiles.get(0), stemFiles.size() + " stems", token -> {
+            List<PcmSource> stems = new ArrayList<>();
+            for (File stemFile : stemFiles) {
+                stems.add(forPlayback(loadTrack(stemFile, token)));
+            }
+            return new StemSet(stems);
+        }, onLoaded);
+    }
+
+    /**
+     * Decodes tracks into the cache in the background, so picking one of them next starts instantly.
+     * Cancelled as soon as a different track is selected.
+     *
+     * @param files The tracks likely to be picked next, most likely first
+     */
+    public void prefetch(List<File> files) {
+        for (File file : files) {
+            taskScheduler.submit(TaskScheduler.Lane.PREFETCH, file.getName(), token -> loadTrack(file, token));
+        }
+    }
+
+    /**
+     * Writes the background scheduler's queue and run times to the log.
+     */
+    public void logSchedulerStats() {
+        taskScheduler.logStats();
+    }
+
+    /**
+     * Runs a load in the selected lane, then installs the result on the EDT if nothing newer has been asked for since.
+     *
+     * @param configFile The file the loop config is stored against
+     * @param name       What is being loaded, for the logs
+     * @param job        Produces the audio to play
+     * @param onLoaded   Called on the EDT with the result
+     */
+    private void submitLoad(File configFile, String name, TaskScheduler.Job<PcmSource> job, Consumer<AudioDetails> onLoaded) {
+        taskScheduler.cancelLane(TaskScheduler.Lane.SELECTED);
+        taskScheduler.cancelLane(TaskScheduler.Lane.PREFETCH);
+        long generation = ++loadGeneration;
+
+        taskScheduler.submit(TaskScheduler.Lane.SELECTED, name, job).whenComplete((source, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    // A newer selection has taken over, so this result is stale
+                    if (generation != loadGeneration || error instanceof CancellationException) return;
+                    if (error != null) {
+                        LOGGER.log(Level.SEVERE, "Error loading " + name, error);
+                        onLoaded.accept(null);
+                        return;
+                    }
+                    onLoaded.accept(install(configFile, source));
+                }));
+    }
+
+    /**
+     * Swaps decoded audio into the engine. Runs on the EDT.
+     *
+     * @param configFile The file the loop config is stored against
+     * @param source     The audio to play
      * @return An AudioDetails object on success, or null on failure.
      */
-    public AudioDetails loadFile(File fileToLoad) {
-        this.currentlyLoadedFile = fileToLoad;
+    private AudioDetails install(File configFile, PcmSource source) {
+        long generation;
         try {
-            if (clpAudioClip != null) clpAudioClip.close();
+            generation = playbackEngine.load(source);
+            audioOutput.open(source.frameRate());
+        } catch (LineUnavailableException e) {
+            LOGGER.log(Level.SEVERE, "Error opening the audio output", e);
+            this.currentlyLoadedFile = null;
+            this.currentStemSet = null;
+            return null;
+        }
+        this.currentlyLoadedFile = configFile;
+        this.currentStemSet = source instanceof StemSet stemSet ? stemSet : null;
+        this.pendingScene = null;
+        this.installedGeneration = generation;
+        stopStreaming();
+        if (source instanceof PcmTrack track && loudnessIndex.get(configFile) == null) measureLoadedTrack(configFile, track);
+        applyLoudness();
+        LOGGER.log(Level.INFO, "Successfully loaded audio file: {0}", configFile.getAbsolutePath());
+        LoopConfig config = loopConfigMap.computeIfAbsent(configFile, k -> new LoopConfig());
+        // The engine takes the track at its next block, so the length comes from the track itself
+        return new AudioDetails(PlaybackEngine.toMicroseconds(source.frameCount(), source.frameRate()), config);
+    }
 
-            AudioInputStream audioStream;
-            String fileName = fileToLoad.getName().toLowerCase();
+    // -- Scene Queue --
+    /**
+     * Adds a track to the end of the scene queue and starts decoding its head in the background.
+     *
+     * @param file The track to play as a later scene
+     */
+    public void queueScene(File file) {
+        Mp3FrameIndex index = frameIndexStore.get(file);
+        sceneQueue.addLast(new QueuedScene(file, taskScheduler.submit(TaskScheduler.Lane.SCENE,
+                file.getName() + " (head)", token -> loadHead(file, index, token))));
+    }
 
-            if (fileName.endsWith(".mp3")) {
-                audioStream = convertMp3ToAudioInputStream(fileToLoad);
-            } else {
-                // For WAV, AU, etc., use the standard method
-                audioStream = AudioSystem.getAudioInputStream(fileToLoad);
-            }
+    /**
+     * Empties the scene queue and calls off any transition that has not happened yet.
+     */
+    public void clearScenes() {
+        for (QueuedScene scene : sceneQueue) scene.head().cancel(false);
+        sceneQueue.clear();
+        playbackEngine.cancelTransition();
+        pendingScene = null;
+    }
 
-            clpAudioClip = AudioSystem.getClip();
+    /**
+     * Moves on to the next queued scene. If something is playing, it finishes its current pass through the loop
+     * (or plays to its end if not looping) and hands off to the next scene on that exact frame. If nothing is
+     * playing, the next scene simply loads and starts.
+     *
+     * @param crossfade   true to overlap the two tracks by {@link Constants#GB_SCENE_CROSSFADE_MS}, false for a gapless cut
+     * @param loopEnabled Whether the next scene should loop its saved section
+     * @param onStarted   Called on the EDT with the next scene's details once it is playing, or null if it failed
+     */
+    public void transitionToNextScene(boolean crossfade, boolean loopEnabled, Consumer<AudioDetails> onStarted) {
+        QueuedScene scene = sceneQueue.pollFirst();
+        if (scene == null) return;
 
-            clpAudioClip.addLineListener(event -> {
-                if (event.getType() == LineEvent.Type.STOP && clpAudioClip.getMicrosecondLength() == clpAudioClip.getMicrosecondPosition()) {
-                    stop();
-                }
+        if (!playbackEngine.isPlaying()) {
+            scene.head().cancel(false);
+            loadFile(scene.file(), details -> {
+                onStarted.accept(details);
+                if (details != null) play();
             });
+            return;
+        }
 
-            clpAudioClip.open(audioStream);
-            LOGGER.log(Level.INFO, "Successfully loaded audio file: {0}", fileToLoad.getAbsolutePath());
-            LoopConfig config = loopConfigMap.computeIfAbsent(fileToLoad, k -> new LoopConfig());
-            return new AudioDetails(clpAudioClip.getMicrosecondLength(), config);
+        long generation = loadGeneration;
+        scene.head().whenComplete((head, error) -> SwingUtilities.invokeLater(() -> {
+            // Something else was loaded in the meantime, so the transition no longer applies
+            if (generation != loadGeneration || error instanceof CancellationException) return;
+            if (error != null) {
+                LOGGER.log(Level.SEVERE, "Error preparing scene " + scene.file().getName(), error);
+                onStarted.accept(null);
+                return;
+            }
+            startTransition(scene.file(), head, crossfade, loopEnabled, onStarted);
+        }));
+    }
 
-        } catch (Exception e) { // Catching generic Exception as JLayer throws some
-            LOGGER.log(Level.SEVERE, "Error loading audio file", e);
-            this.currentlyLoadedFile = null;
+    /**
+     * Hands a prepared scene to the engine, and decodes the rest of it in the background while the current track
+     * plays out. Runs on the EDT.
+     */
+    private void startTransition(File file, PrefetchedTrack next, boolean crossfade, boolean loopEnabled,
+                                 Consumer<AudioDetails> onStarted) {
+        if (!next.isComplete()) {
+            taskScheduler.submit(TaskScheduler.Lane.SCENE, file.getName(), token -> forPlayback(loadTrack(file, token)))
+                    .whenComplete((track, error) -> {
+                        if (track != null) {
+                            next.complete(track);
+                        } else if (!(error instanceof CancellationException)) {
+                            LOGGER.log(Level.SEVERE, "Error decoding scene " + file.getName(), error);
+                        }
+                    });
+        }
+
+        LoopConfig config = loopConfigMap.computeIfAbsent(file, k -> new LoopConfig());
+        pendingScene = new PendingScene(file, next, frameIndexStore.get(file), onStarted);
+        playbackEngine.queueTransition(next, loopEnabled, config, crossfade ? Constants.GB_SCENE_CROSSFADE_MS : 0);
+        LOGGER.log(Level.INFO, "Transition to {0} queued{1}", new Object[]{file.getName(), crossfade ? " with a crossfade" : ""});
+    }
+
+    /**
+     * Catches up with a handoff the engine has just made. Runs on the EDT.
+     */
+    private void finishSceneHandoff() {
+        PendingScene scene = pendingScene;
+        if (scene == null) return;
+        pendingScene = null;
+        installedGeneration = playbackEngine.getSourceGeneration();
+        currentlyLoadedFile = scene.file();
+        currentStemSet = null;
+        stopStreaming();
+        if (!scene.track().isComplete()) streamingScene = new StreamingScene(scene.file(), scene.track(), scene.index());
+        applyLoudness();
+        LOGGER.log(Level.INFO, "Handed off to scene: {0}", scene.file().getName());
+        LoopConfig config = loopConfigMap.computeIfAbsent(scene.file(), k -> new LoopConfig());
+        scene.onStarted().accept(new AudioDetails(playbackEngine.getLengthMicroseconds(), config));
+    }
+
+    // -- Streamed Scenes --
+    /**
+     * Makes sure the audio just ahead of the playhead is decoded while a scene is still streaming. Anything
+     * past the head that is not ready yet, such as after a seek, is decoded straight from the seek point in the
+     * background, using the frame index to start an MP3 there without decoding what comes before. Runs on the EDT.
+     */
+    private void streamAhead() {
+        StreamingScene scene = streamingScene;
+        if (scene == null) return;
+        if (scene.track().isComplete()) {
+            stopStreaming();
+            return;
+        }
+
+        long frame = playbackEngine.getPositionFrames();
+        long lookahead = Math.min(frame + (long) Constants.GB_SCENE_LOOKAHEAD_SECONDS * Constants.GB_ENGINE_FRAME_RATE,
+                scene.track().frameCount());
+        if (scene.track().covers(frame, lookahead)) return;
+        // The window already on its way will cover this
+        long windowFrames = (long) Constants.GB_SCENE_HEAD_SECONDS * Constants.GB_ENGINE_FRAME_RATE;
+        if (windowFuture != null && !windowFuture.isDone() && frame >= windowRequestFrame
+                && lookahead <= windowRequestFrame + windowFrames) return;
+
+        if (windowFuture != null) windowFuture.cancel(false);
+        windowRequestFrame = frame;
+        windowFuture = taskScheduler.submit(TaskScheduler.Lane.SELECTED, scene.file().getName() + " (window)",
+                token -> loadWindow(scene.file(), scene.index(), scene.track(), frame, token));
+        windowFuture.whenComplete((result, error) -> {
+            if (error != null && !(error instanceof CancellationException)) {
+                LOGGER.log(Level.WARNING, "Could not decode ahead in " + scene.file().getName(), error);
+            }
+        });
+    }
+
+    /**
+     * Forgets the streaming scene and calls off any window still decoding for it.
+     */
+    private void stopStreaming() {
+        streamingScene = null;
+        if (windowFuture != null) windowFuture.cancel(false);
+        windowFuture = null;
+    }
+
+    /**
+     * Decodes {@link Constants#GB_SCENE_HEAD_SECONDS} of a track from any point and hands it to the track as its
+     * window. The result matches the whole track decoded from the start sample for sample: MP3 decoding starts a
+     * few primed frames early, and resampling starts on a whole cycle of filter phases with the filter already full.
+     *
+     * @param file  An MP3, WAV or AU file
+     * @param index The file's frame index if it is an MP3, or null to scan it here
+     * @param track The streaming track to fill in
+     * @param frame The frame, at the engine rate, the window must start at or before
+     * @param token Stops the decode part way through when cancelled
+     * @return Nothing
+     * @throws Exception if the file cannot be read or decoded
+     */
+    private static Void loadWindow(File file, Mp3FrameIndex index, PrefetchedTrack track, long frame,
+                                   TaskScheduler.Token token) throws Exception {
+        long startNanos = System.nanoTime();
+        boolean isMp3 = file.getName().toLowerCase().endsWith(".mp3");
+        if (isMp3 && index == null) index = Mp3FrameIndex.scan(file, token);
+        // Opened up front for its rate, and closed however the decode ends
+        try (AudioInputStream wav = isMp3 ? null : AudioSystem.getAudioInputStream(file)) {
+            int nativeRate = isMp3 ? index.getSampleRate() : Math.round(wav.getFormat().getFrameRate());
+
+            long windowFrames = (long) Constants.GB_SCENE_HEAD_SECONDS * Constants.GB_ENGINE_FRAME_RATE;
+            Resampler resampler = nativeRate != Constants.GB_ENGINE_FRAME_RATE
+                    ? Resampler.forRates(nativeRate, Constants.GB_ENGINE_FRAME_RATE) : null;
+            long startFrame = frame;
+            long nativeStart = frame;
+            long nativeFrames = windowFrames;
+            long warmFrames = 0;
+            if (resampler != null) {
+                long cycle = frame / resampler.getPhaseCount();
+                long firstCycle = Math.max(0, cycle - (resampler.getTaps() + resampler.getStep() - 1) / resampler.getStep());
+                startFrame = cycle * resampler.getPhaseCount();
+                warmFrames = (cycle - firstCycle) * resampler.getPhaseCount();
+                nativeStart = firstCycle * resampler.getStep();
+                nativeFrames = (windowFrames + warmFrames) * resampler.getStep() / resampler.getPhaseCount() + resampler.getTaps();
+            }
+
+            AudioInputStream stream;
+            if (isMp3) {
+                stream = Mp3DecodingStream.open(file, token, index, nativeStart);
+            } else {
+                wav.skipNBytes(nativeStart * wav.getFormat().getFrameSize());
+                stream = wav;
+            }
+            PcmTrack audio = PcmTrack.fromStream(new AudioInputStream(stream, stream.getFormat(), nativeFrames));
+            token.throwIfCancelled();
+
+            if (resampler != null) {
+                boolean isTail = audio.frameCount() < nativeFrames;
+                audio = resampler.convert(audio);
+                // As with the head, the last few frames of a cut-off window would not match the whole track
+                long end = isTail ? audio.frameCount() : audio.frameCount() - resampler.getTaps();
+                if (end <= warmFrames) return null;
+                audio = audio.slice(warmFrames, end);
+            }
+            track.setWindow(startFrame, audio);
+            LOGGER.log(Level.FINE, "Decoded {0} from {1} in {2} ms", new Object[]{file.getName(),
+                    formatTime(startFrame * 1_000_000L / Constants.GB_ENGINE_FRAME_RATE), (System.nanoTime() - startNanos) / 1_000_000});
             return null;
         }
     }
 
+    // -- Folder Indexing --
+    /**
+     * Starts the background work for a newly opened folder, replacing any still running for the last one.
+     * Frame indexes come first as they only read headers and are over in moments.
+     *
+     * @param files The audio files in the folder
+     */
+    private void indexFolder(File[] files) {
+        taskScheduler.cancelLane(TaskScheduler.Lane.INDEX);
+        indexFrames(files);
+        indexLoudness(files);
+    }
+
+    /**
+     * Builds, in the background, a frame index for every MP3 in the open folder that does not have one yet.
+     * Results are saved beside the loop configurations once the whole folder is done.
+     *
+     * @param files The audio files in the folder
+     */
+    private void indexFrames(File[] files) {
+        frameIndexStore = Mp3FrameIndexStore.load(currentConfigFolder);
+        Mp3FrameIndexStore store = frameIndexStore;
+        frameJobsPending = 0;
+        long startNanos = System.nanoTime();
+
+        for (File file : files) {
+            if (!file.getName().toLowerCase().endsWith(".mp3") || store.get(file) != null) continue;
+            frameJobsPending++;
+            taskScheduler.submit(TaskScheduler.Lane.INDEX, file.getName() + " (frames)", token -> Mp3FrameIndex.scan(file, token))
+                    .whenComplete((index, error) -> SwingUtilities.invokeLater(() -> {
+                        // Another folder has been opened since
+                        if (store != frameIndexStore) return;
+                        if (index != null) {
+                            store.put(file, index);
+                        } else if (!(error instanceof CancellationException)) {
+                            LOGGER.log(Level.WARNING, "Could not index the frames of " + file.getName(), error);
+                        }
+                        if (--frameJobsPending == 0) {
+                            store.save();
+                            LOGGER.log(Level.INFO, "Indexed the MP3 frames of the folder in {0} ms",
+                                    (System.nanoTime() - startNanos) / 1_000_000);
+                        }
+                    }));
+        }
+    }
+
+    // -- Loudness --
+    /**
+     * Measures, in the background, every track in the open folder that has not been measured yet, several at
+     * a time. Results are saved beside the loop configurations once the whole folder is done.
+     *
+     * @param files The audio files in the folder
+     */
+    private void indexLoudness(File[] files) {
+        loudnessIndex = LoudnessIndex.load(currentConfigFolder);
+        LoudnessIndex index = loudnessIndex;
+        loudnessJobsPending = 0;
+        loudnessIndexStartNanos = System.nanoTime();
+
+        for (File file : files) {
+            if (index.get(file) != null) continue;
+            loudnessJobsPending++;
+            taskScheduler.submit(TaskScheduler.Lane.INDEX, file.getName() + " (loudness)", token -> measureLoudness(file, token))
+                    .whenComplete((loudness, error) -> SwingUtilities.invokeLater(() -> {
+                        // Another folder has been opened since
+                        if (index != loudnessIndex) return;
+                        if (loudness != null) {
+                            recordLoudness(file, loudness);
+                        } else if (!(error instanceof CancellationException)) {
+                            LOGGER.log(Level.WARNING, "Could not measure the loudness of " + file.getName(), error);
+                        }
+                        if (--loudnessJobsPending == 0) {
+                            index.save();
+                            LOGGER.log(Level.INFO, "Measured the loudness of the folder in {0} ms",
+                                    (System.nanoTime() - loudnessIndexStartNanos) / 1_000_000);
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * Measures a track that has just been loaded, from its decoded audio, rather than waiting for indexing to reach it.
+     */
+    private void measureLoadedTrack(File file, PcmTrack track) {
+        LoudnessIndex index = loudnessIndex;
+        taskScheduler.submit(TaskScheduler.Lane.PREFETCH, file.getName() + " (loudness)", token -> LoudnessAnalyser.measure(track))
+                .whenComplete((loudness, error) -> SwingUtilities.invokeLater(() -> {
+                    if (loudness == null || index != loudnessIndex) return;
+                    recordLoudness(file, loudness);
+                    index.save();
+                }));
+    }
+
+    /**
+     * Stores a measurement, and applies it straight away if the track is the one playing. Runs on the EDT.
+     */
+    private void recordLoudness(File file, LoudnessAnalyser.Loudness loudness) {
+        loudnessIndex.put(file, loudness);
+        LOGGER.log(Level.FINE, "{0}: {1} LUFS, true peak {2} dBTP", new Object[]{file.getName(),
+                String.format("%.1f", loudness.integratedLufs()), String.format("%.1f", loudness.truePeakDbtp())});
+        if (file.equals(currentlyLoadedFile)) applyLoudness();
+    }
+
+    /**
+     * Measures a file's loudness by decoding it a chunk at a time, so the whole track is never held in memory
+     *
+     * @param file  An MP3, WAV or AU file
+     * @param token Stops the measurement part way through when cancelled
+     * @return The file's loudness
+     * @throws Exception if the file cannot be read or decoded
+     */
+    static LoudnessAnalyser.Loudness measureLoudness(File file, TaskScheduler.Token token) throws Exception {
+        AudioInputStream stream = file.getName().toLowerCase().endsWith(".mp3")
+                ? Mp3DecodingStream.open(file, token)
+                : AudioSystem.getAudioInputStream(file);
+        return LoudnessAnalyser.measure(stream, token);
+    }
+
+    /**
+     * Sets the output gain for the loaded track from its measured loudness. Stem sets and tracks not yet
+     * measured play as they are.
+     */
+    private void applyLoudness() {
+        LoudnessAnalyser.Loudness loudness = currentStemSet == null && currentlyLoadedFile != null
+                ? loudnessIndex.get(currentlyLoadedFile) : null;
+        double gainDb = loudness != null && isNormalising
+                ? loudness.gainDb(Constants.GB_LOUDNESS_TARGET_LUFS, Constants.GB_TRUE_PEAK_CEILING_DBTP, isLimiterEnabled) : 0;
+        audioOutput.setTrackGain((float) Math.pow(10, gainDb / 20));
+    }
+
+    /**
+     * @param volume 0 for silent, 1 for full
+     */
+    public void setVolume(float volume) {
+        audioOutput.setVolume(volume);
+    }
+
+    /**
+     * Turns loudness normalisation on or off. When on, every measured track plays at {@link Constants#GB_LOUDNESS_TARGET_LUFS}.
+     *
+     * @param enabled true to normalise
+     */
+    public void setNormalising(boolean enabled) {
+        isNormalising = enabled;
+        applyLoudness();
+    }
+
+    /**
+     * Turns the output limiter on or off. With it on, normalisation may turn quiet, peaky tracks up fully
+     * and let the limiter catch the peaks.
+     *
+     * @param enabled true to limit
+     */
+    public void setLimiterEnabled(boolean enabled) {
+        isLimiterEnabled = enabled;
+        audioOutput.setLimiterEnabled(enabled);
+        applyLoudness();
+    }
+
+    /**
+     * Fades one stem of the loaded stem set towards a new level
+     *
+     * @param stem The index of the stem, in the order they were loaded
+     * @param gain 0 for silent, 1 for the stem's original level
+     */
+    public void setStemGain(int stem, float gain) {
+        if (currentStemSet != null) currentStemSet.setGain(stem, gain);
+    }
+
+    /**
+     * Gets a file's audio at the engine rate, from the cache if it is there, otherwise by decoding and converting it.
+     * A freshly decoded track is returned as it is, so the first play of a track never waits on compressing it or
+     * on the compressed reads, and is compressed into the cache in the background.
+     *
+     * @param file  An MP3, WAV or AU file
+     * @param token Stops the decode part way through when cancelled
+     * @return The audio at {@link Constants#GB_ENGINE_FRAME_RATE}
+     * @throws Exception if the file cannot be read or decoded
+     */
+    private PcmSource loadTrack(File file, TaskScheduler.Token token) throws Exception {
+        CompressedTrack cached = trackCache.get(file);
+        if (cached != null) return cached;
+        PcmTrack decoded = compressing.get(file);
+        if (decoded != null) return decoded;
+
+        long startNanos = System.nanoTime();
+        PcmTrack track = decodeFile(file, token);
+        token.throwIfCancelled();
+        int nativeRate = Math.round(track.frameRate());
+        if (nativeRate != Constants.GB_ENGINE_FRAME_RATE) {
+            track = Resampler.forRates(nativeRate, Constants.GB_ENGINE_FRAME_RATE).convert(track);
+        }
+        LOGGER.log(Level.FINE, "Decoded {0} from {1} Hz in {2} ms", new Object[]{
+                file.getName(), nativeRate, (System.nanoTime() - startNanos) / 1_000_000});
+        compressIntoCache(file, track);
+        return track;
+    }
+
+    /**
+     * Compresses a decoded track into the cache in its own lane, so no load waits on it. Until it is in, the
+     * decoded track is handed out to anything else that loads the file.
+     *
+     * @param file  The file the track was decoded from
+     * @param track The track at the engine rate
+     */
+    private void compressIntoCache(File file, PcmTrack track) {
+        if (compressing.putIfAbsent(file, track) != null) return;
+        taskScheduler.submit(TaskScheduler.Lane.CACHE, file.getName() + " (compress)", token -> {
+            long startNanos = System.nanoTime();
+            CompressedTrack compressed = CompressedTrack.compress(track);
+            trackCache.put(file, compressed);
+            LOGGER.log(Level.FINE, "Compressed {0} to {1}% in {2} ms", new Object[]{file.getName(),
+                    compressed.sizeInBytes() * 100 / Math.max(1, track.sizeInBytes()), (System.nanoTime() - startNanos) / 1_000_000});
+            return compressed;
+        }).whenComplete((compressed, error) -> {
+            compressing.remove(file, track);
+            if (error != null && !(error instanceof CancellationException)) {
+                LOGGER.log(Level.WARNING, "Error compressing " + file.getName(), error);
+            }
+        });
+    }
+
+    /**
+     * Gives the engine a reader of its own. A compressed track is read through a fresh cursor, made here rather
+     * than on the rendering thread, so playback never takes the track's lock or evicts anyone else's blocks.
+     *
+     * @param source Audio from {@link #loadTrack}
+     * @return Something the rendering thread can read on its own
+     */
+    private static PcmSource forPlayback(PcmSource source) {
+        return source instanceof CompressedTrack compressed ? new CompressedTrack.Cursor(compressed) : source;
+    }
+
+    /**
+     * Gets the first {@link Constants#GB_SCENE_HEAD_SECONDS} of a file's audio at the engine rate, along with the
+     * whole track's length: exact for an indexed MP3 or a WAV, otherwise an estimate. A track already in the cache
+     * is used whole.
+     *
+     * @param file  An MP3, WAV or AU file
+     * @param index The file's frame index if it is an indexed MP3, otherwise null
+     * @param token Stops the decode part way through when cancelled
+     * @return The head, ready to start playing
+     * @throws Exception if the file cannot be read or decoded
+     */
+    private PrefetchedTrack loadHead(File file, Mp3FrameIndex index, TaskScheduler.Token token) throws Exception {
+        CompressedTrack cached = trackCache.get(file);
+        if (cached != null) {
+            PcmSource reader = forPlayback(cached);
+            PrefetchedTrack track = new PrefetchedTrack(reader, cached.frameCount());
+            track.complete(reader);
+            return track;
+        }
+
+        long headMillis = Constants.GB_SCENE_HEAD_SECONDS * 1000L;
+        PcmTrack head;
+        long estimatedFrames;
+        if (file.getName().toLowerCase().endsWith(".mp3")) {
+            estimatedFrames = index != null ? index.getTotalSamples() : estimateMp3Frames(file);
+            head = PcmTrack.fromStream(convertMp3ToAudioInputStream(file, token, headMillis));
+        } else {
+            try (AudioInputStream whole = AudioSystem.getAudioInputStream(file)) {
+                estimatedFrames = whole.getFrameLength();
+                long headFrames = (long) (whole.getFormat().getFrameRate() * headMillis / 1000);
+                head = PcmTrack.fromStream(new AudioInputStream(whole, whole.getFormat(),
+                        estimatedFrames == AudioSystem.NOT_SPECIFIED ? headFrames : Math.min(headFrames, estimatedFrames)));
+            }
+        }
+        token.throwIfCancelled();
+
+        int nativeRate = Math.round(head.frameRate());
+        if (nativeRate != Constants.GB_ENGINE_FRAME_RATE) {
+            Resampler resampler = Resampler.forRates(nativeRate, Constants.GB_ENGINE_FRAME_RATE);
+            boolean isWhole = head.frameCount() >= estimatedFrames;
+            head = resampler.convert(head);
+            // The filter sees silence past a cut-off head, so its last few frames would not match the whole track
+            if (!isWhole) head = head.slice(0, Math.max(0, head.frameCount() - resampler.getTaps()));
+            estimatedFrames = (estimatedFrames * resampler.getPhaseCount() + resampler.getStep() - 1) / resampler.getStep();
+        }
+        return new PrefetchedTrack(head, estimatedFrames);
+    }
+
+    /**
+     * Decodes an audio file fully into memory, at the rate it was recorded at
+     *
+     * @param fileToLoad An MP3, WAV or AU file
+     * @param token      Stops an MP3 decode part way through when cancelled
+     * @return The decoded audio
+     * @throws Exception if the file cannot be read or decoded
+     */
+    private static PcmTrack decodeFile(File fileToLoad, TaskScheduler.Token token) throws Exception {
+        AudioInputStream audioStream;
+        String fileName = fileToLoad.getName().toLowerCase();
+
+        if (fileName.endsWith(".mp3")) {
+            audioStream = convertMp3ToAudioInputStream(fileToLoad, token);
+        } else {
+            // For WAV, AU, etc., use the standard method
+            audioStream = AudioSystem.getAudioInputStream(fileToLoad);
+        }
+        return PcmTrack.fromStream(audioStream);
+    }
+
 
     // -- File + Config Logic
 
@@ -148,7 +804,34 @@ public class AudioService {
      * @return AudioInputStream containing decoded PCM data
      * @throws Exception if conversion fails
      */
-    private AudioInputStream convertMp3ToAudioInputStream(File mp3File) throws Exception {
+    static AudioInputStream convertMp3ToAudioInputStream(File mp3File) throws Exception {
+        return convertMp3ToAudioInputStream(mp3File, () -> false);
+    }
+
+    /**
+     * Converts an MP3 file to a PCM AudioInputStream using JLayer, checking between frames whether it is still wanted
+     *
+     * @param mp3File The MP3 file to convert
+     * @param token   Stops the conversion when cancelled
+     * @return AudioInputStream containing decoded PCM data
+     * @throws Exception if conversion fails
+     * @throws CancellationException if the token is cancelled part way through
+     */
+    static AudioInputStream convertMp3ToAudioInputStream(File mp3File, TaskScheduler.Token token) throws Exception {
+        return convertMp3ToAudioInputStream(mp3File, token, Long.MAX_VALUE);
+    }
+
+    /**
+     * Converts the start of an MP3 file to a PCM AudioInputStream using JLayer, checking between frames whether it is still wanted
+     *
+     * @param mp3File   The MP3 file to convert
+     * @param token     Stops the conversion when cancelled
+     * @param maxMillis Stops the conversion once at least this much audio has been decoded
+     * @return AudioInputStream containing decoded PCM data
+     * @throws Exception if conversion fails
+     * @throws CancellationException if the token is cancelled part way through
+     */
+    static AudioInputStream convertMp3ToAudioInputStream(File mp3File, TaskScheduler.Token token, long maxMillis) throws Exception {
         FileInputStream fileInputStream = new FileInputStream(mp3File);
         Bitstream bitstream = new Bitstream(fileInputStream);
         Decoder decoder;
@@ -172,8 +855,10 @@ public class AudioService {
                 false // little endian
         );
 
-        // Decode the entire MP3 to PCM data
+        // Decode the MP3 to PCM data, up to the limit
         ByteArrayOutputStream pcmOutput = new ByteArrayOutputStream();
+        long maxBytes = maxMillis == Long.MAX_VALUE ? Long.MAX_VALUE
+                : (long) (sampleRate * maxMillis / 1000) * decodedFormat.getFrameSize();
 
         // Reset the bitstream to start from beginning
         bitstream.close();
@@ -185,6 +870,11 @@ public class AudioService {
         Header header;
         int frameCount = 0;
         while ((header = bitstream.readFrame()) != null) {
+            if (token.isCancelled()) {
+                bitstream.close();
+                fileInputStream.close();
+                throw new CancellationException("Decoding " + mp3File.getName() + " was cancelled");
+            }
             SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
 
             if (output != null) {
@@ -202,6 +892,7 @@ public class AudioService {
 
             bitstream.closeFrame();
             frameCount++;
+            if (pcmOutput.size() >= maxBytes) break;
         }
 
         bitstream.close();
@@ -217,6 +908,26 @@ public class AudioService {
         return new AudioInputStream(pcmInput, decodedFormat, pcmData.length / decodedFormat.getFrameSize());
     }
 
+    /**
+     * Estimates the length of an MP3 file from its first frame header, without decoding it
+     *
+     * @param mp3File The MP3 file
+     * @return The expected number of frames at the file's own rate
+     * @throws Exception if the file has no valid frames
+     */
+    static long estimateMp3Frames(File mp3File) throws Exception {
+        try (FileInputStream fileInputStream = new FileInputStream(mp3File)) {
+            Bitstream bitstream = new Bitstream(fileInputStream);
+            Header header = bitstream.readFrame();
+            if (header == null) {
+                throw new Exception("Invalid MP3 file - no frames found");
+            }
+            float totalMillis = header.total_ms((int) Math.min(Integer.MAX_VALUE, mp3File.length()));
+            bitstream.close();
+            return Math.round(totalMillis * header.frequency() / 1000.0);
+        }
+    }
+
     /**
      * Updates the config for the current file and immediately saves all configs to disk.
      * @param config The new configuration to save for the current file.
@@ -238,22 +949,139 @@ public class AudioService {
         folderChooser.setAcceptAllFileFilterUsed(false);
 
         if (folderChooser.showOpenDialog(parentComponent) == JFileChooser.APPROVE_OPTION) {
-            currentConfigFolder = folderChooser.getSelectedFile();
-            loadConfigsFromFile(); // Load saved settings from the folder
+            openFolder(folderChooser.getSelectedFile());
+        }
+    }
 
+    /**
+     * Opens a given folder, loads its configs, and populates the file list.
+     *
+     * @param folder The folder holding the audio files
+     */
+    public void openFolder(File folder) {
+        currentConfigFolder = folder;
+        loadConfigsFromFile(); // Load saved settings from the folder
+
+        File[] audioFiles = listAudioFiles(currentConfigFolder);
+
+        if (audioFiles == null) {
             fileListModel.clear();
-            File[] audioFiles = currentConfigFolder.listFiles((dir, name) -> {
-                String lowerName = name.toLowerCase();
-                return lowerName.endsWith(".wav") || lowerName.endsWith(".au") || lowerName.endsWith(".mp3");
-            });
+        } else {
+            // One update for the whole folder, rather than one per file
+            fileListModel.setFiles(audioFiles);
+            LOGGER.log(Level.INFO, "Found {0} audio files in {1}", new Object[]{audioFiles.length, currentConfigFolder.getAbsolutePath()});
+            indexFolder(audioFiles);
+        }
+    }
+
+    // -- Output --
+    /**
+     * @return The devices audio can be played on, by name
+     */
+    public List<String> getOutputDevices() {
+        return AudioOutput.listDevices();
+    }
+
+    /**
+     * @return The output device and preset in use
+     */
+    public AudioOutput.Settings getOutputSettings() {
+        return audioOutput.getSettings();
+    }
+
+    /**
+     * Switches the output device or preset, reopening the line if one is open, and remembers the choice.
+     *
+     * @param settings The output settings
+     * @return true if the settings took effect, false if the device could not be opened
+     */
+    public boolean setOutputSettings(AudioOutput.Settings settings) {
+        try {
+            audioOutput.setSettings(settings);
+        } catch (LineUnavailableException e) {
+            LOGGER.log(Level.SEVERE, "Could not open the audio output with " + settings, e);
+            return false;
+        }
+        workspaceStore.saveOutputSettings(settings);
+        return true;
+    }
+
+    /**
+     * @return The output's measured latency and underrun count
+     */
+    public AudioOutput.Stats getOutputStats() {
+        return audioOutput.getStats();
+    }
+
+    // -- Workspace --
+    /**
+     * Saves the open folder, the loaded track and where it is up to, and the tracks hot in the cache, so the next
+     * launch can pick up where this one left off. Does nothing if no folder is open.
+     * <p>
+     * What to save is read here, on the EDT, and written on a thread of its own, as writing the hot tracks can
+     * take a while. If the app exits part way through, a shutdown hook holds the exit until the save is done.
+     */
+    public void saveWorkspace() {
+        if (currentConfigFolder == null) return;
+        PlaybackEngine.Snapshot state = playbackEngine.getSnapshot();
+        // A stem set has no single track to select again
+        File selected = currentStemSet == null ? currentlyLoadedFile : null;
+        List<File> hotTracks = new ArrayList<>();
+        if (selected != null) hotTracks.add(selected);
+        for (File file : trackCache.mostRecent(Constants.GB_WORKSPACE_HOT_TRACKS)) {
+            if (hotTracks.size() < Constants.GB_WORKSPACE_HOT_TRACKS && !hotTracks.contains(file)) hotTracks.add(file);
+        }
+        WorkspaceStore.Workspace workspace = new WorkspaceStore.Workspace(currentConfigFolder, selected,
+                selected == null ? 0 : state.positionMicroseconds(), isLoopEnabledProvider.get(),
+                (int) Math.round(state.tempo() * 100));
 
-            if (audioFiles != null) {
-                for (File file : audioFiles) {
-                    fileListModel.addElement(file);
+        CountDownLatch saved = new CountDownLatch(1);
+        Thread exitHold = new Thread(() -> {
+            try {
+                saved.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "GrooveBuddy-WorkspaceExitHold");
+        Thread saver = new Thread(() -> {
+            try {
+                workspaceStore.save(workspace, hotTracks, trackCache);
+            } finally {
+                saved.countDown();
+                try {
+                    Runtime.getRuntime().removeShutdownHook(exitHold);
+                } catch (IllegalStateException e) {
+                    // Already exiting, and the hook has just been let go
                 }
-                LOGGER.log(Level.INFO, "Found {0} audio files in {1}", new Object[]{audioFiles.length, currentConfigFolder.getAbsolutePath()});
             }
-        }
+        }, "GrooveBuddy-WorkspaceSaver");
+        Runtime.getRuntime().addShutdownHook(exitHold);
+        saver.start();
+    }
+
+    /**
+     * Reopens the folder saved by {@link #saveWorkspace()}, with its hot tracks mapped straight into the cache
+     * so loading them skips the decode. Selecting the track and moving the playhead is left to the caller.
+     *
+     * @return The saved workspace, or null if there is nothing to restore
+     */
+    public WorkspaceStore.Workspace restoreWorkspace() {
+        WorkspaceStore.Workspace workspace = workspaceStore.load(trackCache);
+        if (workspace != null) openFolder(workspace.folder());
+        return workspace;
+    }
+
+    /**
+     * Lists the audio files Groove Buddy can play in a folder
+     *
+     * @param folder The folder to scan
+     * @return The MP3, WAV and AU files in the folder, or null if it cannot be read
+     */
+    static File[] listAudioFiles(File folder) {
+        return folder.listFiles((dir, name) -> {
+            String lowerName = name.toLowerCase();
+            return lowerName.endsWith(".wav") || lowerName.endsWith(".au") || lowerName.endsWith(".mp3");
+        });
     }
 
     /**
@@ -261,21 +1089,9 @@ public class AudioService {
      */
     private void loadConfigsFromFile() {
         loopConfigMap.clear();
-        File configFile = new File(currentConfigFolder, CONFIG_FILE_NAME);
-        if (!configFile.exists()) {
-            LOGGER.info("No config file found. Starting fresh.");
-            return;
-        }
-
-        Properties props = new Properties();
-        try (InputStream input = new FileInputStream(configFile)) {
-            props.load(input);
-            for (String key : props.stringPropertyNames()) {
-                File audioFile = new File(currentConfigFolder, key);
-                LoopConfig config = LoopConfig.fromString(props.getProperty(key));
-                loopConfigMap.put(audioFile, config);
-            }
-            LOGGER.info("Successfully loaded " + props.size() + " loop configurations.");
+        try {
+            loopConfigMap.putAll(readConfigs(currentConfigFolder));
+            LOGGER.info("Successfully loaded " + loopConfigMap.size() + " loop configurations.");
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error loading config file", e);
         }
@@ -287,19 +1103,55 @@ public class AudioService {
     private void saveConfigsToFile() {
         if (currentConfigFolder == null) return;
 
-        File configFile = new File(currentConfigFolder, CONFIG_FILE_NAME);
+        try {
+            writeConfigs(currentConfigFolder, loopConfigMap);
+            LOGGER.info("Successfully saved configurations to file.");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error saving config file", e);
+        }
+    }
+
+    /**
+     * Reads the loop configurations saved in a folder
+     *
+     * @param folder The folder holding the audio files and their config file
+     * @return Each audio file mapped to its configuration, empty if nothing has been saved yet
+     * @throws IOException if the config file exists but cannot be read
+     */
+    static Map<File, LoopConfig> readConfigs(File folder) throws IOException {
+        Map<File, LoopConfig> configs = new HashMap<>();
+        File configFile = new File(folder, CONFIG_FILE_NAME);
+        if (!configFile.exists()) {
+            LOGGER.info("No config file found. Starting fresh.");
+            return configs;
+        }
+
         Properties props = new Properties();
+        try (InputStream input = new FileInputStream(configFile)) {
+            props.load(input);
+        }
+        for (String key : props.stringPropertyNames()) {
+            configs.put(new File(folder, key), LoopConfig.fromString(props.getProperty(key)));
+        }
+        return configs;
+    }
 
-        for (Map.Entry<File, LoopConfig> entry : loopConfigMap.entrySet()) {
+    /**
+     * Writes loop configurations to the config file in a folder, replacing what was there
+     *
+     * @param folder  The folder holding the audio files
+     * @param configs Each audio file mapped to its configuration
+     * @throws IOException if the config file cannot be written
+     */
+    static void writeConfigs(File folder, Map<File, LoopConfig> configs) throws IOException {
+        Properties props = new Properties();
+        for (Map.Entry<File, LoopConfig> entry : configs.entrySet()) {
             // Use the relative file name as the key
             props.setProperty(entry.getKey().getName(), entry.getValue().toString());
         }
 
-        try (OutputStream output = new FileOutputStream(configFile)) {
+        try (OutputStream output = new FileOutputStream(new File(folder, CONFIG_FILE_NAME))) {
             props.store(output, "Groove Buddy Loop Configurations");
-            LOGGER.info("Successfully saved configurations to file.");
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Error saving config file", e);
         }
     }
 
@@ -309,29 +1161,29 @@ public class AudioService {
      * Starts the timeline, and the audio stream simultaneously
      */
     public void play() {
-        if (clpAudioClip != null) {
-            if (isLoopEnabledProvider.get() && !tmrTimeline.isRunning()) {
-                LoopConfig config = loopConfigProvider.get();
-                // Only set the repeat counter if the loop is NOT infinite
+        if (currentlyLoadedFile != null) {
+            LoopConfig config = loopConfigProvider.get();
+            playbackEngine.setLoop(isLoopEnabledProvider.get(), config);
+            if (isLoopEnabledProvider.get() && !playbackEngine.isPlaying()) {
                 if (!config.isInfinite) {
-                    intRepeatsRemaining = config.repeats;
-                    LOGGER.log(Level.INFO, "Starting loop with {0} repetitions.", intRepeatsRemaining);
+                    LOGGER.log(Level.INFO, "Starting loop with {0} repetitions.", config.repeats);
                 } else {
                     LOGGER.log(Level.INFO, "Starting infinite loop.");
                 }
             }
-            clpAudioClip.start();
+            playbackEngine.play();
             tmrTimeline.start();
             LOGGER.info("Playback BEGIN");
         }
     }
 
     /**
-     * Halts both the timeline and the audio stream
+     * Halts both the timeline and the audio stream. Sent even if the engine does not look to be playing yet,
+     * as a play sent a moment ago may still be on its way to it.
      */
     public void pause() {
-        if (clpAudioClip != null && clpAudioClip.isRunning()) {
-            clpAudioClip.stop();
+        if (currentlyLoadedFile != null) {
+            playbackEngine.pause();
             tmrTimeline.stop();
             LOGGER.info("Playback PAUSED");
         }
@@ -341,25 +1193,114 @@ public class AudioService {
      * Stops the currently playing audio file
      */
     public void stop() {
-        if (clpAudioClip != null) {
-            clpAudioClip.stop();
-            clpAudioClip.setFramePosition(0);
+        if (currentlyLoadedFile != null) {
+            playbackEngine.stop();
             tmrTimeline.stop();
             onTimeUpdate.accept(0L); // Tell GUI to reset its time display to 0
-            intRepeatsRemaining = 0;
             LOGGER.info("Playback stopped and reset.");
         }
     }
 
+    /**
+     * Speeds up or slows down playback without changing the pitch
+     *
+     * @param tempo 1.0 for the original speed, 1.2 for 20% faster, and so on
+     */
+    public void setTempo(double tempo) {
+        playbackEngine.setTempo(tempo);
+        LOGGER.log(Level.FINE, "Tempo set to {0}", tempo);
+    }
+
+    /**
+     * Starts an ambient bed under the music, in place of any playing now. Its sounds are decoded in the
+     * background, through the same cache as tracks; any that cannot be found are skipped. Runs on the EDT.
+     *
+     * @param bedFile  The bed's text file, with its sounds beside it
+     * @param onResult Called on the EDT with a line to show the user, once the bed is playing or has failed
+     */
+    public void startAmbience(File bedFile, Consumer<String> onResult) {
+        long generation = ++ambienceGeneration;
+        taskScheduler.submit(TaskScheduler.Lane.SCENE, bedFile.getName(), token -> loadAmbience(bedFile, token))
+                .whenComplete((scene, error) -> SwingUtilities.invokeLater(() -> {
+                    // Stopped, or another bed was started, while this one loaded
+                    if (generation != ambienceGeneration) return;
+                    if (error != null) {
+                        LOGGER.log(Level.WARNING, "Could not start ambience " + bedFile.getName(), error);
+                        onResult.accept("Could not start " + bedFile.getName() + ": " + error.getMessage());
+                        return;
+                    }
+                    try {
+                        // The render loop only runs with a line open, and the bed plays whether or not a track is loaded
+                        audioOutput.open(Constants.GB_ENGINE_FRAME_RATE);
+                    } catch (LineUnavailableException e) {
+                        LOGGER.log(Level.SEVERE, "Error opening the audio output", e);
+                        onResult.accept("Could not open the audio output.");
+                        return;
+                    }
+                    playbackEngine.setAmbience(scene);
+                    onResult.accept(String.format("Playing %s: %d pools of sounds", scene.bed().name(), scene.bed().pools().size()));
+                }));
+    }
+
+    /**
+     * Stops the ambient bed. Sounds already playing finish on their own.
+     */
+    public void stopAmbience() {
+        ambienceGeneration++;
+        playbackEngine.setAmbience(null);
+    }
+
+    /**
+     * Reads a bed and decodes its sounds, dropping sounds that cannot be loaded and pools left with none.
+     *
+     * @throws IOException if the bed cannot be read, or none of its sounds can be loaded
+     */
+    private AmbiencePlayer.Scene loadAmbience(File bedFile, TaskScheduler.Token token) throws Exception {
+        AmbientBed bed = AmbientBed.parse(bedFile.toPath());
+        File folder = bedFile.getAbsoluteFile().getParentFile();
+        List<AmbientBed.Pool> pools = new ArrayList<>();
+        List<PcmSource[]> sounds = new ArrayList<>();
+        for (AmbientBed.Pool pool : bed.pools()) {
+            List<PcmSource> loaded = new ArrayList<>();
+            for (String sound : pool.sounds()) {
+                File soundFile = new File(folder, sound);
+                if (!soundFile.isFile()) {
+                    LOGGER.log(Level.WARNING, "Skipping ambient sound {0}, it is not beside the bed", soundFile);
+                    continue;
+                }
+                try {
+                    loaded.add(loadTrack(soundFile, token));
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Skipping ambient sound " + soundFile + ", it could not be decoded", e);
+                }
+            }
+            if (loaded.isEmpty()) continue;
+            pools.add(pool);
+            sounds.add(loaded.toArray(new PcmSource[0]));
+        }
+        if (pools.isEmpty()) throw new IOException("none of its sounds were found beside it");
+        return new AmbiencePlayer.Scene(new AmbientBed(bed.name(), pools), sounds, System.nanoTime());
+    }
+
+    /**
+     * Changes where the music sounds like it is coming from, such as behind a door or across a cavern
+     *
+     * @param settings The effects to glide to
+     */
+    public void setEffects(EffectChain.Settings settings) {
+        playbackEngine.setEffects(settings);
+    }
+
     /**
      * Allows a user to use the timeline to scrub through the loaded audio file
      *
      * @param microseconds The play head position described in microseconds
      */
     public void seek(long microseconds) {
-        if (clpAudioClip != null) {
-            clpAudioClip.setMicrosecondPosition(microseconds);
-        }
+        playbackEngine.seek(microseconds);
+        streamAhead();
     }
 
 
@@ -368,9 +1309,9 @@ public class AudioService {
      * Parses a time string (MM:SS) into total seconds
      *
      * @param timeString The String to parse
-     * @return The total number of seconds
+     * @return The total number of microseconds, or -1 if the string could not be parsed
      */
-    private long parseTime(String timeString) {
+    static long parseTime(String timeString) {
         try {
             String[] parts = timeString.split(":");
             if (parts.length == 2) {
@@ -402,7 +1343,7 @@ public class AudioService {
      * @param totalMicroSeconds The duration in Seconds
      * @return A properly formatted string
      */
-    public String formatTime(long totalMicroSeconds) {
+    public static String formatTime(long totalMicroSeconds) {
         long totalSeconds = totalMicroSeconds / 1_000_000;
         long minutes = totalSeconds / 60;
         long seconds = totalSeconds % 60;
@@ -411,39 +1352,20 @@ public class AudioService {
     }
 
     /**
-     * Sets up the Swing Timer to update the GUI every second during playback.
+     * Sets up the Swing Timer to update the GUI during playback, and to pass any loop edits on to the engine.
+     * The loop seams themselves are handled by the engine on the exact frame.
      */
     private void setupTimer() {
-        tmrTimeline = new Timer(50, e -> {
-            if (clpAudioClip != null && clpAudioClip.isRunning()) {
-                long currentMicroSeconds = clpAudioClip.getMicrosecondPosition();
-
-                onTimeUpdate.accept(currentMicroSeconds);
-
-                // Check if looping is enabled by calling the provider function
-                if (isLoopEnabledProvider.get()) {
-                    // Get the current settings from the GUI via the provider
-                    LoopConfig currentConfig = loopConfigProvider.get();
-                    long loopEndMicro = parseTime(currentConfig.loopEnd);
-                    if (currentMicroSeconds >= loopEndMicro) {
-
-                        if (currentConfig.isInfinite) {
-                            // If infinite, just jump back to the start.
-                            long loopStartMicro = parseTime(currentConfig.loopStart);
-                            if (loopStartMicro >= 0) clpAudioClip.setMicrosecondPosition(loopStartMicro);
-                            LOGGER.log(Level.INFO, "Looping infinitely.");
-                        } else if (intRepeatsRemaining > 0) {
-                            // If finite, decrement and jump back.
-                            intRepeatsRemaining--;
-                            LOGGER.log(Level.INFO, "Looping. Repeats Remaining: {0}", intRepeatsRemaining);
-                            long loopStartMicro = parseTime(currentConfig.loopStart);
-                            if (loopStartMicro >= 0) clpAudioClip.setMicrosecondPosition(loopStartMicro);
-                        } else {
-                            // Otherwise, the loop is finished.
-                            onLoopFinishCallback.run();
-                            LOGGER.info("Looping has finished.");
-                        }
-                    }
+        tmrTimeline = new Timer(Constants.GB_TIMELINE_TICK_MS, e -> {
+            PlaybackEngine.Snapshot state = playbackEngine.getSnapshot();
+            if (state.isPlaying()) {
+                onTimeUpdate.accept(state.positionMicroseconds());
+                streamAhead();
+
+                // Get the current settings from the GUI via the providers, unless the UI has not yet caught up
+                // with a scene the engine has just handed off to
+                if (state.sourceGeneration() == installedGeneration) {
+                    playbackEngine.setLoop(isLoopEnabledProvider.get(), loopConfigProvider.get());
                 }
             }
         });
@@ -455,9 +1377,62 @@ public class AudioService {
      * @return The microsecond position, or 0 if there's an issue with the file
      */
     public long getCurrentMicroseconds() {
-        if (clpAudioClip != null) {
-            return clpAudioClip.getMicrosecondPosition();
+        return playbackEngine.getPositionMicroseconds();
+    }
+
+    /**
+     * @return true while audio is playing
+     */
+    public boolean isPlaying() {
+        return playbackEngine.isPlaying();
+    }
+
+    /**
+     * @return The length of the loaded audio in microseconds, or 0 if nothing is loaded
+     */
+    public long getLengthMicroseconds() {
+        return playbackEngine.getLengthMicroseconds();
+    }
+
+    /**
+     * @return The current tempo, 1.0 being the original speed
+     */
+    public double getTempo() {
+        return playbackEngine.getTempo();
+    }
+
+    /**
+     * Reads every playback value at once, all from the same moment. Never waits on the engine.
+     *
+     * @return Where the engine was at the end of its latest block
+     */
+    public PlaybackEngine.Snapshot getSnapshot() {
+        return playbackEngine.getSnapshot();
+    }
+
+    /**
+     * @return The loaded file, or the first stem of a stem set, or null if nothing is loaded
+     */
+    public File getCurrentlyLoadedFile() {
+        return currentlyLoadedFile;
+    }
+
+    /**
+     * Estimates how long a command took to be heard: from when it was received, to when the first block rendered
+     * after it started, plus the audio already queued in the line ahead of that block. Call it from a background
+     * thread straight after the command has been sent: the engine applies it at the start of its next block.
+     *
+     * @param receivedNanos When the command was received, from {@link System#nanoTime()}
+     * @return The estimate in microseconds, or -1 if no audio was rendered in time (such as when no line is open)
+     */
+    public long measureCommandLatencyMicros(long receivedNanos) {
+        long appliedNanos = System.nanoTime();
+        long deadline = appliedNanos + Constants.GB_REMOTE_LATENCY_TIMEOUT_MS * 1_000_000L;
+        long blockStart;
+        while ((blockStart = playbackEngine.getLastBlockStartNanos()) < appliedNanos) {
+            if (System.nanoTime() > deadline) return -1;
+            LockSupport.parkNanos(100_000);
         }
-        return 0;
+        return (blockStart - receivedNanos) / 1_000 + audioOutput.getBufferedMicroseconds();
     }
-}
\ No newline at end of file
+}
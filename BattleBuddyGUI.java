@@ -0,0 +1,211 @@
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * BattleBuddyGUI tries out an encounter before the session by fighting it thousands or millions of times, and
+ * shows how often the party wins, how many rounds it tends to take, and who tends to go down.
+ * <p>
+ * Encounters are read from {@code resources/encounters}, and their combatants from the character sheets in
+ * {@code resources/sheets}. The fights run on every core in the background.
+ */
+public class BattleBuddyGUI {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(BattleBuddyGUI.class.getName());
+    private static final File ENCOUNTERS_FOLDER = new File("resources/encounters");
+    private static final Path SHEETS_FOLDER = Path.of("resources", "sheets");
+    // How wide the longest bar of the rounds chart is
+    private static final int CHART_WIDTH = 40;
+
+    // --- UI Components ---
+    private JFrame frmFoundation;
+    private JComboBox<File> cmbEncounter;
+    private JComboBox<Long> cmbFights;
+    private JButton btnBrowse, btnRun;
+    private JTextArea txtResults;
+    private JLabel lblStatusLabel;
+
+    // --- State ---
+    private final CharacterRepository characters = new CharacterRepository();
+
+    /**
+     * Initializes the frame and lists the encounters found.
+     */
+    public void initUI() {
+        frmFoundation = new JFrame("Battle Buddy");
+        frmFoundation.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frmFoundation.setLayout(new BorderLayout());
+
+        txtResults = new JTextArea();
+        txtResults.setEditable(false);
+        txtResults.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        txtResults.setBorder(Constants.GB_CONTROLCONTAINER_BORDER);
+        frmFoundation.add(createToolbarPanel(), BorderLayout.NORTH);
+        frmFoundation.add(new JScrollPane(txtResults), BorderLayout.CENTER);
+
+        frmFoundation.setSize(Constants.BB_FRAME_WIDTH, Constants.BB_FRAME_HEIGHT);
+        frmFoundation.setLocationRelativeTo(null);
+        frmFoundation.setVisible(true);
+
+        if (Files.isDirectory(SHEETS_FOLDER)) {
+            try {
+                characters.loadFolder(SHEETS_FOLDER);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not read the character sheets", e);
+            }
+        }
+        File[] encounters = ENCOUNTERS_FOLDER.listFiles((dir, name) -> name.endsWith(".txt"));
+        if (encounters != null) {
+            Arrays.sort(encounters);
+            for (File encounter : encounters) cmbEncounter.addItem(encounter);
+        }
+        btnRun.setEnabled(cmbEncounter.getItemCount() > 0);
+    }
+
+    // --- Creators ---
+    /**
+     * Creates the encounter chooser, the number of fights and the Run button.
+     */
+    private JPanel createToolbarPanel() {
+        JPanel pnlToolbar = new JPanel(new BorderLayout());
+        pnlToolbar.setBorder(new EmptyBorder(Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS));
+
+        JPanel pnlButtons = new JPanel(new FlowLayout(FlowLayout.LEFT, Constants.GB_HGAP_SPACING, Constants.GB_VGAP_SPACING));
+        cmbEncounter = new JComboBox<>();
+        cmbEncounter.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, value instanceof File file ? file.getName() : value, index, isSelected, cellHasFocus);
+            }
+        });
+        btnBrowse = new JButton("Browse...");
+        btnBrowse.addActionListener(e -> chooseEncounter());
+        cmbFights = new JComboBox<>();
+        for (long fights : Constants.BB_FIGHT_COUNTS) cmbFights.addItem(fights);
+        cmbFights.setSelectedItem(1_000_000L);
+        cmbFights.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, String.format("%,d fights", (Long) value), index, isSelected, cellHasFocus);
+            }
+        });
+        btnRun = new JButton("Run");
+        btnRun.addActionListener(e -> runEncounter());
+
+        pnlButtons.add(new JLabel("Encounter:"));
+        pnlButtons.add(cmbEncounter);
+        pnlButtons.add(btnBrowse);
+        pnlButtons.add(cmbFights);
+        pnlButtons.add(btnRun);
+
+        lblStatusLabel = new JLabel("Choose an encounter and press Run.");
+        lblStatusLabel.setBorder(new EmptyBorder(Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, 0, 0));
+        pnlToolbar.add(pnlButtons, BorderLayout.NORTH);
+        pnlToolbar.add(lblStatusLabel, BorderLayout.SOUTH);
+        return pnlToolbar;
+    }
+
+    // --- Encounters ---
+    private void chooseEncounter() {
+        JFileChooser fileChooser = new JFileChooser(ENCOUNTERS_FOLDER.isDirectory() ? ENCOUNTERS_FOLDER : null);
+        fileChooser.setDialogTitle("Open Encounter");
+        if (fileChooser.showOpenDialog(frmFoundation) == JFileChooser.APPROVE_OPTION) {
+            File chosen = fileChooser.getSelectedFile();
+            cmbEncounter.addItem(chosen);
+            cmbEncounter.setSelectedItem(chosen);
+            btnRun.setEnabled(true);
+        }
+    }
+
+    /**
+     * Reads the chosen encounter and fights it in the background. The file is read afresh each time, so it can be
+     * tweaked between runs.
+     */
+    private void runEncounter() {
+        File file = (File) cmbEncounter.getSelectedItem();
+        if (file == null) return;
+        Encounter encounter;
+        try {
+            encounter = Encounter.parse(file.toPath(), characters);
+        } catch (IOException e) {
+            lblStatusLabel.setText("Could not read the encounter.");
+            JOptionPane.showMessageDialog(frmFoundation, e.getMessage(), "Battle Buddy", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        long fights = (Long) cmbFights.getSelectedItem();
+        long seed = System.nanoTime();
+        btnRun.setEnabled(false);
+        lblStatusLabel.setText(String.format("Fighting %s %,d times...", encounter.name(), fights));
+
+        new SwingWorker<EncounterSimulator.Result, Void>() {
+            @Override
+            protected EncounterSimulator.Result doInBackground() {
+                return EncounterSimulator.run(encounter, fights, seed);
+            }
+
+            @Override
+            protected void done() {
+                btnRun.setEnabled(true);
+                try {
+                    EncounterSimulator.Result result = get();
+                    txtResults.setText(describe(encounter, result, seed));
+                    txtResults.setCaretPosition(0);
+                    lblStatusLabel.setText(String.format("%,d fights in %,d ms", result.fights(), result.nanos() / 1_000_000));
+                } catch (InterruptedException | ExecutionException e) {
+                    LOGGER.log(Level.WARNING, "Could not run " + encounter.name(), e);
+                    lblStatusLabel.setText("The fights could not be run: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Lays out the combatants as they were read, then what came of the fights.
+     */
+    private static String describe(Encounter encounter, EncounterSimulator.Result result, long seed) {
+        StringBuilder text = new StringBuilder();
+        text.append(encounter.name()).append(String.format("  (seed %d)%n%n", seed));
+        text.append(String.format("%-22s %-5s %3s %8s %3s %7s %-12s %s%n", "Combatant", "Side", "#", "HP", "AC", "Attack", "Damage", "Downed"));
+        List<Encounter.Combatant> combatants = encounter.combatants();
+        for (int kind = 0; kind < combatants.size(); kind++) {
+            Encounter.Combatant combatant = combatants.get(kind);
+            String attack = String.format("%+d", combatant.attackBonus())
+                    + (combatant.attackAdvantage() > 0 ? " adv" : combatant.attackAdvantage() < 0 ? " dis" : "")
+                    + (combatant.attacks() > 1 ? " x" + combatant.attacks() : "");
+            text.append(String.format("%-22s %-5s %3d %8s %3d %7s %-12s %5.1f%%%n",
+                    combatant.name() + (combatant.isFromSheet() ? " *" : ""),
+                    combatant.side() == Encounter.Side.PARTY ? "Party" : "Foes", combatant.count(),
+                    combatant.hitPoints(), combatant.armorClass(), attack, combatant.damage(),
+                    100 * result.downedRates()[kind]));
+        }
+        text.append("* read from a character sheet\n\n");
+
+        text.append(String.format("Party wins   %6.2f%%%n", 100 * result.partyWinRate()));
+        text.append(String.format("Foes win     %6.2f%%%n", 100 * result.foeWinRate()));
+        if (result.stalemates() > 0) {
+            text.append(String.format("Stalemates   %6.2f%%  (still going after %d rounds)%n",
+                    100.0 * result.stalemates() / result.fights(), Constants.BB_MAX_ROUNDS));
+        }
+        text.append(String.format("Rounds       %.2f on average, %d at the median, %d or fewer in 9 fights out of 10%n%n",
+                result.meanRounds(), result.roundsAtPercentile(0.5), result.roundsAtPercentile(0.9)));
+
+        long[] counts = result.roundCounts();
+        long most = Arrays.stream(counts).max().orElse(0);
+        int last = counts.length - 1;
+        while (last > 0 && counts[last] == 0) last--;
+        for (int rounds = 1; rounds <= last; rounds++) {
+            int bar = most == 0 ? 0 : (int) Math.round((double) CHART_WIDTH * counts[rounds] / most);
+            text.append(String.format("%3d %s %.2f%%%n", rounds, "#".repeat(bar), 100.0 * counts[rounds] / result.fights()));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Every character sheet in a folder, stored a column at a time so filters over hundreds of them run in a
+ * few microseconds.
+ * <p>
+ * Each ability score is a column of bytes, one per sheet, and roles and races are stored as small numbers
+ * looked up from their names. A {@link Query} checks one column at a time and keeps its matches as a bit per
+ * sheet, so a filter never touches the sheets themselves until the matches are asked for. Names, roles and
+ * races match regardless of case.
+ * <p>
+ * Only used from the EDT.
+ */
+public class CharacterRepository {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(CharacterRepository.class.getName());
+    private static final int ATTRIBUTES = CharacterSheet.Attribute.values().length;
+
+    /**
+     * How a score is compared with a value
+     */
+    public enum Comparison { LESS, LESS_OR_EQUAL, EQUAL, GREATER_OR_EQUAL, GREATER }
+
+    // -- Rows, one per sheet, with no gaps --
+    private int size;
+    private CharacterSheet[] sheets = new CharacterSheet[16];
+    private Path[] sources = new Path[16];
+    private int[] roleCodes = new int[16];
+    private int[] raceCodes = new int[16];
+    // One column per attribute. Scores run from 1 to 30, so a byte holds any of them
+    private final byte[][] scores = new byte[ATTRIBUTES][16];
+
+    // -- Lookups --
+    private final Map<Path, Integer> rowOfSource = new HashMap<>();
+    private final Map<String, Integer> rowOfName = new HashMap<>();
+    private final Map<String, Integer> roleCodeOf = new HashMap<>();
+    private final Map<String, Integer> raceCodeOf = new HashMap<>();
+
+    /**
+     * Reads every {@code .txt} sheet in a folder, replacing any already read from the same files and dropping
+     * any whose file has gone. A sheet that cannot be parsed is logged and left out.
+     *
+     * @param folder The folder of sheets
+     * @return How many sheets were read
+     * @throws IOException if the folder cannot be listed
+     */
+    public int loadFolder(Path folder) throws IOException {
+        int loaded = 0;
+        Set<Path> seen = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*.txt")) {
+            for (Path file : files) {
+                seen.add(file);
+                try {
+                    put(file, CharacterSheet.parse(file));
+                    loaded++;
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Skipping a sheet that could not be read: {0}", e.getMessage());
+                }
+            }
+        }
+        for (Path source : new ArrayList<>(rowOfSource.keySet())) {
+            if (folder.equals(source.getParent()) && !seen.contains(source)) remove(source);
+        }
+        LOGGER.log(Level.INFO, "Read {0} character sheets from {1}", new Object[]{loaded, folder});
+        return loaded;
+    }
+
+    /**
+     * Adds a sheet, or replaces the one read from the same file before.
+     *
+     * @param source The file the sheet was read from
+     * @param sheet  The sheet
+     */
+    public void put(Path source, CharacterSheet sheet) {
+        Integer existing = rowOfSource.get(source);
+        int row;
+        if (existing != null) {
+            row = existing;
+            rowOfName.remove(key(sheets[row].name()), row);
+        } else {
+            if (size == sheets.length) grow();
+            row = size++;
+            rowOfSource.put(source, row);
+        }
+        sheets[row] = sheet;
+        sources[row] = source;
+        roleCodes[row] = codeOf(roleCodeOf, sheet.role());
+        raceCodes[row] = codeOf(raceCodeOf, sheet.race());
+        for (CharacterSheet.Attribute attribute : CharacterSheet.Attribute.values()) {
+            scores[attribute.ordinal()][row] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, sheet.score(attribute)));
+        }
+        rowOfName.put(key(sheet.name()), row);
+    }
+
+    /**
+     * Forgets the sheet read from a file, if there is one. The last row moves into its place.
+     *
+     * @param source The file the sheet was read from
+     */
+    public void remove(Path source) {
+        Integer removed = rowOfSource.remove(source);
+        if (removed == null) return;
+        int row = removed;
+        rowOfName.remove(key(sheets[row].name()), row);
+
+        int last = --size;
+        if (row != last) {
+            sheets[row] = sheets[last];
+            sources[row] = sources[last];
+            roleCodes[row] = roleCodes[last];
+            raceCodes[row] = raceCodes[last];
+            for (byte[] column : scores) column[row] = column[last];
+            rowOfSource.put(sources[row], row);
+            rowOfName.replace(key(sheets[row].name()), last, row);
+        }
+        sheets[last] = null;
+        sources[last] = null;
+    }
+
+    /**
+     * @return How many sheets are held
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param name A character's name, in any case
+     * @return Their sheet, or null if there is none
+     */
+    public CharacterSheet findByName(String name) {
+        Integer row = rowOfName.get(key(name));
+        return row == null ? null : sheets[row];
+    }
+
+    /**
+     * @return Every sheet, in no particular order
+     */
+    public List<CharacterSheet> all() {
+        return List.of(Arrays.copyOf(sheets, size));
+    }
+
+    /**
+     * @return A new query matching every sheet, to be narrowed down
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    private void grow() {
+        int capacity = sheets.length * 2;
+        sheets = Arrays.copyOf(sheets, capacity);
+        sources = Arrays.copyOf(sources, capacity);
+        roleCodes = Arrays.copyOf(roleCodes, capacity);
+        raceCodes = Arrays.copyOf(raceCodes, capacity);
+        for (int i = 0; i < ATTRIBUTES; i++) scores[i] = Arrays.copyOf(scores[i], capacity);
+    }
+
+    private static int codeOf(Map<String, Integer> codes, String value) {
+        return codes.computeIfAbsent(key(value), k -> codes.size());
+    }
+
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A filter over the sheets, built up one condition at a time and run against the sheets held when it is run.
+     * Conditions on the same attribute narrow each other, so {@code WIS > 5} and {@code WIS < 10} keep 6 to 9.
+     */
+    public final class Query {
+        // The inclusive range each attribute must fall in
+        private final int[] min = new int[ATTRIBUTES];
+        private final int[] max = new int[ATTRIBUTES];
+        private String role;
+        private String race;
+
+        private Query() {
+            Arrays.fill(min, Integer.MIN_VALUE);
+            Arrays.fill(max, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Keeps the sheets whose score compares as given, such as {@code where(WIS, LESS, 10)}.
+         */
+        public Query where(CharacterSheet.Attribute attribute, Comparison comparison, int value) {
+            int i = attribute.ordinal();
+            switch (comparison) {
+                case LESS -> max[i] = Math.min(max[i], value - 1);
+                case LESS_OR_EQUAL -> max[i] = Math.min(max[i], value);
+                case EQUAL -> {
+                    min[i] = Math.max(min[i], value);
+                    max[i] = Math.min(max[i], value);
+                }
+                case GREATER_OR_EQUAL -> min[i] = Math.max(min[i], value);
+                case GREATER -> min[i] = Math.max(min[i], value + 1);
+            }
+            return this;
+        }
+
+        /**
+         * Keeps the sheets with this role.
+         */
+        public Query role(String role) {
+            this.role = role;
+            return this;
+        }
+
+        /**
+         * Keeps the sheets of this race.
+         */
+        public Query race(String race) {
+            this.race = race;
+            return this;
+        }
+
+        /**
+         * @return How many sheets match
+         */
+        public int count() {
+            int count = 0;
+            for (long word : run()) count += Long.bitCount(word);
+            return count;
+        }
+
+        /**
+         * @return The matching sheets
+         */
+        public List<CharacterSheet> sheets() {
+            long[] matches = run();
+            List<CharacterSheet> found = new ArrayList<>();
+            for (int word = 0; word < matches.length; word++) {
+                for (long bits = matches[word]; bits != 0; bits &= bits - 1) {
+                    found.add(CharacterRepository.this.sheets[word * 64 + Long.numberOfTrailingZeros(bits)]);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Checks each condition's column in turn, clearing the bit of every sheet it rules out.
+         *
+         * @return A bit per sheet, set where the sheet matches
+         */
+        private long[] run() {
+            long[] matches = new long[(size + 63) / 64];
+            Arrays.fill(matches, -1L);
+            if (size % 64 != 0) matches[matches.length - 1] = (1L << (size % 64)) - 1;
+
+            if (role != null) keepCode(matches, roleCodes, roleCodeOf.get(key(role)));
+            if (race != null) keepCode(matches, raceCodes, raceCodeOf.get(key(race)));
+            for (int i = 0; i < ATTRIBUTES; i++) {
+                if (min[i] == Integer.MIN_VALUE && max[i] == Integer.MAX_VALUE) continue;
+                byte[] column = scores[i];
+                int low = min[i];
+                int high = max[i];
+                for (int word = 0; word < matches.length; word++) {
+                    if (matches[word] == 0) continue;
+                    long keep = 0;
+                    int from = word * 64;
+                    int to = Math.min(size, from + 64);
+                    for (int row = from; row < to; row++) {
+                        int score = column[row];
+                        if (score >= low && score <= high) keep |= 1L << (row - from);
+                    }
+                    matches[word] &= keep;
+                }
+            }
+            return matches;
+        }
+
+        private void keepCode(long[] matches, int[] codes, Integer wanted) {
+            if (wanted == null) {
+                Arrays.fill(matches, 0);
+                return;
+            }
+            int code = wanted;
+            for (int word = 0; word < matches.length; word++) {
+                long keep = 0;
+                int from = word * 64;
+                int to = Math.min(size, from + 64);
+                for (int row = from; row < to; row++) {
+                    if (codes[row] == code) keep |= 1L << (row - from);
+                }
+                matches[word] &= keep;
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A character sheet read from the plain text files under {@code resources/sheets}.
+ * <p>
+ * A sheet is a list of sections, each starting with its heading at the start of a line ({@code Name: Mira}).
+ * Name, Role and Race hold their value on the heading line; Background, Attributes, Abilities and Notes hold
+ * theirs on the indented lines below. Attributes are the six ability scores ({@code WIS: 8}), and each ability
+ * is a bullet (a dot, dash or star) with its name and what it does ({@code - Debug Sense: Detects parser errors}).
+ * Unknown sections are skipped, and any score a sheet leaves out is the average of 10.
+ *
+ * @param name       The character's name, which is what scripts refer to them by
+ * @param role       Such as NPC, Villain or Ally
+ * @param race       Such as Human or Elf
+ * @param background Free text, with its line breaks
+ * @param scores     The six ability scores, in {@link Attribute} order
+ * @param abilities  What the character can do, in the order listed
+ * @param notes      Free text, with its line breaks
+ */
+public record CharacterSheet(String name, String role, String race, String background, int[] scores,
+                             List<Ability> abilities, String notes) {
+    // The score a sheet gets for an attribute it does not list
+    public static final int DEFAULT_SCORE = 10;
+
+    /**
+     * The six ability scores, in the order sheets list them
+     */
+    public enum Attribute { STR, DEX, CON, INT, WIS, CHA }
+
+    /**
+     * One entry in a sheet's Abilities section
+     *
+     * @param name        What the ability is called
+     * @param description What it does
+     */
+    public record Ability(String name, String description) {
+    }
+
+    public CharacterSheet {
+        if (scores.length != Attribute.values().length) throw new IllegalArgumentException("A sheet has six scores");
+        scores = scores.clone();
+        abilities = List.copyOf(abilities);
+    }
+
+    /**
+     * @param attribute The ability score wanted
+     * @return The character's score for it
+     */
+    public int score(Attribute attribute) {
+        return scores[attribute.ordinal()];
+    }
+
+    @Override
+    public int[] scores() {
+        return scores.clone();
+    }
+
+    // -- Parsing --
+    /**
+     * Reads a sheet from a file.
+     *
+     * @param file The sheet's text file
+     * @return The sheet
+     * @throws IOException if the file cannot be read or is not a valid sheet
+     */
+    public static CharacterSheet parse(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), file.getFileName().toString());
+    }
+
+    /**
+     * Reads a sheet from its lines of text.
+     *
+     * @param lines      The sheet, one entry per line
+     * @param sourceName Where the lines came from, for error messages
+     * @return The sheet
+     * @throws IOException if the lines are not a valid sheet
+     */
+    public static CharacterSheet parse(List<String> lines, String sourceName) throws IOException {
+        String name = null, role = "", race = "";
+        StringBuilder background = new StringBuilder();
+        StringBuilder notes = new StringBuilder();
+        int[] scores = new int[Attribute.values().length];
+        Arrays.fill(scores, DEFAULT_SCORE);
+        List<Ability> abilities = new ArrayList<>();
+
+        String section = "";
+        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+            String line = lines.get(lineNumber - 1);
+            if (line.isBlank()) continue;
+
+            // A heading starts at the very start of the line, everything under it is indented
+            if (!Character.isWhitespace(line.charAt(0))) {
+                int colon = line.indexOf(':');
+                if (colon < 0) throw new IOException(sourceName + " line " + lineNumber + ": expected a heading such as 'Name:'");
+                section = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                switch (section) {
+                    case "name" -> name = value;
+                    case "role" -> role = value;
+                    case "race" -> race = value;
+                    default -> {
+                        // The multi-line sections also accept a first line on the heading itself
+                        if (!value.isEmpty()) appendTo(section, value, background, notes);
+                    }
+                }
+                continue;
+            }
+
+            String entry = line.trim();
+            switch (section) {
+                case "attributes" -> {
+                    int colon = entry.indexOf(':');
+                    Attribute attribute = colon < 0 ? null : attributeNamed(entry.substring(0, colon).trim());
+                    if (attribute == null) throw new IOException(sourceName + " line " + lineNumber + ": expected a score such as 'WIS: 8'");
+                    try {
+                        scores[attribute.ordinal()] = Integer.parseInt(entry.substring(colon + 1).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IOException(sourceName + " line " + lineNumber + ": " + attribute + " is not a number", e);
+                    }
+                }
+                case "abilities" -> {
+                    String text = stripBullet(entry);
+                    int colon = text.indexOf(':');
+                    abilities.add(colon < 0 ? new Ability(text, "")
+                            : new Ability(text.substring(0, colon).trim(), text.substring(colon + 1).trim()));
+                }
+                default -> appendTo(section, entry, background, notes);
+            }
+        }
+
+        if (name == null || name.isEmpty()) throw new IOException(sourceName + ": a sheet needs a Name");
+        return new CharacterSheet(name, role, race, background.toString(), scores, abilities, notes.toString());
+    }
+
+    private static void appendTo(String section, String text, StringBuilder background, StringBuilder notes) {
+        StringBuilder target = section.equals("background") ? background : section.equals("notes") ? notes : null;
+        if (target == null) return;
+        if (!target.isEmpty()) target.append('\n');
+        target.append(text);
+    }
+
+    private static Attribute attributeNamed(String name) {
+        for (Attribute attribute : Attribute.values()) {
+            if (attribute.name().equalsIgnoreCase(name)) return attribute;
+        }
+        return null;
+    }
+
+    private static String stripBullet(String entry) {
+        if (!entry.isEmpty() && (entry.charAt(0) == '\u2022' || entry.charAt(0) == '-' || entry.charAt(0) == '*')) {
+            return entry.substring(1).trim();
+        }
+        return entry;
+    }
+}
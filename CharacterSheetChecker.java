@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A harness for checking that character sheets are read as written, and that {@link CharacterRepository} queries
+ * find the same sheets as looking at every one would.
+ * <p>
+ * The test character in {@code resources/sheets} is read, bullets and curly quotes included, and every field
+ * compared with what the file says. A repository is then filled with it and hundreds of random sheets, some
+ * replaced and some removed as the sheet watcher does. After every change, random queries joining roles, races
+ * and several conditions on the same or different scores must match a brute-force filter over the sheets, sheet
+ * for sheet, and lastly a compound query must pick out the test character.
+ * <p>
+ * Run with {@code ant simulate}, alongside the playback scenarios. An optional argument is the seed.
+ */
+public class CharacterSheetChecker {
+    private static final Path TEST_SHEET = Path.of("resources", "sheets", "Test Character.txt");
+    private static final String[] ROLES = {"NPC", "Villain", "Ally", "Merchant"};
+    private static final String[] RACES = {"Human", "Elf", "Dwarf", "Halfling", "Orc"};
+    private static final int SHEETS = 700;
+    // How many random queries are checked after each sheet is added, replaced or removed
+    private static final int QUERIES_PER_CHANGE = 3;
+
+    private int checksRun;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Runs every check, and exits with a failure code if any failed.
+     *
+     * @param args [seed]
+     */
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1L;
+
+        CharacterSheetChecker checker = new CharacterSheetChecker();
+        CharacterSheet testCharacter = CharacterSheet.parse(TEST_SHEET);
+        checker.checkTestCharacter(testCharacter);
+        checker.checkQueries(testCharacter, new SplittableRandom(seed));
+
+        System.out.printf("Ran %d character sheet checks%n", checker.checksRun);
+        if (checker.failures.isEmpty()) {
+            System.out.println("All checks passed.");
+        } else {
+            checker.failures.stream().limit(20).forEach(System.out::println);
+            System.out.printf("%d checks FAILED%n", checker.failures.size());
+            System.exit(1);
+        }
+    }
+
+    // -- Parsing --
+    private void checkTestCharacter(CharacterSheet sheet) {
+        expect("name", sheet.name(), "Test Character");
+        expect("role", sheet.role(), "NPC");
+        expect("race", sheet.race(), "Human");
+        expect("background", sheet.background(), "A placeholder character used to verify clickable\u2010term functionality.");
+        expect("scores", Arrays.toString(sheet.scores()), "[10, 12, 14, 16, 8, 13]");
+        expect("WIS", sheet.score(CharacterSheet.Attribute.WIS), 8);
+        expect("abilities", sheet.abilities(), List.of(
+                new CharacterSheet.Ability("Test Insight", "Knows exactly when to appear on screen."),
+                new CharacterSheet.Ability("Placeholder Strike", "Deals 1 point of imaginary damage."),
+                new CharacterSheet.Ability("Debug Sense", "Detects parser errors within 10 feet.")));
+        expect("notes", sheet.notes(),
+                "Use this sheet to confirm that clicking \u201cTest Character\u201d pops up this exact text.");
+    }
+
+    private void expect(String field, Object actual, Object expected) {
+        checksRun++;
+        if (!actual.equals(expected)) failures.add("Test Character's " + field + " read as " + actual + ", not " + expected);
+    }
+
+    // -- Queries --
+    private void checkQueries(CharacterSheet testCharacter, SplittableRandom random) {
+        CharacterRepository repository = new CharacterRepository();
+        // The sheets the repository should hold, by the file each was read from
+        Map<Path, CharacterSheet> held = new LinkedHashMap<>();
+        repository.put(TEST_SHEET, testCharacter);
+        held.put(TEST_SHEET, testCharacter);
+
+        // Queried at every size along the way, as a partly filled last word of matches is easy to get wrong
+        for (int i = 0; i < SHEETS; i++) {
+            Path source = Path.of("sheets", "sheet " + random.nextInt(SHEETS) + ".txt");
+            if (random.nextInt(8) == 0) {
+                repository.remove(source);
+                held.remove(source);
+            } else {
+                // Sometimes a sheet already held, as when its file is saved again
+                CharacterSheet sheet = randomSheet("Character " + i, random);
+                repository.put(source, sheet);
+                held.put(source, sheet);
+            }
+            checksRun++;
+            if (repository.size() != held.size()) {
+                failures.add("The repository holds " + repository.size() + " sheets, not " + held.size());
+                return;
+            }
+            for (int query = 0; query < QUERIES_PER_CHANGE; query++) {
+                checkQuery("query " + query + " of " + held.size() + " sheets", repository, held, random);
+            }
+        }
+
+        // The test character is the one clever, unwise human NPC
+        Condition[] compound = {
+                new Condition(CharacterSheet.Attribute.INT, CharacterRepository.Comparison.GREATER_OR_EQUAL, 16),
+                new Condition(CharacterSheet.Attribute.WIS, CharacterRepository.Comparison.LESS, 9),
+                new Condition(CharacterSheet.Attribute.CHA, CharacterRepository.Comparison.EQUAL, 13)};
+        checksRun++;
+        if (!query(repository, "npc", "HUMAN", compound).sheets().contains(testCharacter)) {
+            failures.add("A query for the test character did not find it");
+        }
+        checkQuery("the test character's query", repository, "npc", "HUMAN", compound, held);
+    }
+
+    /**
+     * Checks a random query joining up to four conditions, and a role and race half the time each.
+     */
+    private void checkQuery(String name, CharacterRepository repository, Map<Path, CharacterSheet> held, SplittableRandom random) {
+        Condition[] conditions = new Condition[random.nextInt(5)];
+        for (int i = 0; i < conditions.length; i++) {
+            CharacterSheet.Attribute attribute = CharacterSheet.Attribute.values()[random.nextInt(CharacterSheet.Attribute.values().length)];
+            CharacterRepository.Comparison comparison = CharacterRepository.Comparison.values()[random.nextInt(CharacterRepository.Comparison.values().length)];
+            conditions[i] = new Condition(attribute, comparison, 1 + random.nextInt(30));
+        }
+        String role = random.nextBoolean() ? randomCase(pick(ROLES, random), random) : null;
+        String race = random.nextBoolean() ? randomCase(pick(RACES, random), random) : null;
+        // Now and then one no sheet has
+        if (random.nextInt(40) == 0) role = "Dragon";
+        checkQuery(name, repository, role, race, conditions, held);
+    }
+
+    /**
+     * A score condition, kept so the brute-force filter can apply it itself
+     */
+    private record Condition(CharacterSheet.Attribute attribute, CharacterRepository.Comparison comparison, int value) {
+        boolean matches(CharacterSheet sheet) {
+            int score = sheet.score(attribute);
+            return switch (comparison) {
+                case LESS -> score < value;
+                case LESS_OR_EQUAL -> score <= value;
+                case EQUAL -> score == value;
+                case GREATER_OR_EQUAL -> score >= value;
+                case GREATER -> score > value;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return attribute + " " + comparison + " " + value;
+        }
+    }
+
+    /**
+     * Runs a query, and filters every sheet held by looking at each in turn, and compares what they find.
+     */
+    private void checkQuery(String name, CharacterRepository repository, String role, String race, Condition[] conditions,
+                            Map<Path, CharacterSheet> held) {
+        List<CharacterSheet> expected = new ArrayList<>();
+        for (CharacterSheet sheet : held.values()) {
+            if (role != null && !sheet.role().equalsIgnoreCase(role)) continue;
+            if (race != null && !sheet.race().equalsIgnoreCase(race)) continue;
+            if (Arrays.stream(conditions).allMatch(condition -> condition.matches(sheet))) expected.add(sheet);
+        }
+
+        CharacterRepository.Query query = query(repository, role, race, conditions);
+        List<CharacterSheet> found = new ArrayList<>(query.sheets());
+        Comparator<CharacterSheet> byName = Comparator.comparing(CharacterSheet::name);
+        expected.sort(byName);
+        found.sort(byName);
+        checksRun++;
+        if (!found.equals(expected) || query.count() != expected.size()) {
+            failures.add(String.format("%s (role %s, race %s, %s): found %d sheets, counted %d, but %d match",
+                    name, role, race, List.of(conditions), found.size(), query.count(), expected.size()));
+        }
+    }
+
+    private static CharacterRepository.Query query(CharacterRepository repository, String role, String race, Condition[] conditions) {
+        CharacterRepository.Query query = repository.query();
+        if (role != null) query.role(role);
+        if (race != null) query.race(race);
+        for (Condition condition : conditions) query.where(condition.attribute(), condition.comparison(), condition.value());
+        return query;
+    }
+
+    private static CharacterSheet randomSheet(String name, SplittableRandom random) {
+        int[] scores = new int[CharacterSheet.Attribute.values().length];
+        for (int i = 0; i < scores.length; i++) scores[i] = 1 + random.nextInt(30);
+        return new CharacterSheet(name, pick(ROLES, random), pick(RACES, random), "", scores, List.of(), "");
+    }
+
+    private static String pick(String[] values, SplittableRandom random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Names match whatever their case, so queries are written in upper, lower or the sheet's own
+     */
+    private static String randomCase(String value, SplittableRandom random) {
+        return switch (random.nextInt(3)) {
+            case 0 -> value.toUpperCase(Locale.ROOT);
+            case 1 -> value.toLowerCase(Locale.ROOT);
+            default -> value;
+        };
+    }
+}
@@ -0,0 +1,139 @@
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a {@link CharacterRepository} in step with its folder of sheets. Only the sheets that change are read
+ * again: a new or edited file is parsed on the watcher's own thread and swapped in on the EDT, and a deleted
+ * file's sheet is dropped. A sheet caught half saved keeps its last good version until the save finishes.
+ */
+public class CharacterSheetWatcher implements AutoCloseable {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(CharacterSheetWatcher.class.getName());
+
+    private final Path folder;
+    private final CharacterRepository repository;
+    private final Runnable onChange;
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * @param folder     The folder of sheets
+     * @param repository Where the sheets are kept
+     * @param onChange   Called on the EDT after any sheet has been added, replaced or removed
+     */
+    public CharacterSheetWatcher(Path folder, CharacterRepository repository, Runnable onChange) {
+        this.folder = folder;
+        this.repository = repository;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Starts watching, then reads every sheet already in the folder. Call from the EDT.
+     *
+     * @throws IOException if the folder cannot be watched or listed
+     */
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        // Watching starts first, so a sheet saved while the folder is being read is not missed
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        repository.loadFolder(folder);
+
+        thread = new Thread(this::watch, "character-sheet-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching.
+     */
+    @Override
+    public void close() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing the sheet watcher", e);
+        }
+    }
+
+    /**
+     * Waits for changes and applies them. An editor saving a file often fires several events for it,
+     * so each batch reads a file only once.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean isOverflowed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        isOverflowed = true;
+                    } else {
+                        Path file = folder.resolve((Path) event.context());
+                        if (file.getFileName().toString().endsWith(".txt")) changed.add(file);
+                    }
+                }
+                if (isOverflowed) {
+                    // Too much changed at once to know what, so read the whole folder again
+                    SwingUtilities.invokeLater(this::reloadAll);
+                } else {
+                    for (Path file : changed) reload(file);
+                }
+                if (!key.reset()) {
+                    LOGGER.log(Level.WARNING, "{0} can no longer be watched", folder);
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.fine("Sheet watcher stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads one changed file off the EDT, then applies the result on it.
+     */
+    private void reload(Path file) {
+        if (!Files.exists(file)) {
+            SwingUtilities.invokeLater(() -> {
+                repository.remove(file);
+                onChange.run();
+            });
+            return;
+        }
+        try {
+            CharacterSheet sheet = CharacterSheet.parse(file);
+            SwingUtilities.invokeLater(() -> {
+                repository.put(file, sheet);
+                onChange.run();
+            });
+            LOGGER.log(Level.FINE, "Re-read {0}", file.getFileName());
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Keeping the last good version of a sheet: {0}", e.getMessage());
+        }
+    }
+
+    private void reloadAll() {
+        try {
+            repository.loadFolder(folder);
+            onChange.run();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read " + folder + " again", e);
+        }
+    }
+}
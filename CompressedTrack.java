@@ -0,0 +1,680 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A decoded track held in memory losslessly compressed, typically at a little over half the size of
+ * {@link PcmTrack}, and decoded a block at a time as it is read.
+ * <p>
+ * The track is cut into blocks of {@link #BLOCK_FRAMES} frames, each compressed on its own so any block can be
+ * decoded without the ones before it. Within a block, stereo is stored as whichever pair of left, right, mid and
+ * side is cheapest, each channel is predicted from the samples before it with the cheapest of a few fixed
+ * polynomials, and what the prediction missed is Rice coded. This is the scheme FLAC uses, minus the file format.
+ * A block that would not get any smaller, such as noise, is stored as it is.
+ * <p>
+ * Each reader plays through a {@link Cursor} of its own, which keeps the last few blocks it decoded, so playing
+ * straight through decodes each block once and readers never evict each other's blocks. Decoding a block costs a
+ * small fraction of the time it takes to play, so reading through a cursor is safe from the rendering thread.
+ * Reading the track itself goes through one shared cursor under a lock, which is only for occasional reads.
+ * <p>
+ * A track can be written to a file and mapped back in later, which takes no longer than reading its block table:
+ * the audio itself is paged in by the operating system as blocks are decoded.
+ */
+public class CompressedTrack implements PcmSource {
+    private static final float SHORT_SCALE = 1f / 32768f;
+    // Frames per block. Small enough that a seek only decodes a few milliseconds of audio
+    public static final int BLOCK_FRAMES = 4096;
+    // Frames per Rice partition, each with its own parameter so the coding follows the music's dynamics
+    private static final int PARTITION_FRAMES = 256;
+    private static final int MAX_ORDER = 4;
+    // Residuals whose unary part would be at least this long are written raw instead
+    private static final int RICE_ESCAPE = 24;
+    private static final int DECODED_BLOCKS = 2;
+
+    // How a stereo block is stored
+    private static final int LEFT_RIGHT = 0;
+    private static final int LEFT_SIDE = 1;
+    private static final int SIDE_RIGHT = 2;
+    private static final int MID_SIDE = 3;
+
+    // -- File Format --
+    private static final int MAGIC = 0x47424354; // "GBCT"
+    private static final int FORMAT_VERSION = 1;
+    // Magic, version, channels, frame rate, frame count and block count
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 4;
+
+    private final int channels;
+    private final float frameRate;
+    private final long frameCount;
+    // On the heap for a freshly compressed track, or mapped from a file for one read back
+    private final ByteBuffer data;
+    // Where each block starts in the data, plus one more entry for the end
+    private final int[] blockOffsets;
+
+    // Serves reads of the track itself, only touched while holding the lock
+    private final Cursor shared = new Cursor(this);
+
+    private CompressedTrack(int channels, float frameRate, long frameCount, ByteBuffer data, int[] blockOffsets) {
+        this.channels = channels;
+        this.frameRate = frameRate;
+        this.frameCount = frameCount;
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+    }
+
+    /**
+     * Compresses a track on the calling thread. It takes a fair fraction of the time decoding does, so it belongs on
+     * a background thread, never on the way to playing the track.
+     *
+     * @param track The decoded track
+     * @return The same audio, compressed
+     */
+    public static CompressedTrack compress(PcmTrack track) {
+        short[] samples = track.samples();
+        int channels = track.channels();
+        long frameCount = track.frameCount();
+        int blocks = (int) ((frameCount + BLOCK_FRAMES - 1) / BLOCK_FRAMES);
+
+        byte[][] encoded = new byte[blocks][];
+        for (int block = 0; block < blocks; block++) {
+            int from = block * BLOCK_FRAMES;
+            int frames = (int) Math.min(BLOCK_FRAMES, frameCount - from);
+            encoded[block] = encodeBlock(samples, channels, from, frames);
+        }
+
+        int[] offsets = new int[blocks + 1];
+        for (int block = 0; block < blocks; block++) offsets[block + 1] = offsets[block] + encoded[block].length;
+        byte[] data = new byte[offsets[blocks]];
+        for (int block = 0; block < blocks; block++) {
+            System.arraycopy(encoded[block], 0, data, offsets[block], encoded[block].length);
+        }
+        return new CompressedTrack(channels, track.frameRate(), frameCount, ByteBuffer.wrap(data), offsets);
+    }
+
+    /**
+     * Decodes the whole track back into memory, for work that needs every sample at once.
+     *
+     * @return The original track, sample for sample
+     */
+    public PcmTrack decompress() {
+        short[] samples = new short[(int) (frameCount * channels)];
+        int blocks = blockOffsets.length - 1;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            int[][] work = new int[channels][BLOCK_FRAMES];
+            short[] out = new short[BLOCK_FRAMES * channels];
+            int frames = decodeBlock(block, new BitReader(), work, out);
+            System.arraycopy(out, 0, samples, block * BLOCK_FRAMES * channels, frames * channels);
+        });
+        return new PcmTrack(samples, channels, frameRate);
+    }
+
+    /**
+     * @return Roughly how much heap the compressed audio takes up
+     */
+    public long sizeInBytes() {
+        return data.capacity() + (long) blockOffsets.length * Integer.BYTES + Cursor.SIZE_IN_BYTES;
+    }
+
+    // -- Persistence --
+    /**
+     * Writes the track to a file, replacing what was there.
+     *
+     * @param file Where to write it
+     * @throws IOException if it cannot be written
+     */
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(channels);
+            out.writeFloat(frameRate);
+            out.writeLong(frameCount);
+            out.writeInt(blockOffsets.length - 1);
+            for (int offset : blockOffsets) out.writeInt(offset);
+            ByteBuffer bytes = data.duplicate();
+            bytes.clear();
+            byte[] chunk = new byte[64 * 1024];
+            while (bytes.hasRemaining()) {
+                int count = Math.min(chunk.length, bytes.remaining());
+                bytes.get(chunk, 0, count);
+                out.write(chunk, 0, count);
+            }
+        }
+    }
+
+    /**
+     * Maps a track written by {@link #write(File)} back into memory. Only the block table is read straight away.
+     * The mapping stays valid after the file is deleted, on systems that allow deleting it at all.
+     *
+     * @param file The file to map
+     * @return The track, read straight from the file as it plays
+     * @throws IOException if the file cannot be read or is not a compressed track
+     */
+    public static CompressedTrack map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException(file.getName() + " is not a compressed track");
+            }
+            int channels = header.getInt();
+            float frameRate = header.getFloat();
+            long frameCount = header.getLong();
+            int blocks = header.getInt();
+            if (channels < 1 || channels > 2 || blocks != (frameCount + BLOCK_FRAMES - 1) / BLOCK_FRAMES) {
+                throw new IOException(file.getName() + " has a damaged header");
+            }
+
+            ByteBuffer table = ByteBuffer.allocate((blocks + 1) * Integer.BYTES);
+            channel.read(table, HEADER_BYTES);
+            table.flip();
+            if (table.remaining() < (blocks + 1) * Integer.BYTES) throw new IOException(file.getName() + " is cut short");
+            int[] offsets = new int[blocks + 1];
+            table.asIntBuffer().get(offsets);
+
+            long dataStart = HEADER_BYTES + (long) table.capacity();
+            if (channel.size() - dataStart != offsets[blocks]) throw new IOException(file.getName() + " is the wrong length");
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, offsets[blocks]);
+            return new CompressedTrack(channels, frameRate, frameCount, data, offsets);
+        }
+    }
+
+    @Override
+    public int channels() {
+        return channels;
+    }
+
+    @Override
+    public float frameRate() {
+        return frameRate;
+    }
+
+    @Override
+    public long frameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public synchronized void read(long frame, float[] dst, int dstOffset, int frames) {
+        shared.read(frame, dst, dstOffset, frames);
+    }
+
+    // -- Cursors --
+    /**
+     * Reads a compressed track for one thread, keeping the blocks it decoded last and everything decoding needs,
+     * so reading takes no lock and allocates nothing. It can be pointed at another track, so something that plays
+     * many tracks in turn, such as a voice, needs only the one.
+     */
+    public static final class Cursor implements PcmSource {
+        // Roughly how much heap a cursor takes up
+        private static final long SIZE_IN_BYTES = (long) DECODED_BLOCKS * BLOCK_FRAMES * 2 * Short.BYTES
+                + 2L * BLOCK_FRAMES * Integer.BYTES;
+
+        private CompressedTrack track;
+        private final short[][] decoded = new short[DECODED_BLOCKS][BLOCK_FRAMES * 2];
+        private final int[] decodedBlock = new int[DECODED_BLOCKS];
+        private int nextSlot;
+        private final int[][] scratch = new int[2][BLOCK_FRAMES];
+        private final BitReader reader = new BitReader();
+
+        /**
+         * Makes a cursor that reads nothing until it is pointed at a track.
+         */
+        public Cursor() {
+            Arrays.fill(decodedBlock, -1);
+        }
+
+        /**
+         * @param track The track to read
+         */
+        public Cursor(CompressedTrack track) {
+            this();
+            this.track = track;
+        }
+
+        /**
+         * Points the cursor at a track, keeping its decoded blocks if it is the one already being read.
+         *
+         * @param next The track to read
+         * @return This cursor
+         */
+        public Cursor open(CompressedTrack next) {
+            if (next != track) {
+                track = next;
+                Arrays.fill(decodedBlock, -1);
+            }
+            return this;
+        }
+
+        @Override
+        public int channels() {
+            return track.channels;
+        }
+
+        @Override
+        public float frameRate() {
+            return track.frameRate;
+        }
+
+        @Override
+        public long frameCount() {
+            return track.frameCount;
+        }
+
+        @Override
+        public void read(long frame, float[] dst, int dstOffset, int frames) {
+            int out = dstOffset * 2;
+            while (frames > 0) {
+                int block = (int) (frame / BLOCK_FRAMES);
+                int within = (int) (frame % BLOCK_FRAMES);
+                int count = Math.min(frames, BLOCK_FRAMES - within);
+                short[] samples = decodedSamples(block);
+                if (track.channels == 2) {
+                    int in = within * 2;
+                    for (int i = 0; i < count * 2; i++) dst[out + i] = samples[in + i] * SHORT_SCALE;
+                    out += count * 2;
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        float sample = samples[within + i] * SHORT_SCALE;
+                        dst[out++] = sample;
+                        dst[out++] = sample;
+                    }
+                }
+                frame += count;
+                frames -= count;
+            }
+        }
+
+        /**
+         * Gets a block's samples, decoding it into the least recently decoded slot if it is not already there.
+         */
+        private short[] decodedSamples(int block) {
+            for (int slot = 0; slot < DECODED_BLOCKS; slot++) {
+                if (decodedBlock[slot] == block) return decoded[slot];
+            }
+            int slot = nextSlot;
+            nextSlot = (nextSlot + 1) % DECODED_BLOCKS;
+            track.decodeBlock(block, reader, scratch, decoded[slot]);
+            decodedBlock[slot] = block;
+            return decoded[slot];
+        }
+    }
+
+    // -- Encoding --
+    /**
+     * Compresses one block.
+     */
+    private static byte[] encodeBlock(short[] samples, int channels, int from, int frames) {
+        int[][] signals = new int[channels][frames];
+        for (int i = 0; i < frames; i++) {
+            for (int channel = 0; channel < channels; channel++) {
+                signals[channel][i] = samples[(from + i) * channels + channel];
+            }
+        }
+
+        BitWriter out = new BitWriter(frames * channels * 2 + 16);
+        out.write(0, 1);
+        if (channels == 2) {
+            int[] left = signals[0];
+            int[] right = signals[1];
+            int[] mid = new int[frames];
+            int[] side = new int[frames];
+            for (int i = 0; i < frames; i++) {
+                mid[i] = (left[i] + right[i]) >> 1;
+                side[i] = left[i] - right[i];
+            }
+            long[] leftSums = orderSums(left);
+            long[] rightSums = orderSums(right);
+            long[] midSums = orderSums(mid);
+            long[] sideSums = orderSums(side);
+            long leftCost = leftSums[cheapestOrder(leftSums)];
+            long rightCost = rightSums[cheapestOrder(rightSums)];
+            long midCost = midSums[cheapestOrder(midSums)];
+            long sideCost = sideSums[cheapestOrder(sideSums)];
+            long[] costs = {leftCost + rightCost, leftCost + sideCost, sideCost + rightCost, midCost + sideCost};
+            int mode = LEFT_RIGHT;
+            for (int candidate = 1; candidate < costs.length; candidate++) {
+                if (costs[candidate] < costs[mode]) mode = candidate;
+            }
+            out.write(mode, 2);
+            int[] residual = new int[frames];
+            switch (mode) {
+                case LEFT_SIDE -> {
+                    encodeChannel(out, left, cheapestOrder(leftSums), residual);
+                    encodeChannel(out, side, cheapestOrder(sideSums), residual);
+                }
+                case SIDE_RIGHT -> {
+                    encodeChannel(out, side, cheapestOrder(sideSums), residual);
+                    encodeChannel(out, right, cheapestOrder(rightSums), residual);
+                }
+                case MID_SIDE -> {
+                    encodeChannel(out, mid, cheapestOrder(midSums), residual);
+                    encodeChannel(out, side, cheapestOrder(sideSums), residual);
+                }
+                default -> {
+                    encodeChannel(out, left, cheapestOrder(leftSums), residual);
+                    encodeChannel(out, right, cheapestOrder(rightSums), residual);
+                }
+            }
+        } else {
+            encodeChannel(out, signals[0], cheapestOrder(orderSums(signals[0])), new int[frames]);
+        }
+        byte[] encoded = out.toByteArray();
+        if (encoded.length <= frames * channels * 2) return encoded;
+
+        // Not worth compressing, so store the samples after a set flag bit
+        BitWriter verbatim = new BitWriter(frames * channels * 2 + 1);
+        verbatim.write(1, 1);
+        for (int i = 0; i < frames * channels; i++) verbatim.write(samples[from * channels + i], 16);
+        return verbatim.toByteArray();
+    }
+
+    /**
+     * Writes one channel of a block: the predictor order, the warm-up samples, then the Rice coded residual.
+     */
+    private static void encodeChannel(BitWriter out, int[] signal, int order, int[] residual) {
+        int frames = signal.length;
+        out.write(order, 3);
+        for (int i = 0; i < Math.min(order, frames); i++) out.write(signal[i] & 0x1FFFF, 17);
+        for (int i = order; i < frames; i++) residual[i] = signal[i] - predict(signal, i, order);
+
+        for (int start = order; start < frames; start = nextPartition(start)) {
+            int end = Math.min(frames, nextPartition(start));
+            long sum = 0;
+            for (int i = start; i < end; i++) sum += zigzag(residual[i]);
+            int k = riceParameter(sum, end - start);
+            out.write(k, 5);
+            for (int i = start; i < end; i++) out.writeRice(zigzag(residual[i]), k);
+        }
+    }
+
+    /**
+     * @return The end of the partition a frame falls in
+     */
+    private static int nextPartition(int frame) {
+        return (frame / PARTITION_FRAMES + 1) * PARTITION_FRAMES;
+    }
+
+    /**
+     * @return The Rice parameter that codes residuals with this total size most compactly
+     */
+    private static int riceParameter(long sum, int count) {
+        if (count == 0 || sum < count) return 0;
+        return Math.min(20, 63 - Long.numberOfLeadingZeros(sum / count));
+    }
+
+    /**
+     * @param sums The residual totals from {@link #orderSums(int[])}, a stand-in for how many bits each order takes
+     * @return The order whose residual is smallest in total
+     */
+    private static int cheapestOrder(long[] sums) {
+        int best = 0;
+        for (int order = 1; order <= MAX_ORDER; order++) {
+            if (sums[order] < sums[best]) best = order;
+        }
+        return best;
+    }
+
+    /**
+     * Totals the residual of every order in one pass. Each order's residual is the difference of the one below it.
+     */
+    private static long[] orderSums(int[] signal) {
+        long[] sums = new long[MAX_ORDER + 1];
+        if (signal.length <= MAX_ORDER) return sums;
+        int e0 = signal[MAX_ORDER - 1];
+        int e1 = e0 - signal[MAX_ORDER - 2];
+        int e2 = e1 - (signal[MAX_ORDER - 2] - signal[MAX_ORDER - 3]);
+        int e3 = e2 - ((signal[MAX_ORDER - 2] - signal[MAX_ORDER - 3]) - (signal[MAX_ORDER - 3] - signal[MAX_ORDER - 4]));
+        for (int i = MAX_ORDER; i < signal.length; i++) {
+            int d0 = signal[i];
+            int d1 = d0 - e0;
+            int d2 = d1 - e1;
+            int d3 = d2 - e2;
+            int d4 = d3 - e3;
+            sums[0] += Math.abs(d0);
+            sums[1] += Math.abs(d1);
+            sums[2] += Math.abs(d2);
+            sums[3] += Math.abs(d3);
+            sums[4] += Math.abs(d4);
+            e0 = d0;
+            e1 = d1;
+            e2 = d2;
+            e3 = d3;
+        }
+        return sums;
+    }
+
+    /**
+     * The fixed polynomial predictors: each order fits a curve of one degree lower through the samples before.
+     */
+    private static int predict(int[] signal, int i, int order) {
+        return switch (order) {
+            case 1 -> signal[i - 1];
+            case 2 -> 2 * signal[i - 1] - signal[i - 2];
+            case 3 -> 3 * signal[i - 1] - 3 * signal[i - 2] + signal[i - 3];
+            case 4 -> 4 * signal[i - 1] - 6 * signal[i - 2] + 4 * signal[i - 3] - signal[i - 4];
+            default -> 0;
+        };
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // -- Decoding --
+    /**
+     * Decodes one block into interleaved samples.
+     *
+     * @param block The block to decode
+     * @param in    A reader to decode with, moved to the block
+     * @param work  One buffer per channel, at least a block long
+     * @param out   Where the interleaved samples go
+     * @return The number of frames in the block
+     */
+    private int decodeBlock(int block, BitReader in, int[][] work, short[] out) {
+        int frames = (int) Math.min(BLOCK_FRAMES, frameCount - (long) block * BLOCK_FRAMES);
+        in.seek(data, blockOffsets[block]);
+        if (in.read(1) == 1) {
+            for (int i = 0; i < frames * channels; i++) out[i] = (short) in.read(16);
+            return frames;
+        }
+        int mode = channels == 2 ? in.read(2) : LEFT_RIGHT;
+        for (int channel = 0; channel < channels; channel++) decodeChannel(in, work[channel], frames);
+
+        if (channels == 1) {
+            int[] signal = work[0];
+            for (int i = 0; i < frames; i++) out[i] = (short) signal[i];
+            return frames;
+        }
+        int[] a = work[0];
+        int[] b = work[1];
+        for (int i = 0; i < frames; i++) {
+            int left;
+            int right;
+            switch (mode) {
+                case LEFT_SIDE -> {
+                    left = a[i];
+                    right = a[i] - b[i];
+                }
+                case SIDE_RIGHT -> {
+                    right = b[i];
+                    left = a[i] + b[i];
+                }
+                case MID_SIDE -> {
+                    int mid = (a[i] << 1) | (b[i] & 1);
+                    left = (mid + b[i]) >> 1;
+                    right = (mid - b[i]) >> 1;
+                }
+                default -> {
+                    left = a[i];
+                    right = b[i];
+                }
+            }
+            out[i * 2] = (short) left;
+            out[i * 2 + 1] = (short) right;
+        }
+        return frames;
+    }
+
+    /**
+     * Reads one channel of a block, undoing the prediction as it goes.
+     */
+    private static void decodeChannel(BitReader in, int[] signal, int frames) {
+        int order = in.read(3);
+        for (int i = 0; i < Math.min(order, frames); i++) signal[i] = (in.read(17) << 15) >> 15;
+        for (int start = order; start < frames; start = nextPartition(start)) {
+            int end = Math.min(frames, nextPartition(start));
+            int k = in.read(5);
+            switch (order) {
+                case 0 -> {
+                    for (int i = start; i < end; i++) signal[i] = unzigzag(in.readRice(k));
+                }
+                case 1 -> {
+                    for (int i = start; i < end; i++) signal[i] = unzigzag(in.readRice(k)) + signal[i - 1];
+                }
+                case 2 -> {
+                    for (int i = start; i < end; i++) {
+                        signal[i] = unzigzag(in.readRice(k)) + 2 * signal[i - 1] - signal[i - 2];
+                    }
+                }
+                case 3 -> {
+                    for (int i = start; i < end; i++) {
+                        signal[i] = unzigzag(in.readRice(k)) + 3 * signal[i - 1] - 3 * signal[i - 2] + signal[i - 3];
+                    }
+                }
+                default -> {
+                    for (int i = start; i < end; i++) {
+                        signal[i] = unzigzag(in.readRice(k)) + 4 * signal[i - 1] - 6 * signal[i - 2]
+                                + 4 * signal[i - 3] - signal[i - 4];
+                    }
+                }
+            }
+        }
+    }
+
+    // -- Bit Packing --
+    /**
+     * Packs bits most significant first into a growing byte array.
+     */
+    private static final class BitWriter {
+        private byte[] bytes;
+        private int length;
+        private long buffer;
+        private int bufferBits;
+
+        BitWriter(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        /**
+         * @param bits At most 56
+         */
+        void write(long value, int bits) {
+            buffer = (buffer << bits) | (value & ((1L << bits) - 1));
+            bufferBits += bits;
+            while (bufferBits >= 8) {
+                bufferBits -= 8;
+                if (length == bytes.length) bytes = Arrays.copyOf(bytes, length * 2);
+                bytes[length++] = (byte) (buffer >>> bufferBits);
+            }
+        }
+
+        /**
+         * Writes the quotient in unary and the remainder in k bits, or an escape then the raw value if the
+         * quotient is too long.
+         */
+        void writeRice(int value, int k) {
+            int quotient = value >>> k;
+            if (quotient >= RICE_ESCAPE) {
+                writeOnes(RICE_ESCAPE);
+                write(value, 32);
+                return;
+            }
+            // The ones, the zero that ends them and the remainder all go in one write
+            long ones = (1L << quotient) - 1;
+            write((ones << (k + 1)) | (value & ((1L << k) - 1)), quotient + 1 + k);
+        }
+
+        private void writeOnes(int count) {
+            while (count > 16) {
+                write(0xFFFF, 16);
+                count -= 16;
+            }
+            if (count > 0) write((1 << count) - 1, count);
+        }
+
+        byte[] toByteArray() {
+            if (bufferBits > 0) write(0, 8 - bufferBits);
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    /**
+     * Reads bits written by {@link BitWriter}, keeping up to 64 of them buffered. Moved from block to block rather
+     * than made afresh, so decoding allocates nothing.
+     */
+    private static final class BitReader {
+        private ByteBuffer bytes;
+        private int limit;
+        private int position;
+        private long buffer;
+        private int bufferBits;
+
+        /**
+         * Starts reading from a byte of the data, forgetting anything buffered.
+         */
+        void seek(ByteBuffer data, int offset) {
+            bytes = data;
+            limit = data.capacity();
+            position = offset;
+            buffer = 0;
+            bufferBits = 0;
+        }
+
+        /**
+         * Tops the buffer up to at least 57 bits, padding with zeros past the end of the data.
+         */
+        private void refill() {
+            while (bufferBits <= 56) {
+                int next = position < limit ? bytes.get(position) & 0xFF : 0;
+                position++;
+                buffer |= (long) next << (56 - bufferBits);
+                bufferBits += 8;
+            }
+        }
+
+        int read(int bits) {
+            if (bits > 32) throw new IllegalArgumentException("At most 32 bits at once");
+            if (bufferBits < bits) refill();
+            int value = (int) (buffer >>> (64 - bits));
+            buffer <<= bits;
+            bufferBits -= bits;
+            return value;
+        }
+
+        int readRice(int k) {
+            if (bufferBits < RICE_ESCAPE + 1) refill();
+            int quotient = Long.numberOfLeadingZeros(~buffer);
+            if (quotient >= RICE_ESCAPE) {
+                buffer <<= RICE_ESCAPE;
+                bufferBits -= RICE_ESCAPE;
+                return read(32);
+            }
+            buffer <<= quotient + 1;
+            bufferBits -= quotient + 1;
+            return k == 0 ? quotient : (quotient << k) | read(k);
+        }
+    }
+}
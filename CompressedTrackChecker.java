@@ -0,0 +1,137 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A harness for checking that {@link CompressedTrack} gives back exactly what it was given.
+ * <p>
+ * The track cache plays tracks straight from their compressed form, so the codec must be lossless to the bit. A
+ * range of signals, from silence and pure tones to full-scale noise that cannot be compressed at all, in mono and
+ * stereo and at lengths that end part way through a block, are each compressed and then decoded whole, written to
+ * a file and mapped back in, and read at random through a {@link CompressedTrack.Cursor}. Every sample must match.
+ * <p>
+ * Run with {@code ant simulate}, alongside the playback scenarios. An optional argument is the seed.
+ */
+public class CompressedTrackChecker {
+    private static final int BLOCK = CompressedTrack.BLOCK_FRAMES;
+    // How many random reads each signal gets through a cursor
+    private static final int CURSOR_READS = 400;
+
+    private int checksRun;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * A signal to compress
+     */
+    private interface Signal {
+        short sample(int frame, int channel, SplittableRandom random);
+    }
+
+    /**
+     * Runs every check, and exits with a failure code if any failed.
+     *
+     * @param args [seed]
+     */
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1L;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        CompressedTrackChecker checker = new CompressedTrackChecker();
+        Signal silence = (frame, channel, r) -> 0;
+        Signal noise = (frame, channel, r) -> (short) r.nextInt(1 << 16);
+        Signal extremes = (frame, channel, r) -> frame % 2 == channel ? Short.MAX_VALUE : Short.MIN_VALUE;
+        Signal sine = (frame, channel, r) -> (short) Math.round(32767 * Math.sin(frame * 0.031 + channel));
+        Signal quietSine = (frame, channel, r) -> (short) Math.round(40 * Math.sin(frame * 0.002));
+        Signal music = (frame, channel, r) -> (short) Math.round(9000 * Math.sin(frame * 0.013)
+                + 4000 * Math.sin(frame * 0.0021 + channel) + r.nextInt(601) - 300);
+
+        checker.check("silence", 2, BLOCK * 3, silence, random);
+        checker.check("full-scale noise", 2, BLOCK * 2 + 1, noise, random);
+        checker.check("alternating extremes", 2, BLOCK + 3, extremes, random);
+        checker.check("sine", 2, 12_345, sine, random);
+        checker.check("quiet sine", 2, BLOCK * 2, quietSine, random);
+        checker.check("music-like", 2, BLOCK * 5 - 7, music, random);
+        checker.check("mono noise", 1, 7_777, noise, random);
+        checker.check("mono sine", 1, BLOCK + 1, sine, random);
+        // The same on both sides, as a mono recording saved as stereo is
+        checker.check("mono as stereo", 2, BLOCK * 2 - 1, (frame, channel, r) -> sine.sample(frame, 0, r), random);
+        checker.check("one frame", 2, 1, noise, random);
+        checker.check("one block", 2, BLOCK, music, random);
+
+        System.out.printf("Ran %d compressed track checks%n", checker.checksRun);
+        if (checker.failures.isEmpty()) {
+            System.out.println("All checks passed.");
+        } else {
+            checker.failures.stream().limit(20).forEach(System.out::println);
+            System.out.printf("%d checks FAILED%n", checker.failures.size());
+            System.exit(1);
+        }
+    }
+
+    private void check(String name, int channels, int frames, Signal signal, SplittableRandom random) throws IOException {
+        short[] samples = new short[frames * channels];
+        for (int frame = 0; frame < frames; frame++) {
+            for (int channel = 0; channel < channels; channel++) {
+                samples[frame * channels + channel] = signal.sample(frame, channel, random);
+            }
+        }
+        PcmTrack original = new PcmTrack(samples, channels, Constants.GB_ENGINE_FRAME_RATE);
+        CompressedTrack compressed = CompressedTrack.compress(original);
+
+        checksRun++;
+        if (compressed.frameCount() != frames || compressed.channels() != channels) {
+            failures.add(name + ": compressed to " + compressed.frameCount() + " frames of " + compressed.channels() + " channels");
+            return;
+        }
+        checksRun++;
+        if (!Arrays.equals(compressed.decompress().samples(), samples)) failures.add(name + ": decompressed differently");
+
+        checksRun++;
+        File file = File.createTempFile("compressed-check-", ".track");
+        try {
+            compressed.write(file);
+            if (!Arrays.equals(CompressedTrack.map(file).decompress().samples(), samples)) {
+                failures.add(name + ": came back from a file differently");
+            }
+        } finally {
+            file.delete();
+        }
+
+        checkReads(name, original, compressed, random);
+    }
+
+    /**
+     * Reads at random places and lengths through a cursor, mostly short runs as the engine reads, and some across
+     * several blocks. The track itself is read at the same places, through its shared cursor.
+     */
+    private void checkReads(String name, PcmTrack original, CompressedTrack compressed, SplittableRandom random) {
+        int frames = (int) original.frameCount();
+        CompressedTrack.Cursor cursor = new CompressedTrack.Cursor(compressed);
+        float[] expected = new float[(BLOCK * 3 + 1) * 2];
+        float[] actual = new float[expected.length];
+        long position = 0;
+        for (int read = 0; read < CURSOR_READS; read++) {
+            checksRun++;
+            // Carry on from the last read half the time, as playing does, otherwise jump as a seek does
+            if (random.nextBoolean() || position >= frames) position = random.nextInt(frames);
+            int most = random.nextInt(8) == 0 ? BLOCK * 3 + 1 : Constants.GB_RENDER_BLOCK_FRAMES;
+            int count = (int) Math.min(frames - position, 1 + random.nextInt(most));
+            int offset = random.nextInt(2);
+            original.read(position, expected, offset, count);
+            cursor.read(position, actual, offset, count);
+            if (!Arrays.equals(expected, offset * 2, (offset + count) * 2, actual, offset * 2, (offset + count) * 2)) {
+                failures.add(name + ": cursor read " + count + " frames at " + position + " differently");
+                return;
+            }
+            compressed.read(position, actual, offset, count);
+            if (!Arrays.equals(expected, offset * 2, (offset + count) * 2, actual, offset * 2, (offset + count) * 2)) {
+                failures.add(name + ": track read " + count + " frames at " + position + " differently");
+                return;
+            }
+            position += count;
+        }
+    }
+}
@@ -32,6 +32,101 @@ public final class Constants {
     public static final Dimension GB_FILEBROWSER_DIMENSION = new Dimension(200, 0);
     public static final Dimension GB_BUTTON_SIZE = new Dimension(80, 30);
     public static final EmptyBorder GB_CONTROLCONTAINER_BORDER = new EmptyBorder(10, 10, 10, 10);
+    public static final int GB_TIMELINE_TICK_MS = 50;
+    public static final int GB_TEMPO_MIN_PERCENT = 50;
+    public static final int GB_TEMPO_MAX_PERCENT = 150;
+    public static final int GB_SCENE_LIST_ROWS = 4;
+    // Sizes every row of the file list, so a folder of thousands of files is never measured row by row
+    public static final String GB_FILE_LIST_PROTOTYPE_NAME = "A Typical Track Name - Extended Mix.mp3";
+
+    // -- Groove Buddy Playback --
+    // The largest block the engine renders at a time, and the block size of the Safe output preset
+    public static final int GB_RENDER_BLOCK_FRAMES = 512;
+    // The output line's buffer in the Safe preset, about 85 ms at the engine rate
+    public static final int GB_OUTPUT_BUFFER_FRAMES = 4096;
+    // The Low latency preset: about 21 ms of buffer, topped up in blocks of under 3 ms
+    public static final int GB_LOW_LATENCY_BLOCK_FRAMES = 128;
+    public static final int GB_LOW_LATENCY_BUFFER_FRAMES = 1024;
+    // How often the output dialog refreshes its latency and underrun figures
+    public static final int GB_OUTPUT_STATS_INTERVAL_MS = 500;
+    // Every track is converted to this rate as it is decoded, so the output line never has to change rate
+    public static final int GB_ENGINE_FRAME_RATE = 48_000;
+    // The most compressed audio to keep in memory. 45 minutes of stereo at the engine rate uncompressed, well over an hour of typical music
+    public static final long GB_TRACK_CACHE_MAX_BYTES = 512L * 1024 * 1024;
+    // How much of a queued scene is decoded ahead of time, enough to cover decoding the rest once it starts
+    public static final int GB_SCENE_HEAD_SECONDS = 10;
+    // How long a scene transition overlaps the two tracks when crossfading
+    public static final int GB_SCENE_CROSSFADE_MS = 3000;
+    // While a scene is still decoding, how far ahead of the playhead audio must be ready before more is decoded from there
+    public static final int GB_SCENE_LOOKAHEAD_SECONDS = 2;
+    // Every analysed track is turned up or down to play at this loudness
+    public static final double GB_LOUDNESS_TARGET_LUFS = -18.0;
+    // Normalisation never pushes a track's true peak above this, unless the limiter is on to catch it
+    public static final double GB_TRUE_PEAK_CEILING_DBTP = -1.0;
+    public static final int GB_LIMITER_RELEASE_MS = 150;
+    // The longest echo the effect chain can hold, which sizes its delay line up front
+    public static final int GB_EFFECT_MAX_DELAY_MS = 1000;
+    // How long effect parameters take to settle after a change, so moving a slider never clicks
+    public static final int GB_EFFECT_SMOOTHING_MS = 30;
+    // How many ambient sounds can play at once before the oldest is cut off for a new one
+    public static final int GB_AMBIENCE_VOICES = 32;
+    // The most pools an ambient bed can have, which sizes the timing wheel up front
+    public static final int GB_AMBIENCE_MAX_POOLS = 256;
+
+    // -- Groove Buddy Workspace --
+    // Under the user's home directory, where the last session is saved
+    public static final String GB_WORKSPACE_DIRECTORY = ".dndbuddy";
+    // How many of the most recently played tracks are saved with the workspace, to skip decoding them next launch
+    public static final int GB_WORKSPACE_HOT_TRACKS = 8;
+
+    // -- Groove Buddy Remote Control --
+    public static final int GB_REMOTE_PORT = 8765;
+    // How often the playhead and state are pushed to connected remotes
+    public static final int GB_REMOTE_STATE_INTERVAL_MS = 100;
+    // How many pushes a remote may fall behind by, about two seconds' worth, before it is disconnected
+    public static final int GB_REMOTE_EVENT_QUEUE = 20;
+    // How long to wait for a command to reach the audio before giving up on timing it
+    public static final int GB_REMOTE_LATENCY_TIMEOUT_MS = 500;
+
+    // -- Script Reader --
+    public static final int SR_FRAME_WIDTH = 900;
+    public static final int SR_FRAME_HEIGHT = 700;
+    public static final int SR_FONT_SIZE = 15;
+    // How many decoded and wrapped lines are kept, comfortably more than fit on a screen
+    public static final int SR_LAYOUT_CACHE_LINES = 512;
+    // How long a line stays marked after jumping to it
+    public static final int SR_MARK_MS = 1500;
+    public static final Color SR_PAGE_COLOR = new Color(250, 247, 240);
+    public static final Color SR_TEXT_COLOR = new Color(40, 40, 40);
+    public static final Color SR_TERM_COLOR = new Color(30, 80, 180);
+    public static final Color SR_CUE_COLOR = new Color(150, 70, 0);
+    public static final Color SR_CUE_BACKGROUND_COLOR = new Color(255, 225, 180);
+    public static final Color SR_MARKED_LINE_COLOR = new Color(255, 245, 200);
+
+    // -- Puzzle Buddy --
+    public static final int PB_FRAME_WIDTH = 760;
+    public static final int PB_FRAME_HEIGHT = 620;
+    // The most states a full search may remember, about 32 MB, before it falls back to searching deeper
+    public static final int PB_SOLVER_MAX_STATES = 2_000_000;
+    // The most states a deep search may look at before giving up, a few seconds on a laptop
+    public static final long PB_SOLVER_MAX_NODES = 200_000_000L;
+    public static final Color PB_BOARD_COLOR = new Color(45, 38, 60);
+    public static final Color PB_PIECE_COLOR = new Color(196, 164, 110);
+    public static final Color PB_PIECE_TEXT_COLOR = new Color(40, 30, 20);
+    public static final Color PB_MARK_COLOR = new Color(230, 60, 60);
+    public static final Color[] PB_ORB_COLORS = {
+            new Color(220, 60, 60), new Color(60, 170, 80), new Color(60, 110, 220), new Color(230, 200, 60),
+            new Color(160, 80, 200), new Color(240, 140, 40), new Color(80, 200, 210), new Color(230, 230, 230)
+    };
+
+    // -- Battle Buddy --
+    public static final int BB_FRAME_WIDTH = 720;
+    public static final int BB_FRAME_HEIGHT = 560;
+    // A fight still going after this many rounds is called a stalemate
+    public static final int BB_MAX_ROUNDS = 100;
+    // How many fights one thread runs before the rest are shared out, enough to dwarf the cost of sharing
+    public static final int BB_FIGHTS_PER_TASK = 8192;
+    public static final long[] BB_FIGHT_COUNTS = {10_000, 100_000, 1_000_000, 10_000_000};
 //    public static final int
 //    public static final int
 
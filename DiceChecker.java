@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A harness for checking Battle Buddy's dice and encounter rules without running the app.
+ * <p>
+ * Every way of keeping dice from a handful of small rolls, from {@code 2d4kh1} to {@code 4d6kl4}, is rolled many
+ * times both with and without scratch room, and each roll must land between the expression's least and most while
+ * the average must match the exact one, worked out by counting every way the dice can fall. Encounters are then
+ * checked to turn away ability scores that would throw off the simulator's initiative order.
+ * <p>
+ * Run with {@code ant simulate}, alongside the playback scenarios. An optional argument is the seed.
+ */
+public class DiceChecker {
+    private static final int[] SIDES = {2, 3, 4, 6, 20};
+    private static final int MOST_DICE = 4;
+    private static final int ROLLS = 20_000;
+    // How far the average of the rolls may stray from the exact one, in standard errors
+    private static final double TOLERANCE = 6;
+
+    private int checksRun;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Runs every check, and exits with a failure code if any failed.
+     *
+     * @param args [seed]
+     */
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1L;
+
+        DiceChecker checker = new DiceChecker();
+        checker.checkKeeps(new SplittableRandom(seed));
+        checker.checkScoreRange();
+
+        System.out.printf("Ran %d dice and encounter checks%n", checker.checksRun);
+        if (checker.failures.isEmpty()) {
+            System.out.println("All checks passed.");
+        } else {
+            checker.failures.stream().limit(20).forEach(System.out::println);
+            System.out.printf("%d checks FAILED%n", checker.failures.size());
+            System.exit(1);
+        }
+    }
+
+    // -- Dice --
+    /**
+     * Rolls every keep of every small roll, from the high end and the low, including keeping every die.
+     */
+    private void checkKeeps(SplittableRandom random) {
+        for (int side : SIDES) {
+            for (int count = 1; count <= MOST_DICE; count++) {
+                check(count + "d" + side, count, side, count, random);
+                for (int keep = 1; keep <= count; keep++) {
+                    check(count + "d" + side + "kh" + keep, count, side, keep, random);
+                    check(count + "d" + side + "kl" + keep, count, side, -keep, random);
+                }
+            }
+        }
+    }
+
+    private void check(String text, int count, int side, int keep, SplittableRandom random) {
+        checksRun++;
+        try {
+            DiceExpression dice = DiceExpression.parse(text);
+            double[] exact = exactMeanAndVariance(count, side, keep);
+            int[] scratch = new int[dice.maxDice()];
+            double sum = 0;
+            for (int roll = 0; roll < ROLLS; roll++) {
+                int rolled = roll % 2 == 0 ? dice.roll(random) : dice.roll(random, scratch);
+                if (rolled < dice.min() || rolled > dice.max()) {
+                    failures.add(String.format("%s rolled %d, outside %d to %d", text, rolled, dice.min(), dice.max()));
+                    return;
+                }
+                sum += rolled;
+            }
+            double mean = sum / ROLLS;
+            double allowed = TOLERANCE * Math.sqrt(exact[1] / ROLLS) + 1e-9;
+            if (Math.abs(mean - exact[0]) > allowed) {
+                failures.add(String.format("%s averaged %.3f, expected %.3f", text, mean, exact[0]));
+            }
+        } catch (RuntimeException e) {
+            failures.add(text + " threw " + e);
+        }
+    }
+
+    /**
+     * Counts every way the dice can fall.
+     *
+     * @return The exact mean and variance of the kept dice
+     */
+    private static double[] exactMeanAndVariance(int count, int side, int keep) {
+        int[] dice = new int[count];
+        int[] sorted = new int[count];
+        double sum = 0, squares = 0;
+        long outcomes = 0;
+        Arrays.fill(dice, 1);
+        while (true) {
+            System.arraycopy(dice, 0, sorted, 0, count);
+            Arrays.sort(sorted);
+            int total = 0;
+            if (keep > 0) {
+                for (int die = count - keep; die < count; die++) total += sorted[die];
+            } else {
+                for (int die = 0; die < -keep; die++) total += sorted[die];
+            }
+            sum += total;
+            squares += (double) total * total;
+            outcomes++;
+
+            int die = 0;
+            while (die < count && dice[die] == side) dice[die++] = 1;
+            if (die == count) break;
+            dice[die]++;
+        }
+        double mean = sum / outcomes;
+        return new double[]{mean, squares / outcomes - mean * mean};
+    }
+
+    // -- Encounters --
+    /**
+     * Scores from 1 to 30 are accepted and anything else turned away, so initiative bonuses stay in range.
+     */
+    private void checkScoreRange() {
+        CharacterRepository noSheets = new CharacterRepository();
+        for (int score : new int[]{Encounter.MIN_SCORE - 1, Encounter.MIN_SCORE, Encounter.MAX_SCORE, Encounter.MAX_SCORE + 1, 200}) {
+            checksRun++;
+            boolean isValid = score >= Encounter.MIN_SCORE && score <= Encounter.MAX_SCORE;
+            List<String> lines = List.of("[Hero]", "dex = " + score, "[Goblin]", "side = foes");
+            try {
+                Encounter encounter = Encounter.parse(lines, "check", noSheets);
+                if (!isValid) failures.add("An encounter accepted a DEX of " + score);
+                else if (encounter.combatants().get(0).initiativeBonus() != Encounter.modifier(score)) {
+                    failures.add("A DEX of " + score + " gave the wrong initiative bonus");
+                }
+            } catch (IOException e) {
+                if (isValid) failures.add("An encounter turned away a DEX of " + score + ": " + e.getMessage());
+            }
+        }
+    }
+}
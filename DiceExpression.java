@@ -0,0 +1,268 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * A dice roll written the usual way, such as {@code 1d8+3}, {@code 4d6kh3} or {@code 1d20+5 adv}, parsed once and
+ * then rolled as often as needed.
+ * <p>
+ * An expression is dice and whole numbers added or taken away. {@code NdS} rolls N dice of S sides (N can be left
+ * out for one, and {@code d%} is a d100). {@code khK} after the dice keeps only the K highest and {@code klK} the K
+ * lowest, so {@code 4d6kh3} is the classic way to roll an ability score. {@code adv} or {@code dis} at the end rolls
+ * the first single die twice and keeps the higher or lower, so {@code 1d20+5 adv} is the same as
+ * {@code 2d20kh1+5}.
+ * <p>
+ * The terms are held in parallel arrays, and rolling allocates nothing, so a simulator can roll millions of times a
+ * second. Immutable, so one expression can be rolled from many threads, each with its own random numbers.
+ */
+public final class DiceExpression {
+    // The most dice one term may roll
+    public static final int MAX_DICE = 100;
+    private static final int MAX_SIDES = 1000;
+
+    private final String text;
+    // One entry per dice term
+    private final int[] counts;
+    private final int[] sides;
+    // How many dice of the term are kept, positive to keep the highest and negative to keep the lowest
+    private final int[] keeps;
+    private final int[] signs;
+    private final int modifier;
+    private final int maxDice;
+
+    private DiceExpression(String text, int[] counts, int[] sides, int[] keeps, int[] signs, int modifier) {
+        this.text = text;
+        this.counts = counts;
+        this.sides = sides;
+        this.keeps = keeps;
+        this.signs = signs;
+        this.modifier = modifier;
+        int most = 0;
+        for (int term = 0; term < counts.length; term++) {
+            // Keeping one die tracks the best as it goes, so only bigger keeps need sorting room
+            if (Math.abs(keeps[term]) > 1 && Math.abs(keeps[term]) < counts[term]) most = Math.max(most, counts[term]);
+        }
+        this.maxDice = most;
+    }
+
+    /**
+     * An expression that always comes to the same number.
+     *
+     * @param value The number
+     * @return The expression
+     */
+    public static DiceExpression constant(int value) {
+        return new DiceExpression(Integer.toString(value), new int[0], new int[0], new int[0], new int[0], value);
+    }
+
+    // -- Parsing --
+    /**
+     * Reads an expression.
+     *
+     * @param expression Such as {@code 2d6+3}, in any case and with any spacing
+     * @return The expression
+     * @throws IllegalArgumentException if it is not a dice expression
+     */
+    public static DiceExpression parse(String expression) {
+        String source = expression.strip().toLowerCase(Locale.ROOT);
+        int advantage = 0;
+        // Disadvantage first, as it ends with advantage
+        if (source.endsWith("dis") || source.endsWith("disadvantage")) advantage = -1;
+        else if (source.endsWith("adv") || source.endsWith("advantage")) advantage = 1;
+        if (advantage != 0) source = source.substring(0, source.lastIndexOf(advantage > 0 ? "adv" : "dis"));
+        source = source.replaceAll("\\s+", "");
+        if (source.isEmpty()) throw new IllegalArgumentException("'" + expression + "' has no dice or number");
+
+        List<int[]> terms = new ArrayList<>();
+        int modifier = 0;
+        int at = 0;
+        while (at < source.length()) {
+            int sign = 1;
+            char first = source.charAt(at);
+            if (first == '+' || first == '-') {
+                sign = first == '-' ? -1 : 1;
+                at++;
+            } else if (at > 0) {
+                throw new IllegalArgumentException("'" + expression + "' needs a + or - before '" + source.substring(at) + "'");
+            }
+            int start = at;
+            int count = readNumber(source, at);
+            at = skipDigits(source, at);
+            if (at < source.length() && source.charAt(at) == 'd') {
+                if (at == start) count = 1;
+                at++;
+                int side;
+                if (at < source.length() && source.charAt(at) == '%') {
+                    side = 100;
+                    at++;
+                } else {
+                    side = readNumber(source, at);
+                    if (skipDigits(source, at) == at) throw new IllegalArgumentException("'" + expression + "' is missing the sides of a die");
+                    at = skipDigits(source, at);
+                }
+                int keep = count;
+                if (source.startsWith("kh", at) || source.startsWith("kl", at) || source.startsWith("k", at)) {
+                    boolean isLowest = source.startsWith("kl", at);
+                    at += source.startsWith("kh", at) || isLowest ? 2 : 1;
+                    if (skipDigits(source, at) == at) throw new IllegalArgumentException("'" + expression + "' is missing how many dice to keep");
+                    keep = readNumber(source, at);
+                    at = skipDigits(source, at);
+                    if (keep < 1 || keep > count) throw new IllegalArgumentException("'" + expression + "' keeps " + keep + " of " + count + " dice");
+                    // Keeping every die is no keep at all, whichever end it counts from
+                    if (isLowest && keep < count) keep = -keep;
+                }
+                if (count < 1 || count > MAX_DICE) throw new IllegalArgumentException("'" + expression + "' rolls 1 to " + MAX_DICE + " dice at a time");
+                if (side < 1 || side > MAX_SIDES) throw new IllegalArgumentException("'" + expression + "' has dice of 1 to " + MAX_SIDES + " sides");
+                terms.add(new int[]{count, side, keep, sign});
+            } else {
+                if (at == start) throw new IllegalArgumentException("'" + expression + "' is not a dice expression");
+                modifier += sign * count;
+            }
+        }
+
+        if (advantage != 0) {
+            int[] single = null;
+            for (int[] term : terms) {
+                if (term[0] == 1) {
+                    single = term;
+                    break;
+                }
+            }
+            if (single == null) throw new IllegalArgumentException("'" + expression + "' has no single die to roll with advantage");
+            single[0] = 2;
+            single[2] = advantage;
+        }
+
+        int[] counts = new int[terms.size()], sides = new int[terms.size()], keeps = new int[terms.size()], signs = new int[terms.size()];
+        for (int term = 0; term < terms.size(); term++) {
+            counts[term] = terms.get(term)[0];
+            sides[term] = terms.get(term)[1];
+            keeps[term] = terms.get(term)[2];
+            signs[term] = terms.get(term)[3];
+        }
+        return new DiceExpression(expression.strip(), counts, sides, keeps, signs, modifier);
+    }
+
+    private static int readNumber(String source, int at) {
+        int end = skipDigits(source, at);
+        if (end == at) return 0;
+        if (end - at > 7) throw new IllegalArgumentException("'" + source + "' has a number too big to roll");
+        return Integer.parseInt(source, at, end, 10);
+    }
+
+    private static int skipDigits(String source, int at) {
+        while (at < source.length() && source.charAt(at) >= '0' && source.charAt(at) <= '9') at++;
+        return at;
+    }
+
+    // -- Rolling --
+    /**
+     * @return How big a scratch array {@link #roll(SplittableRandom, int[])} needs, 0 if it needs none
+     */
+    public int maxDice() {
+        return maxDice;
+    }
+
+    /**
+     * Rolls the expression.
+     *
+     * @param random  The random numbers to roll with, one per thread
+     * @param scratch Room to sort the dice of a term that keeps some of them, at least {@link #maxDice()} long
+     * @return The total
+     */
+    public int roll(SplittableRandom random, int[] scratch) {
+        return roll(random, scratch, 1);
+    }
+
+    /**
+     * Rolls the expression with every die rolled twice, as a critical hit does, and the numbers added only once.
+     *
+     * @param random  The random numbers to roll with, one per thread
+     * @param scratch Room to sort the dice of a term that keeps some of them, at least {@link #maxDice()} long
+     * @return The total
+     */
+    public int rollCritical(SplittableRandom random, int[] scratch) {
+        return roll(random, scratch, 2);
+    }
+
+    /**
+     * Rolls the expression, allocating a scratch array if it needs one.
+     *
+     * @param random The random numbers to roll with
+     * @return The total
+     */
+    public int roll(SplittableRandom random) {
+        return roll(random, maxDice == 0 ? null : new int[maxDice], 1);
+    }
+
+    private int roll(SplittableRandom random, int[] scratch, int times) {
+        int total = modifier;
+        for (int term = 0; term < counts.length; term++) {
+            int sum = 0;
+            for (int time = 0; time < times; time++) sum += rollTerm(term, random, scratch);
+            total += signs[term] * sum;
+        }
+        return total;
+    }
+
+    private int rollTerm(int term, SplittableRandom random, int[] scratch) {
+        int count = counts[term], side = sides[term], keep = keeps[term];
+        if (Math.abs(keep) == count) {
+            int sum = count;
+            for (int die = 0; die < count; die++) sum += random.nextInt(side);
+            return sum;
+        }
+        // Advantage and disadvantage are common enough to skip sorting
+        if (keep == 1 || keep == -1) {
+            int best = random.nextInt(side);
+            for (int die = 1; die < count; die++) {
+                int rolled = random.nextInt(side);
+                if (keep == 1 ? rolled > best : rolled < best) best = rolled;
+            }
+            return best + 1;
+        }
+        for (int die = 0; die < count; die++) scratch[die] = random.nextInt(side) + 1;
+        Arrays.sort(scratch, 0, count);
+        int sum = 0;
+        if (keep > 0) {
+            for (int die = count - keep; die < count; die++) sum += scratch[die];
+        } else {
+            for (int die = 0; die < -keep; die++) sum += scratch[die];
+        }
+        return sum;
+    }
+
+    /**
+     * @return The lowest total the expression can roll
+     */
+    public int min() {
+        int total = modifier;
+        for (int term = 0; term < counts.length; term++) {
+            int dice = Math.abs(keeps[term]);
+            total += signs[term] > 0 ? dice : -dice * sides[term];
+        }
+        return total;
+    }
+
+    /**
+     * @return The highest total the expression can roll
+     */
+    public int max() {
+        int total = modifier;
+        for (int term = 0; term < counts.length; term++) {
+            int dice = Math.abs(keeps[term]);
+            total += signs[term] > 0 ? dice * sides[term] : -dice;
+        }
+        return total;
+    }
+
+    /**
+     * @return The expression as it was written
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+}
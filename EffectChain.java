@@ -0,0 +1,397 @@
+import java.util.Arrays;
+
+/**
+ * Colours one voice as if heard from somewhere else: through a door, down a tunnel, across a cavern.
+ * <p>
+ * The audio passes through a peaking EQ, a low-pass filter, an echo, a reverb and a gain, in that order. A stage
+ * that is doing nothing is skipped, so a dry chain costs nothing at all. Every buffer is allocated when the chain
+ * is made, so processing never allocates, and new settings are only ever handed over by the thread that
+ * processes, so nothing locks either.
+ * <p>
+ * New settings are glided to rather than jumped to: every {@value #CONTROL_FRAMES} frames each parameter moves a
+ * step towards its target and the filters are redesigned, and levels ramp sample by sample in between, so moving
+ * a slider while a track plays never clicks or zips.
+ * <p>
+ * The reverb is Freeverb: eight damped comb filters in parallel and four all-pass filters in series, per channel,
+ * with the right channel's delays slightly longer than the left's for width.
+ */
+public class EffectChain {
+    // How often parameters step towards their targets and the filters are redesigned, about 0.7 ms
+    private static final int CONTROL_FRAMES = 32;
+    // Cutoffs at or above this are treated as no low-pass at all
+    public static final double OPEN_LOW_PASS_HZ = 20_000;
+    private static final double FILTER_Q = 0.707;
+    private static final double EQ_Q = 1.0;
+    // -- Freeverb tunings, in frames at 44.1 kHz --
+    private static final int[] COMB_TUNINGS = {1116, 1188, 1277, 1356, 1422, 1491, 1557, 1617};
+    private static final int[] ALLPASS_TUNINGS = {556, 441, 341, 225};
+    private static final int STEREO_SPREAD = 23;
+    private static final float REVERB_INPUT_GAIN = 0.015f;
+    private static final float REVERB_WET_SCALE = 3f;
+    private static final float ALLPASS_FEEDBACK = 0.5f;
+    // Keeps the reverb's decaying tails out of the denormal range, where floats get very slow
+    private static final float DENORMAL_GUARD = 1e-18f;
+
+    /**
+     * How a voice is coloured
+     *
+     * @param lowPassHz     The low-pass cutoff, {@link #OPEN_LOW_PASS_HZ} or above for none
+     * @param eqFrequencyHz The centre of the EQ band
+     * @param eqGainDb      How far the EQ band is boosted or cut, 0 for none
+     * @param delayMillis   How long after the sound its echo comes
+     * @param delayFeedback How much of each echo is echoed again, 0 to just under 1
+     * @param delayMix      How loud the echoes are next to the sound, 0 for none
+     * @param reverbSize    How big the room sounds, 0 to 1
+     * @param reverbDamping How quickly the room soaks up high frequencies, 0 to 1
+     * @param reverbMix     How much of the sound is the room, 0 for none and 1 for nothing else
+     * @param gainDb        The level after everything else
+     */
+    public record Settings(double lowPassHz, double eqFrequencyHz, double eqGainDb, double delayMillis,
+                           double delayFeedback, double delayMix, double reverbSize, double reverbDamping,
+                           double reverbMix, double gainDb) {
+        public static final Settings DRY = new Settings(OPEN_LOW_PASS_HZ, 1_000, 0, 250, 0, 0, 0.5, 0.5, 0, 0);
+
+        public Settings withLowPassHz(double hz) {
+            return new Settings(hz, eqFrequencyHz, eqGainDb, delayMillis, delayFeedback, delayMix, reverbSize,
+                    reverbDamping, reverbMix, gainDb);
+        }
+
+        public Settings withDelayMix(double mix) {
+            return new Settings(lowPassHz, eqFrequencyHz, eqGainDb, delayMillis, delayFeedback, mix, reverbSize,
+                    reverbDamping, reverbMix, gainDb);
+        }
+
+        public Settings withReverbMix(double mix) {
+            return new Settings(lowPassHz, eqFrequencyHz, eqGainDb, delayMillis, delayFeedback, delayMix, reverbSize,
+                    reverbDamping, mix, gainDb);
+        }
+    }
+
+    /**
+     * Ready-made places for a scene to be heard from
+     */
+    public enum Preset {
+        NONE("None", Settings.DRY),
+        // Walls and doors block the highs and some of the lows, and the other room is heard a little
+        MUFFLED_DOOR("Muffled door", new Settings(600, 250, -4, 250, 0, 0, 0.35, 0.7, 0.18, -5)),
+        // A huge stone space: long bright tail, slapback off the far wall, a touch of the very top lost to the air
+        CAVERN("Cavern", new Settings(9_000, 2_500, -2, 280, 0.35, 0.22, 0.92, 0.25, 0.45, -2));
+
+        private final String label;
+        private final Settings settings;
+
+        Preset(String label, Settings settings) {
+            this.label = label;
+            this.settings = settings;
+        }
+
+        public Settings getSettings() {
+            return settings;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final float frameRate;
+    // How far each parameter moves towards its target every control step
+    private final double smoothing;
+    private Settings target = Settings.DRY;
+    // -- Parameters as they are now, gliding towards the target --
+    private double lowPassHz = OPEN_LOW_PASS_HZ;
+    private double eqFrequencyHz = Settings.DRY.eqFrequencyHz();
+    private double eqGainDb;
+    private double delayFrames;
+    private double delayFeedback;
+    private double delayMix;
+    private double reverbSize = Settings.DRY.reverbSize();
+    private double reverbDamping = Settings.DRY.reverbDamping();
+    private double reverbMix;
+    private double gain = 1;
+    private boolean isSettled = true;
+
+    // -- Biquads, coefficients and per-channel state --
+    private final Biquad eq = new Biquad();
+    private final Biquad lowPass = new Biquad();
+
+    // -- Echo --
+    private final float[] delayLeft;
+    private final float[] delayRight;
+    private int delayWrite;
+    private boolean isDelayClear = true;
+
+    // -- Reverb --
+    private final float[][] combs = new float[COMB_TUNINGS.length * 2][];
+    private final int[] combPositions = new int[COMB_TUNINGS.length * 2];
+    private final float[] combStores = new float[COMB_TUNINGS.length * 2];
+    private final float[][] allpasses = new float[ALLPASS_TUNINGS.length * 2][];
+    private final int[] allpassPositions = new int[ALLPASS_TUNINGS.length * 2];
+    private boolean isReverbClear = true;
+
+    /**
+     * Allocates everything the chain will ever need.
+     *
+     * @param frameRate The rate of the audio it will process
+     */
+    public EffectChain(float frameRate) {
+        this.frameRate = frameRate;
+        this.smoothing = 1 - Math.exp(-CONTROL_FRAMES / (Constants.GB_EFFECT_SMOOTHING_MS / 1000.0 * frameRate));
+        int maxDelayFrames = (int) Math.ceil(Constants.GB_EFFECT_MAX_DELAY_MS / 1000.0 * frameRate) + 2;
+        delayLeft = new float[maxDelayFrames];
+        delayRight = new float[maxDelayFrames];
+        double scale = frameRate / 44_100.0;
+        for (int i = 0; i < COMB_TUNINGS.length; i++) {
+            combs[i * 2] = new float[(int) (COMB_TUNINGS[i] * scale)];
+            combs[i * 2 + 1] = new float[(int) ((COMB_TUNINGS[i] + STEREO_SPREAD) * scale)];
+        }
+        for (int i = 0; i < ALLPASS_TUNINGS.length; i++) {
+            allpasses[i * 2] = new float[(int) (ALLPASS_TUNINGS[i] * scale)];
+            allpasses[i * 2 + 1] = new float[(int) ((ALLPASS_TUNINGS[i] + STEREO_SPREAD) * scale)];
+        }
+        eq.designPeaking(eqFrequencyHz, EQ_Q, eqGainDb, frameRate);
+        lowPass.designLowPass(lowPassHz, FILTER_Q, frameRate);
+    }
+
+    /**
+     * Sets what the chain glides towards. Call it from the thread that processes.
+     *
+     * @param settings The new settings
+     */
+    public void setTarget(Settings settings) {
+        target = settings;
+        isSettled = false;
+    }
+
+    /**
+     * @return true if the chain is doing nothing to the audio, and has nothing left to glide or ring out
+     */
+    public boolean isBypassed() {
+        return isSettled && lowPassHz >= OPEN_LOW_PASS_HZ && eqGainDb == 0 && delayMix == 0 && reverbMix == 0 && gain == 1;
+    }
+
+    /**
+     * Colours a block in place.
+     *
+     * @param interleaved Stereo samples
+     * @param frames      How many frames to process
+     */
+    public void process(float[] interleaved, int frames) {
+        if (isBypassed()) return;
+        for (int start = 0; start < frames; start += CONTROL_FRAMES) {
+            int count = Math.min(CONTROL_FRAMES, frames - start);
+            double previousGain = gain, previousDelayMix = delayMix, previousReverbMix = reverbMix;
+            if (!isSettled) step();
+
+            if (eqGainDb != 0) eq.process(interleaved, start, count);
+            if (lowPassHz < OPEN_LOW_PASS_HZ) lowPass.process(interleaved, start, count);
+            if (delayMix > 0 || previousDelayMix > 0) {
+                echo(interleaved, start, count, (float) previousDelayMix, (float) delayMix);
+            } else if (!isDelayClear) {
+                // Silent now, so the next echo starts from a clean line rather than replaying old audio
+                Arrays.fill(delayLeft, 0f);
+                Arrays.fill(delayRight, 0f);
+                isDelayClear = true;
+            }
+            if (reverbMix > 0 || previousReverbMix > 0) {
+                reverberate(interleaved, start, count, (float) previousReverbMix, (float) reverbMix);
+            } else if (!isReverbClear) {
+                clearReverb();
+            }
+            if (gain != 1 || previousGain != 1) applyGain(interleaved, start, count, (float) previousGain, (float) gain);
+        }
+    }
+
+    /**
+     * Moves every parameter a step towards its target, snapping once close enough to count as there.
+     */
+    private void step() {
+        Settings t = target;
+        double lowPassTarget = Math.min(t.lowPassHz(), OPEN_LOW_PASS_HZ);
+        double delayFramesTarget = Math.min(t.delayMillis(), Constants.GB_EFFECT_MAX_DELAY_MS) / 1000.0 * frameRate;
+        double delayFeedbackTarget = Math.max(0, Math.min(0.95, t.delayFeedback()));
+        double delayMixTarget = Math.max(0, t.delayMix());
+        double reverbSizeTarget = Math.max(0, Math.min(1, t.reverbSize()));
+        double reverbDampingTarget = Math.max(0, Math.min(1, t.reverbDamping()));
+        double reverbMixTarget = Math.max(0, Math.min(1, t.reverbMix()));
+        double gainTarget = Math.pow(10, t.gainDb() / 20);
+
+        // Frequencies glide in octaves rather than hertz, so a sweep sounds even all the way down
+        lowPassHz = glideLog(lowPassHz, lowPassTarget);
+        eqFrequencyHz = glideLog(eqFrequencyHz, t.eqFrequencyHz());
+        eqGainDb = glide(eqGainDb, t.eqGainDb(), 0.01);
+        delayFrames = glide(delayFrames, delayFramesTarget, 0.5);
+        delayFeedback = glide(delayFeedback, delayFeedbackTarget, 0.001);
+        delayMix = glide(delayMix, delayMixTarget, 0.001);
+        reverbSize = glide(reverbSize, reverbSizeTarget, 0.001);
+        reverbDamping = glide(reverbDamping, reverbDampingTarget, 0.001);
+        reverbMix = glide(reverbMix, reverbMixTarget, 0.001);
+        gain = glide(gain, gainTarget, 0.0001);
+
+        eq.designPeaking(eqFrequencyHz, EQ_Q, eqGainDb, frameRate);
+        lowPass.designLowPass(lowPassHz, FILTER_Q, frameRate);
+        isSettled = lowPassHz == lowPassTarget && eqFrequencyHz == t.eqFrequencyHz() && eqGainDb == t.eqGainDb()
+                && delayFrames == delayFramesTarget && delayFeedback == delayFeedbackTarget && delayMix == delayMixTarget
+                && reverbSize == reverbSizeTarget && reverbDamping == reverbDampingTarget && reverbMix == reverbMixTarget
+                && gain == gainTarget;
+    }
+
+    private double glide(double current, double target, double closeEnough) {
+        double next = current + (target - current) * smoothing;
+        return Math.abs(target - next) < closeEnough ? target : next;
+    }
+
+    private double glideLog(double currentHz, double targetHz) {
+        double next = currentHz * Math.pow(targetHz / currentHz, smoothing);
+        return Math.abs(next / targetHz - 1) < 0.001 ? targetHz : next;
+    }
+
+    // -- Stages --
+    /**
+     * Adds echoes, read back from the delay line between samples so a gliding delay time never clicks.
+     */
+    private void echo(float[] interleaved, int start, int count, float fromMix, float toMix) {
+        isDelayClear = false;
+        int length = delayLeft.length;
+        double delay = Math.max(1, Math.min(length - 2, delayFrames));
+        float feedback = (float) delayFeedback;
+        float mixStep = (toMix - fromMix) / count;
+        float mix = fromMix;
+        int whole = (int) delay;
+        float fraction = (float) (delay - whole);
+        for (int i = 0; i < count; i++) {
+            mix += mixStep;
+            // The echo falls between the samples written whole and whole + 1 frames ago
+            int newer = delayWrite - whole;
+            if (newer < 0) newer += length;
+            int older = newer == 0 ? length - 1 : newer - 1;
+            float echoLeft = delayLeft[newer] + (delayLeft[older] - delayLeft[newer]) * fraction;
+            float echoRight = delayRight[newer] + (delayRight[older] - delayRight[newer]) * fraction;
+
+            int at = (start + i) * 2;
+            delayLeft[delayWrite] = interleaved[at] + echoLeft * feedback;
+            delayRight[delayWrite] = interleaved[at + 1] + echoRight * feedback;
+            interleaved[at] += echoLeft * mix;
+            interleaved[at + 1] += echoRight * mix;
+            delayWrite = delayWrite + 1 == length ? 0 : delayWrite + 1;
+        }
+    }
+
+    /**
+     * Blends in the reverb, from the dry sound at a mix of 0 to nothing but the room at 1.
+     */
+    private void reverberate(float[] interleaved, int start, int count, float fromMix, float toMix) {
+        isReverbClear = false;
+        float feedback = (float) (0.7 + 0.28 * reverbSize);
+        float damp = (float) (0.4 * reverbDamping);
+        float keep = 1 - damp;
+        float mixStep = (toMix - fromMix) / count;
+        float mix = fromMix;
+        for (int i = 0; i < count; i++) {
+            mix += mixStep;
+            int at = (start + i) * 2;
+            float input = (interleaved[at] + interleaved[at + 1]) * REVERB_INPUT_GAIN + DENORMAL_GUARD;
+            float left = 0, right = 0;
+            for (int c = 0; c < combs.length; c += 2) {
+                left += comb(c, input, feedback, damp, keep);
+                right += comb(c + 1, input, feedback, damp, keep);
+            }
+            for (int a = 0; a < allpasses.length; a += 2) {
+                left = allpass(a, left);
+                right = allpass(a + 1, right);
+            }
+            interleaved[at] = interleaved[at] * (1 - mix) + left * REVERB_WET_SCALE * mix;
+            interleaved[at + 1] = interleaved[at + 1] * (1 - mix) + right * REVERB_WET_SCALE * mix;
+        }
+    }
+
+    private float comb(int index, float input, float feedback, float damp, float keep) {
+        float[] buffer = combs[index];
+        int position = combPositions[index];
+        float output = buffer[position];
+        float store = output * keep + combStores[index] * damp;
+        combStores[index] = store;
+        buffer[position] = input + store * feedback;
+        combPositions[index] = position + 1 == buffer.length ? 0 : position + 1;
+        return output;
+    }
+
+    private float allpass(int index, float input) {
+        float[] buffer = allpasses[index];
+        int position = allpassPositions[index];
+        float buffered = buffer[position];
+        buffer[position] = input + buffered * ALLPASS_FEEDBACK;
+        allpassPositions[index] = position + 1 == buffer.length ? 0 : position + 1;
+        return buffered - input;
+    }
+
+    private void clearReverb() {
+        for (float[] buffer : combs) Arrays.fill(buffer, 0f);
+        for (float[] buffer : allpasses) Arrays.fill(buffer, 0f);
+        Arrays.fill(combStores, 0f);
+        isReverbClear = true;
+    }
+
+    private static void applyGain(float[] interleaved, int start, int count, float fromGain, float toGain) {
+        float step = (toGain - fromGain) / count;
+        float level = fromGain;
+        for (int i = 0; i < count; i++) {
+            level += step;
+            int at = (start + i) * 2;
+            interleaved[at] *= level;
+            interleaved[at + 1] *= level;
+        }
+    }
+
+    /**
+     * A second-order filter for a stereo pair, in transposed direct form II, designed from the
+     * Audio EQ Cookbook. The state is kept in doubles, so very low cutoffs stay stable.
+     */
+    private static final class Biquad {
+        private double b0 = 1, b1, b2, a1, a2;
+        private double left1, left2, right1, right2;
+
+        void designLowPass(double hz, double q, float frameRate) {
+            double w = 2 * Math.PI * Math.min(hz, frameRate * 0.45) / frameRate;
+            double alpha = Math.sin(w) / (2 * q);
+            double cos = Math.cos(w);
+            double a0 = 1 + alpha;
+            b0 = (1 - cos) / 2 / a0;
+            b1 = (1 - cos) / a0;
+            b2 = b0;
+            a1 = -2 * cos / a0;
+            a2 = (1 - alpha) / a0;
+        }
+
+        void designPeaking(double hz, double q, double gainDb, float frameRate) {
+            double amplitude = Math.pow(10, gainDb / 40);
+            double w = 2 * Math.PI * Math.min(hz, frameRate * 0.45) / frameRate;
+            double alpha = Math.sin(w) / (2 * q);
+            double cos = Math.cos(w);
+            double a0 = 1 + alpha / amplitude;
+            b0 = (1 + alpha * amplitude) / a0;
+            b1 = -2 * cos / a0;
+            b2 = (1 - alpha * amplitude) / a0;
+            a1 = b1;
+            a2 = (1 - alpha / amplitude) / a0;
+        }
+
+        void process(float[] interleaved, int start, int count) {
+            for (int i = 0; i < count; i++) {
+                int at = (start + i) * 2;
+                double left = interleaved[at];
+                double outLeft = b0 * left + left1;
+                left1 = b1 * left - a1 * outLeft + left2;
+                left2 = b2 * left - a2 * outLeft;
+                interleaved[at] = (float) outLeft;
+
+                double right = interleaved[at + 1];
+                double outRight = b0 * right + right1;
+                right1 = b1 * right - a1 * outRight + right2;
+                right2 = b2 * right - a2 * outRight;
+                interleaved[at + 1] = (float) outRight;
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A fight to try out before the session, read from the plain text files under {@code resources/encounters}.
+ * <p>
+ * An encounter is a list of combatants, each starting with its name in square brackets and its settings one per
+ * line:
+ * <pre>
+ * [Test Character]
+ * level = 3
+ *
+ * [Goblin]
+ * side = foes
+ * count = 4
+ * hp = 2d6
+ * ac = 15
+ * attack = +4
+ * damage = 1d6+2
+ * </pre>
+ * A combatant named like a character sheet starts from that sheet's ability scores, and anything not given is
+ * worked out from them as the rules do: hit points are 8 plus the CON modifier at first level and 5 plus it
+ * every level after, armor class is 10 plus the DEX modifier, the attack bonus is the proficiency bonus for the
+ * level plus the better of the STR and DEX modifiers, and damage is the first dice written in one of the sheet's
+ * abilities ({@code Deals 1d8+2 slashing damage}), or else 1d8 plus that same modifier. A combatant without a
+ * sheet starts from scores of 10. Any of the six scores can be set too ({@code dex = 14}).
+ * <p>
+ * {@code side} is {@code party} (the default) or {@code foes}, {@code count} makes several alike, {@code attacks}
+ * is how many attacks each makes a turn, and {@code hp} may be dice, rolled afresh every fight. {@code attack}
+ * may end with {@code adv} or {@code dis}. Lines starting with # are comments.
+ *
+ * @param name       What the encounter is called, from its file name
+ * @param combatants The combatants, in the order listed
+ */
+public record Encounter(String name, List<Combatant> combatants) {
+    // The most combatants of all kinds one fight may have
+    public static final int MAX_COMBATANTS = 256;
+    // The range ability scores can take, which keeps every modifier from -5 to +10
+    public static final int MIN_SCORE = 1;
+    public static final int MAX_SCORE = 30;
+    // Dice written in an ability's description, such as 2d6 + 3
+    private static final Pattern ABILITY_DICE = Pattern.compile("\\b\\d*d\\d+(\\s*[+-]\\s*\\d+\\b)?", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Which side of the fight a combatant is on
+     */
+    public enum Side { PARTY, FOES }
+
+    /**
+     * One kind of combatant, and how many of them there are
+     *
+     * @param name            What they are called
+     * @param side            Whose side they are on
+     * @param count           How many of them there are
+     * @param isFromSheet     true if they started from a character sheet
+     * @param hitPoints       Their hit points at the start of a fight
+     * @param armorClass      What an attack must roll to hit them
+     * @param attackBonus     What they add to a d20 to hit
+     * @param attackAdvantage 1 if they attack with advantage, -1 with disadvantage, otherwise 0
+     * @param damage          What a hit does
+     * @param attacks         How many attacks they make a turn
+     * @param initiativeBonus What they add to a d20 for initiative
+     */
+    public record Combatant(String name, Side side, int count, boolean isFromSheet, DiceExpression hitPoints,
+                            int armorClass, int attackBonus, int attackAdvantage, DiceExpression damage, int attacks,
+                            int initiativeBonus) {
+    }
+
+    public Encounter {
+        combatants = List.copyOf(combatants);
+    }
+
+    /**
+     * @param score An ability score
+     * @return Its modifier, such as -1 for 8 and +3 for 16
+     */
+    public static int modifier(int score) {
+        return Math.floorDiv(score - 10, 2);
+    }
+
+    // -- Parsing --
+    /**
+     * Reads an encounter from a file.
+     *
+     * @param file   The encounter's text file
+     * @param sheets The character sheets combatants may be named after
+     * @return The encounter, named after the file
+     * @throws IOException if the file cannot be read or is not a valid encounter
+     */
+    public static Encounter parse(Path file, CharacterRepository sheets) throws IOException {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), dot > 0 ? fileName.substring(0, dot) : fileName, sheets);
+    }
+
+    /**
+     * Reads an encounter from its lines of text.
+     *
+     * @param lines  The encounter, one setting per line
+     * @param name   What the encounter is called, also used in error messages
+     * @param sheets The character sheets combatants may be named after
+     * @return The encounter
+     * @throws IOException if the lines are not a valid encounter
+     */
+    public static Encounter parse(List<String> lines, String name, CharacterRepository sheets) throws IOException {
+        List<Combatant> combatants = new ArrayList<>();
+        CombatantBuilder combatant = null;
+        int lineNumber = 0;
+        for (String rawLine : lines) {
+            lineNumber++;
+            String line = rawLine.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            if (line.startsWith("[") && line.endsWith("]")) {
+                if (combatant != null) combatants.add(combatant.build(name));
+                String combatantName = line.substring(1, line.length() - 1).strip();
+                combatant = new CombatantBuilder(combatantName, sheets.findByName(combatantName));
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals < 0) throw new IOException(name + " line " + lineNumber + ": expected a setting such as 'ac = 15'");
+            if (combatant == null) throw new IOException(name + " line " + lineNumber + ": settings must follow a [combatant name]");
+            String key = line.substring(0, equals).strip().toLowerCase(Locale.ROOT);
+            String value = line.substring(equals + 1).strip();
+            try {
+                switch (key) {
+                    case "side" -> combatant.side = switch (value.toLowerCase(Locale.ROOT)) {
+                        case "party" -> Side.PARTY;
+                        case "foes", "foe" -> Side.FOES;
+                        default -> throw new IOException(name + " line " + lineNumber + ": side is 'party' or 'foes'");
+                    };
+                    case "count" -> combatant.count = Integer.parseInt(value);
+                    case "level" -> combatant.level = Integer.parseInt(value);
+                    case "hp" -> combatant.hitPoints = DiceExpression.parse(value);
+                    case "ac" -> combatant.armorClass = Integer.parseInt(value);
+                    case "attack" -> parseAttack(combatant, value);
+                    case "damage" -> combatant.damage = DiceExpression.parse(value);
+                    case "attacks" -> combatant.attacks = Integer.parseInt(value);
+                    default -> {
+                        CharacterSheet.Attribute attribute = attributeNamed(key);
+                        if (attribute == null) throw new IOException(name + " line " + lineNumber + ": unknown setting '" + key + "'");
+                        combatant.scores[attribute.ordinal()] = Integer.parseInt(value);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException(name + " line " + lineNumber + ": '" + value + "' is not a number", e);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(name + " line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        if (combatant != null) combatants.add(combatant.build(name));
+
+        int total = 0;
+        boolean hasParty = false, hasFoes = false;
+        for (Combatant each : combatants) {
+            total += each.count();
+            hasParty |= each.side() == Side.PARTY;
+            hasFoes |= each.side() == Side.FOES;
+        }
+        if (!hasParty || !hasFoes) throw new IOException(name + ": an encounter needs combatants on both sides");
+        if (total > MAX_COMBATANTS) throw new IOException(name + ": a fight can have at most " + MAX_COMBATANTS + " combatants");
+        return new Encounter(name, combatants);
+    }
+
+    /**
+     * Reads {@code +5}, optionally followed by {@code adv} or {@code dis}.
+     */
+    private static void parseAttack(CombatantBuilder combatant, String value) {
+        String bonus = value.toLowerCase(Locale.ROOT);
+        combatant.attackAdvantage = 0;
+        if (bonus.endsWith("adv")) combatant.attackAdvantage = 1;
+        else if (bonus.endsWith("dis")) combatant.attackAdvantage = -1;
+        if (combatant.attackAdvantage != 0) bonus = bonus.substring(0, bonus.length() - 3).strip();
+        combatant.attackBonus = Integer.parseInt(bonus.startsWith("+") ? bonus.substring(1) : bonus);
+    }
+
+    private static CharacterSheet.Attribute attributeNamed(String name) {
+        for (CharacterSheet.Attribute attribute : CharacterSheet.Attribute.values()) {
+            if (attribute.name().equalsIgnoreCase(name)) return attribute;
+        }
+        return null;
+    }
+
+    /**
+     * Collects a combatant's settings as they are read, working out whatever was not given once all are in.
+     */
+    private static final class CombatantBuilder {
+        private final String name;
+        private final CharacterSheet sheet;
+        private final int[] scores;
+        private Side side = Side.PARTY;
+        private int count = 1;
+        private int level = 1;
+        private int attacks = 1;
+        private DiceExpression hitPoints;
+        private DiceExpression damage;
+        private Integer armorClass;
+        private Integer attackBonus;
+        private int attackAdvantage;
+
+        private CombatantBuilder(String name, CharacterSheet sheet) {
+            this.name = name;
+            this.sheet = sheet;
+            if (sheet != null) {
+                scores = sheet.scores();
+            } else {
+                scores = new int[CharacterSheet.Attribute.values().length];
+                Arrays.fill(scores, CharacterSheet.DEFAULT_SCORE);
+            }
+        }
+
+        private int modifierOf(CharacterSheet.Attribute attribute) {
+            return modifier(scores[attribute.ordinal()]);
+        }
+
+        private Combatant build(String encounterName) throws IOException {
+            if (count < 1 || count > MAX_COMBATANTS) throw new IOException(encounterName + ": [" + name + "] count must be 1 to " + MAX_COMBATANTS);
+            if (level < 1 || level > 20) throw new IOException(encounterName + ": [" + name + "] level must be 1 to 20");
+            if (attacks < 1 || attacks > 10) throw new IOException(encounterName + ": [" + name + "] attacks must be 1 to 10");
+            for (CharacterSheet.Attribute attribute : CharacterSheet.Attribute.values()) {
+                int score = scores[attribute.ordinal()];
+                if (score < MIN_SCORE || score > MAX_SCORE) {
+                    throw new IOException(encounterName + ": [" + name + "] " + attribute + " must be " + MIN_SCORE + " to " + MAX_SCORE);
+                }
+            }
+
+            int constitution = modifierOf(CharacterSheet.Attribute.CON);
+            int weapon = Math.max(modifierOf(CharacterSheet.Attribute.STR), modifierOf(CharacterSheet.Attribute.DEX));
+            int proficiency = 2 + (level - 1) / 4;
+            DiceExpression health = hitPoints != null ? hitPoints
+                    : DiceExpression.constant(Math.max(1, 8 + constitution + (level - 1) * (5 + constitution)));
+            if (health.max() < 1) throw new IOException(encounterName + ": [" + name + "] hp must be able to come to 1 or more");
+            int armor = armorClass != null ? armorClass : 10 + modifierOf(CharacterSheet.Attribute.DEX);
+            int toHit = attackBonus != null ? attackBonus : proficiency + weapon;
+            DiceExpression hit = damage != null ? damage : abilityDamage();
+            if (hit == null) hit = DiceExpression.parse("1d8" + (weapon < 0 ? "" : "+") + weapon);
+            return new Combatant(name, side, count, sheet != null, health, armor, toHit, attackAdvantage, hit, attacks,
+                    modifierOf(CharacterSheet.Attribute.DEX));
+        }
+
+        /**
+         * @return The first dice written in one of the sheet's abilities, or null if there are none
+         */
+        private DiceExpression abilityDamage() {
+            if (sheet == null) return null;
+            for (CharacterSheet.Ability ability : sheet.abilities()) {
+                Matcher matcher = ABILITY_DICE.matcher(ability.description());
+                if (matcher.find()) return DiceExpression.parse(matcher.group());
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fights an {@link Encounter} over and over to see how it tends to go: how often the party wins, and how many
+ * rounds it takes.
+ * <p>
+ * Each fight follows the basic rules. Everyone rolls initiative, then on their turn makes their attacks against
+ * an enemy still standing, picked at random. An attack rolls a d20, plus its bonus, against the target's armor
+ * class; a natural 1 always misses, and a natural 20 always hits with every damage die rolled twice. A combatant
+ * at 0 hit points is down for the rest of the fight, as there is no healing or death saving. A fight still going
+ * after {@link Constants#BB_MAX_ROUNDS} rounds is called a stalemate.
+ * <p>
+ * The combatants are flattened into parallel arrays, one entry each, so a fight allocates nothing. The fights are
+ * shared out on the common fork-join pool in batches of {@link Constants#BB_FIGHTS_PER_TASK}, each with its own
+ * random numbers split from the last, so the same seed gives the same results however many cores there are.
+ */
+public final class EncounterSimulator {
+    // Do not use the constructor. There is nothing to use
+    private EncounterSimulator() {}
+
+    /**
+     * What came of all the fights
+     *
+     * @param fights      How many fights were run
+     * @param partyWins   How many the party won
+     * @param foeWins     How many the foes won
+     * @param stalemates  How many were still going after the most rounds
+     * @param roundCounts How many fights lasted each number of rounds, by rounds
+     * @param downedRates For each of the encounter's combatants, the share of them that went down in a fight
+     * @param nanos       How long it took
+     */
+    public record Result(long fights, long partyWins, long foeWins, long stalemates, long[] roundCounts,
+                         double[] downedRates, long nanos) {
+        public double partyWinRate() {
+            return fights == 0 ? 0 : (double) partyWins / fights;
+        }
+
+        public double foeWinRate() {
+            return fights == 0 ? 0 : (double) foeWins / fights;
+        }
+
+        public double meanRounds() {
+            long total = 0;
+            for (int rounds = 0; rounds < roundCounts.length; rounds++) total += rounds * roundCounts[rounds];
+            return fights == 0 ? 0 : (double) total / fights;
+        }
+
+        /**
+         * @param fraction Such as 0.5 for the median
+         * @return The fewest rounds that at least that share of the fights were over within
+         */
+        public int roundsAtPercentile(double fraction) {
+            long wanted = (long) Math.ceil(fights * fraction), seen = 0;
+            for (int rounds = 0; rounds < roundCounts.length; rounds++) {
+                seen += roundCounts[rounds];
+                if (seen >= wanted && seen > 0) return rounds;
+            }
+            return roundCounts.length - 1;
+        }
+    }
+
+    /**
+     * Fights an encounter many times, on every core.
+     *
+     * @param encounter The encounter
+     * @param fights    How many times to fight it
+     * @param seed      Seeds the dice, so the same seed gives the same results
+     * @return What came of the fights
+     */
+    public static Result run(Encounter encounter, long fights, long seed) {
+        return run(encounter, fights, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Fights an encounter many times on the threads of a pool.
+     *
+     * @param encounter The encounter
+     * @param fights    How many times to fight it
+     * @param seed      Seeds the dice, so the same seed gives the same results
+     * @param pool      The threads to fight on
+     * @return What came of the fights
+     */
+    public static Result run(Encounter encounter, long fights, long seed, ForkJoinPool pool) {
+        long startNanos = System.nanoTime();
+        Roster roster = new Roster(encounter);
+        Tally tally = pool.invoke(new Batch(roster, fights, new SplittableRandom(seed)));
+
+        List<Encounter.Combatant> combatants = encounter.combatants();
+        double[] downedRates = new double[combatants.size()];
+        for (int kind = 0; kind < downedRates.length; kind++) {
+            downedRates[kind] = fights == 0 ? 0 : (double) tally.downed[kind] / ((double) fights * combatants.get(kind).count());
+        }
+        return new Result(fights, tally.partyWins, tally.foeWins, tally.stalemates, tally.roundCounts, downedRates,
+                System.nanoTime() - startNanos);
+    }
+
+    // -- Fork-join --
+    /**
+     * A share of the fights, split in half until small enough to fight through on one thread
+     */
+    private static final class Batch extends RecursiveTask<Tally> {
+        private final Roster roster;
+        private final long fights;
+        private final SplittableRandom random;
+
+        private Batch(Roster roster, long fights, SplittableRandom random) {
+            this.roster = roster;
+            this.fights = fights;
+            this.random = random;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (fights <= Constants.BB_FIGHTS_PER_TASK) {
+                Fight fight = new Fight(roster, random);
+                for (long i = 0; i < fights; i++) fight.run();
+                return fight.tally;
+            }
+            long half = fights / 2;
+            Batch first = new Batch(roster, half, random.split());
+            first.fork();
+            Tally tally = new Batch(roster, fights - half, random).compute();
+            tally.add(first.join());
+            return tally;
+        }
+    }
+
+    /**
+     * Counts kept by one batch and added up as batches finish
+     */
+    private static final class Tally {
+        private long partyWins, foeWins, stalemates;
+        private final long[] roundCounts = new long[Constants.BB_MAX_ROUNDS + 1];
+        // How many times a combatant of each kind went down
+        private final long[] downed;
+
+        private Tally(int kinds) {
+            downed = new long[kinds];
+        }
+
+        private void add(Tally other) {
+            partyWins += other.partyWins;
+            foeWins += other.foeWins;
+            stalemates += other.stalemates;
+            for (int i = 0; i < roundCounts.length; i++) roundCounts[i] += other.roundCounts[i];
+            for (int i = 0; i < downed.length; i++) downed[i] += other.downed[i];
+        }
+    }
+
+    // -- Fighting --
+    /**
+     * The encounter's combatants, one entry each rather than one per kind. Shared by every batch, never changed
+     */
+    private static final class Roster {
+        private final int size;
+        private final int kinds;
+        private final int[] kind;
+        private final boolean[] isFoe;
+        private final int[] armorClass;
+        private final int[] attackBonus;
+        private final int[] attackAdvantage;
+        private final int[] attacks;
+        private final int[] initiativeBonus;
+        // By kind
+        private final DiceExpression[] hitPoints;
+        private final DiceExpression[] damage;
+        private final int scratchSize;
+
+        private Roster(Encounter encounter) {
+            List<Encounter.Combatant> combatants = encounter.combatants();
+            int total = 0;
+            for (Encounter.Combatant combatant : combatants) total += combatant.count();
+            size = total;
+            kinds = combatants.size();
+            kind = new int[size];
+            isFoe = new boolean[size];
+            armorClass = new int[size];
+            attackBonus = new int[size];
+            attackAdvantage = new int[size];
+            attacks = new int[size];
+            initiativeBonus = new int[size];
+            hitPoints = new DiceExpression[kinds];
+            damage = new DiceExpression[kinds];
+            int scratch = 0, unit = 0;
+            for (int k = 0; k < kinds; k++) {
+                Encounter.Combatant combatant = combatants.get(k);
+                hitPoints[k] = combatant.hitPoints();
+                damage[k] = combatant.damage();
+                scratch = Math.max(scratch, Math.max(combatant.hitPoints().maxDice(), combatant.damage().maxDice()));
+                for (int copy = 0; copy < combatant.count(); copy++, unit++) {
+                    kind[unit] = k;
+                    isFoe[unit] = combatant.side() == Encounter.Side.FOES;
+                    armorClass[unit] = combatant.armorClass();
+                    attackBonus[unit] = combatant.attackBonus();
+                    attackAdvantage[unit] = combatant.attackAdvantage();
+                    attacks[unit] = combatant.attacks();
+                    initiativeBonus[unit] = combatant.initiativeBonus();
+                }
+            }
+            scratchSize = scratch;
+        }
+    }
+
+    /**
+     * Everything that changes during a fight, kept for the next so fighting allocates nothing
+     */
+    private static final class Fight {
+        private final Roster roster;
+        private final SplittableRandom random;
+        private final Tally tally;
+        private final int[] scratch;
+        private final int[] hitPoints;
+        // Turn order, and what each rolled for it
+        private final int[] order;
+        private final int[] initiative;
+        // Who is still standing on each side, and where each combatant is in its side's list
+        private final int[][] standing = new int[2][];
+        private final int[] standingCount = new int[2];
+        private final int[] standingIndex;
+
+        private Fight(Roster roster, SplittableRandom random) {
+            this.roster = roster;
+            this.random = random;
+            this.tally = new Tally(roster.kinds);
+            this.scratch = new int[roster.scratchSize];
+            this.hitPoints = new int[roster.size];
+            this.order = new int[roster.size];
+            this.initiative = new int[roster.size];
+            this.standing[0] = new int[roster.size];
+            this.standing[1] = new int[roster.size];
+            this.standingIndex = new int[roster.size];
+        }
+
+        private void run() {
+            setUp();
+            for (int round = 1; round <= Constants.BB_MAX_ROUNDS; round++) {
+                for (int turn = 0; turn < roster.size; turn++) {
+                    int attacker = order[turn];
+                    if (hitPoints[attacker] <= 0) continue;
+                    int enemies = roster.isFoe[attacker] ? 0 : 1;
+                    for (int attack = 0; attack < roster.attacks[attacker]; attack++) {
+                        attack(attacker, standing[enemies][random.nextInt(standingCount[enemies])]);
+                        if (standingCount[enemies] == 0) {
+                            if (enemies == 1) tally.partyWins++;
+                            else tally.foeWins++;
+                            tally.roundCounts[round]++;
+                            return;
+                        }
+                    }
+                }
+            }
+            tally.stalemates++;
+            tally.roundCounts[Constants.BB_MAX_ROUNDS]++;
+        }
+
+        /**
+         * Rolls everyone's hit points and initiative.
+         */
+        private void setUp() {
+            standingCount[0] = 0;
+            standingCount[1] = 0;
+            for (int unit = 0; unit < roster.size; unit++) {
+                hitPoints[unit] = Math.max(1, roster.hitPoints[roster.kind[unit]].roll(random, scratch));
+                int side = roster.isFoe[unit] ? 1 : 0;
+                standingIndex[unit] = standingCount[side];
+                standing[side][standingCount[side]++] = unit;
+                // Higher rolls go first, then higher bonuses, then whoever wins a coin toss. Encounter keeps
+                // bonuses from -5 to +10, so each part fits its bits
+                initiative[unit] = ((random.nextInt(20) + 1 + roster.initiativeBonus[unit] + 64) << 16)
+                        | ((roster.initiativeBonus[unit] + 64) << 8) | random.nextInt(256);
+                // Insertion sort, as fights are small
+                int at = unit;
+                while (at > 0 && initiative[order[at - 1]] < initiative[unit]) {
+                    order[at] = order[at - 1];
+                    at--;
+                }
+                order[at] = unit;
+            }
+        }
+
+        private void attack(int attacker, int target) {
+            int roll = random.nextInt(20) + 1;
+            int advantage = roster.attackAdvantage[attacker];
+            if (advantage != 0) {
+                int second = random.nextInt(20) + 1;
+                roll = advantage > 0 ? Math.max(roll, second) : Math.min(roll, second);
+            }
+            if (roll == 1 || (roll != 20 && roll + roster.attackBonus[attacker] < roster.armorClass[target])) return;
+
+            DiceExpression damage = roster.damage[roster.kind[attacker]];
+            int dealt = roll == 20 ? damage.rollCritical(random, scratch) : damage.roll(random, scratch);
+            if (dealt <= 0) return;
+            hitPoints[target] -= dealt;
+            if (hitPoints[target] <= 0) down(target);
+        }
+
+        private void down(int unit) {
+            int side = roster.isFoe[unit] ? 1 : 0;
+            int last = standing[side][--standingCount[side]];
+            standing[side][standingIndex[unit]] = last;
+            standingIndex[last] = standingIndex[unit];
+            tally.downed[roster.kind[unit]]++;
+        }
+    }
+}
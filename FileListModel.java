@@ -0,0 +1,200 @@
+import javax.swing.*;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The files in the browser, sorted by name, with a search that narrows them as it is typed.
+ * <p>
+ * Searches go through a {@link FileNameIndex}, so a keystroke costs about the same in a folder of ten files as
+ * in one of ten thousand. The index is built on a thread of its own when a folder is opened; until it is ready,
+ * searches check each name in turn. A search of several words keeps the names holding all of them, in any order.
+ * <p>
+ * Each file's name is worked out once when the folder is opened, so drawing the list never touches the files.
+ * <p>
+ * Only used from the EDT.
+ */
+public class FileListModel extends AbstractListModel<File> {
+    // -- Every file, sorted by name --
+    private File[] files = new File[0];
+    private String[] names = new String[0];
+    private String[] lowerNames = new String[0];
+    private final Map<File, Integer> rowOfFile = new HashMap<>();
+    // Null until built for the current files
+    private FileNameIndex nameIndex;
+    // Bumped with every new set of files, so an index built for an old folder is thrown away
+    private int generation;
+
+    // -- The files that match the search, as rows in ascending order --
+    private int[] visibleRows = new int[0];
+    private int visibleCount;
+    private String filter = "";
+
+    /**
+     * Replaces the files listed, sorting them by name and clearing the search. The search index is built
+     * in the background.
+     *
+     * @param folderFiles The files, in any order
+     */
+    public void setFiles(File[] folderFiles) {
+        int oldSize = visibleCount;
+        // Sort once on names worked out up front, rather than asking each file for its name on every comparison
+        String[] unsortedNames = new String[folderFiles.length];
+        String[] unsortedLower = new String[folderFiles.length];
+        Integer[] order = new Integer[folderFiles.length];
+        for (int i = 0; i < folderFiles.length; i++) {
+            unsortedNames[i] = folderFiles[i].getName();
+            unsortedLower[i] = unsortedNames[i].toLowerCase(Locale.ROOT);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byLower = unsortedLower[a].compareTo(unsortedLower[b]);
+            return byLower != 0 ? byLower : unsortedNames[a].compareTo(unsortedNames[b]);
+        });
+
+        files = new File[folderFiles.length];
+        names = new String[folderFiles.length];
+        lowerNames = new String[folderFiles.length];
+        rowOfFile.clear();
+        for (int row = 0; row < order.length; row++) {
+            files[row] = folderFiles[order[row]];
+            names[row] = unsortedNames[order[row]];
+            lowerNames[row] = unsortedLower[order[row]];
+            rowOfFile.put(files[row], row);
+        }
+
+        filter = "";
+        visibleRows = new int[files.length];
+        for (int row = 0; row < files.length; row++) visibleRows[row] = row;
+        visibleCount = files.length;
+        fireResized(oldSize);
+        buildIndex();
+    }
+
+    /**
+     * Removes every file.
+     */
+    public void clear() {
+        setFiles(new File[0]);
+    }
+
+    /**
+     * Shows only the files whose names hold every word of a search, regardless of case.
+     *
+     * @param query The search, with words separated by spaces. Blank shows every file
+     */
+    public void setFilter(String query) {
+        String normalised = query.trim().toLowerCase(Locale.ROOT);
+        if (normalised.equals(filter)) return;
+        int oldSize = visibleCount;
+        filter = normalised;
+
+        if (normalised.isEmpty()) {
+            for (int row = 0; row < files.length; row++) visibleRows[row] = row;
+            visibleCount = files.length;
+        } else {
+            long[] matches = null;
+            for (String word : normalised.split("\\s+")) {
+                long[] wordMatches = nameIndex != null ? nameIndex.rowsContaining(word) : scanFor(word);
+                if (matches == null) {
+                    matches = wordMatches;
+                } else {
+                    for (int i = 0; i < matches.length; i++) matches[i] &= wordMatches[i];
+                }
+            }
+            visibleCount = 0;
+            for (int word = 0; word < matches.length; word++) {
+                for (long bits = matches[word]; bits != 0; bits &= bits - 1) {
+                    visibleRows[visibleCount++] = word * 64 + Long.numberOfTrailingZeros(bits);
+                }
+            }
+        }
+        fireResized(oldSize);
+    }
+
+    /**
+     * @return The current search, lower cased, or empty if there is none
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    @Override
+    public int getSize() {
+        return visibleCount;
+    }
+
+    @Override
+    public File getElementAt(int index) {
+        return files[visibleRows[index]];
+    }
+
+    /**
+     * @param index A position in the filtered list
+     * @return The name to show for it
+     */
+    public String getDisplayName(int index) {
+        return names[visibleRows[index]];
+    }
+
+    /**
+     * @param file A file
+     * @return Where the file is in the filtered list, or -1 if it is hidden by the search or not listed
+     */
+    public int indexOf(File file) {
+        Integer row = rowOfFile.get(file);
+        if (row == null) return -1;
+        int index = Arrays.binarySearch(visibleRows, 0, visibleCount, row);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @return Every file listed, in name order, whatever the search
+     */
+    public List<File> getAllFiles() {
+        return List.of(files);
+    }
+
+    /**
+     * Tells the list how its size changed, so it only repaints once however many rows came or went.
+     */
+    private void fireResized(int oldSize) {
+        if (oldSize > visibleCount) fireIntervalRemoved(this, visibleCount, oldSize - 1);
+        if (visibleCount > oldSize) fireIntervalAdded(this, oldSize, visibleCount - 1);
+        int unchanged = Math.min(oldSize, visibleCount);
+        if (unchanged > 0) fireContentsChanged(this, 0, unchanged - 1);
+    }
+
+    // -- The name index --
+    /**
+     * Builds the search index for the current files off the EDT, and swaps it in once done. The rows it
+     * finds are the ones a scan would, so nothing shown changes when it arrives.
+     */
+    private void buildIndex() {
+        nameIndex = null;
+        int built = ++generation;
+        String[] indexed = names;
+        Thread thread = new Thread(() -> {
+            FileNameIndex index = FileNameIndex.build(indexed);
+            SwingUtilities.invokeLater(() -> {
+                if (built == generation) nameIndex = index;
+            });
+        }, "file-name-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Checks every name for a word, for searches typed before the index is ready.
+     */
+    private long[] scanFor(String word) {
+        long[] rows = new long[(files.length + 63) / 64];
+        for (int row = 0; row < lowerNames.length; row++) {
+            if (lowerNames[row].contains(word)) rows[row >>> 6] |= 1L << row;
+        }
+        return rows;
+    }
+}
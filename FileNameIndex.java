@@ -0,0 +1,168 @@
+import java.util.Locale;
+
+/**
+ * Finds which of a list of file names hold a piece of text, in time that hardly grows with the list.
+ * <p>
+ * The lower cased names are laid end to end in one block of text, and a suffix array lists where each of its
+ * suffixes starts, in sorted order. The names holding a word are then those with a suffix starting with it,
+ * and those suffixes sit side by side in the array, found by binary search. Building the array is the slow
+ * part, so it is done once, off the EDT. Once built the index never changes and can be read from any thread.
+ */
+public final class FileNameIndex {
+    // Ends each name in the text, and sorts before every character
+    private static final char END = '\0';
+    // Below this many suffixes a plain insertion sort is quicker than partitioning
+    private static final int INSERTION_SORT_SIZE = 16;
+
+    private final int nameCount;
+    private final char[] text;
+    private final int[] suffixes;
+    // The name each suffix is in
+    private final int[] suffixRows;
+
+    private FileNameIndex(int nameCount, char[] text, int[] suffixes, int[] suffixRows) {
+        this.nameCount = nameCount;
+        this.text = text;
+        this.suffixes = suffixes;
+        this.suffixRows = suffixRows;
+    }
+
+    /**
+     * Indexes a list of names.
+     *
+     * @param names The names, in the order their rows are numbered
+     * @return The index
+     */
+    public static FileNameIndex build(String[] names) {
+        // Lower casing can change a name's length, so the text is sized from the lower cased names
+        String[] lowerNames = new String[names.length];
+        int length = 0;
+        for (int row = 0; row < names.length; row++) {
+            lowerNames[row] = names[row].toLowerCase(Locale.ROOT);
+            length += lowerNames[row].length() + 1;
+        }
+        char[] text = new char[length];
+        int[] suffixes = new int[length - names.length];
+        int[] rowAt = new int[length];
+        int position = 0, suffix = 0;
+        for (int row = 0; row < lowerNames.length; row++) {
+            for (int i = 0; i < lowerNames[row].length(); i++) {
+                text[position] = lowerNames[row].charAt(i);
+                rowAt[position] = row;
+                suffixes[suffix++] = position++;
+            }
+            text[position++] = END;
+        }
+        sortSuffixes(text, suffixes, 0, suffixes.length, 0);
+
+        int[] suffixRows = new int[suffixes.length];
+        for (int i = 0; i < suffixes.length; i++) suffixRows[i] = rowAt[suffixes[i]];
+        return new FileNameIndex(names.length, text, suffixes, suffixRows);
+    }
+
+    /**
+     * @return How many names are indexed
+     */
+    public int size() {
+        return nameCount;
+    }
+
+    /**
+     * Finds the names holding a word, from the run of suffixes starting with it.
+     *
+     * @param word The text to look for, lower cased
+     * @return A bit per name, set where the name holds the word
+     */
+    public long[] rowsContaining(String word) {
+        long[] rows = new long[(nameCount + 63) / 64];
+        int low = 0, high = suffixes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(suffixes[middle], word) < 0) low = middle + 1;
+            else high = middle;
+        }
+        for (int i = low; i < suffixes.length && comparePrefix(suffixes[i], word) == 0; i++) {
+            int row = suffixRows[i];
+            rows[row >>> 6] |= 1L << row;
+        }
+        return rows;
+    }
+
+    /**
+     * @return Negative if the suffix sorts before the word, 0 if it starts with it, positive if after
+     */
+    private int comparePrefix(int suffix, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = text[suffix + i];
+            // A name that ends first sorts first, as END is below every character
+            if (c != word.charAt(i)) return c - word.charAt(i);
+        }
+        return 0;
+    }
+
+    // -- Building --
+    /**
+     * Multikey quicksort: partitions on one character at a time, so suffixes sharing a long prefix are only
+     * compared past it once.
+     *
+     * @param from  The first suffix to sort
+     * @param to    One past the last
+     * @param depth How many characters the suffixes in the range are already known to share
+     */
+    private static void sortSuffixes(char[] text, int[] suffixes, int from, int to, int depth) {
+        while (to - from > 1) {
+            if (to - from < INSERTION_SORT_SIZE) {
+                insertionSort(text, suffixes, from, to, depth);
+                return;
+            }
+            char pivot = medianOf(text[suffixes[from] + depth], text[suffixes[(from + to) >>> 1] + depth],
+                    text[suffixes[to - 1] + depth]);
+            int less = from, greater = to, i = from;
+            while (i < greater) {
+                char c = text[suffixes[i] + depth];
+                if (c < pivot) {
+                    swap(suffixes, less++, i++);
+                } else if (c > pivot) {
+                    swap(suffixes, i, --greater);
+                } else {
+                    i++;
+                }
+            }
+            sortSuffixes(text, suffixes, from, less, depth);
+            sortSuffixes(text, suffixes, greater, to, depth);
+            // Suffixes that have all reached the end of their name are equal
+            if (pivot == END) return;
+            from = less;
+            to = greater;
+            depth++;
+        }
+    }
+
+    private static void insertionSort(char[] text, int[] suffixes, int from, int to, int depth) {
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compareSuffixes(text, suffixes[j - 1], suffixes[j], depth) > 0; j--) {
+                swap(suffixes, j - 1, j);
+            }
+        }
+    }
+
+    private static int compareSuffixes(char[] text, int a, int b, int depth) {
+        for (int i = depth; ; i++) {
+            char ca = text[a + i];
+            char cb = text[b + i];
+            if (ca != cb) return ca - cb;
+            if (ca == END) return 0;
+        }
+    }
+
+    private static char medianOf(char a, char b, char c) {
+        if (a < b) return b < c ? b : (a < c ? c : a);
+        return a < c ? a : (b < c ? c : b);
+    }
+
+    private static void swap(int[] suffixes, int i, int j) {
+        int suffix = suffixes[i];
+        suffixes[i] = suffixes[j];
+        suffixes[j] = suffix;
+    }
+}
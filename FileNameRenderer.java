@@ -10,9 +10,11 @@ public class FileNameRenderer extends DefaultListCellRenderer {
     public Component getListCellRendererComponent(
             JList<?> list, Object value, int index, boolean isSelected, boolean hasFocus) {
         super.getListCellRendererComponent(list, value, index, isSelected, hasFocus);
-        if (value instanceof File file) {
+        if (index >= 0 && list.getModel() instanceof FileListModel model) {
+            setText(model.getDisplayName(index)); // Worked out when the folder was opened
+        } else if (value instanceof File file) {
             setText(file.getName()); // Only show the name
         }
         return this;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+/**
+ * Somewhere rendered audio goes once the playback engine has produced it,
+ * such as a sound card line or a recording used by the simulator.
+ */
+public interface FrameSink {
+    /**
+     * Accepts one block of rendered audio.
+     *
+     * @param interleaved Stereo samples in the range -1..1
+     * @param frames      The number of frames in the block
+     */
+    void write(float[] interleaved, int frames);
+}
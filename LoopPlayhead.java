@@ -0,0 +1,163 @@
+/**
+ * Tracks the read position of a track in frames and decides, down to the exact frame,
+ * when a loop section jumps back to its start.
+ * <p>
+ * The playhead knows nothing about clocks or threads: whoever renders audio asks it how many
+ * frames can be read before the next seam, reads them, then advances it by that amount.
+ */
+public class LoopPlayhead {
+    // -- Track --
+    private long lengthFrames;
+    private long positionFrames;
+    // -- Loop section --
+    private boolean loopEnabled;
+    private long loopStartFrame;
+    private long loopEndFrame;
+    private int repeats;
+    private boolean isInfinite;
+    // -- Loop progress --
+    private int repeatsRemaining;
+    private boolean loopFinished;
+
+    /**
+     * Points the playhead at a new track and rewinds it.
+     *
+     * @param lengthFrames The length of the new track in frames
+     */
+    public void reset(long lengthFrames) {
+        this.lengthFrames = lengthFrames;
+        this.positionFrames = 0;
+        this.repeatsRemaining = 0;
+        this.loopFinished = false;
+    }
+
+    /**
+     * Updates the loop section. The number of repeats only takes effect on the next {@link #arm()}.
+     *
+     * @param enabled    Whether looping is turned on
+     * @param startFrame The first frame of the loop section
+     * @param endFrame   The frame at which playback jumps back to the start
+     * @param repeats    How many times the section is repeated
+     * @param infinite   Whether the section repeats forever
+     */
+    public void setLoop(boolean enabled, long startFrame, long endFrame, int repeats, boolean infinite) {
+        this.loopEnabled = enabled;
+        this.loopStartFrame = startFrame;
+        this.loopEndFrame = endFrame;
+        this.repeats = repeats;
+        this.isInfinite = infinite;
+    }
+
+    /**
+     * Changes the length of the track without moving the playhead, for when a track's exact length becomes known
+     * while it plays.
+     *
+     * @param lengthFrames The new length in frames
+     */
+    public void setLength(long lengthFrames) {
+        this.lengthFrames = lengthFrames;
+        this.positionFrames = Math.min(positionFrames, lengthFrames);
+    }
+
+    /**
+     * Refills the repeat counter, ready for a fresh run through the loop section.
+     */
+    public void arm() {
+        repeatsRemaining = repeats;
+        loopFinished = false;
+    }
+
+    /**
+     * Moves the playhead, clamping to the bounds of the track.
+     *
+     * @param frame The frame to move to
+     */
+    public void seek(long frame) {
+        positionFrames = Math.max(0, Math.min(frame, lengthFrames));
+    }
+
+    /**
+     * Jumps back to the loop start if the playhead sits on or past the loop end.
+     *
+     * @return true if this seam used up the last repeat, meaning the loop has just finished
+     */
+    public boolean applySeam() {
+        if (!isLoopActive() || positionFrames < loopEndFrame) return false;
+
+        if (isInfinite) {
+            positionFrames = loopStartFrame;
+        } else if (repeatsRemaining > 0) {
+            repeatsRemaining--;
+            positionFrames = loopStartFrame;
+        } else {
+            loopFinished = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Works out how many frames can be read before the playhead reaches a seam or the end of the track.
+     *
+     * @param maxFrames The most frames the caller wants
+     * @return The number of frames that can be read in one go, or 0 at the end of the track
+     */
+    public int span(int maxFrames) {
+        long limit = lengthFrames;
+        if (isLoopActive() && positionFrames < loopEndFrame) {
+            limit = Math.min(limit, loopEndFrame);
+        }
+        return (int) Math.max(0, Math.min(maxFrames, limit - positionFrames));
+    }
+
+    /**
+     * Moves the playhead forward after frames have been read.
+     *
+     * @param frames The number of frames read, no more than the last {@link #span(int)}
+     */
+    public void advance(int frames) {
+        positionFrames += frames;
+    }
+
+    /**
+     * @return true if the loop section will be honoured at the next seam
+     */
+    public boolean isLoopActive() {
+        return loopEnabled && !loopFinished && loopStartFrame >= 0 && loopEndFrame > loopStartFrame;
+    }
+
+    /**
+     * @return true if the playhead has reached the end of the loop section, so the next read would jump or finish the loop
+     */
+    public boolean isAtSeam() {
+        return isLoopActive() && positionFrames >= loopEndFrame;
+    }
+
+    /**
+     * @return true once the playhead has reached the last frame of the track
+     */
+    public boolean isAtEnd() {
+        return positionFrames >= lengthFrames;
+    }
+
+    /**
+     * @return The frame that will be read next
+     */
+    public long getPositionFrames() {
+        return positionFrames;
+    }
+
+    /**
+     * @return The length of the current track in frames
+     */
+    public long getLengthFrames() {
+        return lengthFrames;
+    }
+
+    /**
+     * @return How many more times the loop section will be repeated
+     */
+    public int getRepeatsRemaining() {
+        return repeatsRemaining;
+    }
+}
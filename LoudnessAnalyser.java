@@ -0,0 +1,279 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures how loud a track sounds, following EBU R128 (ITU-R BS.1770-4), one chunk at a time.
+ * <p>
+ * Audio is K-weighted (a high shelf for the head's effect on sound, then a low cut), squared, and summed into
+ * 100 ms steps. Every 400 ms window of those steps is one gating block. The integrated loudness is the average
+ * over every block louder than -70 LUFS and no more than 10 LU quieter than the average of those, so silence
+ * and quiet passages do not drag the figure down.
+ * <p>
+ * The true peak is the highest sample level after four times oversampling, which catches the peaks that land
+ * between samples and only appear once the audio is converted back to analogue.
+ */
+public class LoudnessAnalyser {
+    private static final double ABSOLUTE_GATE_LUFS = -70.0;
+    private static final double RELATIVE_GATE_LU = -10.0;
+    private static final double STEP_SECONDS = 0.1;
+    private static final int STEPS_PER_BLOCK = 4;
+    // -- True peak oversampling --
+    private static final int OVERSAMPLING = 4;
+    private static final int PEAK_TAPS = 12;
+    private static final float[][] PEAK_PHASES = buildPeakPhases();
+    private static final float SHORT_SCALE = 1f / 32768f;
+
+    /**
+     * The loudness of a whole track
+     *
+     * @param integratedLufs The gated average loudness in LUFS, or negative infinity for silence
+     * @param truePeakDbtp   The highest oversampled peak in dB relative to full scale, or negative infinity for silence
+     */
+    public record Loudness(double integratedLufs, double truePeakDbtp) {
+        /**
+         * Works out the gain that brings the track to a target loudness.
+         *
+         * @param targetLufs  The loudness every track should play at
+         * @param ceilingDbtp The highest the true peak may reach after the gain
+         * @param isLimited   true if a limiter follows, so the gain may push peaks past the ceiling
+         * @return The gain in dB, 0 for silence
+         */
+        public double gainDb(double targetLufs, double ceilingDbtp, boolean isLimited) {
+            if (Double.isInfinite(integratedLufs)) return 0;
+            double gain = targetLufs - integratedLufs;
+            return isLimited ? gain : Math.min(gain, ceilingDbtp - truePeakDbtp);
+        }
+    }
+
+    private final int channels;
+    private final int stepFrames;
+    // -- K-weighting, two biquads per channel --
+    private final double[] shelfB = new double[3];
+    private final double[] shelfA = new double[3];
+    private final double[] highPassB = {1, -2, 1};
+    private final double[] highPassA = new double[3];
+    // Per channel: the shelf's last two inputs and outputs, then the low cut's
+    private final double[][] filterState;
+    // -- Gating --
+    private final double[] recentSteps = new double[STEPS_PER_BLOCK];
+    private int stepsSeen;
+    private double stepEnergy;
+    private int stepFramesDone;
+    private double[] blockPowers = new double[256];
+    private int blockCount;
+    // -- True peak --
+    // Each channel's recent samples, written twice so PEAK_TAPS of them always sit side by side
+    private final float[][] peakHistory;
+    private int peakPosition;
+    private float peak;
+
+    /**
+     * @param channels  1 or 2
+     * @param frameRate The rate of the audio to be measured
+     */
+    public LoudnessAnalyser(int channels, float frameRate) {
+        this.channels = channels;
+        this.stepFrames = (int) Math.round(frameRate * STEP_SECONDS);
+        this.filterState = new double[channels][8];
+        this.peakHistory = new float[channels][PEAK_TAPS * 2];
+
+        // The filters are specified at 48 kHz; these are the same curves redesigned for any rate
+        double k = Math.tan(Math.PI * 1681.974450955533 / frameRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10, 3.999843853973347 / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        shelfB[0] = (vh + vb * k / q + k * k) / a0;
+        shelfB[1] = 2 * (k * k - vh) / a0;
+        shelfB[2] = (vh - vb * k / q + k * k) / a0;
+        shelfA[1] = 2 * (k * k - 1) / a0;
+        shelfA[2] = (1 - k / q + k * k) / a0;
+
+        k = Math.tan(Math.PI * 38.13547087602444 / frameRate);
+        q = 0.5003270373238773;
+        a0 = 1 + k / q + k * k;
+        highPassA[1] = 2 * (k * k - 1) / a0;
+        highPassA[2] = (1 - k / q + k * k) / a0;
+    }
+
+    /**
+     * Measures a whole track already in memory.
+     *
+     * @param track The decoded track
+     * @return Its loudness
+     */
+    public static Loudness measure(PcmTrack track) {
+        LoudnessAnalyser analyser = new LoudnessAnalyser(track.channels(), track.frameRate());
+        analyser.process(track.samples(), 0, (int) track.frameCount());
+        return analyser.getLoudness();
+    }
+
+    /**
+     * Measures a stream a chunk at a time, so only one chunk is ever held in memory.
+     *
+     * @param stream The audio to measure. It is always closed, whether or not it can be read.
+     * @param token  Checked between chunks
+     * @return Its loudness
+     * @throws IOException if the stream cannot be read or converted
+     */
+    public static Loudness measure(AudioInputStream stream, TaskScheduler.Token token) throws IOException {
+        AudioFormat source = stream.getFormat();
+        int channels = Math.min(source.getChannels(), 2);
+        AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, source.getSampleRate(),
+                16, channels, channels * 2, source.getSampleRate(), false);
+
+        try (stream; AudioInputStream pcmStream = source.matches(target) ? stream : AudioSystem.getAudioInputStream(target, stream)) {
+            LoudnessAnalyser analyser = new LoudnessAnalyser(channels, target.getSampleRate());
+            byte[] bytes = new byte[8192 * target.getFrameSize()];
+            short[] samples = new short[8192 * channels];
+            int carried = 0;
+            int read;
+            while ((read = pcmStream.read(bytes, carried, bytes.length - carried)) > 0) {
+                token.throwIfCancelled();
+                int available = carried + read;
+                int frames = available / target.getFrameSize();
+                for (int i = 0; i < frames * channels; i++) {
+                    samples[i] = (short) ((bytes[i * 2] & 0xFF) | (bytes[i * 2 + 1] << 8));
+                }
+                analyser.process(samples, 0, frames);
+                // Keep any partial frame for the next read
+                carried = available - frames * target.getFrameSize();
+                System.arraycopy(bytes, frames * target.getFrameSize(), bytes, 0, carried);
+            }
+            return analyser.getLoudness();
+        }
+    }
+
+    /**
+     * Adds audio to the measurement.
+     *
+     * @param samples Interleaved 16-bit samples
+     * @param frame   The first frame to measure
+     * @param frames  The number of frames to measure
+     */
+    public void process(short[] samples, int frame, int frames) {
+        for (int f = frame; f < frame + frames; f++) {
+            double energy = 0;
+            for (int c = 0; c < channels; c++) {
+                float sample = samples[f * channels + c] * SHORT_SCALE;
+                double weighted = kWeight(filterState[c], sample);
+                energy += weighted * weighted;
+                trackPeak(peakHistory[c], sample);
+            }
+            peakPosition = (peakPosition + 1) % PEAK_TAPS;
+
+            stepEnergy += energy;
+            if (++stepFramesDone == stepFrames) finishStep();
+        }
+    }
+
+    /**
+     * @return The loudness of everything measured so far
+     */
+    public Loudness getLoudness() {
+        double truePeak = peak == 0 ? Double.NEGATIVE_INFINITY : 20 * Math.log10(peak);
+
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < blockCount; i++) {
+            if (toLufs(blockPowers[i]) > ABSOLUTE_GATE_LUFS) {
+                sum += blockPowers[i];
+                count++;
+            }
+        }
+        if (count == 0) return new Loudness(Double.NEGATIVE_INFINITY, truePeak);
+
+        double relativeGate = toLufs(sum / count) + RELATIVE_GATE_LU;
+        sum = 0;
+        count = 0;
+        for (int i = 0; i < blockCount; i++) {
+            double lufs = toLufs(blockPowers[i]);
+            if (lufs > ABSOLUTE_GATE_LUFS && lufs > relativeGate) {
+                sum += blockPowers[i];
+                count++;
+            }
+        }
+        return new Loudness(count == 0 ? Double.NEGATIVE_INFINITY : toLufs(sum / count), truePeak);
+    }
+
+    // -- Gating --
+    /**
+     * Closes a 100 ms step, and once four have been seen, records the 400 ms block ending with it.
+     */
+    private void finishStep() {
+        recentSteps[stepsSeen % STEPS_PER_BLOCK] = stepEnergy;
+        stepsSeen++;
+        stepEnergy = 0;
+        stepFramesDone = 0;
+        if (stepsSeen < STEPS_PER_BLOCK) return;
+
+        double blockEnergy = 0;
+        for (double step : recentSteps) blockEnergy += step;
+        if (blockCount == blockPowers.length) blockPowers = Arrays.copyOf(blockPowers, blockCount * 2);
+        blockPowers[blockCount++] = blockEnergy / (STEPS_PER_BLOCK * stepFrames);
+    }
+
+    private static double toLufs(double power) {
+        return -0.691 + 10 * Math.log10(power);
+    }
+
+    // -- Filters --
+    /**
+     * Runs one sample through the shelf and then the low cut, in direct form I.
+     */
+    private double kWeight(double[] state, double x) {
+        double shelved = shelfB[0] * x + shelfB[1] * state[0] + shelfB[2] * state[1] - shelfA[1] * state[2] - shelfA[2] * state[3];
+        state[1] = state[0];
+        state[0] = x;
+        state[3] = state[2];
+        state[2] = shelved;
+
+        double y = highPassB[0] * shelved + highPassB[1] * state[4] + highPassB[2] * state[5] - highPassA[1] * state[6] - highPassA[2] * state[7];
+        state[5] = state[4];
+        state[4] = shelved;
+        state[7] = state[6];
+        state[6] = y;
+        return y;
+    }
+
+    /**
+     * Adds a sample to a channel's history and checks its own peak and those of the points between it and
+     * the sample before, a few samples back.
+     */
+    private void trackPeak(float[] history, float sample) {
+        float sampleLevel = Math.abs(sample);
+        if (sampleLevel > peak) peak = sampleLevel;
+        history[peakPosition] = sample;
+        history[peakPosition + PEAK_TAPS] = sample;
+        // Oldest sample first, so tap k of every phase lines up with history[start + k]
+        int start = peakPosition + 1;
+        for (float[] phase : PEAK_PHASES) {
+            float sum = 0f;
+            for (int tap = 0; tap < PEAK_TAPS; tap++) sum += history[start + tap] * phase[tap];
+            float level = Math.abs(sum);
+            if (level > peak) peak = level;
+        }
+    }
+
+    /**
+     * Builds a Hann-windowed sinc interpolator split into one set of taps per point between two samples.
+     * The point on the sample itself would just pass the sample through, so it is left out.
+     */
+    private static float[][] buildPeakPhases() {
+        float[][] phases = new float[OVERSAMPLING - 1][PEAK_TAPS];
+        int centre = PEAK_TAPS / 2;
+        for (int phase = 1; phase < OVERSAMPLING; phase++) {
+            for (int tap = 0; tap < PEAK_TAPS; tap++) {
+                double t = tap - centre + (double) phase / OVERSAMPLING;
+                double x = t / centre;
+                double window = Math.abs(x) >= 1 ? 0 : 0.5 * (1 + Math.cos(Math.PI * x));
+                double sinc = t == 0 ? 1 : Math.sin(Math.PI * t) / (Math.PI * t);
+                phases[phase - 1][tap] = (float) (sinc * window);
+            }
+        }
+        return phases;
+    }
+}
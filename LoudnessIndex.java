@@ -0,0 +1,109 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The measured loudness of every track in a folder, saved in a properties file beside the loop configurations
+ * so a folder is only ever analysed once. A track changed on disk since it was measured is measured again.
+ * <p>
+ * Only used from the EDT.
+ */
+public class LoudnessIndex {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(LoudnessIndex.class.getName());
+    private static final String INDEX_FILE_NAME = "groovebuddy_loudness.properties";
+
+    /**
+     * A measurement, along with the file state it was taken from
+     */
+    private record Entry(LoudnessAnalyser.Loudness loudness, long lastModified, long length) {
+    }
+
+    private final File folder;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * @param folder The folder the tracks are in, or null for an index that is never saved
+     */
+    public LoudnessIndex(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Reads the index saved in a folder.
+     *
+     * @param folder The folder holding the audio files
+     * @return The saved measurements, or an empty index if there are none or they cannot be read
+     */
+    public static LoudnessIndex load(File folder) {
+        LoudnessIndex index = new LoudnessIndex(folder);
+        File indexFile = new File(folder, INDEX_FILE_NAME);
+        if (!indexFile.exists()) return index;
+
+        Properties props = new Properties();
+        try (InputStream input = new FileInputStream(indexFile)) {
+            props.load(input);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the loudness index, tracks will be measured again", e);
+            return index;
+        }
+        for (String name : props.stringPropertyNames()) {
+            String[] parts = props.getProperty(name).split(",");
+            try {
+                index.entries.put(name, new Entry(
+                        new LoudnessAnalyser.Loudness(Double.parseDouble(parts[0]), Double.parseDouble(parts[1])),
+                        Long.parseLong(parts[2]), Long.parseLong(parts[3])));
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Skipping unreadable loudness entry for " + name);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index to its folder, replacing what was there.
+     */
+    public void save() {
+        if (folder == null) return;
+        Properties props = new Properties();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry value = entry.getValue();
+            props.setProperty(entry.getKey(), String.format(Locale.ROOT, "%.2f,%.2f,%d,%d",
+                    value.loudness().integratedLufs(), value.loudness().truePeakDbtp(), value.lastModified(), value.length()));
+        }
+        try (OutputStream output = new FileOutputStream(new File(folder, INDEX_FILE_NAME))) {
+            props.store(output, "Groove Buddy Loudness (integrated LUFS, true peak dBTP, modified, size)");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error saving the loudness index", e);
+        }
+    }
+
+    /**
+     * @param file An audio file in the folder
+     * @return Its loudness, or null if it has not been measured since it last changed
+     */
+    public LoudnessAnalyser.Loudness get(File file) {
+        Entry entry = entries.get(file.getName());
+        if (entry == null || entry.lastModified() != file.lastModified() || entry.length() != file.length()) return null;
+        return entry.loudness();
+    }
+
+    /**
+     * Records a measurement.
+     *
+     * @param file     The audio file that was measured
+     * @param loudness What it measured
+     */
+    public void put(File file, LoudnessAnalyser.Loudness loudness) {
+        entries.put(file.getName(), new Entry(loudness, file.lastModified(), file.length()));
+    }
+}
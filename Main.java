@@ -2,8 +2,14 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.imageio.ImageIO;
 
 
@@ -13,6 +19,11 @@ import javax.imageio.ImageIO;
  * Simple menu to launch the different modules
  */
 public class Main {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
+    // Set to true to quit as soon as the menu has fully drawn, for timing startups and training the class-data archive
+    private static final String EXIT_AFTER_STARTUP_PROPERTY = "dndbuddy.exitAfterStartup";
+
     /**
      * The main method that starts the application
      *
@@ -38,6 +49,16 @@ public class Main {
         });
     }
 
+    /**
+     * Closes every open window, so each buddy saves what it keeps between sessions, then exits once their closing
+     * has run. Saves still being written when the app exits are waited for by their own shutdown hooks.
+     */
+    static void quit() {
+        for (Window window : Window.getWindows()) window.dispose();
+        // Disposing queues each window's closed event, so exiting from behind them lets every listener run first
+        SwingUtilities.invokeLater(() -> System.exit(0));
+    }
+
     /**
      * Sets up macOS-specific system properties for proper dock behavior
      */
@@ -57,7 +78,14 @@ public class Main {
         JFrame frmFoundation = new JFrame("DnD Buddy - Main Menu");
         setupApplicationIcon(frmFoundation);
 
-        frmFoundation.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // Closing the menu quits through quit(), so every buddy gets to save first
+        frmFoundation.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        frmFoundation.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                quit();
+            }
+        });
         frmFoundation.setSize(Constants.MM_FOUNDATION_PANEL_WIDTH, Constants.MM_FOUNDATION_PANEL_HEIGHT); // Made slightly larger to accommodate background
         frmFoundation.setLocationRelativeTo(null);
         frmFoundation.setResizable(false); // Prevents background scaling issues
@@ -103,8 +131,26 @@ public class Main {
             grooveBuddy.initUI();
         });
 
+        JButton btnScriptReader = createStyledButton("Script Reader");
+        btnScriptReader.addActionListener(e -> {
+            ScriptReaderGUI scriptReader = new ScriptReaderGUI();
+            scriptReader.initUI();
+        });
+
+        JButton btnPuzzleBuddy = createStyledButton("Puzzle Buddy");
+        btnPuzzleBuddy.addActionListener(e -> {
+            PuzzleBuddyGUI puzzleBuddy = new PuzzleBuddyGUI();
+            puzzleBuddy.initUI();
+        });
+
+        JButton btnBattleBuddy = createStyledButton("Battle Buddy");
+        btnBattleBuddy.addActionListener(e -> {
+            BattleBuddyGUI battleBuddy = new BattleBuddyGUI();
+            battleBuddy.initUI();
+        });
+
         JButton btnQuit = createStyledButton("Quit");
-        btnQuit.addActionListener(e -> System.exit(0));
+        btnQuit.addActionListener(e -> quit());
 
         // Add buttons with spacing
         gbc.gridwidth = Constants.MM_GRIDBAG_GRID_SPACING;
@@ -114,6 +160,18 @@ public class Main {
         contentPanel.add(btnGrooveBuddy, gbc);
 
         gbc.gridx = Constants.MM_GRIDBAG_GRID_SPACING;
+        contentPanel.add(btnScriptReader, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = Constants.MM_GRIDBAG_GRID_SPACING + 1;
+        contentPanel.add(btnPuzzleBuddy, gbc);
+
+        gbc.gridx = Constants.MM_GRIDBAG_GRID_SPACING;
+        contentPanel.add(btnBattleBuddy, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = Constants.MM_GRIDBAG_GRID_SPACING + 2;
+        gbc.gridwidth = Constants.MM_GRIDBAG_WIDTH;
         contentPanel.add(btnQuit, gbc);
 
         return contentPanel;
@@ -147,103 +205,181 @@ public class Main {
     }
 
     /**
-     * Sets up the application icon for both window and dock
+     * Sets up the application icon for both window and dock.
+     * The icon is large, so it is decoded in the background and applied once ready.
      */
     private static void setupApplicationIcon(JFrame frame) {
-        try {
-            URL iconURL = Main.class.getResource("resources/images/icon.png");
-            if (iconURL != null) {
-                ImageIcon icon = new ImageIcon(iconURL);
-                Image image = icon.getImage();
-                frame.setIconImage(image);
-
-                if (Taskbar.isTaskbarSupported()) {
-                    Taskbar taskbar = Taskbar.getTaskbar();
-                    if (taskbar.isSupported(Taskbar.Feature.ICON_IMAGE)) {
-                        taskbar.setIconImage(image);
-                    }
-                    if (taskbar.isSupported(Taskbar.Feature.ICON_BADGE_TEXT)) {
-                        taskbar.setIconBadge("DnD");
+        new SwingWorker<Image, Void>() {
+            @Override
+            protected Image doInBackground() throws Exception {
+                URL iconURL = findImage("icon.png");
+                if (iconURL == null) {
+                    System.err.println("Couldn't find icon file at: resources/images/icon.png");
+                    return null;
+                }
+                return ImageIO.read(iconURL);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Image image = get();
+                    if (image == null) return;
+                    frame.setIconImage(image);
+
+                    if (Taskbar.isTaskbarSupported()) {
+                        Taskbar taskbar = Taskbar.getTaskbar();
+                        if (taskbar.isSupported(Taskbar.Feature.ICON_IMAGE)) {
+                            taskbar.setIconImage(image);
+                        }
+                        if (taskbar.isSupported(Taskbar.Feature.ICON_BADGE_TEXT)) {
+                            taskbar.setIconBadge("DnD");
+                        }
                     }
+                } catch (Exception e) {
+                    System.err.println("Error loading icon: " + e.getMessage());
                 }
-            } else {
-                System.err.println("Couldn't find icon file at: resources/images/icon.png");
             }
-        } catch (Exception e) {
-            System.err.println("Error loading icon: " + e.getMessage());
-        }
+        }.execute();
+    }
+
+    /**
+     * Finds an image whether running from the build output, where resources sit at the root, or from the project folder
+     *
+     * @param name The file name inside resources/images
+     * @return The image's location, or null if it cannot be found
+     */
+    private static URL findImage(String name) {
+        URL url = Main.class.getResource("images/" + name);
+        return url != null ? url : Main.class.getResource("resources/images/" + name);
     }
 
     /**
-     * Custom JPanel that paints a background image
+     * Logs how long it has been since the process started
+     *
+     * @param milestone What has just happened
+     */
+    private static void reportStartup(String milestone) {
+        ProcessHandle.current().info().startInstant().ifPresent(start ->
+                LOGGER.log(Level.INFO, "{0} {1} ms after launch",
+                        new Object[]{milestone, Duration.between(start, Instant.now()).toMillis()}));
+    }
+
+    /**
+     * Custom JPanel that paints a background image.
+     * <p>
+     * The gradient is drawn straight away while the image decodes in the background. The image is then scaled
+     * once for the panel's size and kept, so repaints only copy pixels.
      */
     private static class BackgroundPanel extends JPanel {
+        private static final String BACKGROUND_NAME = "mm_background.jpg"; // or .png
         private BufferedImage backgroundImage;
-        private static final String BACKGROUND_PATH = "resources/images/mm_background.jpg"; // or .png
+        // The background scaled to fill the panel at its current size
+        private BufferedImage scaledBackground;
+        private boolean hasPaintedFirstFrame;
 
         public BackgroundPanel() {
             loadBackgroundImage();
         }
 
         private void loadBackgroundImage() {
-            try {
-                URL backgroundURL = Main.class.getResource(BACKGROUND_PATH);
-                if (backgroundURL != null) {
-                    backgroundImage = ImageIO.read(backgroundURL);
-                } else {
-                    System.err.println("Background image not found at: " + BACKGROUND_PATH);
-                    // Create a fallback gradient background
-                    createGradientBackground();
+            new SwingWorker<BufferedImage, Void>() {
+                @Override
+                protected BufferedImage doInBackground() throws Exception {
+                    URL backgroundURL = findImage(BACKGROUND_NAME);
+                    if (backgroundURL == null) {
+                        System.err.println("Background image not found at: resources/images/" + BACKGROUND_NAME);
+                        return null;
+                    }
+                    return ImageIO.read(backgroundURL);
                 }
-            } catch (Exception e) {
-                System.err.println("Error loading background image: " + e.getMessage());
-                createGradientBackground();
-            }
-        }
 
-        private void createGradientBackground() {
-            // Create a simple gradient as fallback
-            backgroundImage = new BufferedImage(Constants.MM_FOUNDATION_PANEL_WIDTH, Constants.MM_FOUNDATION_PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = backgroundImage.createGraphics();
+                @Override
+                protected void done() {
+                    try {
+                        backgroundImage = get();
+                    } catch (Exception e) {
+                        // Keep the gradient as the fallback background
+                        System.err.println("Error loading background image: " + e.getMessage());
+                    }
+                    scaledBackground = null;
+                    repaint();
+                    reportStartup("Background image ready");
+                    if (Boolean.getBoolean(EXIT_AFTER_STARTUP_PROPERTY)) {
+                        // Let the repaint land first, so the image drawing classes are loaded too
+                        SwingUtilities.invokeLater(() -> System.exit(0));
+                    }
+                }
+            }.execute();
+        }
 
+        private void paintGradientBackground(Graphics2D g2d) {
             GradientPaint gradient = new GradientPaint(
                     0, 0, Constants.MM_GRADIENT_COLOR_1,     // Light Blue Top #CFD5EF
                     0, 400, Constants.MM_GRADIENT_COLOR_2    // Darker Purple Bottom #543DC4
             );
 
             g2d.setPaint(gradient);
-            g2d.fillRect(0, 0,Constants.MM_FOUNDATION_PANEL_WIDTH, Constants.MM_FOUNDATION_PANEL_HEIGHT);
+            g2d.fillRect(0, 0, getWidth(), getHeight());
+        }
+
+        /**
+         * Scales the background to fill the panel, halving in steps first so large reductions stay smooth
+         */
+        private BufferedImage scaleToFill(BufferedImage image, int panelWidth, int panelHeight) {
+            // Scale to Fit
+            double scaleX = (double) panelWidth / image.getWidth();
+            double scaleY = (double) panelHeight / image.getHeight();
+            double scale = Math.max(scaleX, scaleY); // Fill entire panel
+
+            int scaledWidth = (int) (image.getWidth() * scale);
+            int scaledHeight = (int) (image.getHeight() * scale);
+            BufferedImage source = image;
+            while (source.getWidth() / 2 >= scaledWidth && source.getHeight() / 2 >= scaledHeight) {
+                source = drawScaled(source, source.getWidth() / 2, source.getHeight() / 2, 0, 0, source.getWidth() / 2, source.getHeight() / 2);
+            }
+
+            int x = Constants.MM_scaledToFit(panelWidth, scaledWidth);
+            int y = Constants.MM_scaledToFit(panelHeight, scaledHeight);
+            return drawScaled(source, panelWidth, panelHeight, x, y, scaledWidth, scaledHeight);
+        }
+
+        private BufferedImage drawScaled(BufferedImage source, int width, int height, int x, int y, int scaledWidth, int scaledHeight) {
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            BufferedImage target = config != null
+                    ? config.createCompatibleImage(width, height)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = target.createGraphics();
+            // Enable anti-aliasing for smoother scaling
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.drawImage(source, x, y, scaledWidth, scaledHeight, null);
             g2d.dispose();
+            return target;
         }
 
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
+            Graphics2D g2d = (Graphics2D) g.create();
 
-            if (backgroundImage != null) {
-                Graphics2D g2d = (Graphics2D) g.create();
-
-                // Enable anti-aliasing for smoother scaling
-                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-                // Scale and draw the background image
-                int panelWidth = getWidth();
-                int panelHeight = getHeight();
-
-                // Scale to Fit
-                double scaleX = (double) panelWidth / backgroundImage.getWidth();
-                double scaleY = (double) panelHeight / backgroundImage.getHeight();
-                double scale = Math.max(scaleX, scaleY); // Fill entire panel
-
-                int scaledWidth = (int) (backgroundImage.getWidth() * scale);
-                int scaledHeight = (int) (backgroundImage.getHeight() * scale);
-                int x = Constants.MM_scaledToFit(panelWidth,scaledWidth);
-                int y = Constants.MM_scaledToFit(panelHeight,scaledHeight);
-
-                g2d.drawImage(backgroundImage, x, y, scaledWidth, scaledHeight, null);
+            int panelWidth = getWidth();
+            int panelHeight = getHeight();
+            if (backgroundImage == null || panelWidth <= 0 || panelHeight <= 0) {
+                paintGradientBackground(g2d);
+            } else {
+                // Only rescale when the panel has changed size since the last paint
+                if (scaledBackground == null || scaledBackground.getWidth() != panelWidth
+                        || scaledBackground.getHeight() != panelHeight) {
+                    scaledBackground = scaleToFill(backgroundImage, panelWidth, panelHeight);
+                }
+                g2d.drawImage(scaledBackground, 0, 0, null);
+            }
+            g2d.dispose();
 
-                g2d.dispose();
+            if (!hasPaintedFirstFrame) {
+                hasPaintedFirstFrame = true;
+                reportStartup("First frame drawn");
             }
         }
     }
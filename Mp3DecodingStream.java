@@ -0,0 +1,225 @@
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Decodes an MP3 file one frame at a time as it is read, handing out 16-bit little-endian PCM.
+ * <p>
+ * Unlike {@link AudioService#convertMp3ToAudioInputStream(File)}, which decodes the whole file into memory first,
+ * this only ever holds one decoded frame, so a whole folder can be scanned without the heap growing.
+ * <p>
+ * With an {@link Mp3FrameIndex} the stream can start part way into the file, decoding only the few frames
+ * needed to prime the decoder. A frame the decoder cannot rebuild (because the frames it borrows from were never
+ * read) still stands for its full length of audio, as silence, so sample positions never drift.
+ */
+public class Mp3DecodingStream extends InputStream {
+    private final File mp3File;
+    private final InputStream fileInputStream;
+    private final Bitstream bitstream;
+    private final Decoder decoder = new Decoder();
+    private final TaskScheduler.Token token;
+    private final AudioFormat format;
+    private final int samplesPerFrame;
+    // The frame read while opening, decoded on the first read
+    private Header pendingHeader;
+    // -- The current decoded frame --
+    private final byte[] frameBytes;
+    private int frameLength;
+    private int framePosition;
+    private boolean isFinished;
+
+    /**
+     * Opens a file and reads its first frame header to find the format.
+     *
+     * @param mp3File The MP3 file to decode
+     * @param token   Checked before every frame. Reading from a cancelled stream throws {@link CancellationException}
+     * @throws IOException if the file cannot be opened or has no valid frames
+     */
+    public Mp3DecodingStream(File mp3File, TaskScheduler.Token token) throws IOException {
+        this(mp3File, token, 0);
+    }
+
+    /**
+     * Opens a file part way through and reads the header of the frame found there to find the format.
+     *
+     * @param mp3File    The MP3 file to decode
+     * @param token      Checked before every frame. Reading from a cancelled stream throws {@link CancellationException}
+     * @param byteOffset Where a frame starts, from an {@link Mp3FrameIndex}
+     * @throws IOException if the file cannot be opened or has no valid frames there
+     */
+    private Mp3DecodingStream(File mp3File, TaskScheduler.Token token, long byteOffset) throws IOException {
+        this.mp3File = mp3File;
+        this.token = token;
+        FileInputStream file = new FileInputStream(mp3File);
+        try {
+            if (byteOffset > 0) file.getChannel().position(byteOffset);
+            this.fileInputStream = new BufferedInputStream(file);
+            this.bitstream = new Bitstream(fileInputStream);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        try {
+            pendingHeader = bitstream.readFrame();
+        } catch (BitstreamException e) {
+            close();
+            throw new IOException("Could not read " + mp3File.getName(), e);
+        }
+        if (pendingHeader == null) {
+            close();
+            throw new IOException("Invalid MP3 file - no frames found");
+        }
+
+        int channels = (pendingHeader.mode() == Header.SINGLE_CHANNEL) ? 1 : 2;
+        float sampleRate = pendingHeader.frequency();
+        this.format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, 16, channels, channels * 2, sampleRate, false);
+        this.samplesPerFrame = pendingHeader.layer() == 1 ? 384
+                : pendingHeader.layer() == 2 || pendingHeader.version() == Header.MPEG1 ? 1152 : 576;
+        // The largest MPEG frame holds 1152 samples per channel
+        this.frameBytes = new byte[1152 * 2 * 2];
+    }
+
+    /**
+     * Opens a file as a PCM stream, decoding it frame by frame as it is read.
+     *
+     * @param mp3File The MP3 file to decode
+     * @param token   Stops the decode when cancelled
+     * @return A stream of unknown length in the file's own format
+     * @throws IOException if the file cannot be opened or has no valid frames
+     */
+    public static AudioInputStream open(File mp3File, TaskScheduler.Token token) throws IOException {
+        Mp3DecodingStream stream = new Mp3DecodingStream(mp3File, token);
+        return new AudioInputStream(stream, stream.format, AudioSystem.NOT_SPECIFIED);
+    }
+
+    /**
+     * Opens a file as a PCM stream starting at any sample, decoding only a bounded number of frames to get there.
+     *
+     * @param mp3File The MP3 file to decode
+     * @param token   Stops the decode when cancelled
+     * @param index   The file's frame index
+     * @param sample  The first sample frame the stream should return
+     * @return A stream of unknown length in the file's own format
+     * @throws IOException if the file cannot be opened or decoded
+     */
+    public static AudioInputStream open(File mp3File, TaskScheduler.Token token, Mp3FrameIndex index, long sample) throws IOException {
+        Mp3FrameIndex.SeekPoint point = index.locate(sample);
+        Mp3DecodingStream stream = new Mp3DecodingStream(mp3File, token, point.byteOffset());
+        try {
+            stream.skipNBytes(point.samplesToSkip() * stream.format.getFrameSize());
+        } catch (IOException | RuntimeException e) {
+            // Such as a cancellation while priming the decoder
+            stream.close();
+            throw e;
+        }
+        return new AudioInputStream(stream, stream.format, AudioSystem.NOT_SPECIFIED);
+    }
+
+    /**
+     * @return The 16-bit PCM format the stream decodes to
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    /**
+     * Skips decoded audio without copying it anywhere.
+     */
+    @Override
+    public long skip(long length) throws IOException {
+        long skipped = 0;
+        while (skipped < length) {
+            if (framePosition == frameLength && !decodeNextFrame()) break;
+            int count = (int) Math.min(length - skipped, frameLength - framePosition);
+            framePosition += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        int copied = 0;
+        while (copied < length) {
+            if (framePosition == frameLength && !decodeNextFrame()) break;
+            int count = Math.min(length - copied, frameLength - framePosition);
+            System.arraycopy(frameBytes, framePosition, buffer, offset + copied, count);
+            framePosition += count;
+            copied += count;
+        }
+        return copied == 0 ? -1 : copied;
+    }
+
+    /**
+     * Decodes the next frame into the frame buffer.
+     *
+     * @return false once the end of the file is reached
+     */
+    private boolean decodeNextFrame() throws IOException {
+        if (isFinished) return false;
+        if (token.isCancelled()) {
+            throw new CancellationException("Decoding " + mp3File.getName() + " was cancelled");
+        }
+        try {
+            Header header = pendingHeader != null ? pendingHeader : bitstream.readFrame();
+            pendingHeader = null;
+            if (header == null) {
+                isFinished = true;
+                return false;
+            }
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+            bitstream.closeFrame();
+
+            short[] samples = output.getBuffer();
+            int sampleCount = Math.min(output.getBufferLength(), frameBytes.length / 2);
+            for (int i = 0; i < sampleCount; i++) {
+                frameBytes[i * 2] = (byte) samples[i];
+                frameBytes[i * 2 + 1] = (byte) (samples[i] >> 8);
+            }
+            // The decoder gives nothing back for a frame whose borrowed bytes it never saw
+            int expected = samplesPerFrame * format.getChannels();
+            if (sampleCount == 0) {
+                Arrays.fill(frameBytes, 0, expected * 2, (byte) 0);
+                sampleCount = expected;
+            }
+            frameLength = sampleCount * 2;
+            framePosition = 0;
+            return true;
+        } catch (BitstreamException | DecoderException e) {
+            throw new IOException("Could not decode " + mp3File.getName(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        isFinished = true;
+        try {
+            bitstream.close();
+        } catch (BitstreamException e) {
+            throw new IOException(e);
+        } finally {
+            fileInputStream.close();
+        }
+    }
+}
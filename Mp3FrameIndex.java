@@ -0,0 +1,278 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Where every MP3 frame starts in a file, so decoding can begin near any point without reading from the start.
+ * <p>
+ * The index is built by walking the frame headers alone, which is fast because no audio is decoded. Only every
+ * {@link #STRIDE}th frame's byte offset is kept, so a long track costs a few kilobytes. To start decoding at a
+ * given sample, the decoder is placed a few frames early: Layer III frames borrow bytes from the frames before
+ * them (the bit reservoir), and each frame's output overlaps the one before, so the first frames decoded after
+ * a jump are wrong and are thrown away. {@link #locate(long)} works out how many are needed.
+ */
+public class Mp3FrameIndex {
+    // Keep the offset of every this many frames
+    public static final int STRIDE = 16;
+    private static final int FORMAT_VERSION = 1;
+    // The most priming frames ever asked for, whatever the bit rate
+    private static final int MAX_PRIMING_FRAMES = 32;
+
+    private static final int[][] BITRATES_KBPS = {
+            // MPEG-1 layers I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG-2 and 2.5 layer I, then layers II and III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+    };
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},  // MPEG-2.5
+            null,                  // reserved
+            {22050, 24000, 16000}, // MPEG-2
+            {44100, 48000, 32000}, // MPEG-1
+    };
+
+    /**
+     * Where to start decoding to reach a sample
+     *
+     * @param byteOffset    Where in the file the first frame to decode starts
+     * @param firstFrame    The number of that frame
+     * @param samplesToSkip How many decoded frames of audio to throw away before the wanted sample
+     */
+    public record SeekPoint(long byteOffset, long firstFrame, long samplesToSkip) {
+    }
+
+    private final int sampleRate;
+    private final int channels;
+    private final int samplesPerFrame;
+    private final long frameCount;
+    private final int primingFrames;
+    private final long[] offsets;
+
+    private Mp3FrameIndex(int sampleRate, int channels, int samplesPerFrame, long frameCount, int primingFrames, long[] offsets) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.samplesPerFrame = samplesPerFrame;
+        this.frameCount = frameCount;
+        this.primingFrames = primingFrames;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Walks every frame header in a file.
+     *
+     * @param mp3File The MP3 file
+     * @param token   Checked every few thousand frames
+     * @return The index
+     * @throws IOException if the file cannot be read or holds no MPEG audio frames
+     */
+    public static Mp3FrameIndex scan(File mp3File, TaskScheduler.Token token) throws IOException {
+        try (FileChannel channel = FileChannel.open(mp3File.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int limit = (int) channel.size();
+            // An ID3v1 tag sits in the last 128 bytes
+            if (limit >= 128 && data.get(limit - 128) == 'T' && data.get(limit - 127) == 'A' && data.get(limit - 126) == 'G') {
+                limit -= 128;
+            }
+
+            int position = skipId3v2(data, limit);
+            long[] offsets = new long[64];
+            long frames = 0;
+            int firstHeader = 0;
+            int minFrameBytes = Integer.MAX_VALUE;
+            while ((position = findFrame(data, position, limit, firstHeader)) >= 0) {
+                int header = data.getInt(position);
+                if (frames == 0) firstHeader = header;
+                if (frames % STRIDE == 0) {
+                    int entry = (int) (frames / STRIDE);
+                    if (entry == offsets.length) offsets = Arrays.copyOf(offsets, entry * 2);
+                    offsets[entry] = position;
+                }
+                if ((frames & 4095) == 0) token.throwIfCancelled();
+
+                int length = frameLength(header);
+                minFrameBytes = Math.min(minFrameBytes, length);
+                position += length;
+                frames++;
+            }
+            if (frames == 0) throw new IOException("No MPEG audio frames found in " + mp3File.getName());
+
+            int version = (firstHeader >>> 19) & 3;
+            int layer = 4 - ((firstHeader >>> 17) & 3);
+            int sampleRate = SAMPLE_RATES[version][(firstHeader >>> 10) & 3];
+            int channels = ((firstHeader >>> 6) & 3) == 3 ? 1 : 2;
+            int samplesPerFrame = layer == 1 ? 384 : layer == 2 || version == 3 ? 1152 : 576;
+            int primingFrames = primingFrames(version, layer, minFrameBytes);
+            return new Mp3FrameIndex(sampleRate, channels, samplesPerFrame, frames, primingFrames,
+                    Arrays.copyOf(offsets, (int) ((frames + STRIDE - 1) / STRIDE)));
+        }
+    }
+
+    /**
+     * Works out where to start decoding so that a given sample comes out exactly. The work is bounded:
+     * at most {@link #STRIDE} frames to reach the nearest stored offset, plus the priming frames.
+     *
+     * @param sample The wanted sample frame, counted from the start of the decoded audio
+     * @return Where to start and how much to throw away
+     */
+    public SeekPoint locate(long sample) {
+        long target = Math.max(0, Math.min(sample, getTotalSamples()));
+        long targetFrame = Math.min(target / samplesPerFrame, frameCount - 1);
+        long firstWanted = Math.max(0, targetFrame - primingFrames);
+        int entry = (int) (firstWanted / STRIDE);
+        long firstFrame = (long) entry * STRIDE;
+        return new SeekPoint(offsets[entry], firstFrame, target - firstFrame * samplesPerFrame);
+    }
+
+    /**
+     * @return The number of decoded sample frames in the whole file, exact even for VBR files without a Xing header
+     */
+    public long getTotalSamples() {
+        return frameCount * samplesPerFrame;
+    }
+
+    /**
+     * @return The number of MPEG frames in the file
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return The sample rate of the file
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return 1 for mono, 2 otherwise
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return How many frames are decoded and thrown away before the wanted one after a jump
+     */
+    public int getPrimingFrames() {
+        return primingFrames;
+    }
+
+    // -- Persistence --
+    /**
+     * @param out Where to write the index
+     * @throws IOException if it cannot be written
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(sampleRate);
+        out.writeInt(channels);
+        out.writeInt(samplesPerFrame);
+        out.writeLong(frameCount);
+        out.writeInt(primingFrames);
+        out.writeInt(offsets.length);
+        for (long offset : offsets) out.writeLong(offset);
+    }
+
+    /**
+     * @param in Where to read an index written by {@link #write(DataOutputStream)}
+     * @return The index
+     * @throws IOException if it cannot be read or was written by a different version
+     */
+    public static Mp3FrameIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) throw new IOException("Unknown frame index version");
+        int sampleRate = in.readInt();
+        int channels = in.readInt();
+        int samplesPerFrame = in.readInt();
+        long frameCount = in.readLong();
+        int primingFrames = in.readInt();
+        long[] offsets = new long[in.readInt()];
+        for (int i = 0; i < offsets.length; i++) offsets[i] = in.readLong();
+        return new Mp3FrameIndex(sampleRate, channels, samplesPerFrame, frameCount, primingFrames, offsets);
+    }
+
+    // -- Header Parsing --
+    /**
+     * Skips any ID3v2 tags at the start of the file.
+     */
+    private static int skipId3v2(MappedByteBuffer data, int limit) {
+        int position = 0;
+        while (position + 10 <= limit && data.get(position) == 'I' && data.get(position + 1) == 'D' && data.get(position + 2) == '3') {
+            int size = ((data.get(position + 6) & 0x7F) << 21) | ((data.get(position + 7) & 0x7F) << 14)
+                    | ((data.get(position + 8) & 0x7F) << 7) | (data.get(position + 9) & 0x7F);
+            boolean hasFooter = (data.get(position + 5) & 0x10) != 0;
+            position += 10 + size + (hasFooter ? 10 : 0);
+        }
+        return Math.min(position, limit);
+    }
+
+    /**
+     * Finds the next frame at or after a position. A header right where the last frame ended is trusted;
+     * anywhere else, such as after junk, a candidate only counts if another frame follows it.
+     *
+     * @param first The first frame's header, or 0 before it is found. Later frames must match its format
+     * @return The position of the frame, or -1 if there are no more
+     */
+    private static int findFrame(MappedByteBuffer data, int position, int limit, int first) {
+        if (isFrameAt(data, position, limit, first)) return position;
+        for (int candidate = position + 1; candidate + 4 <= limit; candidate++) {
+            if (!isFrameAt(data, candidate, limit, first)) continue;
+            int next = candidate + frameLength(data.getInt(candidate));
+            if (next == limit || isFrameAt(data, next, limit, first == 0 ? data.getInt(candidate) : first)) return candidate;
+        }
+        return -1;
+    }
+
+    private static boolean isFrameAt(MappedByteBuffer data, int position, int limit, int first) {
+        if (position + 4 > limit) return false;
+        int header = data.getInt(position);
+        if (!isValidHeader(header)) return false;
+        // Version, layer and sample rate never change within a stream
+        if (first != 0 && (header & 0xFFFE0C00) != (first & 0xFFFE0C00)) return false;
+        return position + frameLength(header) <= limit;
+    }
+
+    private static boolean isValidHeader(int header) {
+        return (header >>> 21) == 0x7FF          // sync
+                && ((header >>> 19) & 3) != 1    // version
+                && ((header >>> 17) & 3) != 0    // layer
+                && ((header >>> 12) & 15) != 0   // free format bit rates are not supported
+                && ((header >>> 12) & 15) != 15  // bad bit rate
+                && ((header >>> 10) & 3) != 3;   // sample rate
+    }
+
+    /**
+     * @return The length in bytes of the frame with this header, including the header
+     */
+    private static int frameLength(int header) {
+        int version = (header >>> 19) & 3;
+        int layer = 4 - ((header >>> 17) & 3);
+        int bitrate = BITRATES_KBPS[version == 3 ? layer - 1 : layer == 1 ? 3 : 4][(header >>> 12) & 15] * 1000;
+        int sampleRate = SAMPLE_RATES[version][(header >>> 10) & 3];
+        int padding = (header >>> 9) & 1;
+        if (layer == 1) return (12 * bitrate / sampleRate + padding) * 4;
+        if (layer == 3 && version != 3) return 72 * bitrate / sampleRate + padding;
+        return 144 * bitrate / sampleRate + padding;
+    }
+
+    /**
+     * Layer III frames can borrow up to 511 bytes (255 for MPEG-2) from the frames before them. Enough frames to
+     * cover that at the smallest frame size in the file are primed, plus one for the overlap between frames.
+     * Layers I and II only need the overlap.
+     */
+    private static int primingFrames(int version, int layer, int minFrameBytes) {
+        if (layer != 3) return 1;
+        int reservoirBytes = version == 3 ? 511 : 255;
+        // Leave out the header and side information, which never hold borrowed audio
+        int audioBytes = Math.max(1, minFrameBytes - (version == 3 ? 36 : 21));
+        return Math.min(MAX_PRIMING_FRAMES, (reservoirBytes + audioBytes - 1) / audioBytes + 1);
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The frame indexes of every MP3 in a folder, saved in one file beside the loop configurations so each track
+ * is only scanned once. A track changed on disk since it was scanned is scanned again.
+ * <p>
+ * Only used from the EDT.
+ */
+public class Mp3FrameIndexStore {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(Mp3FrameIndexStore.class.getName());
+    private static final String STORE_FILE_NAME = "groovebuddy_frames.idx";
+    private static final int MAGIC = 0x47424658; // "GBFX"
+
+    /**
+     * An index, along with the file state it was built from
+     */
+    private record Entry(Mp3FrameIndex index, long lastModified, long length) {
+    }
+
+    private final File folder;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * @param folder The folder the tracks are in, or null for a store that is never saved
+     */
+    public Mp3FrameIndexStore(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Reads the indexes saved in a folder.
+     *
+     * @param folder The folder holding the audio files
+     * @return The saved indexes, or an empty store if there are none or they cannot be read
+     */
+    public static Mp3FrameIndexStore load(File folder) {
+        Mp3FrameIndexStore store = new Mp3FrameIndexStore(folder);
+        File storeFile = new File(folder, STORE_FILE_NAME);
+        if (!storeFile.exists()) return store;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a frame index file");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long lastModified = in.readLong();
+                long length = in.readLong();
+                store.entries.put(name, new Entry(Mp3FrameIndex.read(in), lastModified, length));
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the frame indexes, tracks will be scanned again", e);
+            store.entries.clear();
+        }
+        return store;
+    }
+
+    /**
+     * Writes the store to its folder, replacing what was there.
+     */
+    public void save() {
+        if (folder == null) return;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(new File(folder, STORE_FILE_NAME))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().lastModified());
+                out.writeLong(entry.getValue().length());
+                entry.getValue().index().write(out);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error saving the frame indexes", e);
+        }
+    }
+
+    /**
+     * @param file An MP3 file in the folder
+     * @return Its index, or null if it has not been scanned since it last changed
+     */
+    public Mp3FrameIndex get(File file) {
+        Entry entry = entries.get(file.getName());
+        if (entry == null || entry.lastModified() != file.lastModified() || entry.length() != file.length()) return null;
+        return entry.index();
+    }
+
+    /**
+     * Records an index.
+     *
+     * @param file  The MP3 file that was scanned
+     * @param index Its frame index
+     */
+    public void put(File file, Mp3FrameIndex index) {
+        entries.put(file.getName(), new Entry(index, file.lastModified(), file.length()));
+    }
+}
@@ -1,7 +1,16 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * MusicLooperGUI sets up the main graphical user interface for the music looper application.
@@ -9,6 +18,10 @@ import java.io.File;
  * This initial version focuses only on the layout and component placement.
  */
 public class MusicLooperGUI {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(MusicLooperGUI.class.getName());
+    // Where the ambient beds offered in the Ambience window are kept
+    private static final File AMBIENCE_FOLDER = new File("resources/ambience");
 
     // --- UI Components ---
     private JFrame frmFoundation;
@@ -16,27 +29,52 @@ public class MusicLooperGUI {
     private JLabel lblStartTime;
     private JLabel lblEndTime;
     private JSlider sldrTimelineSlider;
+    private JSlider sldrTempo;
+    private JLabel lblTempo;
+    private JSlider sldrVolume;
+    private JLabel lblVolume;
+    private JCheckBox chkNormalise, chkLimiter;
     private JButton btnPlay, btnPause, btnStop, btnClear, btnClearAll;
     private JTextField txtLoopStart, txtLoopEnd, txtLoopCount;
     private JButton btnSetLoopStart, btnSetLoopEnd;
     private JCheckBox chkEnableLoop, chkInfiniteLoop;
     private JList<File> fileList;
-    private DefaultListModel<File> fileListModel;
+    private FileListModel fileListModel;
+    private JTextField txtSearch;
     private JButton btnOpenFolder;
+    private JButton btnLoadStems;
+    private JDialog dlgStemMixer;
+    private JCheckBox chkRemoteControl;
+    private JButton btnOutput;
+    private JButton btnEffects;
+    private JButton btnAmbience;
+    private JList<File> sceneList;
+    private DefaultListModel<File> sceneListModel;
+    private JButton btnQueueScene, btnTransition, btnClearScenes;
+    private JCheckBox chkCrossfade;
 
     // --- Backend Service ---
     private AudioService audioService;
+    private RemoteControlServer remoteControlServer;
 
     // --- State Flags ---
     private boolean boolIsUserDragging = false;
     private boolean updatingUI = false;
+    // -- Scene effects, kept here so the Effects window reopens as it was left --
+    private EffectChain.Preset effectPreset = EffectChain.Preset.NONE;
+    private EffectChain.Settings effectSettings = EffectChain.Settings.DRY;
+    // Set while the search reshuffles the file list, so the selection moving with it does not reload the track
+    private boolean isFiltering = false;
+    // The saved session being restored, until its track has loaded
+    private WorkspaceStore.Workspace pendingRestore;
+    private long restoreStartNanos;
 
     /**
      * Initializes the main frame and all its UI components.
      */
     public void initUI() {
         // We need to create the model here so we can pass it to the service
-        fileListModel = new DefaultListModel<>();
+        fileListModel = new FileListModel();
 
         // Create the instance of our audio engine, passing it the new components.
         this.audioService = new AudioService(
@@ -45,7 +83,7 @@ public class MusicLooperGUI {
                 currentMicroseconds -> { // The time update callback
                     if (!boolIsUserDragging) {
                         sldrTimelineSlider.setValue((int) (currentMicroseconds / 1_000_000));
-                        lblStartTime.setText(audioService.formatTime(currentMicroseconds));
+                        lblStartTime.setText(AudioService.formatTime(currentMicroseconds));
                     }
                 },
                 this::getCurrentConfigFromUI, // The config provider
@@ -55,6 +93,14 @@ public class MusicLooperGUI {
 
         frmFoundation = new JFrame("Groove Buddy - Music Looper");
         frmFoundation.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frmFoundation.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                if (remoteControlServer != null) remoteControlServer.stop();
+                audioService.saveWorkspace();
+                audioService.logSchedulerStats();
+            }
+        });
         frmFoundation.setLayout(new BorderLayout());
 
         JPanel mainControlPanel = new JPanel(new BorderLayout(Constants.GB_HGAP_SPACING, Constants.GB_HGAP_SPACING));
@@ -75,6 +121,7 @@ public class MusicLooperGUI {
         frmFoundation.setLocationRelativeTo(null);
         frmFoundation.setVisible(true);
         frmFoundation.setResizable(true);
+        restoreWorkspace();
     }
 
     // --- Creators ---
@@ -87,34 +134,366 @@ public class MusicLooperGUI {
 
         btnOpenFolder = new JButton("Open Folder");
         // Button now calls the service's method.
-        btnOpenFolder.addActionListener(e -> audioService.openFolder());
-        pnlFileBrowser.add(btnOpenFolder, BorderLayout.NORTH);
+        btnOpenFolder.addActionListener(e -> {
+            txtSearch.setText("");
+            audioService.openFolder();
+        });
+
+        txtSearch = new JTextField();
+        txtSearch.setToolTipText("Type to narrow the list. Enter loads the first match, Escape clears");
+        txtSearch.getDocument().addDocumentListener((SimpleDocumentListener) e -> filterFiles());
+        txtSearch.addActionListener(e -> {
+            if (fileList.isSelectionEmpty() && fileListModel.getSize() > 0) fileList.setSelectedIndex(0);
+        });
+        txtSearch.getInputMap().put(KeyStroke.getKeyStroke("ESCAPE"), "clearSearch");
+        txtSearch.getActionMap().put("clearSearch", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                txtSearch.setText("");
+            }
+        });
+        txtSearch.getInputMap().put(KeyStroke.getKeyStroke("DOWN"), "focusList");
+        txtSearch.getActionMap().put("focusList", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                fileList.requestFocusInWindow();
+            }
+        });
+
+        JPanel pnlFileHeader = new JPanel(new BorderLayout(0, Constants.GB_VGAP_SPACING));
+        pnlFileHeader.add(btnOpenFolder, BorderLayout.NORTH);
+        pnlFileHeader.add(new JLabel("Search:"), BorderLayout.WEST);
+        pnlFileHeader.add(txtSearch, BorderLayout.CENTER);
+        pnlFileBrowser.add(pnlFileHeader, BorderLayout.NORTH);
 
         // The fileListModel is now created in initUI and passed to the service.
         // The service is responsible for adding/removing files.
         fileList = new JList<>(fileListModel);
         fileList.setCellRenderer(new FileNameRenderer());
+        // Every row is the same size, so the list never measures its rows, only draws the ones in view
+        fileList.setPrototypeCellValue(new File(Constants.GB_FILE_LIST_PROTOTYPE_NAME));
         fileList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
+            if (isFiltering) return;
+            // Several selected files are the makings of a stem set, which loads from its own button
+            if (!e.getValueIsAdjusting() && fileList.getSelectedIndices().length == 1) {
                 File selectedFile = fileList.getSelectedValue();
                 if (selectedFile != null) {
-                    AudioService.AudioDetails details = audioService.loadFile(selectedFile);
-                    if (details != null) {
-                        updateUIWithAudioDetails(selectedFile.getName(), details);
-                    } else {
-                        JOptionPane.showMessageDialog(frmFoundation, "Could not load the selected audio file.", "Audio Load Error", JOptionPane.ERROR_MESSAGE);
-                        setPlaybackButtonsEnabled(false);
-                        setLoopControlsEnabled(false);
-                    }
+                    closeStemMixer();
+                    lblStatusLabel.setText("Loading: " + selectedFile.getName());
+                    audioService.loadFile(selectedFile, details -> {
+                        if (details != null) {
+                            updateUIWithAudioDetails(selectedFile.getName(), details);
+                            if (pendingRestore != null && selectedFile.equals(pendingRestore.selectedTrack())) finishRestore();
+                            pendingRestore = null;
+                        } else {
+                            pendingRestore = null;
+                            JOptionPane.showMessageDialog(frmFoundation, "Could not load the selected audio file.", "Audio Load Error", JOptionPane.ERROR_MESSAGE);
+                            setPlaybackButtonsEnabled(false);
+                            setLoopControlsEnabled(false);
+                        }
+                    });
+                    audioService.prefetch(neighboursOf(fileList.getSelectedIndex()));
                 }
             }
         });
         JScrollPane scrollPane = new JScrollPane(fileList);
         pnlFileBrowser.add(scrollPane, BorderLayout.CENTER);
+
+        btnLoadStems = new JButton("Load as Stems");
+        btnLoadStems.setToolTipText("Play the selected tracks layered together (Ctrl/Cmd-click to select several)");
+        btnLoadStems.addActionListener(e -> loadSelectedAsStems());
+
+        JPanel pnlFileActions = new JPanel(new BorderLayout(0, Constants.GB_VGAP_SPACING));
+        pnlFileActions.add(btnLoadStems, BorderLayout.NORTH);
+        pnlFileActions.add(createScenePanel(), BorderLayout.CENTER);
+        pnlFileBrowser.add(pnlFileActions, BorderLayout.SOUTH);
         pnlFileBrowser.setPreferredSize(Constants.GB_FILEBROWSER_DIMENSION);
         return pnlFileBrowser;
     }
 
+    /**
+     * Creates the scene queue: tracks lined up to follow the current one, each handed off to at the end of
+     * the current loop pass.
+     *
+     * @return A JPanel with the queue and its buttons
+     */
+    private JPanel createScenePanel() {
+        JPanel pnlScenes = new JPanel(new BorderLayout(0, Constants.GB_VGAP_SPACING));
+        pnlScenes.setBorder(BorderFactory.createTitledBorder("Scene Queue"));
+
+        sceneListModel = new DefaultListModel<>();
+        sceneList = new JList<>(sceneListModel);
+        sceneList.setCellRenderer(new FileNameRenderer());
+        sceneList.setVisibleRowCount(Constants.GB_SCENE_LIST_ROWS);
+        pnlScenes.add(new JScrollPane(sceneList), BorderLayout.CENTER);
+
+        btnQueueScene = new JButton("Queue");
+        btnQueueScene.setToolTipText("Add the selected tracks to the end of the scene queue");
+        btnQueueScene.addActionListener(e -> {
+            for (File file : fileList.getSelectedValuesList()) {
+                audioService.queueScene(file);
+                sceneListModel.addElement(file);
+            }
+        });
+        btnTransition = new JButton("Next");
+        btnTransition.setToolTipText("Finish the current loop pass, then hand off to the next scene");
+        btnTransition.addActionListener(e -> transitionToNextScene());
+        btnClearScenes = new JButton("Clear");
+        btnClearScenes.setToolTipText("Empty the scene queue");
+        btnClearScenes.addActionListener(e -> {
+            audioService.clearScenes();
+            sceneListModel.clear();
+        });
+        chkCrossfade = new JCheckBox("Crossfade");
+        chkCrossfade.setToolTipText("Overlap the two scenes instead of cutting straight from one to the other");
+
+        JPanel pnlSceneButtons = new JPanel(new GridLayout(2, 2, Constants.GB_VGAP_SPACING, Constants.GB_VGAP_SPACING));
+        pnlSceneButtons.add(btnQueueScene);
+        pnlSceneButtons.add(btnTransition);
+        pnlSceneButtons.add(btnClearScenes);
+        pnlSceneButtons.add(chkCrossfade);
+        pnlScenes.add(pnlSceneButtons, BorderLayout.SOUTH);
+        return pnlScenes;
+    }
+
+    /**
+     * Opens a small mixer window with one gain slider per stem.
+     *
+     * @param stemFiles The stems, in the order they were loaded
+     */
+    private void showStemMixer(List<File> stemFiles) {
+        closeStemMixer();
+        dlgStemMixer = new JDialog(frmFoundation, "Stem Mixer", false);
+        JPanel pnlStems = new JPanel(new GridLayout(1, stemFiles.size(), Constants.GB_HGAP_SPACING, 0));
+        pnlStems.setBorder(Constants.GB_CONTROLCONTAINER_BORDER);
+
+        for (int i = 0; i < stemFiles.size(); i++) {
+            int stemIndex = i;
+            JSlider sldrGain = new JSlider(JSlider.VERTICAL, 0, 100, 100);
+            sldrGain.addChangeListener(e -> audioService.setStemGain(stemIndex, sldrGain.getValue() / 100f));
+
+            JPanel pnlStem = new JPanel(new BorderLayout(0, Constants.GB_VGAP_SPACING));
+            pnlStem.add(sldrGain, BorderLayout.CENTER);
+            pnlStem.add(new JLabel(stemFiles.get(i).getName(), SwingConstants.CENTER), BorderLayout.SOUTH);
+            pnlStems.add(pnlStem);
+        }
+
+        dlgStemMixer.add(pnlStems);
+        dlgStemMixer.pack();
+        dlgStemMixer.setLocationRelativeTo(frmFoundation);
+        dlgStemMixer.setVisible(true);
+    }
+
+    /**
+     * Opens the output settings: which device to play on and how much to buffer, with the measured latency and
+     * underrun count kept up to date while it is open.
+     */
+    private void showOutputDialog() {
+        JDialog dlgOutput = new JDialog(frmFoundation, "Audio Output", false);
+        JPanel pnlOutput = new JPanel(new GridBagLayout());
+        pnlOutput.setBorder(Constants.GB_CONTROLCONTAINER_BORDER);
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS);
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        String defaultDevice = "System default";
+        JComboBox<String> cmbDevice = new JComboBox<>();
+        cmbDevice.addItem(defaultDevice);
+        for (String device : audioService.getOutputDevices()) cmbDevice.addItem(device);
+        JComboBox<AudioOutput.Preset> cmbPreset = new JComboBox<>(AudioOutput.Preset.values());
+        AudioOutput.Settings current = audioService.getOutputSettings();
+        cmbDevice.setSelectedItem(current.deviceName() == null ? defaultDevice : current.deviceName());
+        cmbPreset.setSelectedItem(current.preset());
+        JLabel lblOutputStats = new JLabel(" ");
+
+        JButton btnApply = new JButton("Apply");
+        btnApply.addActionListener(e -> {
+            String device = (String) cmbDevice.getSelectedItem();
+            AudioOutput.Settings settings = new AudioOutput.Settings(defaultDevice.equals(device) ? null : device,
+                    (AudioOutput.Preset) cmbPreset.getSelectedItem());
+            if (!audioService.setOutputSettings(settings)) {
+                JOptionPane.showMessageDialog(dlgOutput, "Could not open " + device + ".", "Audio Output", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        pnlOutput.add(new JLabel("Device:"), gbc);
+        gbc.gridx = 1;
+        pnlOutput.add(cmbDevice, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        pnlOutput.add(new JLabel("Preset:"), gbc);
+        gbc.gridx = 1;
+        pnlOutput.add(cmbPreset, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.gridwidth = 2;
+        pnlOutput.add(lblOutputStats, gbc);
+        gbc.gridy = 3;
+        gbc.fill = GridBagConstraints.NONE;
+        gbc.anchor = GridBagConstraints.EAST;
+        pnlOutput.add(btnApply, gbc);
+
+        Timer tmrOutputStats = new Timer(Constants.GB_OUTPUT_STATS_INTERVAL_MS, e -> lblOutputStats.setText(describeOutput(audioService.getOutputStats())));
+        tmrOutputStats.setInitialDelay(0);
+        tmrOutputStats.start();
+        dlgOutput.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                tmrOutputStats.stop();
+            }
+        });
+        dlgOutput.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dlgOutput.add(pnlOutput);
+        dlgOutput.pack();
+        dlgOutput.setLocationRelativeTo(frmFoundation);
+        dlgOutput.setVisible(true);
+    }
+
+    /**
+     * Opens the scene effects: a preset for where the music is heard from, and sliders to adjust it live.
+     * Every change glides in on the audio thread, so the sliders can be moved while the track plays.
+     */
+    private void showEffectsDialog() {
+        JDialog dlgEffects = new JDialog(frmFoundation, "Scene Effects", false);
+        JPanel pnlEffects = new JPanel(new GridBagLayout());
+        pnlEffects.setBorder(Constants.GB_CONTROLCONTAINER_BORDER);
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS);
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        JComboBox<EffectChain.Preset> cmbEffectPreset = new JComboBox<>(EffectChain.Preset.values());
+        cmbEffectPreset.setSelectedItem(effectPreset);
+        JSlider sldrMuffle = new JSlider(0, 100, toMuffle(effectSettings.lowPassHz()));
+        sldrMuffle.setToolTipText("Cuts the high frequencies, as if heard through a wall");
+        JSlider sldrEcho = new JSlider(0, 100, (int) Math.round(effectSettings.delayMix() * 100));
+        JSlider sldrReverb = new JSlider(0, 100, (int) Math.round(effectSettings.reverbMix() * 100));
+
+        Runnable applySliders = () -> {
+            if (updatingUI) return;
+            effectSettings = effectSettings.withLowPassHz(fromMuffle(sldrMuffle.getValue()))
+                    .withDelayMix(sldrEcho.getValue() / 100.0)
+                    .withReverbMix(sldrReverb.getValue() / 100.0);
+            audioService.setEffects(effectSettings);
+        };
+        sldrMuffle.addChangeListener(e -> applySliders.run());
+        sldrEcho.addChangeListener(e -> applySliders.run());
+        sldrReverb.addChangeListener(e -> applySliders.run());
+        cmbEffectPreset.addActionListener(e -> {
+            effectPreset = (EffectChain.Preset) cmbEffectPreset.getSelectedItem();
+            effectSettings = effectPreset.getSettings();
+            audioService.setEffects(effectSettings);
+            updatingUI = true;
+            sldrMuffle.setValue(toMuffle(effectSettings.lowPassHz()));
+            sldrEcho.setValue((int) Math.round(effectSettings.delayMix() * 100));
+            sldrReverb.setValue((int) Math.round(effectSettings.reverbMix() * 100));
+            updatingUI = false;
+        });
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        pnlEffects.add(new JLabel("Preset:"), gbc);
+        gbc.gridx = 1;
+        pnlEffects.add(cmbEffectPreset, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        pnlEffects.add(new JLabel("Muffle:"), gbc);
+        gbc.gridx = 1;
+        pnlEffects.add(sldrMuffle, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        pnlEffects.add(new JLabel("Echo:"), gbc);
+        gbc.gridx = 1;
+        pnlEffects.add(sldrEcho, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        pnlEffects.add(new JLabel("Reverb:"), gbc);
+        gbc.gridx = 1;
+        pnlEffects.add(sldrReverb, gbc);
+
+        dlgEffects.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dlgEffects.add(pnlEffects);
+        dlgEffects.pack();
+        dlgEffects.setLocationRelativeTo(frmFoundation);
+        dlgEffects.setVisible(true);
+    }
+
+    /**
+     * Opens the ambient beds: pick one of the beds in {@link #AMBIENCE_FOLDER}, or any other bed file, and start
+     * or stop it. The bed keeps playing when the window is closed.
+     */
+    private void showAmbienceDialog() {
+        JDialog dlgAmbience = new JDialog(frmFoundation, "Ambience", false);
+        JPanel pnlAmbience = new JPanel(new BorderLayout(Constants.GB_HGAP_SPACING, Constants.GB_VGAP_SPACING));
+        pnlAmbience.setBorder(Constants.GB_CONTROLCONTAINER_BORDER);
+
+        JComboBox<File> cmbBed = new JComboBox<>();
+        File[] beds = AMBIENCE_FOLDER.listFiles((folder, name) -> name.toLowerCase().endsWith(".txt"));
+        if (beds != null) {
+            Arrays.sort(beds);
+            for (File bed : beds) cmbBed.addItem(bed);
+        }
+        cmbBed.setRenderer(new FileNameRenderer());
+        JLabel lblAmbienceStatus = new JLabel("Pick a bed and press Start. Its sounds go beside the bed file.");
+
+        JButton btnBrowseBed = new JButton("Browse...");
+        btnBrowseBed.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser(AMBIENCE_FOLDER);
+            if (chooser.showOpenDialog(dlgAmbience) != JFileChooser.APPROVE_OPTION) return;
+            cmbBed.addItem(chooser.getSelectedFile());
+            cmbBed.setSelectedItem(chooser.getSelectedFile());
+        });
+        JButton btnStartAmbience = new JButton("Start");
+        btnStartAmbience.addActionListener(e -> {
+            File bed = (File) cmbBed.getSelectedItem();
+            if (bed == null) return;
+            lblAmbienceStatus.setText("Loading " + bed.getName() + "...");
+            audioService.startAmbience(bed, lblAmbienceStatus::setText);
+        });
+        JButton btnStopAmbience = new JButton("Stop");
+        btnStopAmbience.addActionListener(e -> {
+            audioService.stopAmbience();
+            lblAmbienceStatus.setText("Stopped.");
+        });
+
+        JPanel pnlBedChoice = new JPanel(new BorderLayout(Constants.GB_HGAP_SPACING, 0));
+        pnlBedChoice.add(cmbBed, BorderLayout.CENTER);
+        pnlBedChoice.add(btnBrowseBed, BorderLayout.EAST);
+        JPanel pnlAmbienceButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, Constants.GB_HGAP_SPACING, 0));
+        pnlAmbienceButtons.add(btnStartAmbience);
+        pnlAmbienceButtons.add(btnStopAmbience);
+        pnlAmbience.add(pnlBedChoice, BorderLayout.NORTH);
+        pnlAmbience.add(lblAmbienceStatus, BorderLayout.CENTER);
+        pnlAmbience.add(pnlAmbienceButtons, BorderLayout.SOUTH);
+
+        dlgAmbience.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dlgAmbience.add(pnlAmbience);
+        dlgAmbience.pack();
+        dlgAmbience.setLocationRelativeTo(frmFoundation);
+        dlgAmbience.setVisible(true);
+    }
+
+    /**
+     * The Muffle slider sweeps the low-pass cutoff from fully open at 0 down to 200 Hz at 100, evenly in octaves.
+     */
+    private static double fromMuffle(int muffle) {
+        return EffectChain.OPEN_LOW_PASS_HZ * Math.pow(200 / EffectChain.OPEN_LOW_PASS_HZ, muffle / 100.0);
+    }
+
+    private static int toMuffle(double lowPassHz) {
+        double hz = Math.min(lowPassHz, EffectChain.OPEN_LOW_PASS_HZ);
+        return (int) Math.round(100 * Math.log(hz / EffectChain.OPEN_LOW_PASS_HZ) / Math.log(200 / EffectChain.OPEN_LOW_PASS_HZ));
+    }
+
+    private static String describeOutput(AudioOutput.Stats stats) {
+        if (!stats.isOpen()) return "Not playing yet. Load a track to measure the output.";
+        return String.format("Latency %.1f ms  |  Buffer %,d frames  |  Underruns %,d", stats.latencyMillis(),
+                stats.bufferFrames(), stats.underruns());
+    }
+
     /**
      * Creates the panel containing the Play, Pause, and Stop buttons.
      *
@@ -141,9 +520,89 @@ public class MusicLooperGUI {
         pnlButtonContainer.add(btnPlay);
         pnlButtonContainer.add(btnPause);
         pnlButtonContainer.add(btnStop);
+        pnlButtonContainer.add(createTempoPanel());
+        pnlButtonContainer.add(createVolumePanel());
+
+        chkRemoteControl = new JCheckBox("Remote");
+        chkRemoteControl.setToolTipText("Control playback from a phone or tablet on the same network");
+        chkRemoteControl.addActionListener(e -> setRemoteControlEnabled(chkRemoteControl.isSelected()));
+        pnlButtonContainer.add(chkRemoteControl);
+
+        btnOutput = new JButton("Output");
+        btnOutput.setToolTipText("Choose the output device and latency, and see how the output is doing");
+        btnOutput.addActionListener(e -> showOutputDialog());
+        pnlButtonContainer.add(btnOutput);
+
+        btnEffects = new JButton("Effects");
+        btnEffects.setToolTipText("Make the music sound like it is behind a door, in a cavern, and so on");
+        btnEffects.addActionListener(e -> showEffectsDialog());
+        pnlButtonContainer.add(btnEffects);
+
+        btnAmbience = new JButton("Ambience");
+        btnAmbience.setToolTipText("Play thunder, footsteps and other sounds at random under the music");
+        btnAmbience.addActionListener(e -> showAmbienceDialog());
+        pnlButtonContainer.add(btnAmbience);
         return pnlButtonContainer;
     }
 
+    /**
+     * Creates the tempo slider, which changes playback speed live without changing pitch.
+     * Double-clicking the slider snaps it back to 100%.
+     *
+     * @return A JPanel with the tempo slider and its readout
+     */
+    private JPanel createTempoPanel() {
+        JPanel pnlTempo = new JPanel(new FlowLayout(FlowLayout.CENTER, Constants.GB_VGAP_SPACING, 0));
+        lblTempo = new JLabel("100%");
+        sldrTempo = new JSlider(Constants.GB_TEMPO_MIN_PERCENT, Constants.GB_TEMPO_MAX_PERCENT, 100);
+        sldrTempo.setToolTipText("Tempo (double-click to reset)");
+        sldrTempo.addChangeListener(e -> {
+            lblTempo.setText(sldrTempo.getValue() + "%");
+            audioService.setTempo(sldrTempo.getValue() / 100.0);
+        });
+        sldrTempo.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                if (e.getClickCount() == 2) sldrTempo.setValue(100);
+            }
+        });
+        pnlTempo.add(new JLabel("Tempo:"));
+        pnlTempo.add(sldrTempo);
+        pnlTempo.add(lblTempo);
+        return pnlTempo;
+    }
+
+    /**
+     * Creates the volume slider, along with the switches for loudness normalisation and the output limiter.
+     *
+     * @return A JPanel with the volume controls
+     */
+    private JPanel createVolumePanel() {
+        JPanel pnlVolume = new JPanel(new FlowLayout(FlowLayout.CENTER, Constants.GB_VGAP_SPACING, 0));
+        lblVolume = new JLabel("100%");
+        sldrVolume = new JSlider(0, 100, 100);
+        sldrVolume.setToolTipText("Volume");
+        sldrVolume.addChangeListener(e -> {
+            lblVolume.setText(sldrVolume.getValue() + "%");
+            // Squared, so the slider feels even to the ear rather than bunching all the change at the bottom
+            float position = sldrVolume.getValue() / 100f;
+            audioService.setVolume(position * position);
+        });
+        chkNormalise = new JCheckBox("Normalise", true);
+        chkNormalise.setToolTipText("Play every track at the same loudness, once it has been measured");
+        chkNormalise.addActionListener(e -> audioService.setNormalising(chkNormalise.isSelected()));
+        chkLimiter = new JCheckBox("Limiter");
+        chkLimiter.setToolTipText("Stop loud peaks from clipping, so quiet tracks can be turned up fully");
+        chkLimiter.addActionListener(e -> audioService.setLimiterEnabled(chkLimiter.isSelected()));
+
+        pnlVolume.add(new JLabel("Volume:"));
+        pnlVolume.add(sldrVolume);
+        pnlVolume.add(lblVolume);
+        pnlVolume.add(chkNormalise);
+        pnlVolume.add(chkLimiter);
+        return pnlVolume;
+    }
+
     /**
      * Creates the panel for the audio timeline, including the slider and time labels.
      *
@@ -163,13 +622,13 @@ public class MusicLooperGUI {
             @Override
             public void mouseReleased(java.awt.event.MouseEvent e) {
                 audioService.seek(sldrTimelineSlider.getValue() * 1_000_000L);
-                lblStartTime.setText(audioService.formatTime(audioService.getCurrentMicroseconds()));
+                lblStartTime.setText(AudioService.formatTime(sldrTimelineSlider.getValue() * 1_000_000L));
                 boolIsUserDragging = false;
             }
         });
         sldrTimelineSlider.addChangeListener(e -> {
             if (boolIsUserDragging) {
-                lblStartTime.setText(audioService.formatTime(sldrTimelineSlider.getValue() * 1_000_000L));
+                lblStartTime.setText(AudioService.formatTime(sldrTimelineSlider.getValue() * 1_000_000L));
             }
         });
         pnlTimeline.add(lblStartTime, BorderLayout.WEST);
@@ -259,13 +718,201 @@ public class MusicLooperGUI {
     }
 
 
+    // --- Loaders ---
+    /**
+     * Loads every selected file as one stem set, and opens the mixer for it.
+     */
+    private void loadSelectedAsStems() {
+        List<File> stemFiles = fileList.getSelectedValuesList();
+        if (stemFiles.size() < 2) {
+            JOptionPane.showMessageDialog(frmFoundation, "Select two or more tracks (Ctrl/Cmd-click) to load them as stems.",
+                    "Load as Stems", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        lblStatusLabel.setText("Loading: " + stemFiles.size() + " stems");
+        audioService.loadStemSet(stemFiles, details -> {
+            if (details != null) {
+                updateUIWithAudioDetails(stemFiles.size() + " stems", details);
+                showStemMixer(stemFiles);
+            } else {
+                JOptionPane.showMessageDialog(frmFoundation, "Could not load the stems. They must share a length.",
+                        "Audio Load Error", JOptionPane.ERROR_MESSAGE);
+                setPlaybackButtonsEnabled(false);
+                setLoopControlsEnabled(false);
+            }
+        });
+    }
+
+    /**
+     * Moves on to the first scene in the queue, gaplessly or with a crossfade.
+     */
+    private void transitionToNextScene() {
+        if (sceneListModel.isEmpty()) return;
+        File nextScene = sceneListModel.remove(0);
+        lblStatusLabel.setText("Next scene: " + nextScene.getName());
+        audioService.transitionToNextScene(chkCrossfade.isSelected(), chkEnableLoop.isSelected(), details -> {
+            if (details != null) {
+                closeStemMixer();
+                showSceneDetails(nextScene.getName(), details);
+            } else {
+                JOptionPane.showMessageDialog(frmFoundation, "Could not load the next scene.", "Audio Load Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    /**
+     * Picks up where the last session left off: reopens its folder and reselects its track, which loads from
+     * the mapped cache rather than being decoded. The playhead and loop switch follow once the track is in.
+     */
+    private void restoreWorkspace() {
+        restoreStartNanos = System.nanoTime();
+        WorkspaceStore.Workspace workspace = audioService.restoreWorkspace();
+        if (workspace == null) return;
+
+        sldrTempo.setValue(workspace.tempoPercent());
+        int index = workspace.selectedTrack() == null ? -1 : fileListModel.indexOf(workspace.selectedTrack());
+        if (index < 0) {
+            lblStatusLabel.setText("Reopened: " + workspace.folder().getName());
+            return;
+        }
+        pendingRestore = workspace;
+        fileList.setSelectedIndex(index);
+        fileList.ensureIndexIsVisible(index);
+    }
+
+    /**
+     * Puts the restored track back where it was, once it has loaded.
+     */
+    private void finishRestore() {
+        long playhead = pendingRestore.playheadMicroseconds();
+        chkEnableLoop.setSelected(pendingRestore.isLoopEnabled());
+        audioService.seek(playhead);
+        sldrTimelineSlider.setValue((int) (playhead / 1_000_000));
+        lblStartTime.setText(AudioService.formatTime(playhead));
+
+        long elapsedMillis = (System.nanoTime() - restoreStartNanos) / 1_000_000;
+        lblStatusLabel.setText("Restored: " + pendingRestore.selectedTrack().getName() + " (" + elapsedMillis + " ms)");
+        LOGGER.log(Level.INFO, "Restored the last session in {0} ms", elapsedMillis);
+    }
+
+    /**
+     * Narrows the file list to the search, keeping the selected tracks selected where they still match.
+     */
+    private void filterFiles() {
+        List<File> selected = fileList.getSelectedValuesList();
+        isFiltering = true;
+        try {
+            fileListModel.setFilter(txtSearch.getText());
+            fileList.clearSelection();
+            for (File file : selected) {
+                int index = fileListModel.indexOf(file);
+                if (index >= 0) fileList.addSelectionInterval(index, index);
+            }
+        } finally {
+            isFiltering = false;
+        }
+        int first = fileList.getMinSelectionIndex();
+        fileList.ensureIndexIsVisible(Math.max(0, first));
+    }
+
+    /**
+     * Finds the tracks either side of a list entry, the ones most likely to be picked next.
+     *
+     * @param index The selected entry
+     * @return The entry below, then the entry above, where they exist
+     */
+    private List<File> neighboursOf(int index) {
+        List<File> neighbours = new ArrayList<>();
+        if (index + 1 < fileListModel.getSize()) neighbours.add(fileListModel.getElementAt(index + 1));
+        if (index - 1 >= 0) neighbours.add(fileListModel.getElementAt(index - 1));
+        return neighbours;
+    }
+
+    /**
+     * Starts or stops the remote control server. Starting it shows the links to open on another device.
+     *
+     * @param enabled true to start listening, false to stop
+     */
+    private void setRemoteControlEnabled(boolean enabled) {
+        if (remoteControlServer == null) {
+            remoteControlServer = new RemoteControlServer(audioService, new RemoteControlServer.Actions() {
+                @Override
+                public void play() {
+                    audioService.play();
+                    btnPlay.setText("Resume");
+                }
+
+                @Override
+                public void pause() {
+                    audioService.pause();
+                }
+
+                @Override
+                public void stop() {
+                    audioService.stop();
+                    btnPlay.setText("Play");
+                }
+
+                @Override
+                public void seek(long microseconds) {
+                    audioService.seek(microseconds);
+                    sldrTimelineSlider.setValue((int) (microseconds / 1_000_000));
+                    lblStartTime.setText(AudioService.formatTime(microseconds));
+                }
+
+                @Override
+                public void load(int index) {
+                    List<File> tracks = fileListModel.getAllFiles();
+                    if (index < 0 || index >= tracks.size()) return;
+                    // The remote lists every track, so one hidden by the search clears it
+                    if (fileListModel.indexOf(tracks.get(index)) < 0) txtSearch.setText("");
+                    int listIndex = fileListModel.indexOf(tracks.get(index));
+                    fileList.setSelectedIndex(listIndex);
+                    fileList.ensureIndexIsVisible(listIndex);
+                }
+
+                @Override
+                public List<File> tracks() {
+                    return fileListModel.getAllFiles();
+                }
+            });
+        }
+
+        if (!enabled) {
+            remoteControlServer.stop();
+            return;
+        }
+        try {
+            remoteControlServer.start(Constants.GB_REMOTE_PORT);
+            JTextArea txtUrls = new JTextArea(String.join("\n", remoteControlServer.getPageUrls(Constants.GB_REMOTE_PORT)));
+            txtUrls.setEditable(false);
+            JOptionPane.showMessageDialog(frmFoundation, new Object[]{"Open one of these on a device on the same network:", txtUrls},
+                    "Remote Control", JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(frmFoundation, "Could not start the remote control: " + ex.getMessage(),
+                    "Remote Control", JOptionPane.ERROR_MESSAGE);
+            chkRemoteControl.setSelected(false);
+        }
+    }
+
+    /**
+     * Closes the stem mixer, if one is open.
+     */
+    private void closeStemMixer() {
+        if (dlgStemMixer != null) {
+            dlgStemMixer.dispose();
+            dlgStemMixer = null;
+        }
+    }
+
     // --- Setters ---
     /**
      * Sets the text of a target field to the current time on the timeline
      */
     private void setLoopPoint(JTextField targetField) {
         long currentTime = audioService.getCurrentMicroseconds();
-        targetField.setText(audioService.formatTime(currentTime));
+        targetField.setText(AudioService.formatTime(currentTime));
     }
 
     /**
@@ -321,7 +968,7 @@ public class MusicLooperGUI {
     private void updateUIWithAudioDetails(String fileName, AudioService.AudioDetails details) {
         long durationSeconds = details.durationMicroseconds() / 1_000_000;
         sldrTimelineSlider.setMaximum((int) durationSeconds);
-        lblEndTime.setText(audioService.formatTime(details.durationMicroseconds()));
+        lblEndTime.setText(AudioService.formatTime(details.durationMicroseconds()));
         lblStatusLabel.setText("Loaded: " + fileName);
 
         updatingUI = true;
@@ -337,6 +984,30 @@ public class MusicLooperGUI {
         setLoopControlsEnabled(true);
     }
 
+    /**
+     * Updates the UI for a scene that has just started playing, without interrupting it
+     *
+     * @param fileName The name of the scene's audio file
+     * @param details  Details such as ms length and configuration
+     */
+    private void showSceneDetails(String fileName, AudioService.AudioDetails details) {
+        sldrTimelineSlider.setMaximum((int) (details.durationMicroseconds() / 1_000_000));
+        lblEndTime.setText(AudioService.formatTime(details.durationMicroseconds()));
+        lblStatusLabel.setText("Playing scene: " + fileName);
+
+        updatingUI = true;
+        txtLoopStart.setText(details.config().loopStart);
+        txtLoopEnd.setText(details.config().loopEnd);
+        txtLoopCount.setText(String.valueOf(details.config().repeats));
+        txtLoopCount.setEnabled(!details.config().isInfinite);
+        chkInfiniteLoop.setSelected(details.config().isInfinite);
+        updatingUI = false;
+
+        btnPlay.setText("Resume");
+        setPlaybackButtonsEnabled(true);
+        setLoopControlsEnabled(true);
+    }
+
     /**
      * Gets the current loop settings from the UI fields into a LoopConfig
      *
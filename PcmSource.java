@@ -0,0 +1,31 @@
+/**
+ * A source of decoded audio that the playback engine can read from at any frame.
+ * Every source hands back interleaved stereo floats in the range -1..1, so the
+ * engine never has to care how the audio is stored.
+ */
+public interface PcmSource {
+    /**
+     * @return The number of channels the audio was decoded with
+     */
+    int channels();
+
+    /**
+     * @return The number of frames per second
+     */
+    float frameRate();
+
+    /**
+     * @return The total length of the audio in frames
+     */
+    long frameCount();
+
+    /**
+     * Copies frames into a buffer as interleaved stereo. Mono audio is written to both sides.
+     *
+     * @param frame     The first frame to read
+     * @param dst       The buffer to write into
+     * @param dstOffset The frame offset in the buffer to start writing at
+     * @param frames    The number of frames to copy
+     */
+    void read(long frame, float[] dst, int dstOffset, int frames);
+}
@@ -0,0 +1,113 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fully decoded track held in memory as 16-bit interleaved PCM.
+ */
+public class PcmTrack implements PcmSource {
+    private static final float SHORT_SCALE = 1f / 32768f;
+
+    private final short[] samples;
+    private final int channels;
+    private final float frameRate;
+    private final long frameCount;
+
+    /**
+     * @param samples   Interleaved 16-bit samples
+     * @param channels  The number of channels (1 or 2)
+     * @param frameRate The number of frames per second
+     */
+    public PcmTrack(short[] samples, int channels, float frameRate) {
+        this.samples = samples;
+        this.channels = channels;
+        this.frameRate = frameRate;
+        this.frameCount = samples.length / channels;
+    }
+
+    /**
+     * Reads an entire audio stream into memory, converting it to 16-bit signed PCM on the way.
+     *
+     * @param stream The stream to read. It is always closed, whether or not it can be read.
+     * @return The decoded track
+     * @throws IOException if the stream cannot be read or converted
+     */
+    public static PcmTrack fromStream(AudioInputStream stream) throws IOException {
+        AudioFormat source = stream.getFormat();
+        int channels = Math.min(source.getChannels(), 2);
+        AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, source.getSampleRate(),
+                16, channels, channels * 2, source.getSampleRate(), false);
+
+        try (stream; AudioInputStream pcmStream = source.matches(target) ? stream : AudioSystem.getAudioInputStream(target, stream)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            pcmStream.transferTo(bytes);
+            byte[] data = bytes.toByteArray();
+
+            short[] samples = new short[(data.length / target.getFrameSize()) * channels];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (short) ((data[i * 2] & 0xFF) | (data[i * 2 + 1] << 8));
+            }
+            return new PcmTrack(samples, channels, target.getSampleRate());
+        }
+    }
+
+    /**
+     * @return The interleaved 16-bit samples, shared rather than copied
+     */
+    short[] samples() {
+        return samples;
+    }
+
+    /**
+     * @param fromFrame The first frame to keep
+     * @param toFrame   The frame to stop before, no more than the track holds
+     * @return A copy of that part of the track
+     */
+    public PcmTrack slice(long fromFrame, long toFrame) {
+        return new PcmTrack(Arrays.copyOfRange(samples, (int) (fromFrame * channels), (int) (toFrame * channels)),
+                channels, frameRate);
+    }
+
+    /**
+     * @return Roughly how much heap the decoded samples take up
+     */
+    public long sizeInBytes() {
+        return (long) samples.length * Short.BYTES;
+    }
+
+    @Override
+    public int channels() {
+        return channels;
+    }
+
+    @Override
+    public float frameRate() {
+        return frameRate;
+    }
+
+    @Override
+    public long frameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public void read(long frame, float[] dst, int dstOffset, int frames) {
+        int out = dstOffset * 2;
+        if (channels == 2) {
+            int in = (int) (frame * 2);
+            for (int i = 0; i < frames * 2; i++) {
+                dst[out + i] = samples[in + i] * SHORT_SCALE;
+            }
+        } else {
+            int in = (int) frame;
+            for (int i = 0; i < frames; i++) {
+                float sample = samples[in + i] * SHORT_SCALE;
+                dst[out++] = sample;
+                dst[out++] = sample;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Keeps the output below a ceiling by turning it down the instant a peak would cross it, then easing back up.
+ * <p>
+ * Both channels share one gain, so the stereo image never shifts. There is no look-ahead, so the very first
+ * sample of a sudden peak is caught by a hard gain change rather than a gentle one; normalised music rarely
+ * comes near the ceiling, so the limiter is a safety net rather than part of the sound.
+ */
+public class PeakLimiter {
+    private final float ceiling;
+    private final float releaseCoefficient;
+    private float gain = 1f;
+
+    /**
+     * @param ceilingDb      The highest level let through, in dB relative to full scale
+     * @param releaseSeconds How long the gain takes to recover most of the way after a peak
+     * @param frameRate      The rate of the audio being limited
+     */
+    public PeakLimiter(double ceilingDb, double releaseSeconds, float frameRate) {
+        this.ceiling = (float) Math.pow(10, ceilingDb / 20);
+        this.releaseCoefficient = (float) Math.exp(-1.0 / (releaseSeconds * frameRate));
+    }
+
+    /**
+     * Works out the gain for one frame.
+     *
+     * @param left  The left sample, after any other gain
+     * @param right The right sample, after any other gain
+     * @return The gain to multiply both samples by
+     */
+    public float next(float left, float right) {
+        float level = Math.max(Math.abs(left), Math.abs(right));
+        float target = level > ceiling ? ceiling / level : 1f;
+        gain = target < gain ? target : target + (gain - target) * releaseCoefficient;
+        return gain;
+    }
+
+    /**
+     * @return How far the limiter is currently turning the audio down, in dB
+     */
+    public float getReductionDb() {
+        return (float) (-20 * Math.log10(gain));
+    }
+}
@@ -0,0 +1,596 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Renders the loaded track one block at a time, jumping at loop seams on the exact frame.
+ * When the tempo is changed, the audio passes through a {@link TimeStretcher} on its way out.
+ * <p>
+ * The engine has no clock of its own: it only moves forward when something asks it to render.
+ * {@link AudioOutput} does that from a sound card thread, and {@link PlaybackSimulator} does it
+ * from a virtual clock, so both exercise exactly the same loop logic.
+ * <p>
+ * A transition to the next track can be queued while one plays. It waits for the current pass through the loop
+ * section to finish (or for the end of the track when not looping) and swaps tracks on that exact frame, either
+ * gaplessly or with an equal-power crossfade into the outgoing track's tail.
+ * <p>
+ * All of the engine's state belongs to whichever thread renders. Commands from any other thread (play, seek,
+ * load and so on) are queued and applied at the start of the next block, in the order they were sent, so a
+ * command never waits for a block to finish and never lands half way through one. After every block the
+ * engine publishes where it is into a handful of fields under a sequence lock, so rendering allocates nothing,
+ * and {@link #getSnapshot()} reads them back as an immutable {@link Snapshot} without ever holding up the render.
+ */
+public class PlaybackEngine {
+    // Commands waiting for the start of the next block
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    // -- What the engine looked like at the end of the latest block, only read by getSnapshot --
+    private final StampedLock publishLock = new StampedLock();
+    private boolean publishedIsPlaying;
+    private long publishedPositionFrames;
+    private long publishedLengthFrames;
+    private float publishedFrameRate;
+    private double publishedTempo = 1.0;
+    private long publishedSourceGeneration;
+    private boolean publishedIsTransitionPending;
+    // Hands out source generations, to loads on the calling thread and to handoffs on the rendering thread
+    private final AtomicLong generations = new AtomicLong();
+    // -- Rendering thread only --
+    private final LoopPlayhead playhead = new LoopPlayhead();
+    private PcmSource source;
+    private boolean isPlaying;
+    private boolean isPaused;
+    // -- Tempo --
+    private TimeStretcher stretcher;
+    private double tempo = 1.0;
+    // Once the tempo has moved away from 1.0, the stretcher stays in the path until the next seek or stop,
+    // because switching it out mid-stream would skip the audio it has buffered
+    private boolean isStretching;
+    private final float[] stretchInput = new float[Constants.GB_RENDER_BLOCK_FRAMES * 2];
+    // -- Callbacks, run on the rendering thread --
+    private volatile Runnable onLoopFinish = () -> {};
+    private volatile Runnable onEnd = () -> {};
+    private volatile Runnable onHandoff = () -> {};
+    private boolean loopFinishedInBlock;
+    private boolean handedOffInBlock;
+    // -- Scene transitions --
+    private Transition pendingTransition;
+    // Changes whenever a different track starts playing, by a load or a handoff
+    private long sourceGeneration;
+    // The outgoing track keeps playing from where it was handed off, fading out under the incoming one
+    private PcmSource fadeSource;
+    private long fadePositionFrames;
+    private int fadeLengthFrames;
+    private int fadeRemainingFrames;
+    private final float[] fadeBuffer = new float[Constants.GB_RENDER_BLOCK_FRAMES * 2];
+    // -- Ambient sound effects, mixed under the music whether or not it is playing --
+    private final AmbiencePlayer ambience = new AmbiencePlayer();
+    // -- Scene effects, after everything else so echoes and reverb ring on past a pause or the end of a track --
+    private final EffectChain effects = new EffectChain(Constants.GB_ENGINE_FRAME_RATE);
+    // When the latest block started rendering, so a command can be timed to the first block that carries it
+    private volatile long lastBlockStartNanos;
+
+    /**
+     * Sets the functions to call when something happens during rendering.
+     * They run on whichever thread is rendering, so they should hand off quickly.
+     *
+     * @param onLoopFinish Called when the last repeat of the loop section has played
+     * @param onEnd        Called when playback reaches the end of the track
+     */
+    public void setListeners(Runnable onLoopFinish, Runnable onEnd) {
+        this.onLoopFinish = onLoopFinish;
+        this.onEnd = onEnd;
+    }
+
+    /**
+     * Where the engine was at the end of a block. Never changes once read
+     *
+     * @param isPlaying           Whether the engine is producing audio
+     * @param positionFrames      The frame that will be rendered next
+     * @param lengthFrames        The length of the loaded track, 0 if nothing is loaded
+     * @param frameRate           The rate of the loaded track, 0 if nothing is loaded
+     * @param tempo               The playback speed, 1.0 being the original
+     * @param sourceGeneration    Changes whenever a different track starts playing, by a load or a handoff
+     * @param isTransitionPending Whether a transition is waiting for its handoff frame
+     */
+    public record Snapshot(boolean isPlaying, long positionFrames, long lengthFrames, float frameRate, double tempo,
+                           long sourceGeneration, boolean isTransitionPending) {
+        /**
+         * @return The position in microseconds, or 0 if nothing is loaded
+         */
+        public long positionMicroseconds() {
+            return toMicroseconds(positionFrames, frameRate);
+        }
+
+        /**
+         * @return The length of the loaded track in microseconds, or 0 if nothing is loaded
+         */
+        public long lengthMicroseconds() {
+            return toMicroseconds(lengthFrames, frameRate);
+        }
+    }
+
+    /**
+     * The next track to play, and how to hand over to it
+     *
+     * @param source          The decoded audio to play next
+     * @param loopEnabled     Whether the next track loops
+     * @param loopStartFrame  The first frame of the next track's loop section
+     * @param loopEndFrame    The frame at which the next track jumps back to its loop start
+     * @param repeats         How many times the next track's loop section is repeated
+     * @param isInfinite      Whether the next track's loop section repeats forever
+     * @param crossfadeFrames How long the two tracks overlap, 0 for a straight gapless cut
+     */
+    public record Transition(PcmSource source, boolean loopEnabled, long loopStartFrame, long loopEndFrame,
+                             int repeats, boolean isInfinite, int crossfadeFrames) {
+    }
+
+    /**
+     * Sets the function to call when a queued transition hands over to the next track.
+     * It runs on whichever thread is rendering, so it should hand off quickly.
+     *
+     * @param onHandoff Called once the next track has started
+     */
+    public void setHandoffListener(Runnable onHandoff) {
+        this.onHandoff = onHandoff;
+    }
+
+    // -- Commands --
+    /**
+     * Swaps in a new track, stopped at its first frame.
+     *
+     * @param newSource The decoded audio to play
+     * @return The source generation the snapshot will carry once the track is in
+     */
+    public long load(PcmSource newSource) {
+        long generation = generations.incrementAndGet();
+        submit(() -> {
+            source = newSource;
+            isPlaying = false;
+            isPaused = false;
+            pendingTransition = null;
+            fadeSource = null;
+            sourceGeneration = generation;
+            playhead.reset(newSource.frameCount());
+            if (stretcher == null || stretcher.getFrameRate() != newSource.frameRate()) {
+                stretcher = new TimeStretcher(newSource.frameRate());
+                stretcher.setTempo(tempo);
+            }
+            resetStretcher();
+        });
+        return generation;
+    }
+
+    /**
+     * Changes the playback speed without changing the pitch.
+     *
+     * @param newTempo 1.0 for the original speed, 1.2 for 20% faster, and so on
+     */
+    public void setTempo(double newTempo) {
+        double clamped = Math.max(TimeStretcher.MIN_TEMPO, Math.min(TimeStretcher.MAX_TEMPO, newTempo));
+        submit(() -> {
+            tempo = clamped;
+            if (stretcher == null) return;
+            stretcher.setTempo(tempo);
+            if (tempo != 1.0 && !isStretching) {
+                stretcher.reset();
+                isStretching = true;
+            }
+        });
+    }
+
+    /**
+     * Starts an ambient bed in place of any playing now, or stops it. Sounds already playing finish on their own.
+     *
+     * @param scene The bed with its sounds decoded, or null to stop
+     */
+    public void setAmbience(AmbiencePlayer.Scene scene) {
+        submit(() -> {
+            if (scene != null) ambience.start(scene);
+            else ambience.stop();
+        });
+    }
+
+    /**
+     * Changes how the music is coloured, gliding to the new settings over a few milliseconds.
+     *
+     * @param settings The effects to glide to. {@link EffectChain.Settings#DRY} for none
+     */
+    public void setEffects(EffectChain.Settings settings) {
+        submit(() -> effects.setTarget(settings));
+    }
+
+    /**
+     * Updates the loop section from a configuration made in the UI.
+     *
+     * @param enabled Whether looping is turned on
+     * @param config  The loop section, with times in MM:SS.mmm
+     */
+    public void setLoop(boolean enabled, LoopConfig config) {
+        long startMicros = AudioService.parseTime(config.loopStart);
+        long endMicros = AudioService.parseTime(config.loopEnd);
+        int repeats = config.repeats;
+        boolean infinite = config.isInfinite;
+        submit(() -> {
+            if (source == null) return;
+            playhead.setLoop(enabled, toFrames(startMicros), toFrames(endMicros), repeats, infinite);
+        });
+    }
+
+    /**
+     * Updates the loop section using frame positions.
+     *
+     * @param enabled    Whether looping is turned on
+     * @param startFrame The first frame of the loop section
+     * @param endFrame   The frame at which playback jumps back to the start
+     * @param repeats    How many times the section is repeated
+     * @param infinite   Whether the section repeats forever
+     */
+    public void setLoopFrames(boolean enabled, long startFrame, long endFrame, int repeats, boolean infinite) {
+        submit(() -> playhead.setLoop(enabled, startFrame, endFrame, repeats, infinite));
+    }
+
+    /**
+     * Queues the next track, replacing any transition already queued. The handoff happens at the end of the
+     * current pass through the loop section, or at the end of the track if the loop is not active.
+     *
+     * @param transition The next track and how to hand over to it
+     */
+    public void queueTransition(Transition transition) {
+        submit(() -> pendingTransition = transition);
+    }
+
+    /**
+     * Queues the next track using a loop configuration made in the UI.
+     *
+     * @param next            The decoded audio to play next
+     * @param loopEnabled     Whether the next track loops
+     * @param config          The next track's loop section, with times in MM:SS.mmm
+     * @param crossfadeMillis How long the two tracks overlap, 0 for a straight gapless cut
+     */
+    public void queueTransition(PcmSource next, boolean loopEnabled, LoopConfig config, int crossfadeMillis) {
+        float rate = next.frameRate();
+        queueTransition(new Transition(next, loopEnabled, toFrames(AudioService.parseTime(config.loopStart), rate),
+                toFrames(AudioService.parseTime(config.loopEnd), rate), config.repeats, config.isInfinite,
+                (int) toFrames(crossfadeMillis * 1000L, rate)));
+    }
+
+    /**
+     * Forgets the queued transition, if there is one, so the current track carries on as normal.
+     */
+    public void cancelTransition() {
+        submit(() -> pendingTransition = null);
+    }
+
+    // -- Playback Methods --
+    /**
+     * Starts or resumes playback. Starting from a stop refills the loop repeat counter,
+     * resuming from a pause carries on where the loop left off.
+     */
+    public void play() {
+        submit(() -> {
+            if (source == null) return;
+            if (!isPlaying && !isPaused) playhead.arm();
+            isPlaying = true;
+            isPaused = false;
+        });
+    }
+
+    /**
+     * Halts playback, keeping the position and loop progress.
+     */
+    public void pause() {
+        submit(() -> {
+            if (isPlaying) {
+                isPlaying = false;
+                isPaused = true;
+            }
+        });
+    }
+
+    /**
+     * Halts playback and rewinds to the first frame.
+     */
+    public void stop() {
+        submit(() -> {
+            isPlaying = false;
+            isPaused = false;
+            pendingTransition = null;
+            fadeSource = null;
+            playhead.seek(0);
+            resetStretcher();
+        });
+    }
+
+    /**
+     * Moves the playhead.
+     *
+     * @param frame The frame to move to
+     */
+    public void seekFrames(long frame) {
+        submit(() -> applySeek(frame));
+    }
+
+    /**
+     * Moves the playhead.
+     *
+     * @param microseconds The position to move to
+     */
+    public void seek(long microseconds) {
+        submit(() -> {
+            if (source != null) applySeek(toFrames(microseconds));
+        });
+    }
+
+    private void applySeek(long frame) {
+        fadeSource = null;
+        playhead.seek(frame);
+        resetStretcher();
+    }
+
+    /**
+     * Queues a command for the start of the next block.
+     */
+    private void submit(Runnable command) {
+        commands.add(command);
+    }
+
+    // -- Rendering --
+
+    /**
+     * Applies the commands sent since the last block, then fills a buffer with the next block of audio.
+     * Anything past the end of the track, or any block rendered while paused, is silence. Only ever call it
+     * from one thread at a time, which becomes the thread that owns the engine.
+     *
+     * @param out    The buffer to fill with interleaved stereo
+     * @param frames The number of frames to render
+     */
+    public void render(float[] out, int frames) {
+        lastBlockStartNanos = System.nanoTime();
+        Runnable command;
+        while ((command = commands.poll()) != null) command.run();
+        loopFinishedInBlock = false;
+        handedOffInBlock = false;
+        // A track still being decoded may learn its exact length part way through
+        if (source != null && source.frameCount() != playhead.getLengthFrames()) playhead.setLength(source.frameCount());
+        int rendered = 0;
+        if (isPlaying) {
+            rendered = isStretching ? renderStretched(out, frames) : readSource(out, 0, frames);
+        }
+        Arrays.fill(out, rendered * 2, frames * 2, 0f);
+        ambience.mix(out, frames);
+        effects.process(out, frames);
+
+        boolean ended = isPlaying && rendered < frames;
+        if (ended) isPlaying = false;
+        publish();
+        if (handedOffInBlock) onHandoff.run();
+        if (loopFinishedInBlock) onLoopFinish.run();
+        if (ended) onEnd.run();
+    }
+
+    /**
+     * Reads frames from the track through the loop playhead, jumping at seams and handing off to a queued track.
+     *
+     * @return The number of frames read. Fewer than asked means the end of the track was reached.
+     */
+    private int readSource(float[] dst, int offset, int frames) {
+        int read = 0;
+        while (read < frames) {
+            if (pendingTransition != null && isAtHandoff()) handOff();
+            if (playhead.applySeam()) loopFinishedInBlock = true;
+
+            int span = playhead.span(frames - read);
+            if (pendingTransition != null && !playhead.isLoopActive()) {
+                span = (int) Math.min(span, handoffFrame() - playhead.getPositionFrames());
+            }
+            if (span == 0) break;
+            source.read(playhead.getPositionFrames(), dst, offset + read, span);
+            if (fadeSource != null) mixFade(dst, offset + read, span);
+            playhead.advance(span);
+            read += span;
+        }
+        return read;
+    }
+
+    // -- Transitions --
+    /**
+     * Where a track that is not looping hands off: at its end, early by the crossfade so the two overlap.
+     * A looping track hands off at the loop end instead, so the current pass always finishes.
+     */
+    private long handoffFrame() {
+        return Math.max(0, playhead.getLengthFrames() - pendingTransition.crossfadeFrames());
+    }
+
+    private boolean isAtHandoff() {
+        if (playhead.isLoopActive()) return playhead.isAtSeam() || playhead.isAtEnd();
+        return playhead.getPositionFrames() >= handoffFrame();
+    }
+
+    /**
+     * Swaps in the queued track at the current frame. The stretcher is left alone, so the audio it holds runs
+     * straight into the new track.
+     */
+    private void handOff() {
+        Transition next = pendingTransition;
+        pendingTransition = null;
+        if (next.crossfadeFrames() > 0) {
+            fadeSource = source;
+            fadePositionFrames = playhead.getPositionFrames();
+            fadeLengthFrames = next.crossfadeFrames();
+            fadeRemainingFrames = next.crossfadeFrames();
+        } else {
+            fadeSource = null;
+        }
+
+        source = next.source();
+        sourceGeneration = generations.incrementAndGet();
+        playhead.reset(source.frameCount());
+        playhead.setLoop(next.loopEnabled(), next.loopStartFrame(), next.loopEndFrame(), next.repeats(), next.isInfinite());
+        playhead.arm();
+        handedOffInBlock = true;
+    }
+
+    /**
+     * Blends the tail of the outgoing track under frames just read from the incoming one, with equal-power gains
+     * so the overall loudness holds steady through the fade.
+     */
+    private void mixFade(float[] dst, int offset, int frames) {
+        int done = 0;
+        while (done < frames && fadeRemainingFrames > 0) {
+            int chunk = Math.min(Math.min(frames - done, fadeRemainingFrames), fadeBuffer.length / 2);
+            long available = Math.max(0, fadeSource.frameCount() - fadePositionFrames);
+            int fromTail = (int) Math.min(chunk, available);
+            if (fromTail > 0) fadeSource.read(fadePositionFrames, fadeBuffer, 0, fromTail);
+            Arrays.fill(fadeBuffer, fromTail * 2, chunk * 2, 0f);
+
+            int fadeFrame = fadeLengthFrames - fadeRemainingFrames;
+            for (int i = 0; i < chunk; i++) {
+                double angle = (fadeFrame + i + 0.5) / fadeLengthFrames * (Math.PI / 2);
+                float gainIn = (float) Math.sin(angle);
+                float gainOut = (float) Math.cos(angle);
+                int at = (offset + done + i) * 2;
+                dst[at] = dst[at] * gainIn + fadeBuffer[i * 2] * gainOut;
+                dst[at + 1] = dst[at + 1] * gainIn + fadeBuffer[i * 2 + 1] * gainOut;
+            }
+            fadePositionFrames += chunk;
+            fadeRemainingFrames -= chunk;
+            done += chunk;
+        }
+        if (fadeRemainingFrames == 0) fadeSource = null;
+    }
+
+    /**
+     * Pulls frames through the time stretcher, feeding it from the track as it asks for more.
+     *
+     * @return The number of frames rendered. Fewer than asked means the stretcher has played out the end of the track.
+     */
+    private int renderStretched(float[] out, int frames) {
+        int rendered = stretcher.receive(out, 0, frames);
+        while (rendered < frames && !stretcher.isDrained()) {
+            int needed = Math.min(stretcher.inputNeeded(), Constants.GB_RENDER_BLOCK_FRAMES);
+            if (needed > 0) {
+                int read = readSource(stretchInput, 0, needed);
+                stretcher.supply(stretchInput, 0, read);
+                if (read < needed) stretcher.endOfInput();
+            }
+            int received = stretcher.receive(out, rendered, frames - rendered);
+            if (needed == 0 && received == 0) break;
+            rendered += received;
+        }
+        return rendered;
+    }
+
+    private void resetStretcher() {
+        isStretching = tempo != 1.0;
+        if (stretcher != null) stretcher.reset();
+    }
+
+    // -- Getters --
+    /**
+     * Read without locking, so it can be polled while the engine renders.
+     *
+     * @return When the latest block started rendering, from {@link System#nanoTime()}
+     */
+    public long getLastBlockStartNanos() {
+        return lastBlockStartNanos;
+    }
+
+    /**
+     * Publishes where the engine is now, for any thread to read. Readers never take the lock, so this never waits.
+     */
+    private void publish() {
+        long stamp = publishLock.writeLock();
+        publishedIsPlaying = isPlaying;
+        publishedPositionFrames = playhead.getPositionFrames();
+        publishedLengthFrames = playhead.getLengthFrames();
+        publishedFrameRate = source != null ? source.frameRate() : 0f;
+        publishedTempo = tempo;
+        publishedSourceGeneration = sourceGeneration;
+        publishedIsTransitionPending = pendingTransition != null;
+        publishLock.unlockWrite(stamp);
+    }
+
+    /**
+     * @return Where the engine was at the end of the latest block, with every value from the same moment
+     */
+    public Snapshot getSnapshot() {
+        while (true) {
+            long stamp = publishLock.tryOptimisticRead();
+            Snapshot snapshot = new Snapshot(publishedIsPlaying, publishedPositionFrames, publishedLengthFrames,
+                    publishedFrameRate, publishedTempo, publishedSourceGeneration, publishedIsTransitionPending);
+            // Read again if a block was published part way through
+            if (publishLock.validate(stamp)) return snapshot;
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return true while a transition is waiting for its handoff frame
+     */
+    public boolean isTransitionPending() {
+        return getSnapshot().isTransitionPending();
+    }
+
+    /**
+     * @return A number that changes whenever a different track starts playing, by a load or a handoff
+     */
+    public long getSourceGeneration() {
+        return getSnapshot().sourceGeneration();
+    }
+
+    /**
+     * @return true while the engine is producing audio
+     */
+    public boolean isPlaying() {
+        return getSnapshot().isPlaying();
+    }
+
+    /**
+     * @return The current tempo, 1.0 being the original speed
+     */
+    public double getTempo() {
+        return getSnapshot().tempo();
+    }
+
+    /**
+     * @return The frame that will be rendered next
+     */
+    public long getPositionFrames() {
+        return getSnapshot().positionFrames();
+    }
+
+    /**
+     * @return The position of the playhead in microseconds, or 0 if nothing is loaded
+     */
+    public long getPositionMicroseconds() {
+        return getSnapshot().positionMicroseconds();
+    }
+
+    /**
+     * @return The length of the loaded track in microseconds, or 0 if nothing is loaded
+     */
+    public long getLengthMicroseconds() {
+        return getSnapshot().lengthMicroseconds();
+    }
+
+    // -- Time Methods --
+    private long toFrames(long microseconds) {
+        return toFrames(microseconds, source.frameRate());
+    }
+
+    private static long toFrames(long microseconds, float frameRate) {
+        if (microseconds < 0) return -1;
+        return Math.round(microseconds * (double) frameRate / 1_000_000d);
+    }
+
+    /**
+     * @param frames    A number of frames
+     * @param frameRate The rate they play at, or 0 if nothing is loaded
+     * @return How long they last in microseconds, or 0 if nothing is loaded
+     */
+    static long toMicroseconds(long frames, float frameRate) {
+        if (frameRate == 0f) return 0;
+        return Math.round(frames * 1_000_000d / frameRate);
+    }
+}
@@ -0,0 +1,597 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A deterministic harness for checking loop accuracy without a sound card.
+ * <p>
+ * It drives a {@link PlaybackEngine} from a virtual clock instead of wall-clock time, records every frame
+ * the engine renders, and asserts on the exact source frame heard at every tick. Hand-written scenarios
+ * cover repeats, infinite loops, seeking inside a loop, pausing across a loop boundary and handing off to
+ * the next scene; a random sweep then compares the engine against a simple frame-by-frame reference model
+ * over thousands of scenarios. Last, a stress run fires commands at the engine from several threads at once
+ * while it renders on its own thread, checking every published snapshot along the way.
+ * <p>
+ * Run it with {@code ant simulate}. Optional arguments are the number of random scenarios and the seed.
+ */
+public class PlaybackSimulator {
+    // Block sizes the named scenarios are repeated with, from single frames up to a large sound card buffer
+    private static final int[] BLOCK_SIZES = {1, 7, 64, 512, 4096};
+    private static final String LOOP_FINISHED = "LOOP_FINISHED";
+    private static final String END = "END";
+    private static final String HANDOFF = "HANDOFF";
+    // The next scene in transition scenarios plays frames numbered from here, so its audio stands apart
+    private static final long NEXT_SCENE_FIRST_FRAME = 100_000;
+    // Marks ticks whose exact value does not matter, such as the middle of a crossfade
+    private static final long ANY = Long.MIN_VALUE;
+    // -- Stress Run --
+    private static final int STRESS_COMMAND_THREADS = 4;
+    private static final int STRESS_COMMANDS_PER_THREAD = 20_000;
+
+    private int scenariosRun;
+    private long framesSimulated;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Runs the named scenarios followed by the random sweep, and exits with a failure code if any scenario failed.
+     *
+     * @param args [number of random scenarios] [seed]
+     */
+    public static void main(String[] args) {
+        int randomScenarios = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+
+        PlaybackSimulator simulator = new PlaybackSimulator();
+        long startNanos = System.nanoTime();
+        simulator.runNamedScenarios();
+        simulator.runRandomScenarios(randomScenarios, seed);
+        simulator.runStress(seed);
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+        System.out.printf("Simulated %d scenarios (%,d frames) in %d ms%n",
+                simulator.scenariosRun, simulator.framesSimulated, elapsedMillis);
+        if (simulator.failures.isEmpty()) {
+            System.out.println("All scenarios passed.");
+        } else {
+            simulator.failures.stream().limit(20).forEach(System.out::println);
+            System.out.printf("%d scenarios FAILED%n", simulator.failures.size());
+            System.exit(1);
+        }
+    }
+
+    // -- Scenarios --
+    /**
+     * Scenarios with hand-written expectations, each checked at every block size.
+     */
+    private void runNamedScenarios() {
+        for (int blockFrames : BLOCK_SIZES) {
+            // Section 100-200 repeated twice, then on to the end
+            Scenario repeats = new Scenario("repeats", 1000, 100, 200, 2, false, true, blockFrames, 1500);
+            repeats.at(0, Action.PLAY);
+            expect(repeats, new Expected().range(0, 200).range(100, 200).range(100, 200).range(200, 1000).silence(200),
+                    LOOP_FINISHED, END);
+
+            // Section 100-200 forever
+            Scenario infinite = new Scenario("infinite", 1000, 100, 200, 0, true, true, blockFrames, 5000);
+            infinite.at(0, Action.PLAY);
+            Expected infiniteExpected = new Expected().range(0, 200);
+            for (int i = 0; i < 48; i++) infiniteExpected.range(100, 200);
+            expect(infinite, infiniteExpected);
+
+            // Seeking inside the loop section does not use up a repeat
+            Scenario seek = new Scenario("seek during loop", 1000, 100, 200, 1, false, true, blockFrames, 1200);
+            seek.at(0, Action.PLAY);
+            seek.at(150, Action.SEEK, 180);
+            expect(seek, new Expected().range(0, 150).range(180, 200).range(100, 200).range(200, 1000),
+                    LOOP_FINISHED, END);
+
+            // Seeking past the loop end bounces back to the loop start
+            Scenario seekPast = new Scenario("seek past loop end", 1000, 100, 200, 1, false, true, blockFrames, 300);
+            seekPast.at(0, Action.PLAY);
+            seekPast.at(50, Action.SEEK, 500);
+            expect(seekPast, new Expected().range(0, 50).range(100, 200).range(200, 350), LOOP_FINISHED);
+
+            // Pausing just before the seam and resuming later carries on through it exactly
+            Scenario pause = new Scenario("pause across boundary", 1000, 100, 200, 1, false, true, blockFrames, 1300);
+            pause.at(0, Action.PLAY);
+            pause.at(195, Action.PAUSE);
+            pause.at(400, Action.PLAY);
+            expect(pause, new Expected().range(0, 195).silence(205).range(195, 200).range(100, 200).range(200, 995),
+                    LOOP_FINISHED);
+
+            // Stopping rewinds and refills the repeats
+            Scenario stop = new Scenario("stop refills repeats", 1000, 100, 200, 1, false, true, blockFrames, 700);
+            stop.at(0, Action.PLAY);
+            stop.at(250, Action.STOP);
+            stop.at(300, Action.PLAY);
+            expect(stop, new Expected().range(0, 200).range(100, 150).silence(50).range(0, 200).range(100, 200).range(200, 300),
+                    LOOP_FINISHED);
+
+            // A transition waits for the current pass through the loop, then cuts to the next scene on the seam
+            long next = NEXT_SCENE_FIRST_FRAME;
+            Scenario atSeam = new Scenario("transition at seam", 1000, 100, 200, 0, true, true, blockFrames, 1000);
+            atSeam.at(0, Action.PLAY);
+            atSeam.at(150, Action.TRANSITION, 0);
+            expect(atSeam, new Expected().range(0, 200).range(next, next + 800), HANDOFF);
+
+            // Repeats still to come are skipped, but the pass already under way is not
+            Scenario midRepeat = new Scenario("transition mid repeat", 1000, 100, 200, 3, false, true, blockFrames, 1000);
+            midRepeat.at(0, Action.PLAY);
+            midRepeat.at(250, Action.TRANSITION, 0);
+            expect(midRepeat, new Expected().range(0, 200).range(100, 200).range(next, next + 700), HANDOFF);
+
+            // Without a loop the next scene follows straight on from the last frame
+            Scenario noLoop = new Scenario("transition without loop", 500, 0, 0, 0, false, false, blockFrames, 1000);
+            noLoop.at(0, Action.PLAY);
+            noLoop.at(10, Action.TRANSITION, 0);
+            expect(noLoop, new Expected().range(0, 500).range(next, next + 500), HANDOFF);
+
+            // A crossfade starts on the seam and leaves the next scene on its own, in step, once it is over
+            Scenario crossfade = new Scenario("transition with crossfade", 1000, 100, 200, 0, true, true, blockFrames, 1000);
+            crossfade.at(0, Action.PLAY);
+            crossfade.at(150, Action.TRANSITION, 300);
+            expect(crossfade, new Expected().range(0, 200).any(300).range(next + 300, next + 800), HANDOFF);
+
+            // Stopping calls off a transition that has not happened yet
+            Scenario cancelled = new Scenario("transition cancelled by stop", 1000, 100, 200, 0, true, true, blockFrames, 500);
+            cancelled.at(0, Action.PLAY);
+            cancelled.at(150, Action.TRANSITION, 0);
+            cancelled.at(180, Action.STOP);
+            cancelled.at(200, Action.PLAY);
+            expect(cancelled, new Expected().range(0, 180).silence(20).range(0, 200).range(100, 200));
+        }
+    }
+
+    /**
+     * Builds random scenarios and checks the engine against the reference model for each one.
+     *
+     * @param count How many scenarios to run
+     * @param seed  The seed, so a failure can be replayed
+     */
+    private void runRandomScenarios(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < count; i++) {
+            Scenario scenario = Scenario.random("random #" + i + " (seed " + seed + ")", random);
+            Recording expected = scenario.runReference();
+            check(scenario, expected);
+        }
+    }
+
+    /**
+     * Renders continuously on one thread while others fire random commands at the engine and one more reads its
+     * snapshots. Nothing can be checked frame by frame here, so it checks that the render thread never fails,
+     * that every snapshot holds together, that the output stays finite, and that the engine still does exactly
+     * what it is told once the storm is over.
+     *
+     * @param seed The seed for the command threads
+     */
+    private void runStress(long seed) {
+        PlaybackEngine engine = new PlaybackEngine();
+        engine.setListeners(() -> { }, () -> { });
+        engine.load(new IndexSource(10_000, 0));
+        AtomicBoolean isRunning = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch commandsDone = new CountDownLatch(STRESS_COMMAND_THREADS);
+        long[] rendered = new long[1];
+
+        Thread renderer = new Thread(() -> {
+            float[] block = new float[64 * 2];
+            try {
+                while (isRunning.get()) {
+                    engine.render(block, 64);
+                    rendered[0] += 64;
+                    for (float sample : block) {
+                        if (!Float.isFinite(sample)) failure.compareAndSet(null, "stress: rendered " + sample);
+                    }
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, "stress: the render thread failed with " + e);
+            }
+        }, "stress-render");
+
+        Thread reader = new Thread(() -> {
+            long lastGeneration = 0;
+            while (isRunning.get()) {
+                PlaybackEngine.Snapshot state = engine.getSnapshot();
+                if (state.positionFrames() < 0 || state.positionFrames() > state.lengthFrames()) {
+                    failure.compareAndSet(null, "stress: snapshot position out of range " + state);
+                }
+                if (state.sourceGeneration() < lastGeneration) {
+                    failure.compareAndSet(null, "stress: source generation went backwards " + state);
+                }
+                lastGeneration = state.sourceGeneration();
+            }
+        }, "stress-reader");
+
+        List<Thread> commanders = new ArrayList<>();
+        for (int t = 0; t < STRESS_COMMAND_THREADS; t++) {
+            SplittableRandom random = new SplittableRandom(seed + t);
+            commanders.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < STRESS_COMMANDS_PER_THREAD; i++) {
+                        long length = 2_000 + random.nextLong(20_000);
+                        switch (random.nextInt(10)) {
+                            case 0 -> engine.play();
+                            case 1 -> engine.pause();
+                            case 2 -> engine.stop();
+                            case 3 -> engine.seekFrames(random.nextLong(length));
+                            case 4 -> engine.setLoopFrames(random.nextBoolean(), 100, 900, random.nextInt(3), random.nextBoolean());
+                            case 5 -> engine.setTempo(0.5 + random.nextDouble());
+                            case 6 -> engine.load(new IndexSource(length, 0));
+                            case 7 -> engine.queueTransition(new PlaybackEngine.Transition(new IndexSource(length, NEXT_SCENE_FIRST_FRAME),
+                                    true, 100, 900, 0, true, random.nextInt(0, 200)));
+                            case 8 -> engine.cancelTransition();
+                            default -> engine.getSnapshot();
+                        }
+                        if ((i & 255) == 0) Thread.yield();
+                    }
+                } finally {
+                    commandsDone.countDown();
+                }
+            }, "stress-commands-" + t));
+        }
+
+        renderer.start();
+        reader.start();
+        commanders.forEach(Thread::start);
+        try {
+            commandsDone.await();
+            // Whatever state the storm left behind, the engine must still land exactly where it is sent
+            engine.stop();
+            engine.seekFrames(123);
+            Thread.sleep(50);
+            isRunning.set(false);
+            renderer.join();
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, "stress: interrupted");
+        }
+
+        engine.render(new float[2], 1);
+        PlaybackEngine.Snapshot last = engine.getSnapshot();
+        if (failure.get() == null && (last.isPlaying() || last.positionFrames() != Math.min(123, last.lengthFrames()))) {
+            failure.set("stress: expected to be stopped at frame 123 after the storm, but got " + last);
+        }
+        scenariosRun++;
+        framesSimulated += rendered[0];
+        if (failure.get() != null) failures.add(failure.get());
+    }
+
+    private void expect(Scenario scenario, Expected expected, String... events) {
+        check(scenario, new Recording(expected.toArray(scenario.runFrames), List.of(events)));
+    }
+
+    private void check(Scenario scenario, Recording expected) {
+        Recording actual = scenario.runEngine();
+        scenariosRun++;
+        framesSimulated += scenario.runFrames;
+
+        int mismatch = mismatch(expected.frames, actual.frames);
+        if (mismatch >= 0) {
+            failures.add(String.format("%s: at tick %d expected frame %d but heard %d (%s)", scenario.name, mismatch,
+                    expected.frames[mismatch], actual.frames[mismatch], scenario));
+        } else if (!expected.events.equals(actual.events)) {
+            failures.add(String.format("%s: expected events %s but got %s (%s)",
+                    scenario.name, expected.events, actual.events, scenario));
+        }
+    }
+
+    /**
+     * Finds the first tick where the engine heard something other than expected, skipping ticks marked {@link #ANY}.
+     *
+     * @return The tick, or -1 if every tick matched
+     */
+    private static int mismatch(long[] expected, long[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != ANY && expected[i] != actual[i]) return i;
+        }
+        return -1;
+    }
+
+    // -- Model --
+    private enum Action { PLAY, PAUSE, STOP, SEEK, LOOP_ON, LOOP_OFF, TRANSITION }
+
+    // The actions the reference model understands, which the random sweep picks from
+    private static final Action[] RANDOM_ACTIONS = {Action.PLAY, Action.PAUSE, Action.STOP, Action.SEEK, Action.LOOP_ON, Action.LOOP_OFF};
+
+    /**
+     * Something the user does at an exact tick of the virtual clock.
+     */
+    private record Command(long atFrame, Action action, long argument) {
+    }
+
+    /**
+     * What was heard at every tick, -1 meaning silence, plus the callbacks fired along the way.
+     */
+    private record Recording(long[] frames, List<String> events) {
+    }
+
+    /**
+     * A track, a loop section, a block size and a list of commands to replay against it.
+     */
+    private static final class Scenario {
+        final String name;
+        final long lengthFrames;
+        final long loopStart;
+        final long loopEnd;
+        final int repeats;
+        final boolean isInfinite;
+        final boolean isLoopEnabled;
+        final int blockFrames;
+        final int runFrames;
+        final List<Command> commands = new ArrayList<>();
+
+        Scenario(String name, long lengthFrames, long loopStart, long loopEnd, int repeats, boolean isInfinite,
+                 boolean isLoopEnabled, int blockFrames, int runFrames) {
+            this.name = name;
+            this.lengthFrames = lengthFrames;
+            this.loopStart = loopStart;
+            this.loopEnd = loopEnd;
+            this.repeats = repeats;
+            this.isInfinite = isInfinite;
+            this.isLoopEnabled = isLoopEnabled;
+            this.blockFrames = blockFrames;
+            this.runFrames = runFrames;
+        }
+
+        static Scenario random(String name, SplittableRandom random) {
+            long length = random.nextLong(50, 4000);
+            long loopStart = random.nextLong(0, length);
+            long loopEnd = random.nextLong(loopStart, length + 100);
+            int blockFrames = BLOCK_SIZES[random.nextInt(BLOCK_SIZES.length)];
+            int runFrames = (int) (length * random.nextInt(1, 5));
+            Scenario scenario = new Scenario(name, length, loopStart, loopEnd, random.nextInt(0, 5),
+                    random.nextInt(10) == 0, random.nextInt(4) != 0, blockFrames, runFrames);
+
+            scenario.at(0, Action.PLAY);
+            int commandCount = random.nextInt(0, 8);
+            for (int i = 0; i < commandCount; i++) {
+                Action action = RANDOM_ACTIONS[random.nextInt(RANDOM_ACTIONS.length)];
+                scenario.at(random.nextLong(0, runFrames), action, random.nextLong(0, length + 50));
+            }
+            scenario.commands.sort(Comparator.comparingLong(Command::atFrame));
+            return scenario;
+        }
+
+        void at(long atFrame, Action action) {
+            at(atFrame, action, 0);
+        }
+
+        void at(long atFrame, Action action, long argument) {
+            commands.add(new Command(atFrame, action, argument));
+        }
+
+        /**
+         * Plays the scenario through the real engine on a virtual clock.
+         */
+        Recording runEngine() {
+            PlaybackEngine engine = new PlaybackEngine();
+            List<String> events = new ArrayList<>();
+            engine.setListeners(() -> events.add(LOOP_FINISHED), () -> events.add(END));
+            engine.setHandoffListener(() -> events.add(HANDOFF));
+            engine.load(new IndexSource(lengthFrames, 0));
+            engine.setLoopFrames(isLoopEnabled, loopStart, loopEnd, repeats, isInfinite);
+
+            RecordingSink sink = new RecordingSink(runFrames);
+            VirtualClock clock = new VirtualClock(engine, sink, blockFrames);
+            clock.run(commands, runFrames, command -> {
+                switch (command.action()) {
+                    case PLAY -> engine.play();
+                    case PAUSE -> engine.pause();
+                    case STOP -> engine.stop();
+                    case SEEK -> engine.seekFrames(command.argument());
+                    case LOOP_ON -> engine.setLoopFrames(true, loopStart, loopEnd, repeats, isInfinite);
+                    case LOOP_OFF -> engine.setLoopFrames(false, loopStart, loopEnd, repeats, isInfinite);
+                    case TRANSITION -> engine.queueTransition(new PlaybackEngine.Transition(
+                            new IndexSource(runFrames, NEXT_SCENE_FIRST_FRAME), false, 0, 0, 0, false, (int) command.argument()));
+                }
+            });
+            return new Recording(sink.frames, events);
+        }
+
+        /**
+         * Plays the scenario through the reference model, one frame at a time.
+         */
+        Recording runReference() {
+            long[] frames = new long[runFrames];
+            List<String> events = new ArrayList<>();
+            long position = 0;
+            boolean isPlaying = false, isPaused = false, loopEnabled = isLoopEnabled, loopFinished = false;
+            int repeatsLeft = 0;
+            int next = 0;
+
+            for (int tick = 0; tick < runFrames; tick++) {
+                while (next < commands.size() && commands.get(next).atFrame() <= tick) {
+                    Command command = commands.get(next++);
+                    switch (command.action()) {
+                        case PLAY -> {
+                            if (!isPlaying && !isPaused) {
+                                repeatsLeft = repeats;
+                                loopFinished = false;
+                            }
+                            isPlaying = true;
+                            isPaused = false;
+                        }
+                        case PAUSE -> {
+                            if (isPlaying) isPaused = true;
+                            isPlaying = false;
+                        }
+                        case STOP -> {
+                            isPlaying = false;
+                            isPaused = false;
+                            position = 0;
+                        }
+                        case SEEK -> position = Math.min(command.argument(), lengthFrames);
+                        case LOOP_ON -> loopEnabled = true;
+                        case LOOP_OFF -> loopEnabled = false;
+                        case TRANSITION -> throw new UnsupportedOperationException("The reference model has no scenes");
+                    }
+                }
+
+                frames[tick] = -1;
+                if (!isPlaying) continue;
+
+                boolean loopActive = loopEnabled && !loopFinished && loopEnd > loopStart;
+                if (loopActive && position >= loopEnd) {
+                    if (isInfinite) {
+                        position = loopStart;
+                    } else if (repeatsLeft > 0) {
+                        repeatsLeft--;
+                        position = loopStart;
+                    } else {
+                        loopFinished = true;
+                        events.add(LOOP_FINISHED);
+                    }
+                }
+                if (position >= lengthFrames) {
+                    isPlaying = false;
+                    events.add(END);
+                    continue;
+                }
+                frames[tick] = position++;
+            }
+            return new Recording(frames, events);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("length=%d loop=%d-%d repeats=%d infinite=%b block=%d commands=%s",
+                    lengthFrames, loopStart, loopEnd, repeats, isInfinite, blockFrames, commands);
+        }
+    }
+
+    /**
+     * Stands in for the sound card: renders exactly as many frames as have "elapsed", and
+     * applies each command on the exact tick it was scheduled for, whatever the block size.
+     */
+    private static final class VirtualClock {
+        private final PlaybackEngine engine;
+        private final FrameSink sink;
+        private final float[] block;
+        private final int blockFrames;
+
+        VirtualClock(PlaybackEngine engine, FrameSink sink, int blockFrames) {
+            this.engine = engine;
+            this.sink = sink;
+            this.blockFrames = blockFrames;
+            this.block = new float[blockFrames * 2];
+        }
+
+        void run(List<Command> commands, long runFrames, Consumer<Command> apply) {
+            long now = 0;
+            int next = 0;
+            while (now < runFrames) {
+                while (next < commands.size() && commands.get(next).atFrame() <= now) {
+                    apply.accept(commands.get(next++));
+                }
+                long until = next < commands.size() ? Math.min(commands.get(next).atFrame(), runFrames) : runFrames;
+                int frames = (int) Math.min(blockFrames, until - now);
+                engine.render(block, frames);
+                sink.write(block, frames);
+                now += frames;
+            }
+        }
+    }
+
+    /**
+     * A fake track whose every sample holds its own frame number plus one, so silence (0) stands apart.
+     * Frame numbers can start from an offset, to tell one track from another. Exact up to 2^24.
+     */
+    private static final class IndexSource implements PcmSource {
+        private final long lengthFrames;
+        private final long firstFrame;
+
+        IndexSource(long lengthFrames, long firstFrame) {
+            this.lengthFrames = lengthFrames;
+            this.firstFrame = firstFrame;
+        }
+
+        @Override
+        public int channels() {
+            return 2;
+        }
+
+        @Override
+        public float frameRate() {
+            return 48_000f;
+        }
+
+        @Override
+        public long frameCount() {
+            return lengthFrames;
+        }
+
+        @Override
+        public void read(long frame, float[] dst, int dstOffset, int frames) {
+            for (int i = 0; i < frames; i++) {
+                float value = firstFrame + frame + i + 1;
+                dst[(dstOffset + i) * 2] = value;
+                dst[(dstOffset + i) * 2 + 1] = value;
+            }
+        }
+    }
+
+    /**
+     * Decodes what the engine rendered from an {@link IndexSource} back into frame numbers.
+     */
+    private static final class RecordingSink implements FrameSink {
+        private final long[] frames;
+        private int written;
+
+        RecordingSink(int capacity) {
+            this.frames = new long[capacity];
+        }
+
+        @Override
+        public void write(float[] interleaved, int count) {
+            for (int i = 0; i < count; i++) {
+                frames[written++] = (long) interleaved[i * 2] - 1;
+            }
+        }
+    }
+
+    /**
+     * Builds an expected list of frames from ranges and gaps of silence.
+     */
+    private static final class Expected {
+        private final List<long[]> parts = new ArrayList<>();
+
+        Expected range(long fromInclusive, long toExclusive) {
+            parts.add(new long[]{fromInclusive, toExclusive});
+            return this;
+        }
+
+        Expected silence(long frames) {
+            parts.add(new long[]{-1, frames});
+            return this;
+        }
+
+        Expected any(long frames) {
+            parts.add(new long[]{ANY, frames});
+            return this;
+        }
+
+        long[] toArray(int runFrames) {
+            long[] frames = new long[runFrames];
+            Arrays.fill(frames, -1);
+            int i = 0;
+            for (long[] part : parts) {
+                if (part[0] == ANY) {
+                    for (long n = 0; n < part[1] && i < runFrames; n++) frames[i++] = ANY;
+                } else if (part[0] < 0) {
+                    i += (int) part[1];
+                } else {
+                    for (long frame = part[0]; frame < part[1] && i < runFrames; frame++) frames[i++] = frame;
+                }
+            }
+            return frames;
+        }
+    }
+}
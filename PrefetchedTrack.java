@@ -0,0 +1,129 @@
+/**
+ * A track that can start playing before it has finished decoding.
+ * <p>
+ * Only the first few seconds (the head) are decoded up front, which is all a queued scene holds while it waits.
+ * Once the scene is on its way in, the whole track is decoded in the background and swapped in with
+ * {@link #complete(PcmSource)}. The head is decoded and converted exactly as the whole track is, so the swap
+ * is seamless. Until then the length is an estimate taken from the file's header, or exact once the file's
+ * {@link Mp3FrameIndex} is known.
+ * <p>
+ * Seeking past the head before the whole track is ready is served by a window: a few seconds decoded from the
+ * seek point, set with {@link #setWindow(long, PcmTrack)}.
+ */
+public class PrefetchedTrack implements PcmSource {
+    private final PcmSource head;
+    private final long estimatedFrameCount;
+    // Set from a background thread, read by the rendering thread
+    private volatile PcmSource full;
+    // A part of the track past the head, decoded after a seek. Set from a background thread
+    private volatile Window window;
+
+    /**
+     * A decoded part of the track
+     *
+     * @param startFrame Where the part starts in the track
+     * @param audio      The part, at the same rate as the head
+     */
+    private record Window(long startFrame, PcmTrack audio) {
+        boolean covers(long from, long to) {
+            return from >= startFrame && to <= startFrame + audio.frameCount();
+        }
+    }
+
+    /**
+     * @param head                The first part of the track, at the engine rate
+     * @param estimatedFrameCount The expected length of the whole track in frames
+     */
+    public PrefetchedTrack(PcmSource head, long estimatedFrameCount) {
+        this.head = head;
+        this.estimatedFrameCount = Math.max(head.frameCount(), estimatedFrameCount);
+    }
+
+    /**
+     * Swaps in the fully decoded track.
+     *
+     * @param track The whole track, at the same rate as the head
+     */
+    public void complete(PcmSource track) {
+        this.full = track;
+    }
+
+    /**
+     * @return true once the whole track has been decoded
+     */
+    public boolean isComplete() {
+        return full != null;
+    }
+
+    /**
+     * Replaces the window with a newly decoded part of the track.
+     *
+     * @param startFrame Where the part starts in the track
+     * @param audio      The part, at the same rate as the head, decoded exactly as the whole track would be
+     */
+    public void setWindow(long startFrame, PcmTrack audio) {
+        this.window = new Window(startFrame, audio);
+    }
+
+    /**
+     * @param from The first frame wanted
+     * @param to   The frame to stop before
+     * @return true if every frame in the range can be read without waiting for the whole track
+     */
+    public boolean covers(long from, long to) {
+        if (full != null || to <= head.frameCount()) return true;
+        Window part = window;
+        return part != null && part.covers(from, to);
+    }
+
+    /**
+     * @return The head, which is all that is held until the whole track is decoded
+     */
+    public PcmSource getHead() {
+        return head;
+    }
+
+    @Override
+    public int channels() {
+        return head.channels();
+    }
+
+    @Override
+    public float frameRate() {
+        return head.frameRate();
+    }
+
+    @Override
+    public long frameCount() {
+        PcmSource track = full;
+        return track != null ? track.frameCount() : estimatedFrameCount;
+    }
+
+    /**
+     * Reads from the whole track once it is there, otherwise from the head and the window. Frames that have
+     * not been decoded yet come back as silence.
+     */
+    @Override
+    public void read(long frame, float[] dst, int dstOffset, int frames) {
+        PcmSource track = full;
+        if (track != null) {
+            int available = (int) Math.max(0, Math.min(frames, track.frameCount() - frame));
+            if (available > 0) track.read(frame, dst, dstOffset, available);
+            for (int i = (dstOffset + available) * 2; i < (dstOffset + frames) * 2; i++) dst[i] = 0f;
+            return;
+        }
+        for (int i = dstOffset * 2; i < (dstOffset + frames) * 2; i++) dst[i] = 0f;
+        copy(head, 0, frame, dst, dstOffset, frames);
+        Window part = window;
+        if (part != null) copy(part.audio(), part.startFrame(), frame, dst, dstOffset, frames);
+    }
+
+    /**
+     * Copies whatever a part of the track holds of the frames being read, leaving the rest as it was.
+     */
+    private static void copy(PcmSource part, long partStart, long frame, float[] dst, int dstOffset, int frames) {
+        long from = Math.max(frame, partStart);
+        long to = Math.min(frame + frames, partStart + part.frameCount());
+        if (to > from) part.read(from - partStart, dst, dstOffset + (int) (from - frame), (int) (to - from));
+    }
+}
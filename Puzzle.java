@@ -0,0 +1,83 @@
+/**
+ * A kind of puzzle Puzzle Buddy can show and solve, such as sliding blocks or rotating disks.
+ * <p>
+ * A puzzle's whole state is packed into one long, and a move is a number from 0 up to {@link #moveCount()},
+ * so trying every move from a state allocates nothing. That is what lets {@link PuzzleSolver} look at millions
+ * of states a second, and check a suggested move while the players are still talking about it.
+ * <p>
+ * Implementations are immutable, so a solver can share one between threads.
+ */
+public interface Puzzle {
+    // What apply returns for a move that cannot be made from a state. No puzzle packs a real state as this
+    long ILLEGAL = -1L;
+
+    /**
+     * @return What the puzzle is called, for the library
+     */
+    String name();
+
+    /**
+     * @return The state the puzzle starts in, and goes back to when reset
+     */
+    long startState();
+
+    /**
+     * @param state A state
+     * @return true if the state is solved
+     */
+    boolean isSolved(long state);
+
+    /**
+     * @return How many moves there are, numbered from 0. Not every move can be made from every state
+     */
+    int moveCount();
+
+    /**
+     * Makes a move.
+     *
+     * @param state The state to move from
+     * @param move  The move to make
+     * @return The state after the move, or {@link #ILLEGAL} if it cannot be made from this state
+     */
+    long apply(long state, int move);
+
+    /**
+     * @param move A move
+     * @return The move that undoes it, or -1 if no single move does. Lets a search skip stepping straight back
+     */
+    default int inverseOf(int move) {
+        return -1;
+    }
+
+    /**
+     * @param state A state
+     * @return A number of moves the state is at least away from solved. Never more than the real number, or
+     * searches may miss the shortest solution. 0 is always safe, and the closer to the truth the faster a search
+     */
+    default int lowerBound(long state) {
+        return 0;
+    }
+
+    /**
+     * @param state A state
+     * @return false if the state is known to be unsolvable without searching, true if it might be solvable
+     */
+    default boolean mightBeSolvable(long state) {
+        return true;
+    }
+
+    /**
+     * @param move A move
+     * @return A short label for the button that makes it, such as "Up" or "Turn disk 2"
+     */
+    String moveLabel(int move);
+
+    /**
+     * @param state The state the move is made from
+     * @param move  The move
+     * @return What the move does from this state, in words a DM can read out as a hint
+     */
+    default String describeMove(long state, int move) {
+        return moveLabel(move);
+    }
+}
@@ -0,0 +1,356 @@
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * PuzzleBuddyGUI shows one of the campaign's puzzles for the players to work through at the table.
+ * <p>
+ * Choosing a puzzle checks straight away whether it can be solved and in how few moves, so a DM can try out a
+ * configuration while preparing. During play every move is checked against a fresh solve, so the status line can
+ * say at once whether it brought the players closer, and Hint can tell them the next move of a shortest solution.
+ */
+public class PuzzleBuddyGUI {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(PuzzleBuddyGUI.class.getName());
+
+    // --- UI Components ---
+    private JFrame frmFoundation;
+    private JComboBox<Puzzle> cmbPuzzle;
+    private PuzzleBoard pnlBoard;
+    private JPanel pnlMoves;
+    private JButton[] btnMoves = new JButton[0];
+    private JButton btnReset, btnCheck, btnHint;
+    private JLabel lblStatusLabel;
+
+    // --- State ---
+    private Puzzle puzzle;
+    private long state;
+    private int movesMade;
+    // The solver's answer for the current state, or null while it is still working
+    private PuzzleSolver.Analysis analysis;
+    // The fewest moves the last solved state was from solved, to tell whether a move helped
+    private int lastDistance = -1;
+    private boolean isHintWanted;
+    // Bumped on every change of state, so solves of states that have since changed are stopped and their answers dropped
+    private volatile long generation;
+    private final ExecutorService solverThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "puzzle-solver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Initializes the frame and shows the first puzzle in the library.
+     */
+    public void initUI() {
+        frmFoundation = new JFrame("Puzzle Buddy");
+        frmFoundation.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frmFoundation.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                solverThread.shutdownNow();
+            }
+        });
+        frmFoundation.setLayout(new BorderLayout());
+
+        pnlBoard = new PuzzleBoard();
+        pnlMoves = new JPanel(new GridLayout(0, 4, Constants.GB_HGAP_SPACING, Constants.GB_VGAP_SPACING));
+        pnlMoves.setBorder(Constants.GB_CONTROLCONTAINER_BORDER);
+        frmFoundation.add(createToolbarPanel(), BorderLayout.NORTH);
+        frmFoundation.add(pnlBoard, BorderLayout.CENTER);
+        frmFoundation.add(pnlMoves, BorderLayout.SOUTH);
+
+        frmFoundation.setSize(Constants.PB_FRAME_WIDTH, Constants.PB_FRAME_HEIGHT);
+        frmFoundation.setLocationRelativeTo(null);
+        frmFoundation.setVisible(true);
+
+        loadPuzzle((Puzzle) cmbPuzzle.getSelectedItem());
+    }
+
+    // --- Creators ---
+    /**
+     * Creates the puzzle chooser, the buttons beside it and the status line.
+     */
+    private JPanel createToolbarPanel() {
+        JPanel pnlToolbar = new JPanel(new BorderLayout());
+        pnlToolbar.setBorder(new EmptyBorder(Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS));
+
+        JPanel pnlButtons = new JPanel(new FlowLayout(FlowLayout.LEFT, Constants.GB_HGAP_SPACING, Constants.GB_VGAP_SPACING));
+        cmbPuzzle = new JComboBox<>(createLibrary().toArray(new Puzzle[0]));
+        cmbPuzzle.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, value instanceof Puzzle p ? p.name() : value, index, isSelected, cellHasFocus);
+            }
+        });
+        cmbPuzzle.addActionListener(e -> loadPuzzle((Puzzle) cmbPuzzle.getSelectedItem()));
+        btnReset = new JButton("Reset Puzzle");
+        btnReset.addActionListener(e -> loadPuzzle(puzzle));
+        btnCheck = new JButton("Check");
+        btnCheck.setToolTipText("Search every state to prove whether the puzzle can be solved from here");
+        btnCheck.addActionListener(e -> analyse(true));
+        btnHint = new JButton("Hint");
+        btnHint.addActionListener(e -> showHint());
+
+        pnlButtons.add(cmbPuzzle);
+        pnlButtons.add(btnReset);
+        pnlButtons.add(btnCheck);
+        pnlButtons.add(btnHint);
+
+        lblStatusLabel = new JLabel(" ");
+        lblStatusLabel.setBorder(new EmptyBorder(Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, 0, 0));
+        pnlToolbar.add(pnlButtons, BorderLayout.NORTH);
+        pnlToolbar.add(lblStatusLabel, BorderLayout.SOUTH);
+        return pnlToolbar;
+    }
+
+    /**
+     * The puzzles the campaign uses. The broken tiles have two blocks swapped, which can never be put right.
+     */
+    private static List<Puzzle> createLibrary() {
+        long brokenTiles = 0;
+        int[] brokenLayout = {2, 1, 3, 4, 5, 6, 7, 8, 0};
+        for (int cell = 0; cell < brokenLayout.length; cell++) brokenTiles |= (long) brokenLayout[cell] << (cell * 4);
+        return List.of(
+                new SequencePuzzle("Chromatic Cypher", 4, new int[]{0, 2, 1, 3, 0}, new int[]{2, 1, 3, 0, 0},
+                        new int[][]{{0, 1}, {1, 2, 3}, {3, 4}, {0, 4}}, new String[]{"Sun", "Moon", "Star", "Flame"}),
+                new RotatingDisksPuzzle("Church disks", 8, new int[][]{{1}, {2}, {}}, new int[]{3, 6, 2}),
+                SlidingPuzzle.scrambled("Sliding tiles (3x3)", 3, 3, 60, 3),
+                SlidingPuzzle.scrambled("Sliding tiles (4x4)", 4, 4, 60, 4),
+                new SlidingPuzzle("Broken tiles (3x3)", 3, 3, brokenTiles));
+    }
+
+    /**
+     * Makes a button for every move of a puzzle.
+     */
+    private void createMoveButtons() {
+        pnlMoves.removeAll();
+        btnMoves = new JButton[puzzle.moveCount()];
+        for (int move = 0; move < btnMoves.length; move++) {
+            int chosen = move;
+            btnMoves[move] = new JButton(puzzle.moveLabel(move));
+            btnMoves[move].addActionListener(e -> makeMove(chosen));
+            pnlMoves.add(btnMoves[move]);
+        }
+        pnlMoves.revalidate();
+        pnlMoves.repaint();
+    }
+
+    // --- Puzzle ---
+    /**
+     * Shows a puzzle at its start, and works out whether it can be solved.
+     */
+    private void loadPuzzle(Puzzle loaded) {
+        if (loaded != puzzle) {
+            puzzle = loaded;
+            createMoveButtons();
+        }
+        state = puzzle.startState();
+        movesMade = 0;
+        lastDistance = -1;
+        isHintWanted = false;
+        stateChanged();
+        lblStatusLabel.setText("Checking " + puzzle.name() + "...");
+        analyse(true);
+    }
+
+    /**
+     * Makes a move the players have chosen, and checks how much closer it brought them.
+     */
+    private void makeMove(int move) {
+        long next = puzzle.apply(state, move);
+        if (next == Puzzle.ILLEGAL) {
+            Toolkit.getDefaultToolkit().beep();
+            lblStatusLabel.setText("That move can't be made.");
+            return;
+        }
+        String made = puzzle.describeMove(state, move);
+        state = next;
+        movesMade++;
+        isHintWanted = false;
+        stateChanged();
+        if (puzzle.isSolved(state)) {
+            Toolkit.getDefaultToolkit().beep();
+            lblStatusLabel.setText("Solved! " + movesMade + (movesMade == 1 ? " move." : " moves."));
+            return;
+        }
+        lblStatusLabel.setText("Move " + movesMade + ": " + made + ".");
+        analyse(false);
+    }
+
+    private void stateChanged() {
+        generation++;
+        analysis = null;
+        pnlBoard.repaint();
+        for (int move = 0; move < btnMoves.length; move++) {
+            btnMoves[move].setEnabled(!puzzle.isSolved(state) && puzzle.apply(state, move) != Puzzle.ILLEGAL);
+        }
+        btnHint.setEnabled(!puzzle.isSolved(state));
+    }
+
+    /**
+     * Solves the current state in the background, replacing any solve still waiting to start and stopping any
+     * solve still running.
+     *
+     * @param isThorough true to search every state if need be, which proves a puzzle cannot be solved but uses
+     *                   more memory; false for the quick deep search used between moves
+     */
+    private void analyse(boolean isThorough) {
+        long requested = ++generation;
+        Puzzle searched = puzzle;
+        long from = state;
+        solverThread.execute(() -> {
+            // Cancelled once the state changes again or the window closes, as the answer would only be dropped
+            TaskScheduler.Token token = () -> requested != generation || solverThread.isShutdown();
+            if (token.isCancelled()) return;
+            try {
+                PuzzleSolver.Analysis result = isThorough ? PuzzleSolver.analyse(searched, from, token) : PuzzleSolver.solve(searched, from, token);
+                SwingUtilities.invokeLater(() -> analysed(requested, result, isThorough));
+            } catch (CancellationException e) {
+                // Nothing wants the answer any more
+            } catch (RuntimeException | OutOfMemoryError e) {
+                LOGGER.log(Level.WARNING, "Could not solve " + searched.name(), e);
+            }
+        });
+    }
+
+    /**
+     * Reports what the solver found, if the state it was asked about is still the one shown.
+     */
+    private void analysed(long requested, PuzzleSolver.Analysis result, boolean isThorough) {
+        if (requested != generation) return;
+        analysis = result;
+        String took = String.format(" (%,d states in %d ms)", result.statesSearched(), result.nanos() / 1_000_000);
+        String progress = movesMade == 0 ? puzzle.name() + ": " : "Move " + movesMade + ": ";
+        switch (result.status()) {
+            case SOLVED -> lblStatusLabel.setText(progress + "already solved.");
+            case UNSOLVABLE -> lblStatusLabel.setText(progress + "this can no longer be solved. Reset to start again." + took);
+            case UNKNOWN -> lblStatusLabel.setText(progress + "too hard to solve within the search limits." + took);
+            case SOLVABLE -> {
+                String distance = result.minMoves() + (result.minMoves() == 1 ? " move" : " moves") + " from solved";
+                String verdict = "";
+                if (lastDistance >= 0 && !isThorough) {
+                    if (result.minMoves() < lastDistance) verdict = "Closer! ";
+                    else if (result.minMoves() > lastDistance) verdict = "Further away. ";
+                    else verdict = "No nearer. ";
+                }
+                lblStatusLabel.setText(progress + verdict + distance + "." + (isThorough ? took : ""));
+                lastDistance = result.minMoves();
+            }
+        }
+        if (isHintWanted) showHint();
+    }
+
+    /**
+     * Says the next move of a shortest solution, once the solver has found one.
+     */
+    private void showHint() {
+        if (analysis == null) {
+            isHintWanted = true;
+            lblStatusLabel.setText("Working out a hint...");
+            return;
+        }
+        isHintWanted = false;
+        if (analysis.hint() < 0) {
+            lblStatusLabel.setText("There is no move that helps from here.");
+            return;
+        }
+        lblStatusLabel.setText("Hint: " + puzzle.describeMove(state, analysis.hint()) + ". "
+                + analysis.minMoves() + (analysis.minMoves() == 1 ? " move" : " moves") + " to go.");
+        if (btnMoves.length > analysis.hint()) btnMoves[analysis.hint()].requestFocusInWindow();
+    }
+
+    // --- Board ---
+    /**
+     * Draws the current puzzle, whichever kind it is.
+     */
+    private class PuzzleBoard extends JComponent {
+        private PuzzleBoard() {
+            setPreferredSize(new Dimension(Constants.PB_FRAME_WIDTH, Constants.PB_FRAME_HEIGHT / 2));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2d = (Graphics2D) g.create();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setColor(Constants.PB_BOARD_COLOR);
+            g2d.fillRect(0, 0, getWidth(), getHeight());
+            int size = Math.min(getWidth(), getHeight()) - 2 * Constants.GB_INSET_VALS * 2;
+            if (puzzle != null && size > 0) {
+                int x = (getWidth() - size) / 2, y = (getHeight() - size) / 2;
+                if (puzzle instanceof SlidingPuzzle sliding) paintSliding(g2d, sliding, x, y, size);
+                else if (puzzle instanceof RotatingDisksPuzzle disks) paintDisks(g2d, disks, x, y, size);
+                else if (puzzle instanceof SequencePuzzle sequence) paintSequence(g2d, sequence, x, y, size);
+            }
+            g2d.dispose();
+        }
+
+        private void paintSliding(Graphics2D g2d, SlidingPuzzle sliding, int x, int y, int size) {
+            int cellSize = size / Math.max(sliding.getRows(), sliding.getColumns());
+            int gap = Math.max(2, cellSize / 20);
+            g2d.setFont(getFont().deriveFont(Font.BOLD, cellSize / 2.5f));
+            FontMetrics metrics = g2d.getFontMetrics();
+            for (int cell = 0; cell < sliding.getRows() * sliding.getColumns(); cell++) {
+                int block = sliding.blockAt(state, cell);
+                if (block == 0) continue;
+                int left = x + (cell % sliding.getColumns()) * cellSize + gap;
+                int top = y + (cell / sliding.getColumns()) * cellSize + gap;
+                g2d.setColor(Constants.PB_PIECE_COLOR);
+                g2d.fillRoundRect(left, top, cellSize - 2 * gap, cellSize - 2 * gap, gap * 4, gap * 4);
+                g2d.setColor(Constants.PB_PIECE_TEXT_COLOR);
+                String text = Integer.toString(block);
+                g2d.drawString(text, left + (cellSize - 2 * gap - metrics.stringWidth(text)) / 2,
+                        top + (cellSize - 2 * gap + metrics.getAscent() - metrics.getDescent()) / 2);
+            }
+        }
+
+        private void paintDisks(Graphics2D g2d, RotatingDisksPuzzle disks, int x, int y, int size) {
+            int centreX = x + size / 2, centreY = y + size / 2;
+            int ring = size / 2 / (disks.getDisks() + 1);
+            for (int disk = 0; disk < disks.getDisks(); disk++) {
+                int radius = size / 2 - disk * ring;
+                g2d.setColor(disk % 2 == 0 ? Constants.PB_PIECE_COLOR : Constants.PB_PIECE_COLOR.darker());
+                g2d.fillOval(centreX - radius, centreY - radius, radius * 2, radius * 2);
+            }
+            // Each disk's mark sits on this line once it is lined up
+            g2d.setColor(Constants.PB_PIECE_TEXT_COLOR);
+            g2d.drawLine(centreX, y, centreX, centreY - size / 2 + ring * disks.getDisks());
+            int markSize = Math.max(6, ring / 3);
+            g2d.setColor(Constants.PB_MARK_COLOR);
+            for (int disk = 0; disk < disks.getDisks(); disk++) {
+                double angle = 2 * Math.PI * disks.offsetOf(state, disk) / disks.getSteps();
+                int markRadius = size / 2 - disk * ring - ring / 2;
+                int markX = centreX + (int) Math.round(Math.sin(angle) * markRadius);
+                int markY = centreY - (int) Math.round(Math.cos(angle) * markRadius);
+                g2d.fillOval(markX - markSize / 2, markY - markSize / 2, markSize, markSize);
+            }
+        }
+
+        private void paintSequence(Graphics2D g2d, SequencePuzzle sequence, int x, int y, int size) {
+            int orbSize = size / sequence.getOrbs();
+            int diameter = orbSize * 3 / 4;
+            int top = y + (size - orbSize) / 2;
+            for (int orb = 0; orb < sequence.getOrbs(); orb++) {
+                int left = x + orb * orbSize + (orbSize - diameter) / 2;
+                g2d.setColor(orbColor(sequence.colourOf(state, orb)));
+                g2d.fillOval(left, top, diameter, diameter);
+                // The colour the orb has to be set to, as a small stone beneath it
+                int stone = diameter / 4;
+                g2d.setColor(orbColor(sequence.targetOf(orb)));
+                g2d.fillOval(left + (diameter - stone) / 2, top + diameter + stone, stone, stone);
+            }
+        }
+
+        private Color orbColor(int colour) {
+            return Constants.PB_ORB_COLORS[colour % Constants.PB_ORB_COLORS.length];
+        }
+    }
+}
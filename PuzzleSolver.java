@@ -0,0 +1,364 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Works out whether a puzzle can be solved from a state, the fewest moves it takes, and which move to hint at next.
+ * <p>
+ * {@link #analyse} is for preparing a puzzle. It searches outwards from the state one move at a time, on every
+ * core, remembering each state seen, until it reaches a solved state or runs out of new states. Running out proves
+ * the puzzle cannot be solved from there. Puzzles with more states than {@link Constants#PB_SOLVER_MAX_STATES}
+ * are handed on to {@link #solve}.
+ * <p>
+ * {@link #solve} is for checking moves during play. It is iterative deepening A*: depth-first searches, each
+ * allowed a little further than the last, that skip any state whose moves so far plus its
+ * {@link Puzzle#lowerBound} exceed the allowance. It needs almost no memory, and with a good lower bound it finds
+ * the shortest solution of a typical puzzle in milliseconds. The first few moves are spread out into many
+ * starting points, searched in parallel.
+ * <p>
+ * Both look at states as packed longs and allocate nothing per state beyond the growing set of states seen. Both
+ * can be given a token, checked every {@value #CHECK_INTERVAL} states or so, to stop a search no longer wanted.
+ */
+public final class PuzzleSolver {
+    // Do not use the constructor. There is nothing to use
+    private PuzzleSolver() {}
+
+    // How many starting points a parallel search is split into per core, so cores that finish early find more work
+    private static final int SPLITS_PER_CORE = 8;
+    // How many states a search thread looks at between checking whether it should stop
+    private static final int CHECK_INTERVAL = 1 << 14;
+
+    /**
+     * What the solver found out about a state
+     */
+    public enum Status {
+        SOLVED, SOLVABLE, UNSOLVABLE,
+        // Too big a puzzle to settle within the solver's limits
+        UNKNOWN
+    }
+
+    /**
+     * @param status         Whether the state can be solved
+     * @param minMoves       The fewest moves that solve it, or -1 unless it is solvable
+     * @param hint           The first move of a shortest solution, or -1 if there is none
+     * @param statesSearched How many states were looked at
+     * @param nanos          How long it took
+     */
+    public record Analysis(Status status, int minMoves, int hint, long statesSearched, long nanos) {
+    }
+
+    /**
+     * Settles whether a state can be solved, searching every state reachable from it if need be.
+     *
+     * @param puzzle The puzzle
+     * @param state  The state to start from
+     * @return What was found
+     */
+    public static Analysis analyse(Puzzle puzzle, long state) {
+        return analyse(puzzle, state, () -> false);
+    }
+
+    /**
+     * Settles whether a state can be solved, searching every state reachable from it if need be.
+     *
+     * @param puzzle The puzzle
+     * @param state  The state to start from
+     * @param token  Stops the search when cancelled
+     * @return What was found
+     * @throws CancellationException if the token is cancelled before the search finishes
+     */
+    public static Analysis analyse(Puzzle puzzle, long state, TaskScheduler.Token token) {
+        long startNanos = System.nanoTime();
+        if (puzzle.isSolved(state)) return new Analysis(Status.SOLVED, 0, -1, 1, System.nanoTime() - startNanos);
+        if (!puzzle.mightBeSolvable(state)) return new Analysis(Status.UNSOLVABLE, -1, -1, 0, System.nanoTime() - startNanos);
+
+        StateSet seen = new StateSet(1 << 12);
+        seen.add(state);
+        long[] frontier = {state};
+        byte[] firstMoves = {-1};
+        int moveCount = puzzle.moveCount();
+        for (int depth = 0; frontier.length > 0; depth++) {
+            // Make sure every state the level could reach fits, or give up on searching everything
+            long mostNew = (long) frontier.length * moveCount;
+            if (seen.size() + mostNew > Constants.PB_SOLVER_MAX_STATES) {
+                Analysis deep = solve(puzzle, state, token);
+                return new Analysis(deep.status(), deep.minMoves(), deep.hint(), seen.size() + deep.statesSearched(),
+                        System.nanoTime() - startNanos);
+            }
+            seen = seen.withRoomFor(mostNew);
+
+            Level level = expand(puzzle, frontier, firstMoves, seen, token);
+            token.throwIfCancelled();
+            if (level.solvedHint >= 0) {
+                return new Analysis(Status.SOLVABLE, depth + 1, level.solvedHint, seen.size(), System.nanoTime() - startNanos);
+            }
+            frontier = level.states;
+            firstMoves = level.firstMoves;
+        }
+        return new Analysis(Status.UNSOLVABLE, -1, -1, seen.size(), System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Finds a shortest solution from a state by iterative deepening A*, giving up after
+     * {@link Constants#PB_SOLVER_MAX_NODES} states.
+     *
+     * @param puzzle The puzzle
+     * @param state  The state to start from
+     * @return What was found. Never UNSOLVABLE unless the puzzle can tell without searching
+     */
+    public static Analysis solve(Puzzle puzzle, long state) {
+        return solve(puzzle, state, () -> false);
+    }
+
+    /**
+     * Finds a shortest solution from a state by iterative deepening A*, giving up after
+     * {@link Constants#PB_SOLVER_MAX_NODES} states.
+     *
+     * @param puzzle The puzzle
+     * @param state  The state to start from
+     * @param token  Stops the search when cancelled
+     * @return What was found. Never UNSOLVABLE unless the puzzle can tell without searching
+     * @throws CancellationException if the token is cancelled before the search finishes
+     */
+    public static Analysis solve(Puzzle puzzle, long state, TaskScheduler.Token token) {
+        long startNanos = System.nanoTime();
+        if (puzzle.isSolved(state)) return new Analysis(Status.SOLVED, 0, -1, 1, System.nanoTime() - startNanos);
+        if (!puzzle.mightBeSolvable(state)) return new Analysis(Status.UNSOLVABLE, -1, -1, 0, System.nanoTime() - startNanos);
+
+        AtomicLong nodes = new AtomicLong();
+        int bound = puzzle.lowerBound(state);
+        while (true) {
+            Search search = new Search(puzzle, bound, nodes, token);
+            List<long[]> starts = search.split(state, Runtime.getRuntime().availableProcessors() * SPLITS_PER_CORE);
+            if (search.hint.get() < 0) {
+                IntStream.range(0, starts.size()).parallel().forEach(i -> search.run(starts.get(i)));
+            }
+            // A search stopped part way has not proved anything about the allowance
+            token.throwIfCancelled();
+            if (search.hint.get() >= 0) {
+                return new Analysis(Status.SOLVABLE, bound, search.hint.get(), nodes.get(), System.nanoTime() - startNanos);
+            }
+            if (nodes.get() >= Constants.PB_SOLVER_MAX_NODES || search.nextBound.get() == Integer.MAX_VALUE) {
+                return new Analysis(Status.UNKNOWN, -1, -1, nodes.get(), System.nanoTime() - startNanos);
+            }
+            bound = search.nextBound.get();
+        }
+    }
+
+    // -- Breadth first --
+    /**
+     * The new states one move on from a level, and the first move of the path to each
+     *
+     * @param solvedHint The first move towards a solved state if one was reached, otherwise -1
+     */
+    private record Level(long[] states, byte[] firstMoves, int solvedHint) {
+    }
+
+    /**
+     * Makes every move from every state of a level, in parallel chunks, keeping the states not seen before. A chunk
+     * stops early once the token is cancelled, leaving the level incomplete for the caller to throw away.
+     */
+    private static Level expand(Puzzle puzzle, long[] frontier, byte[] firstMoves, StateSet seen, TaskScheduler.Token token) {
+        int chunks = Math.min(frontier.length, Runtime.getRuntime().availableProcessors() * SPLITS_PER_CORE);
+        AtomicInteger solvedHint = new AtomicInteger(-1);
+        Level[] results = new Level[chunks];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = (int) ((long) frontier.length * chunk / chunks);
+            int to = (int) ((long) frontier.length * (chunk + 1) / chunks);
+            long[] found = new long[Math.max(16, (to - from) * 2)];
+            byte[] foundFirst = new byte[found.length];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if ((i - from) % CHECK_INTERVAL == CHECK_INTERVAL - 1 && token.isCancelled()) break;
+                for (int move = 0; move < puzzle.moveCount(); move++) {
+                    long next = puzzle.apply(frontier[i], move);
+                    if (next == Puzzle.ILLEGAL || !seen.add(next)) continue;
+                    byte first = firstMoves[i] < 0 ? (byte) move : firstMoves[i];
+                    if (puzzle.isSolved(next)) solvedHint.compareAndSet(-1, first);
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                        foundFirst = Arrays.copyOf(foundFirst, count * 2);
+                    }
+                    found[count] = next;
+                    foundFirst[count++] = first;
+                }
+            }
+            results[chunk] = new Level(Arrays.copyOf(found, count), Arrays.copyOf(foundFirst, count), -1);
+        });
+
+        int total = 0;
+        for (Level result : results) total += result.states.length;
+        long[] states = new long[total];
+        byte[] firsts = new byte[total];
+        int at = 0;
+        for (Level result : results) {
+            System.arraycopy(result.states, 0, states, at, result.states.length);
+            System.arraycopy(result.firstMoves, 0, firsts, at, result.firstMoves.length);
+            at += result.states.length;
+        }
+        return new Level(states, firsts, solvedHint.get());
+    }
+
+    /**
+     * A set of states that many threads can add to at once, by open addressing over an array of longs. Each
+     * state is stored plus one, so 0 can mark a free slot; no real state is -1. Only grown between levels, while
+     * nothing is adding.
+     */
+    private static final class StateSet {
+        private final AtomicLongArray slots;
+        private final int mask;
+        private final AtomicLong size = new AtomicLong();
+
+        private StateSet(int capacity) {
+            slots = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+
+        private long size() {
+            return size.get();
+        }
+
+        /**
+         * @return This set if it can take that many more states at half full, otherwise a bigger copy
+         */
+        private StateSet withRoomFor(long more) {
+            long needed = (size.get() + more) * 2;
+            if (needed <= slots.length()) return this;
+            StateSet bigger = new StateSet((int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1));
+            for (int i = 0; i < slots.length(); i++) {
+                long stored = slots.get(i);
+                if (stored != 0) bigger.add(stored - 1);
+            }
+            return bigger;
+        }
+
+        /**
+         * @return true if the state was not in the set before
+         */
+        private boolean add(long state) {
+            long stored = state + 1;
+            int slot = mix(state) & mask;
+            while (true) {
+                long current = slots.get(slot);
+                if (current == stored) return false;
+                if (current == 0) {
+                    if (slots.compareAndSet(slot, 0, stored)) {
+                        size.incrementAndGet();
+                        return true;
+                    }
+                    // Another thread took the slot first, so look at what it put there
+                    continue;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private static int mix(long state) {
+            long h = state * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    // -- Iterative deepening A* --
+    /**
+     * One round of depth-first searches, each allowed the same number of moves
+     */
+    private static final class Search {
+        private static final int FOUND = -1;
+
+        private final Puzzle puzzle;
+        private final int bound;
+        private final AtomicLong nodes;
+        private final TaskScheduler.Token token;
+        // Set by whichever thread first sees the token cancelled, so the others stop without asking it
+        private volatile boolean isCancelled;
+        // The first move of a solution once any thread finds one
+        private final AtomicInteger hint = new AtomicInteger(-1);
+        // The smallest total that went over the allowance, which is the next round's allowance
+        private final AtomicInteger nextBound = new AtomicInteger(Integer.MAX_VALUE);
+
+        private Search(Puzzle puzzle, int bound, AtomicLong nodes, TaskScheduler.Token token) {
+            this.puzzle = puzzle;
+            this.bound = bound;
+            this.nodes = nodes;
+            this.token = token;
+        }
+
+        /**
+         * Makes the first few moves breadth first, until there are enough starting points to share out.
+         *
+         * @return The starting points, each {state, moves so far, first move, last move}
+         */
+        private List<long[]> split(long state, int wanted) {
+            List<long[]> level = new ArrayList<>();
+            level.add(new long[]{state, 0, -1, -1});
+            while (level.size() < wanted) {
+                List<long[]> next = new ArrayList<>();
+                for (long[] start : level) {
+                    int moves = (int) start[1];
+                    for (int move = 0; move < puzzle.moveCount(); move++) {
+                        if (start[3] >= 0 && move == puzzle.inverseOf((int) start[3])) continue;
+                        long child = puzzle.apply(start[0], move);
+                        if (child == Puzzle.ILLEGAL) continue;
+                        nodes.incrementAndGet();
+                        int total = moves + 1 + puzzle.lowerBound(child);
+                        if (total > bound) {
+                            nextBound.accumulateAndGet(total, Math::min);
+                            continue;
+                        }
+                        int first = start[2] < 0 ? move : (int) start[2];
+                        if (puzzle.isSolved(child)) {
+                            hint.compareAndSet(-1, first);
+                            return List.of();
+                        }
+                        next.add(new long[]{child, moves + 1, first, move});
+                    }
+                }
+                if (next.isEmpty()) return next;
+                level = next;
+            }
+            return level;
+        }
+
+        private void run(long[] start) {
+            int[] counted = new int[1];
+            int result = search(start[0], (int) start[1], (int) start[3], counted);
+            nodes.addAndGet(counted[0]);
+            if (result == FOUND) hint.compareAndSet(-1, (int) start[2]);
+            else if (result != Integer.MAX_VALUE) nextBound.accumulateAndGet(result, Math::min);
+        }
+
+        /**
+         * @return FOUND, or the smallest total over the allowance below this state
+         */
+        private int search(long state, int moves, int lastMove, int[] counted) {
+            if (++counted[0] == CHECK_INTERVAL) {
+                nodes.addAndGet(counted[0]);
+                counted[0] = 0;
+                if (token.isCancelled()) isCancelled = true;
+            }
+            int total = moves + puzzle.lowerBound(state);
+            if (total > bound) return total;
+            if (puzzle.isSolved(state)) return FOUND;
+            // Another thread has solved it, the search has gone on too long, or it is no longer wanted
+            if (hint.get() >= 0 || isCancelled || nodes.get() >= Constants.PB_SOLVER_MAX_NODES) return Integer.MAX_VALUE;
+
+            int smallest = Integer.MAX_VALUE;
+            int skip = lastMove >= 0 ? puzzle.inverseOf(lastMove) : -1;
+            for (int move = 0; move < puzzle.moveCount(); move++) {
+                if (move == skip) continue;
+                long next = puzzle.apply(state, move);
+                if (next == Puzzle.ILLEGAL) continue;
+                int result = search(next, moves + 1, move, counted);
+                if (result == FOUND) return FOUND;
+                if (result < smallest) smallest = result;
+            }
+            return smallest;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * A harness for checking that {@link PuzzleSolver} finds the fewest moves, and hints at a move that keeps to them.
+ * <p>
+ * Random sliding puzzles up to 3x3, rotating disk puzzles and sequence puzzles are scrambled, then each start is
+ * solved both ways the solver can and by a plain single-threaded breadth first search that tries every move in
+ * turn. The solver must agree on whether the puzzle can be solved and in how few moves, and its hint must lead to a
+ * state one move nearer. Lastly a search that could run for minutes is cancelled, and must stop promptly.
+ * <p>
+ * Run with {@code ant simulate}, alongside the playback scenarios. An optional argument is the seed.
+ */
+public class PuzzleSolverChecker {
+    private static final int TRIALS = 100;
+    // How long a search runs before it is cancelled, and how much longer it may go on before it counts as not stopping
+    private static final long CANCEL_AFTER_NANOS = 1_000_000_000L;
+    private static final long MOST_LATE_NANOS = 500_000_000L;
+
+    private int checksRun;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Runs every check, and exits with a failure code if any failed.
+     *
+     * @param args [seed]
+     */
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1L;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        PuzzleSolverChecker checker = new PuzzleSolverChecker();
+        for (int trial = 0; trial < TRIALS; trial++) {
+            checker.check(randomSliding(random), trial);
+            checker.check(randomDisks(random), trial);
+            checker.check(randomSequence(random), trial);
+        }
+        checker.checkCancelling();
+
+        System.out.printf("Ran %d puzzle solver checks%n", checker.checksRun);
+        if (checker.failures.isEmpty()) {
+            System.out.println("All checks passed.");
+        } else {
+            checker.failures.stream().limit(20).forEach(System.out::println);
+            System.out.printf("%d checks FAILED%n", checker.failures.size());
+            System.exit(1);
+        }
+    }
+
+    // -- Puzzles --
+    /**
+     * A grid of 2x2 up to 3x3, scrambled by random slides. One in five has two blocks swapped afterwards, which
+     * can never be solved.
+     */
+    private static Puzzle randomSliding(SplittableRandom random) {
+        int rows = 2 + random.nextInt(2);
+        int columns = 2 + random.nextInt(2);
+        SlidingPuzzle scrambled = SlidingPuzzle.scrambled("sliding", rows, columns, random.nextInt(40), random.nextLong());
+        if (random.nextInt(5) > 0) return scrambled;
+        long start = scrambled.startState();
+        int cells = rows * columns;
+        int first = random.nextInt(cells), second = (first + 1 + random.nextInt(cells - 1)) % cells;
+        // Moving the gap as well would not settle which half of all layouts the result is in
+        if (scrambled.blockAt(start, first) == 0 || scrambled.blockAt(start, second) == 0) return scrambled;
+        long a = (start >>> (first * 4)) & 0xF, b = (start >>> (second * 4)) & 0xF;
+        start = (start & ~(0xFL << (first * 4)) & ~(0xFL << (second * 4))) | (b << (first * 4)) | (a << (second * 4));
+        return new SlidingPuzzle("swapped sliding", rows, columns, start);
+    }
+
+    /**
+     * Up to five disks of up to six steps, each linked to a few others at random, so some cannot be lined up.
+     */
+    private static Puzzle randomDisks(SplittableRandom random) {
+        int disks = 1 + random.nextInt(5);
+        int steps = 2 + random.nextInt(5);
+        int[][] links = new int[disks][];
+        int[] starts = new int[disks];
+        for (int disk = 0; disk < disks; disk++) {
+            links[disk] = randomSubset(random, disks, disk);
+            starts[disk] = random.nextInt(steps);
+        }
+        return new RotatingDisksPuzzle("disks", steps, links, starts);
+    }
+
+    /**
+     * Up to five orbs of up to four colours, and up to five glyphs each moving a few orbs at random.
+     */
+    private static Puzzle randomSequence(SplittableRandom random) {
+        int orbs = 1 + random.nextInt(5);
+        int colours = 2 + random.nextInt(3);
+        int[] starts = new int[orbs];
+        int[] targets = new int[orbs];
+        for (int orb = 0; orb < orbs; orb++) {
+            starts[orb] = random.nextInt(colours);
+            targets[orb] = random.nextInt(colours);
+        }
+        int[][] glyphs = new int[1 + random.nextInt(5)][];
+        String[] glyphNames = new String[glyphs.length];
+        for (int glyph = 0; glyph < glyphs.length; glyph++) {
+            int[] others = randomSubset(random, orbs, -1);
+            glyphs[glyph] = others.length > 0 ? others : new int[]{random.nextInt(orbs)};
+            glyphNames[glyph] = "glyph " + glyph;
+        }
+        return new SequencePuzzle("sequence", colours, starts, targets, glyphs, glyphNames);
+    }
+
+    /**
+     * @return Each of 0 to count - 1 but the one left out, kept with a chance of one in three
+     */
+    private static int[] randomSubset(SplittableRandom random, int count, int leftOut) {
+        return IntStream.range(0, count).filter(i -> i != leftOut && random.nextInt(3) == 0).toArray();
+    }
+
+    // -- Solving --
+    private void check(Puzzle puzzle, int trial) {
+        long start = puzzle.startState();
+        String name = puzzle.name() + " " + trial + " from " + Long.toHexString(start);
+        int expected = fewestMoves(puzzle, start);
+
+        checksRun++;
+        checkAnalysis(name + " analysed", puzzle, start, expected, PuzzleSolver.analyse(puzzle, start));
+        // A deep search only stops on a puzzle it cannot solve when it reaches the node limit, which takes minutes
+        if (expected >= 0 || !puzzle.mightBeSolvable(start)) {
+            checksRun++;
+            checkAnalysis(name + " solved", puzzle, start, expected, PuzzleSolver.solve(puzzle, start));
+        }
+    }
+
+    private void checkAnalysis(String name, Puzzle puzzle, long start, int expected, PuzzleSolver.Analysis analysis) {
+        PuzzleSolver.Status status = expected == 0 ? PuzzleSolver.Status.SOLVED
+                : expected > 0 ? PuzzleSolver.Status.SOLVABLE : PuzzleSolver.Status.UNSOLVABLE;
+        if (analysis.status() != status) {
+            failures.add(name + ": " + analysis.status() + " but a plain search says " + status);
+            return;
+        }
+        if (status != PuzzleSolver.Status.SOLVABLE) return;
+        if (analysis.minMoves() != expected) {
+            failures.add(name + ": " + analysis.minMoves() + " moves but the fewest are " + expected);
+            return;
+        }
+        checksRun++;
+        int hint = analysis.hint();
+        long next = hint >= 0 && hint < puzzle.moveCount() ? puzzle.apply(start, hint) : Puzzle.ILLEGAL;
+        if (next == Puzzle.ILLEGAL || fewestMoves(puzzle, next) != expected - 1) {
+            failures.add(name + ": hint " + hint + " does not lead one move nearer");
+        }
+    }
+
+    /**
+     * Searches outwards from a state one move at a time, the plain way, until a solved state turns up.
+     *
+     * @return The fewest moves from the state to solved, or -1 if none can be reached
+     */
+    private static int fewestMoves(Puzzle puzzle, long state) {
+        Set<Long> seen = new HashSet<>();
+        seen.add(state);
+        List<Long> level = List.of(state);
+        for (int depth = 0; !level.isEmpty(); depth++) {
+            List<Long> next = new ArrayList<>();
+            for (long at : level) {
+                if (puzzle.isSolved(at)) return depth;
+                for (int move = 0; move < puzzle.moveCount(); move++) {
+                    long moved = puzzle.apply(at, move);
+                    if (moved != Puzzle.ILLEGAL && seen.add(moved)) next.add(moved);
+                }
+            }
+            level = next;
+        }
+        return -1;
+    }
+
+    // -- Cancelling --
+    /**
+     * Nineteen orbs with a glyph each, and two more that only ever move together but must end up apart. No search
+     * can tell it is hopeless short of the node limit, which takes seconds, so both ways of solving must be
+     * cancelled to stop. Each round of the deep search here is many times longer than the last, so one that
+     * only looked at the token between rounds would run on long after being cancelled.
+     */
+    private void checkCancelling() {
+        int orbs = 21;
+        int[] starts = new int[orbs];
+        int[] targets = new int[orbs];
+        targets[0] = 1;
+        int[][] glyphs = new int[orbs - 1][];
+        String[] glyphNames = new String[glyphs.length];
+        glyphs[0] = new int[]{0, 1};
+        for (int orb = 2; orb < orbs; orb++) {
+            glyphs[orb - 1] = new int[]{orb};
+            targets[orb] = 7;
+        }
+        for (int glyph = 0; glyph < glyphs.length; glyph++) glyphNames[glyph] = "glyph " + glyph;
+        Puzzle hopeless = new SequencePuzzle("hopeless", 8, starts, targets, glyphs, glyphNames);
+
+        checkCancelled("solve", token -> PuzzleSolver.solve(hopeless, hopeless.startState(), token));
+        checkCancelled("analyse", token -> PuzzleSolver.analyse(hopeless, hopeless.startState(), token));
+    }
+
+    private void checkCancelled(String name, Function<TaskScheduler.Token, PuzzleSolver.Analysis> search) {
+        checksRun++;
+        long deadline = System.nanoTime() + CANCEL_AFTER_NANOS;
+        try {
+            PuzzleSolver.Analysis analysis = search.apply(() -> System.nanoTime() >= deadline);
+            failures.add("cancelled " + name + ": finished anyway, " + analysis.status());
+            return;
+        } catch (CancellationException e) {
+            // As it should
+        }
+        long late = System.nanoTime() - deadline;
+        if (late > MOST_LATE_NANOS) failures.add(String.format("cancelled %s: took %d ms to stop", name, late / 1_000_000));
+    }
+}
@@ -0,0 +1,455 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lets a phone or tablet on the same network drive Groove Buddy from a browser.
+ * <p>
+ * Built on the JDK's own HTTP server, so nothing outside the JDK is needed. Commands are plain POSTs, and the
+ * playhead and state are pushed to the page as server-sent events. Only the broadcaster thread pushes: it puts
+ * each new state on every open page's own short queue, and a thread per page writes it out, so a page on a slow
+ * connection only ever holds up itself. A page that falls {@link Constants#GB_REMOTE_EVENT_QUEUE} pushes behind
+ * is disconnected, and a command only asks the broadcaster to push straight away.
+ * <p>
+ * Every request must carry the token generated at startup, either as a {@code token} query parameter or an
+ * {@code X-Remote-Token} header. The page link shown in the app includes it.
+ */
+public class RemoteControlServer {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(RemoteControlServer.class.getName());
+    private static final String PAGE_NAME = "remote.html";
+    private static final int REQUEST_THREADS = 4;
+    // Queued to wake a page's writer when the page is disconnected
+    private static final String DISCONNECT = "";
+
+    /**
+     * The things a remote can do. Every method is called on the EDT.
+     */
+    public interface Actions {
+        void play();
+
+        void pause();
+
+        void stop();
+
+        /**
+         * @param microseconds The position to move to
+         */
+        void seek(long microseconds);
+
+        /**
+         * @param index The position of the track in the file list
+         */
+        void load(int index);
+
+        /**
+         * @return The tracks in the file list, in order
+         */
+        List<File> tracks();
+    }
+
+    /**
+     * An open events connection, with the pushes waiting to be written to it
+     */
+    private static final class EventClient {
+        private final OutputStream body;
+        private final BlockingQueue<String> events = new ArrayBlockingQueue<>(Constants.GB_REMOTE_EVENT_QUEUE);
+        private volatile boolean isDisconnected;
+
+        private EventClient(OutputStream body) {
+            this.body = body;
+        }
+    }
+
+    private final AudioService audioService;
+    private final Actions actions;
+    private final String token;
+    private final List<EventClient> eventClients = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    private ScheduledExecutorService broadcaster;
+    // One thread per open page, writing out its pushes
+    private ExecutorService eventWriters;
+    private byte[] page;
+    // Only touched by the broadcaster
+    private String lastState = "";
+    // -- Command latency, guarded by this --
+    private long timedCommands;
+    private long totalLatencyMicros;
+    private long maxLatencyMicros;
+
+    /**
+     * @param audioService The service to report the state of
+     * @param actions      What to do when a remote sends a command
+     */
+    public RemoteControlServer(AudioService audioService, Actions actions) {
+        this.audioService = audioService;
+        this.actions = actions;
+        byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        this.token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+    }
+
+    /**
+     * Starts listening on every network interface.
+     *
+     * @param port The port to listen on
+     * @throws IOException if the port cannot be opened or the page cannot be read
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) return;
+        page = readPage();
+        lastState = "";
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        requestExecutor = Executors.newFixedThreadPool(REQUEST_THREADS, daemonThreads("GrooveBuddy-Remote"));
+        server.setExecutor(requestExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+
+        eventWriters = Executors.newCachedThreadPool(daemonThreads("GrooveBuddy-RemoteEventWriter"));
+        broadcaster = Executors.newSingleThreadScheduledExecutor(daemonThreads("GrooveBuddy-RemoteEvents"));
+        broadcaster.scheduleAtFixedRate(this::broadcastState, 0, Constants.GB_REMOTE_STATE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        LOGGER.log(Level.INFO, "Remote control listening on port {0}", String.valueOf(port));
+    }
+
+    /**
+     * Disconnects every remote and stops listening.
+     */
+    public synchronized void stop() {
+        if (server == null) return;
+        broadcaster.shutdownNow();
+        for (EventClient client : eventClients) disconnect(client);
+        // Wakes any writer still blocked, which then closes its page's connection
+        eventWriters.shutdownNow();
+        server.stop(0);
+        requestExecutor.shutdownNow();
+        server = null;
+        logLatencyStats();
+    }
+
+    /**
+     * @return true while the server is listening
+     */
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @param port The port the server listens on
+     * @return Links to the control page, one per address this machine can be reached at, each carrying the token
+     */
+    public List<String> getPageUrls(int port) {
+        List<String> urls = new ArrayList<>();
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!networkInterface.isUp() || networkInterface.isLoopback()) continue;
+                for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                    if (address instanceof Inet4Address && address.isSiteLocalAddress()) {
+                        urls.add("http://" + address.getHostAddress() + ":" + port + "/?token=" + token);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not list network addresses", e);
+        }
+        urls.add("http://localhost:" + port + "/?token=" + token);
+        return urls;
+    }
+
+    /**
+     * Writes the average and worst command-to-audio latency to the log.
+     */
+    public synchronized void logLatencyStats() {
+        if (timedCommands == 0) return;
+        LOGGER.log(Level.INFO, String.format("Remote commands: %d timed, command to audio avg %.1f ms, max %.1f ms",
+                timedCommands, totalLatencyMicros / 1000.0 / timedCommands, maxLatencyMicros / 1000.0));
+    }
+
+    // -- Requests --
+    private void handle(HttpExchange exchange) throws IOException {
+        long receivedNanos = System.nanoTime();
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (!hasToken(exchange, query)) {
+                respond(exchange, 403, "text/plain", "Missing or wrong token");
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/") || path.equals("/" + PAGE_NAME)) {
+                respond(exchange, 200, "text/html; charset=utf-8", page);
+                return;
+            }
+            if (path.equals("/api/state")) {
+                respond(exchange, 200, "application/json", stateJson());
+                return;
+            }
+            if (path.equals("/api/files")) {
+                respond(exchange, 200, "application/json", filesJson());
+                return;
+            }
+            if (path.equals("/api/events")) {
+                openEventStream(exchange);
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "text/plain", "Commands must be sent with POST");
+                return;
+            }
+
+            switch (path) {
+                case "/api/play" -> command(exchange, receivedNanos, actions::play, true);
+                case "/api/pause" -> command(exchange, receivedNanos, actions::pause, true);
+                case "/api/stop" -> command(exchange, receivedNanos, actions::stop, true);
+                case "/api/seek" -> {
+                    long millis = Long.parseLong(query.getOrDefault("ms", "0"));
+                    command(exchange, receivedNanos, () -> actions.seek(millis * 1000), true);
+                }
+                case "/api/load" -> {
+                    int index = Integer.parseInt(query.getOrDefault("index", "-1"));
+                    // Loading finishes in the background, so there is no audio to time it against yet
+                    command(exchange, receivedNanos, () -> actions.load(index), false);
+                }
+                default -> respond(exchange, 404, "text/plain", "No such command");
+            }
+        } catch (NumberFormatException e) {
+            respond(exchange, 400, "text/plain", "Bad number: " + e.getMessage());
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Remote request failed", e);
+            respond(exchange, 500, "text/plain", "Request failed");
+        }
+    }
+
+    /**
+     * Runs a command on the EDT, then times how long it took to reach the audio.
+     */
+    private void command(HttpExchange exchange, long receivedNanos, Runnable action, boolean timeAudio)
+            throws IOException, InterruptedException, InvocationTargetException {
+        SwingUtilities.invokeAndWait(action);
+        long latencyMicros = timeAudio ? audioService.measureCommandLatencyMicros(receivedNanos) : -1;
+        if (latencyMicros >= 0) {
+            synchronized (this) {
+                timedCommands++;
+                totalLatencyMicros += latencyMicros;
+                maxLatencyMicros = Math.max(maxLatencyMicros, latencyMicros);
+            }
+            LOGGER.log(Level.FINE, "Remote {0} reached the audio in {1} us", new Object[]{exchange.getRequestURI().getPath(), latencyMicros});
+        }
+        respond(exchange, 200, "application/json",
+                "{\"ok\":true,\"latencyMs\":" + (latencyMicros < 0 ? "null" : String.format("%.1f", latencyMicros / 1000.0)) + "}");
+        pushStateNow();
+    }
+
+    private boolean hasToken(HttpExchange exchange, Map<String, String> query) {
+        String offered = exchange.getRequestHeaders().getFirst("X-Remote-Token");
+        if (offered == null) offered = query.get("token");
+        // Compared in constant time, so the token cannot be guessed a character at a time
+        return offered != null && MessageDigest.isEqual(offered.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // -- Events --
+    private void openEventStream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        EventClient client = new EventClient(exchange.getResponseBody());
+        // The current state goes out first, then the connection is left to its writer
+        client.events.add(stateJson());
+        synchronized (this) {
+            if (server == null) {
+                closeQuietly(client.body);
+                return;
+            }
+            eventClients.add(client);
+            eventWriters.execute(() -> writeEvents(client));
+        }
+    }
+
+    /**
+     * Asks the broadcaster to push the state now rather than at its next tick.
+     */
+    private synchronized void pushStateNow() {
+        if (server != null) broadcaster.execute(this::broadcastState);
+    }
+
+    /**
+     * Queues the state for every open page, if it has changed since the last push. Runs on the broadcaster only.
+     * A page whose queue is full has fallen too far behind, and is disconnected.
+     */
+    private void broadcastState() {
+        if (eventClients.isEmpty()) return;
+        String state = stateJson();
+        if (state.equals(lastState)) return;
+        lastState = state;
+        for (EventClient client : eventClients) {
+            if (!client.events.offer(state)) {
+                LOGGER.log(Level.INFO, "Disconnected a remote that fell behind");
+                disconnect(client);
+            }
+        }
+    }
+
+    /**
+     * Writes a page's pushes out as they come, until it is disconnected or the connection fails. Runs on the page's
+     * own writer thread, so a slow connection holds up nothing else.
+     */
+    private void writeEvents(EventClient client) {
+        try {
+            while (!client.isDisconnected) {
+                String json = client.events.take();
+                if (client.isDisconnected || !sendEvent(client.body, json)) break;
+            }
+        } catch (InterruptedException e) {
+            // The server is stopping
+        } finally {
+            disconnect(client);
+            closeQuietly(client.body);
+        }
+    }
+
+    /**
+     * Stops pushing to a page. Its writer closes the connection, so this never waits on the network.
+     */
+    private void disconnect(EventClient client) {
+        client.isDisconnected = true;
+        eventClients.remove(client);
+        client.events.clear();
+        client.events.offer(DISCONNECT);
+    }
+
+    private static boolean sendEvent(OutputStream client, String json) {
+        try {
+            client.write(("data: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+            client.flush();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // -- JSON --
+    private String stateJson() {
+        File track = audioService.getCurrentlyLoadedFile();
+        PlaybackEngine.Snapshot state = audioService.getSnapshot();
+        return "{\"playing\":" + state.isPlaying()
+                + ",\"positionMs\":" + state.positionMicroseconds() / 1000
+                + ",\"lengthMs\":" + state.lengthMicroseconds() / 1000
+                + ",\"tempo\":" + state.tempo()
+                + ",\"track\":" + (track == null ? "null" : quote(track.getName())) + "}";
+    }
+
+    private String filesJson() throws InterruptedException, InvocationTargetException {
+        List<File> tracks = onEdt(actions::tracks);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < tracks.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append(quote(tracks.get(i).getName()));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                default -> {
+                    if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+                    else quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    // -- Helpers --
+    private static <T> T onEdt(Supplier<T> supplier) throws InterruptedException, InvocationTargetException {
+        List<T> result = new ArrayList<>(1);
+        SwingUtilities.invokeAndWait(() -> result.add(supplier.get()));
+        return result.get(0);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0) continue;
+            query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        respond(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Reads the control page, from the build output or the project folder.
+     */
+    private static byte[] readPage() throws IOException {
+        InputStream built = RemoteControlServer.class.getResourceAsStream("remote/" + PAGE_NAME);
+        try (InputStream in = built != null ? built : RemoteControlServer.class.getResourceAsStream("resources/remote/" + PAGE_NAME)) {
+            if (in == null) throw new IOException("Remote control page not found at: resources/remote/" + PAGE_NAME);
+            return in.readAllBytes();
+        }
+    }
+
+    private static void closeQuietly(OutputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,241 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Converts decoded audio from one sample rate to another with a polyphase windowed-sinc filter.
+ * <p>
+ * The filter is tabulated once per pair of rates. When the ratio between the rates reduces to a small fraction
+ * (44.1 kHz to 48 kHz is 147/160) every phase the conversion needs is tabulated exactly. For unusual rates
+ * the table holds a fixed number of phases and the coefficients are interpolated between neighbours.
+ * <p>
+ * Every output frame depends only on the input, so long tracks are split into chunks converted in parallel.
+ */
+public final class Resampler {
+    // Half the filter length, in zero crossings of the sinc. More is a steeper cutoff at the price of more work
+    private static final int ZERO_CROSSINGS = 16;
+    // Where the passband ends, as a fraction of the lower of the two Nyquist frequencies
+    private static final double ROLLOFF = 0.945;
+    // Kaiser window shape. 9 keeps the stopband around -90 dB
+    private static final double KAISER_BETA = 9.0;
+    // Ratios needing more phases than this use an interpolated table of this many phases instead
+    private static final int MAX_TABLE_PHASES = 1024;
+    private static final int CHUNK_FRAMES = 1 << 16;
+    private static final Map<Long, Resampler> CACHE = new ConcurrentHashMap<>();
+
+    private final int inputRate;
+    private final int outputRate;
+    // Output frame n sits at input position n * step / phaseCount, in whole input frames plus a phase
+    private final long step;
+    private final long phaseCount;
+    private final boolean isExact;
+    private final int tablePhases;
+    private final int taps;
+    private final int halfTaps;
+    private final float[] table;
+
+    /**
+     * Builds the filter table for a pair of rates. Prefer {@link #forRates(int, int)}, which shares tables.
+     *
+     * @param inputRate  The rate of the audio going in
+     * @param outputRate The rate of the audio coming out
+     */
+    public Resampler(int inputRate, int outputRate) {
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        long gcd = gcd(inputRate, outputRate);
+        this.step = inputRate / gcd;
+        this.phaseCount = outputRate / gcd;
+        this.isExact = phaseCount <= MAX_TABLE_PHASES;
+        this.tablePhases = isExact ? (int) phaseCount : MAX_TABLE_PHASES;
+
+        // The cutoff, in cycles per input sample, sits below whichever Nyquist frequency is lower
+        double cutoff = Math.min(1.0, (double) outputRate / inputRate) * ROLLOFF;
+        this.halfTaps = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+        this.taps = halfTaps * 2;
+
+        // One extra phase at the end so interpolation can always look one phase ahead
+        this.table = new float[(tablePhases + 1) * taps];
+        double window0 = besselI0(KAISER_BETA);
+        for (int phase = 0; phase <= tablePhases; phase++) {
+            double fraction = (double) phase / tablePhases;
+            double sum = 0;
+            for (int tap = 0; tap < taps; tap++) {
+                double t = fraction + halfTaps - 1 - tap;
+                double x = t / halfTaps;
+                double window = Math.abs(x) >= 1 ? 0 : besselI0(KAISER_BETA * Math.sqrt(1 - x * x)) / window0;
+                double value = cutoff * sinc(cutoff * t) * window;
+                table[phase * taps + tap] = (float) value;
+                sum += value;
+            }
+            // Normalise each phase so DC passes at exactly unity gain
+            for (int tap = 0; tap < taps; tap++) table[phase * taps + tap] /= (float) sum;
+        }
+    }
+
+    /**
+     * Gets the shared resampler for a pair of rates, building its table the first time it is asked for.
+     *
+     * @param inputRate  The rate of the audio going in
+     * @param outputRate The rate of the audio coming out
+     * @return The resampler
+     */
+    public static Resampler forRates(int inputRate, int outputRate) {
+        return CACHE.computeIfAbsent(((long) inputRate << 32) | outputRate, k -> new Resampler(inputRate, outputRate));
+    }
+
+    /**
+     * Converts a whole track to the output rate, using every core for long tracks.
+     *
+     * @param track A track at this resampler's input rate
+     * @return A new track at the output rate
+     */
+    public PcmTrack convert(PcmTrack track) {
+        short[] input = track.samples();
+        int channels = track.channels();
+        long inputFrames = track.frameCount();
+        int outputFrames = (int) ((inputFrames * phaseCount + step - 1) / step);
+        short[] output = new short[outputFrames * channels];
+
+        int chunks = (outputFrames + CHUNK_FRAMES - 1) / CHUNK_FRAMES;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * CHUNK_FRAMES;
+            process(input, (int) inputFrames, channels, output, from, Math.min(outputFrames, from + CHUNK_FRAMES));
+        });
+        return new PcmTrack(output, channels, outputRate);
+    }
+
+    /**
+     * Converts a range of output frames.
+     *
+     * @param input       Interleaved input samples
+     * @param inputFrames The number of frames in the input
+     * @param channels    The number of interleaved channels
+     * @param output      The buffer to fill with interleaved output samples
+     * @param fromFrame   The first output frame to compute
+     * @param toFrame     The output frame to stop before
+     */
+    public void process(short[] input, int inputFrames, int channels, short[] output, int fromFrame, int toFrame) {
+        float[] coefficients = new float[taps];
+        for (int frame = fromFrame; frame < toFrame; frame++) {
+            long position = frame * step;
+            int base = (int) (position / phaseCount) - halfTaps + 1;
+            long remainder = position % phaseCount;
+
+            float[] phaseTable = coefficients(remainder, coefficients);
+            int offset = phaseTable == table ? (int) remainder * taps : 0;
+
+            int firstTap = Math.max(0, -base);
+            int lastTap = Math.min(taps, inputFrames - base);
+            if (channels == 2) {
+                // Both channels in one pass, so each coefficient is loaded once
+                float left = 0f;
+                float right = 0f;
+                for (int tap = firstTap; tap < lastTap; tap++) {
+                    float coefficient = phaseTable[offset + tap];
+                    int in = (base + tap) * 2;
+                    left += input[in] * coefficient;
+                    right += input[in + 1] * coefficient;
+                }
+                output[frame * 2] = toShort(left);
+                output[frame * 2 + 1] = toShort(right);
+                continue;
+            }
+            for (int channel = 0; channel < channels; channel++) {
+                float sum = 0f;
+                for (int tap = firstTap; tap < lastTap; tap++) {
+                    sum += input[(base + tap) * channels + channel] * phaseTable[offset + tap];
+                }
+                output[frame * channels + channel] = toShort(sum);
+            }
+        }
+    }
+
+    /**
+     * Picks the coefficients for a phase: straight from the table when exact, otherwise interpolated into a scratch buffer.
+     */
+    private float[] coefficients(long remainder, float[] scratch) {
+        if (isExact) return table;
+
+        double position = (double) remainder * tablePhases / phaseCount;
+        int phase = (int) position;
+        float weight = (float) (position - phase);
+        int lower = phase * taps;
+        int upper = lower + taps;
+        for (int tap = 0; tap < taps; tap++) {
+            scratch[tap] = table[lower + tap] + (table[upper + tap] - table[lower + tap]) * weight;
+        }
+        return scratch;
+    }
+
+    /**
+     * @return The rate of the audio going in
+     */
+    public int getInputRate() {
+        return inputRate;
+    }
+
+    /**
+     * @return The rate of the audio coming out
+     */
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    /**
+     * @return How many input frames make up one whole cycle of the filter phases. An input frame that is a multiple
+     * of this always lines up exactly with an output frame that is a multiple of {@link #getPhaseCount()}
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * @return How many output frames make up one whole cycle of the filter phases
+     */
+    public long getPhaseCount() {
+        return phaseCount;
+    }
+
+    /**
+     * @return The length of the filter in input frames
+     */
+    public int getTaps() {
+        return taps;
+    }
+
+    // -- Maths --
+    private static short toShort(float sample) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(sample)));
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) return 1;
+        double pix = Math.PI * x;
+        return Math.sin(pix) / pix;
+    }
+
+    /**
+     * The modified Bessel function of the first kind, order zero, which shapes the Kaiser window.
+     */
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double halfX = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+            if (term < sum * 1e-12) break;
+        }
+        return sum;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Stacked disks that each turn in steps, some dragging others round with them, to be turned until every disk's
+ * mark lines up at the top. The church puzzle from Resident Evil 4 is three such disks.
+ * <p>
+ * Each disk is four bits of the state holding how many steps clockwise it is from lined up, so there can be up to
+ * 15 disks of up to 16 steps. A sixteenth is not allowed, as sixteen disks all 15 steps round would pack to the
+ * same bits as {@link Puzzle#ILLEGAL}. Turning a disk is two moves, clockwise and anticlockwise, and turns every
+ * disk linked to it by the same step.
+ */
+public final class RotatingDisksPuzzle implements Puzzle {
+    private final String name;
+    private final int disks;
+    private final int steps;
+    private final long start;
+    // The disks each disk's turn moves, itself included
+    private final int[][] turned;
+    private final int largestTurn;
+
+    /**
+     * @param name   What the puzzle is called
+     * @param steps  How many steps make a full turn, up to 16
+     * @param links  For each disk, the other disks that turn with it
+     * @param starts For each disk, how many steps clockwise of lined up it starts
+     */
+    public RotatingDisksPuzzle(String name, int steps, int[][] links, int[] starts) {
+        if (links.length < 1 || links.length > 15 || steps < 2 || steps > 16) {
+            throw new IllegalArgumentException("A puzzle has 1 to 15 disks of 2 to 16 steps");
+        }
+        this.name = name;
+        this.disks = links.length;
+        this.steps = steps;
+        this.turned = new int[disks][];
+        int largest = 1;
+        for (int disk = 0; disk < disks; disk++) {
+            turned[disk] = new int[links[disk].length + 1];
+            turned[disk][0] = disk;
+            System.arraycopy(links[disk], 0, turned[disk], 1, links[disk].length);
+            largest = Math.max(largest, turned[disk].length);
+        }
+        this.largestTurn = largest;
+        long packed = 0;
+        for (int disk = 0; disk < disks; disk++) packed |= (long) Math.floorMod(starts[disk], steps) << (disk * 4);
+        this.start = packed;
+    }
+
+    public int getDisks() {
+        return disks;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return How many steps clockwise of lined up a disk is
+     */
+    public int offsetOf(long state, int disk) {
+        return (int) (state >>> (disk * 4)) & 0xF;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public long startState() {
+        return start;
+    }
+
+    @Override
+    public boolean isSolved(long state) {
+        return state == 0;
+    }
+
+    @Override
+    public int moveCount() {
+        return disks * 2;
+    }
+
+    /**
+     * Move 2d turns disk d clockwise, and 2d + 1 anticlockwise.
+     */
+    @Override
+    public long apply(long state, int move) {
+        int step = (move & 1) == 0 ? 1 : steps - 1;
+        for (int disk : turned[move >>> 1]) {
+            int shift = disk * 4;
+            long offset = ((state >>> shift) & 0xF) + step;
+            if (offset >= steps) offset -= steps;
+            state = (state & ~(0xFL << shift)) | (offset << shift);
+        }
+        return state;
+    }
+
+    @Override
+    public int inverseOf(int move) {
+        return move < 0 ? -1 : move ^ 1;
+    }
+
+    /**
+     * A move turns each disk at most one step, and at most {@code largestTurn} disks, so the puzzle is at least as
+     * many moves from solved as its furthest disk is steps, and as its total steps shared between that many disks.
+     */
+    @Override
+    public int lowerBound(long state) {
+        int furthest = 0, total = 0;
+        for (int disk = 0; disk < disks; disk++) {
+            int offset = offsetOf(state, disk);
+            int away = Math.min(offset, steps - offset);
+            furthest = Math.max(furthest, away);
+            total += away;
+        }
+        return Math.max(furthest, (total + largestTurn - 1) / largestTurn);
+    }
+
+    @Override
+    public String moveLabel(int move) {
+        return "Disk " + ((move >>> 1) + 1) + ((move & 1) == 0 ? " \u21bb" : " \u21ba");
+    }
+
+    @Override
+    public String describeMove(long state, int move) {
+        return "Turn disk " + ((move >>> 1) + 1) + ((move & 1) == 0 ? " clockwise" : " anticlockwise");
+    }
+}
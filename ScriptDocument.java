@@ -0,0 +1,216 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A script or campaign document mapped into memory, read a line at a time.
+ * <p>
+ * Opening a script only maps it; the bytes are paged in by the operating system as lines are read. Where each
+ * line, paragraph and cue starts is found by {@link #buildIndex(Runnable)} on a background thread, which hands
+ * out a growing {@link Index} every so often, so the start of a long book can be read while the rest is still
+ * being indexed. Lines are decoded from UTF-8 only when asked for.
+ */
+public class ScriptDocument {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(ScriptDocument.class.getName());
+    // How many bytes are indexed between each published index
+    private static final int PUBLISH_BYTES = 1 << 20;
+
+    /**
+     * Where the lines indexed so far start. Never changes once published: later indexes are built in
+     * fresh or larger arrays, and entries below the counts are never written again.
+     *
+     * @param lineStarts      The byte offset of each line
+     * @param lineLengths     Roughly how many characters each line holds, without its line break
+     * @param lineCount       How many lines have been indexed
+     * @param paragraphStarts The first line of each paragraph, a paragraph being a run of non-blank lines
+     * @param paragraphCount  How many paragraphs have been found
+     * @param cueLines        Every line holding a {@code <<CUE>>}, in order
+     * @param cueCount        How many cue lines have been found
+     * @param indexedBytes    Where the line after the last one indexed starts, which is where the last one ends
+     * @param isComplete      true once the whole document has been indexed
+     */
+    public record Index(int[] lineStarts, int[] lineLengths, int lineCount, int[] paragraphStarts, int paragraphCount,
+                        int[] cueLines, int cueCount, int indexedBytes, boolean isComplete) {
+        /**
+         * @param line A line before the current one
+         * @return The first cue line after it, or -1 if none has been indexed
+         */
+        public int nextCue(int line) {
+            int found = Arrays.binarySearch(cueLines, 0, cueCount, line + 1);
+            int index = found >= 0 ? found : -found - 1;
+            return index < cueCount ? cueLines[index] : -1;
+        }
+
+        /**
+         * @param line A line after the wanted one
+         * @return The last cue line before it, or -1 if there is none
+         */
+        public int previousCue(int line) {
+            int found = Arrays.binarySearch(cueLines, 0, cueCount, line - 1);
+            int index = found >= 0 ? found : -found - 2;
+            return index >= 0 ? cueLines[index] : -1;
+        }
+
+        /**
+         * @param line Any line
+         * @return The first line of the next paragraph, or -1 if none has been indexed
+         */
+        public int nextParagraph(int line) {
+            int found = Arrays.binarySearch(paragraphStarts, 0, paragraphCount, line + 1);
+            int index = found >= 0 ? found : -found - 1;
+            return index < paragraphCount ? paragraphStarts[index] : -1;
+        }
+
+        /**
+         * @param line Any line
+         * @return The first line of the paragraph before the one it is in, or -1 if there is none
+         */
+        public int previousParagraph(int line) {
+            int found = Arrays.binarySearch(paragraphStarts, 0, paragraphCount, line - 1);
+            int index = found >= 0 ? found : -found - 2;
+            return index >= 0 ? paragraphStarts[index] : -1;
+        }
+    }
+
+    private final File file;
+    private final MappedByteBuffer data;
+    private final int length;
+    private volatile Index index = new Index(new int[0], new int[0], 0, new int[0], 0, new int[0], 0, 0, false);
+
+    private ScriptDocument(File file, MappedByteBuffer data) {
+        this.file = file;
+        this.data = data;
+        this.length = data.capacity();
+    }
+
+    /**
+     * Maps a document into memory. Nothing is read until it is indexed.
+     *
+     * @param file The script, in UTF-8
+     * @return The document
+     * @throws IOException if the file cannot be mapped, or is over 2 GB
+     */
+    public static ScriptDocument open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException(file.getName() + " is too large to open");
+            return new ScriptDocument(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The file the document was mapped from
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The lines indexed so far
+     */
+    public Index getIndex() {
+        return index;
+    }
+
+    /**
+     * Finds every line, paragraph and cue, on a thread of its own.
+     *
+     * @param onProgress Called from the indexing thread each time a larger index is published, and once at the end
+     */
+    public void buildIndex(Runnable onProgress) {
+        Thread thread = new Thread(() -> {
+            long startNanos = System.nanoTime();
+            indexAll(onProgress);
+            LOGGER.log(Level.INFO, "Indexed {0} lines of {1} in {2} ms", new Object[]{
+                    index.lineCount(), file.getName(), (System.nanoTime() - startNanos) / 1_000_000});
+        }, "script-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * One pass over the bytes. A line counts as a cue line if it holds {@code <<}, and as the start of a
+     * paragraph if it is not blank and the line before it was.
+     */
+    private void indexAll(Runnable onProgress) {
+        int[] starts = new int[1024];
+        int[] lengths = new int[1024];
+        int[] paragraphs = new int[256];
+        int[] cues = new int[256];
+        int lines = 0, paragraphCount = 0, cueCount = 0;
+
+        int lineStart = 0;
+        int characters = 0;
+        boolean isBlank = true, hasCue = false, previousBlank = true;
+        byte previous = 0;
+        int nextPublish = PUBLISH_BYTES;
+        for (int position = 0; position <= length; position++) {
+            boolean isEnd = position == length;
+            byte b = isEnd ? (byte) '\n' : data.get(position);
+            if (b != '\n') {
+                // Count only the first byte of each UTF-8 character
+                if ((b & 0xC0) != 0x80 && b != '\r') characters++;
+                if (b != ' ' && b != '\t' && b != '\r') isBlank = false;
+                if (b == '<' && previous == '<') hasCue = true;
+                previous = b;
+                continue;
+            }
+            // A file ending in a line break has no empty last line after it
+            if (isEnd && lineStart == length && lines > 0) break;
+
+            if (lines == starts.length) {
+                starts = Arrays.copyOf(starts, lines * 2);
+                lengths = Arrays.copyOf(lengths, lines * 2);
+            }
+            starts[lines] = lineStart;
+            lengths[lines] = characters;
+            if (!isBlank && previousBlank) {
+                if (paragraphCount == paragraphs.length) paragraphs = Arrays.copyOf(paragraphs, paragraphCount * 2);
+                paragraphs[paragraphCount++] = lines;
+            }
+            if (hasCue) {
+                if (cueCount == cues.length) cues = Arrays.copyOf(cues, cueCount * 2);
+                cues[cueCount++] = lines;
+            }
+            lines++;
+            previousBlank = isBlank;
+            lineStart = position + 1;
+            characters = 0;
+            isBlank = true;
+            hasCue = false;
+            previous = 0;
+
+            if (position >= nextPublish) {
+                index = new Index(starts, lengths, lines, paragraphs, paragraphCount, cues, cueCount, lineStart, false);
+                nextPublish = position + PUBLISH_BYTES;
+                onProgress.run();
+            }
+        }
+        index = new Index(starts, lengths, lines, paragraphs, paragraphCount, cues, cueCount, Math.min(lineStart, length), true);
+        onProgress.run();
+    }
+
+    /**
+     * Decodes one line, without its line break. Tabs become four spaces.
+     *
+     * @param index An index published by this document
+     * @param line  A line below the index's line count
+     * @return The line's text
+     */
+    public String line(Index index, int line) {
+        int start = index.lineStarts()[line];
+        int end = line + 1 < index.lineCount() ? index.lineStarts()[line + 1] : index.indexedBytes();
+        if (end > start && data.get(end - 1) == '\n') end--;
+        if (end > start && data.get(end - 1) == '\r') end--;
+        byte[] bytes = new byte[end - start];
+        data.get(start, bytes);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        return text.indexOf('\t') < 0 ? text : text.replace("\t", "    ");
+    }
+}
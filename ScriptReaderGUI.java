@@ -0,0 +1,240 @@
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * ScriptReaderGUI shows a script or campaign book for reading at the table. Scripts of any size open at once:
+ * the file is mapped rather than read, and is indexed in the background while its first pages are shown.
+ * Cues can be stepped through with F3 and Shift+F3, paragraphs with Ctrl+Down and Ctrl+Up, and clicking a
+ * character's {@code {Name}} shows their sheet.
+ */
+public class ScriptReaderGUI {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(ScriptReaderGUI.class.getName());
+    private static final File SCRIPTS_FOLDER = new File("resources/scripts");
+    private static final Path SHEETS_FOLDER = Path.of("resources", "sheets");
+
+    // --- UI Components ---
+    private JFrame frmFoundation;
+    private ScriptView scriptView;
+    private JLabel lblStatusLabel;
+    private JButton btnOpenScript, btnPreviousCue, btnNextCue;
+
+    // --- State ---
+    private ScriptDocument document;
+    private long indexStartNanos;
+    private final CharacterRepository characters = new CharacterRepository();
+    private CharacterSheetWatcher sheetWatcher;
+
+    /**
+     * Initializes the frame and opens the first script found, if there is one.
+     */
+    public void initUI() {
+        frmFoundation = new JFrame("Script Reader");
+        frmFoundation.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frmFoundation.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                if (sheetWatcher != null) sheetWatcher.close();
+            }
+        });
+        frmFoundation.setLayout(new BorderLayout());
+
+        scriptView = new ScriptView(this::showCharacter);
+        JScrollPane scrollPane = new JScrollPane(scriptView, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        frmFoundation.add(createToolbarPanel(), BorderLayout.NORTH);
+        frmFoundation.add(scrollPane, BorderLayout.CENTER);
+        bindKeys();
+        startSheetWatcher();
+
+        frmFoundation.setSize(Constants.SR_FRAME_WIDTH, Constants.SR_FRAME_HEIGHT);
+        frmFoundation.setLocationRelativeTo(null);
+        frmFoundation.setVisible(true);
+
+        File[] scripts = SCRIPTS_FOLDER.listFiles((dir, name) -> name.endsWith(".txt"));
+        if (scripts != null && scripts.length > 0) {
+            Arrays.sort(scripts);
+            openScript(scripts[0]);
+        }
+    }
+
+    // --- Creators ---
+    /**
+     * Creates the row of buttons above the script.
+     */
+    private JPanel createToolbarPanel() {
+        JPanel pnlToolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, Constants.GB_HGAP_SPACING, Constants.GB_VGAP_SPACING));
+        pnlToolbar.setBorder(new EmptyBorder(Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS, Constants.GB_INSET_VALS));
+
+        btnOpenScript = new JButton("Open Script");
+        btnOpenScript.addActionListener(e -> chooseScript());
+        btnPreviousCue = new JButton("Previous Cue");
+        btnPreviousCue.setToolTipText("Shift+F3");
+        btnPreviousCue.addActionListener(e -> jumpToCue(false));
+        btnNextCue = new JButton("Next Cue");
+        btnNextCue.setToolTipText("F3");
+        btnNextCue.addActionListener(e -> jumpToCue(true));
+        btnPreviousCue.setEnabled(false);
+        btnNextCue.setEnabled(false);
+
+        lblStatusLabel = new JLabel("Open a script to begin.");
+        pnlToolbar.add(btnOpenScript);
+        pnlToolbar.add(btnPreviousCue);
+        pnlToolbar.add(btnNextCue);
+        pnlToolbar.add(lblStatusLabel);
+        return pnlToolbar;
+    }
+
+    /**
+     * Cue and paragraph jumps work wherever focus is in the window.
+     */
+    private void bindKeys() {
+        JComponent root = frmFoundation.getRootPane();
+        bindKey(root, KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "nextCue", () -> jumpToCue(true));
+        bindKey(root, KeyStroke.getKeyStroke(KeyEvent.VK_F3, InputEvent.SHIFT_DOWN_MASK), "previousCue", () -> jumpToCue(false));
+        bindKey(root, KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, InputEvent.CTRL_DOWN_MASK), "nextParagraph", () -> jumpToParagraph(true));
+        bindKey(root, KeyStroke.getKeyStroke(KeyEvent.VK_UP, InputEvent.CTRL_DOWN_MASK), "previousParagraph", () -> jumpToParagraph(false));
+    }
+
+    private static void bindKey(JComponent component, KeyStroke keyStroke, String name, Runnable action) {
+        component.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(keyStroke, name);
+        component.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    // --- Scripts ---
+    private void chooseScript() {
+        JFileChooser fileChooser = new JFileChooser(SCRIPTS_FOLDER.isDirectory() ? SCRIPTS_FOLDER : null);
+        fileChooser.setDialogTitle("Open Script");
+        if (fileChooser.showOpenDialog(frmFoundation) == JFileChooser.APPROVE_OPTION) {
+            openScript(fileChooser.getSelectedFile());
+        }
+    }
+
+    /**
+     * Maps a script and shows it straight away, while it is indexed in the background.
+     *
+     * @param file The script
+     */
+    private void openScript(File file) {
+        ScriptDocument opened;
+        try {
+            opened = ScriptDocument.open(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not open " + file, e);
+            JOptionPane.showMessageDialog(frmFoundation, "Could not open " + file.getName() + ": " + e.getMessage(),
+                    "Script Reader", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        document = opened;
+        indexStartNanos = System.nanoTime();
+        frmFoundation.setTitle("Script Reader - " + file.getName());
+        scriptView.setDocument(opened);
+        lblStatusLabel.setText("Indexing " + file.getName() + "...");
+        opened.buildIndex(() -> SwingUtilities.invokeLater(() -> indexUpdated(opened)));
+    }
+
+    /**
+     * Shows the newest part of the index. Progress from a script that has since been replaced is ignored.
+     */
+    private void indexUpdated(ScriptDocument updated) {
+        if (updated != document) return;
+        scriptView.indexUpdated();
+        ScriptDocument.Index index = document.getIndex();
+        btnPreviousCue.setEnabled(index.cueCount() > 0);
+        btnNextCue.setEnabled(index.cueCount() > 0);
+        if (index.isComplete()) {
+            lblStatusLabel.setText(String.format("%,d lines, %,d cues (indexed in %d ms)", index.lineCount(),
+                    index.cueCount(), (System.nanoTime() - indexStartNanos) / 1_000_000));
+        } else {
+            lblStatusLabel.setText(String.format("Indexing... %,d lines so far", index.lineCount()));
+        }
+    }
+
+    private void jumpToCue(boolean isForward) {
+        if (document == null) return;
+        ScriptDocument.Index index = document.getIndex();
+        int top = scriptView.getTopLine();
+        int line = isForward ? index.nextCue(top) : index.previousCue(top);
+        if (line >= 0) scriptView.scrollToLine(line, true);
+    }
+
+    private void jumpToParagraph(boolean isForward) {
+        if (document == null) return;
+        ScriptDocument.Index index = document.getIndex();
+        int top = scriptView.getTopLine();
+        int line = isForward ? index.nextParagraph(top) : index.previousParagraph(top);
+        if (line >= 0) scriptView.scrollToLine(line, false);
+    }
+
+    // --- Characters ---
+    /**
+     * Reads the character sheets, and keeps reading them as they are edited.
+     */
+    private void startSheetWatcher() {
+        if (!Files.isDirectory(SHEETS_FOLDER)) return;
+        sheetWatcher = new CharacterSheetWatcher(SHEETS_FOLDER, characters, () -> {});
+        try {
+            sheetWatcher.start();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the character sheets", e);
+        }
+    }
+
+    /**
+     * Shows the sheet of the character named by a clicked term.
+     */
+    private void showCharacter(String name) {
+        CharacterSheet sheet = characters.findByName(name);
+        if (sheet == null) {
+            JOptionPane.showMessageDialog(frmFoundation, "There is no sheet for " + name + ".", name, JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JTextArea txtSheet = new JTextArea(describe(sheet), 16, 40);
+        txtSheet.setEditable(false);
+        txtSheet.setLineWrap(true);
+        txtSheet.setWrapStyleWord(true);
+        txtSheet.setCaretPosition(0);
+        JOptionPane.showMessageDialog(frmFoundation, new JScrollPane(txtSheet), sheet.name(), JOptionPane.PLAIN_MESSAGE);
+    }
+
+    private static String describe(CharacterSheet sheet) {
+        StringBuilder text = new StringBuilder(sheet.name());
+        if (!sheet.race().isEmpty() || !sheet.role().isEmpty()) {
+            text.append(" (").append(String.join(", ", Stream.of(sheet.race(), sheet.role())
+                    .filter(s -> !s.isEmpty()).toList())).append(')');
+        }
+        text.append("\n\n");
+        for (CharacterSheet.Attribute attribute : CharacterSheet.Attribute.values()) {
+            text.append(attribute).append(' ').append(sheet.score(attribute)).append("   ");
+        }
+        if (!sheet.background().isEmpty()) text.append("\n\nBackground\n").append(sheet.background());
+        if (!sheet.abilities().isEmpty()) {
+            text.append("\n\nAbilities");
+            for (CharacterSheet.Ability ability : sheet.abilities()) {
+                text.append("\n\u2022 ").append(ability.name());
+                if (!ability.description().isEmpty()) text.append(": ").append(ability.description());
+            }
+        }
+        if (!sheet.notes().isEmpty()) text.append("\n\nNotes\n").append(sheet.notes());
+        return text.toString();
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A harness for checking that {@link ScriptView}'s row map finds the same lines and rows as adding them up one by
+ * one would.
+ * <p>
+ * Random documents are fed to a row map a piece at a time, the way a script still being indexed publishes a
+ * larger index every so often, with lines corrected to their real row counts as painting does and the whole map
+ * rebuilt for a new width as a resize does. After every change each line's first row, the total, and the line at
+ * every row, and a few rows past the end, must match a plain scan of the rows line by line. Lastly a script of
+ * several megabytes is indexed on its own thread, and the map is extended through every index it publishes.
+ * <p>
+ * Run with {@code ant simulate}, alongside the playback scenarios. An optional argument is the seed.
+ */
+public class ScriptRowMapChecker {
+    private static final int TRIALS = 200;
+    // How many pieces each random document is published in
+    private static final int PUBLISHES = 12;
+    private static final int MOST_LINE_LENGTH = 400;
+
+    private int checksRun;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Runs every check, and exits with a failure code if any failed.
+     *
+     * @param args [seed]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1L;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        ScriptRowMapChecker checker = new ScriptRowMapChecker();
+        for (int trial = 0; trial < TRIALS; trial++) {
+            checker.checkTrial(trial, random);
+        }
+        checker.checkIndexedScript(random);
+
+        System.out.printf("Ran %d script row map checks%n", checker.checksRun);
+        if (checker.failures.isEmpty()) {
+            System.out.println("All checks passed.");
+        } else {
+            checker.failures.stream().limit(20).forEach(System.out::println);
+            System.out.printf("%d checks FAILED%n", checker.failures.size());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Publishes a random document a piece at a time into shared arrays, as the indexer does, so earlier indexes
+     * see the same lengths as later ones below their own line counts.
+     */
+    private void checkTrial(int trial, SplittableRandom random) {
+        int lines = random.nextInt(5) == 0 ? random.nextInt(4) : 1 + random.nextInt(3000);
+        int[] lengths = new int[lines];
+        for (int line = 0; line < lines; line++) {
+            // Plenty of blank lines, as scripts have between speeches
+            lengths[line] = random.nextInt(4) == 0 ? 0 : random.nextInt(MOST_LINE_LENGTH);
+        }
+
+        String name = "trial " + trial;
+        int columns = 20 + random.nextInt(120);
+        ScriptView.RowMap map = new ScriptView.RowMap();
+        int[] expected = new int[lines];
+        int indexed = 0;
+        map.rebuild(indexOf(lengths, 0), columns);
+        for (int publish = 1; publish <= PUBLISHES; publish++) {
+            int count = publish == PUBLISHES ? lines : Math.max(indexed, (int) ((long) lines * random.nextInt(publish * 100) / (PUBLISHES * 100)));
+            ScriptDocument.Index index = indexOf(lengths, count);
+
+            if (random.nextInt(6) == 0) {
+                // A resize estimates every line again for the new width
+                columns = 20 + random.nextInt(120);
+                map.rebuild(index, columns);
+                indexed = 0;
+            } else {
+                map.extend(index, columns);
+            }
+            for (int line = indexed; line < count; line++) expected[line] = estimate(lengths[line], columns);
+            indexed = count;
+            if (!check(name + " publish " + publish, map, expected, indexed)) return;
+
+            // Lines coming into view are laid out, and turn out a row or two longer or shorter
+            for (int corrections = random.nextInt(20); corrections > 0 && indexed > 0; corrections--) {
+                int line = random.nextInt(indexed);
+                int rows = Math.max(1, expected[line] + random.nextInt(5) - 2);
+                map.set(line, rows);
+                expected[line] = rows;
+            }
+            if (!check(name + " publish " + publish + " corrected", map, expected, indexed)) return;
+        }
+    }
+
+    /**
+     * Writes a script too long to be indexed in one go, indexes it on the indexer's own thread, and extends a map
+     * through each larger index as the view does.
+     */
+    private void checkIndexedScript(SplittableRandom random) throws IOException, InterruptedException {
+        File file = File.createTempFile("row-map-check-", ".txt");
+        try {
+            try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8)) {
+                for (int written = 0; written < 3 << 20; ) {
+                    int length = random.nextInt(4) == 0 ? 0 : random.nextInt(MOST_LINE_LENGTH);
+                    String line = "x".repeat(length);
+                    writer.println(line);
+                    written += length + System.lineSeparator().length();
+                }
+            }
+            ScriptDocument document = ScriptDocument.open(file);
+            List<ScriptDocument.Index> published = new ArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            document.buildIndex(() -> {
+                ScriptDocument.Index index = document.getIndex();
+                synchronized (published) {
+                    published.add(index);
+                }
+                if (index.isComplete()) done.countDown();
+            });
+            done.await();
+
+            checksRun++;
+            if (published.size() < 2) failures.add("indexed script: published " + published.size() + " indexes, so none was partial");
+
+            int columns = 72;
+            ScriptView.RowMap map = new ScriptView.RowMap();
+            map.rebuild(published.get(0), columns);
+            for (ScriptDocument.Index index : published) {
+                map.extend(index, columns);
+                int[] expected = new int[index.lineCount()];
+                for (int line = 0; line < expected.length; line++) expected[line] = estimate(index.lineLengths()[line], columns);
+                if (!check("indexed script at " + index.lineCount() + " lines", map, expected, index.lineCount())) return;
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Compares the map with a scan of the rows each line should take.
+     *
+     * @return false if a check failed, so the rest of the document would only repeat it
+     */
+    private boolean check(String name, ScriptView.RowMap map, int[] expected, int lines) {
+        checksRun++;
+        int before = 0;
+        for (int line = 0; line < lines; line++) {
+            if (map.rowsOf(line) != expected[line] || map.rowsBefore(line) != before) {
+                failures.add(String.format("%s: line %d has %d rows after %d, not %d after %d",
+                        name, line, map.rowsOf(line), map.rowsBefore(line), expected[line], before));
+                return false;
+            }
+            before += expected[line];
+        }
+        checksRun++;
+        if (map.total() != before) {
+            failures.add(name + ": " + map.total() + " rows in all, not " + before);
+            return false;
+        }
+
+        checksRun++;
+        int line = 0;
+        int lineEnd = lines > 0 ? expected[0] : 0;
+        for (int row = 0; row < before + 3; row++) {
+            // Rows past the end belong to the last line
+            while (row >= lineEnd && line < lines - 1) lineEnd += expected[++line];
+            if (map.lineAtRow(row) != line) {
+                failures.add(name + ": row " + row + " is in line " + map.lineAtRow(row) + ", not " + line);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The rows a line is estimated to wrap to before it is laid out
+     */
+    private static int estimate(int length, int columns) {
+        return Math.max(1, (length + columns - 1) / columns);
+    }
+
+    /**
+     * @return An index of the first lines of a document, with nothing else picked out
+     */
+    private static ScriptDocument.Index indexOf(int[] lengths, int lineCount) {
+        return new ScriptDocument.Index(new int[lengths.length], lengths, lineCount, new int[0], 0, new int[0], 0, 0,
+                lineCount == lengths.length);
+    }
+}
@@ -0,0 +1,457 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Draws a {@link ScriptDocument}, wrapped to the window's width, painting only the lines in view.
+ * <p>
+ * Lines are drawn in a fixed-width font, so how many rows a line wraps to can be estimated from its length
+ * alone, without decoding it. Every line starts out with that estimate; once a line comes into view it is
+ * decoded, word wrapped and highlighted, and its real row count replaces the estimate. The row counts are kept
+ * in a Fenwick tree, so finding the line at any scroll position, or the position of any line, takes a handful
+ * of steps however long the document is. Laid out lines are cached, so scrolling back and forth decodes nothing.
+ * <p>
+ * {@code {Term}} names are drawn as links and {@code <<CUE>>} markers as tags. Clicking a term hands its name
+ * to a listener.
+ */
+public class ScriptView extends JComponent implements Scrollable {
+    // Room around the text
+    private static final int MARGIN = 12;
+    private static final int MIN_COLUMNS = 20;
+
+    /**
+     * A highlighted run of a line
+     *
+     * @param start Where the run starts in the line, including its brackets
+     * @param end   Where it ends, exclusive
+     * @param isCue true for a {@code <<CUE>>}, false for a {@code {Term}}
+     */
+    private record Span(int start, int end, boolean isCue) {
+    }
+
+    /**
+     * A line decoded, wrapped and highlighted
+     *
+     * @param text      The line's text
+     * @param rowStarts Where each wrapped row starts in the text
+     * @param spans     The terms and cues in the line, in order
+     */
+    private record Layout(String text, int[] rowStarts, List<Span> spans) {
+        int rowEnd(int row) {
+            return row + 1 < rowStarts.length ? rowStarts[row + 1] : text.length();
+        }
+    }
+
+    private ScriptDocument document;
+    private ScriptDocument.Index index;
+    private final RowMap rowMap = new RowMap();
+    private final Map<Integer, Layout> layouts = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Layout> eldest) {
+            return size() > Constants.SR_LAYOUT_CACHE_LINES;
+        }
+    };
+    private final Consumer<String> onTermClicked;
+    private final Font font = new Font(Font.MONOSPACED, Font.PLAIN, Constants.SR_FONT_SIZE);
+    private final Font cueFont = font.deriveFont(Font.BOLD);
+    private int lineHeight;
+    private int charWidth;
+    private int ascent;
+    private int columns = 80;
+    // A line briefly marked after jumping to it
+    private int markedLine = -1;
+    private final Timer tmrUnmark = new Timer(Constants.SR_MARK_MS, e -> {
+        markedLine = -1;
+        repaint();
+    });
+    private boolean isCorrectionPending;
+
+    /**
+     * @param onTermClicked Called on the EDT with the name inside a clicked {@code {Term}}
+     */
+    public ScriptView(Consumer<String> onTermClicked) {
+        this.onTermClicked = onTermClicked;
+        FontMetrics metrics = getFontMetrics(font);
+        lineHeight = metrics.getHeight();
+        charWidth = metrics.charWidth('m');
+        ascent = metrics.getAscent();
+        setFont(font);
+        setOpaque(true);
+        setBackground(Constants.SR_PAGE_COLOR);
+        setFocusable(true);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                requestFocusInWindow();
+                String term = termAt(e.getPoint());
+                if (term != null) onTermClicked.accept(term);
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setCursor(termAt(e.getPoint()) != null ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR) : Cursor.getDefaultCursor());
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+
+        // The view is as wide as its viewport, so it is resized with the window. Rewrap, keeping the same line at the top
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                int newColumns = columnsFor(getWidth());
+                if (newColumns == columns || document == null) return;
+                int topLine = getTopLine();
+                columns = newColumns;
+                layouts.clear();
+                rowMap.rebuild(index, columns);
+                revalidate();
+                SwingUtilities.invokeLater(() -> scrollToLine(topLine, false));
+            }
+        });
+    }
+
+    // -- Document --
+    /**
+     * Shows a document from the top. Its index can still be growing.
+     *
+     * @param document The document
+     */
+    public void setDocument(ScriptDocument document) {
+        this.document = document;
+        this.index = document.getIndex();
+        this.markedLine = -1;
+        if (getParent() != null) columns = columnsFor(getParent().getWidth());
+        layouts.clear();
+        rowMap.rebuild(index, columns);
+        revalidate();
+        repaint();
+        scrollToLine(0, false);
+    }
+
+    /**
+     * Picks up the document's latest index. Lines are only ever added at the end, so nothing in view moves.
+     */
+    public void indexUpdated() {
+        if (document == null || document.getIndex() == index) return;
+        index = document.getIndex();
+        // Only the new lines are estimated, so lines already laid out keep their real row counts
+        rowMap.extend(index, columns);
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * @return The line at the top of the view
+     */
+    public int getTopLine() {
+        if (index == null || index.lineCount() == 0) return 0;
+        return rowMap.lineAtRow(Math.max(0, (getVisibleRect().y - MARGIN) / lineHeight));
+    }
+
+    /**
+     * Scrolls so a line sits at the top of the view.
+     *
+     * @param line The line to show
+     * @param mark true to highlight the line, as after jumping to a cue
+     */
+    public void scrollToLine(int line, boolean mark) {
+        if (index == null || line < 0 || line >= index.lineCount()) return;
+        if (mark) {
+            markedLine = line;
+            tmrUnmark.setRepeats(false);
+            tmrUnmark.restart();
+        }
+        if (!(getParent() instanceof JViewport viewport)) return;
+        int y = MARGIN + rowMap.rowsBefore(line) * lineHeight;
+        int maxY = Math.max(0, getPreferredSize().height - viewport.getHeight());
+        viewport.setViewPosition(new Point(0, Math.min(y, maxY)));
+        repaint();
+    }
+
+    // -- Painting --
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2d = (Graphics2D) g.create();
+        Rectangle clip = g2d.getClipBounds();
+        g2d.setColor(getBackground());
+        g2d.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (index == null || index.lineCount() == 0) {
+            g2d.dispose();
+            return;
+        }
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        int firstRow = Math.max(0, (clip.y - MARGIN) / lineHeight);
+        int line = rowMap.lineAtRow(firstRow);
+        int row = rowMap.rowsBefore(line);
+        int bottom = clip.y + clip.height;
+        boolean isCorrected = false;
+        while (line < index.lineCount() && MARGIN + row * lineHeight < bottom) {
+            Layout layout = layout(line);
+            if (rowMap.rowsOf(line) != layout.rowStarts().length) {
+                rowMap.set(line, layout.rowStarts().length);
+                isCorrected = true;
+            }
+            for (int r = 0; r < layout.rowStarts().length; r++) {
+                int y = MARGIN + (row + r) * lineHeight;
+                if (y + lineHeight >= clip.y && y < bottom) paintRow(g2d, layout, r, line, y);
+            }
+            row += layout.rowStarts().length;
+            line++;
+        }
+        g2d.dispose();
+
+        // Lines in view turned out longer or shorter than estimated, so the document's height has changed
+        if (isCorrected && !isCorrectionPending) {
+            isCorrectionPending = true;
+            SwingUtilities.invokeLater(() -> {
+                isCorrectionPending = false;
+                revalidate();
+                repaint();
+            });
+        }
+    }
+
+    /**
+     * Draws one wrapped row, plain text with its terms and cues picked out.
+     */
+    private void paintRow(Graphics2D g2d, Layout layout, int row, int line, int y) {
+        if (line == markedLine) {
+            g2d.setColor(Constants.SR_MARKED_LINE_COLOR);
+            g2d.fillRect(0, y, getWidth(), lineHeight);
+        }
+        int from = layout.rowStarts()[row];
+        int to = layout.rowEnd(row);
+        int position = from;
+        for (Span span : layout.spans()) {
+            if (span.end() <= from || span.start() >= to) continue;
+            int start = Math.max(span.start(), from);
+            int end = Math.min(span.end(), to);
+            drawText(g2d, layout.text(), position, start, from, y, Constants.SR_TEXT_COLOR, font);
+            int x = MARGIN + (start - from) * charWidth;
+            int width = (end - start) * charWidth;
+            if (span.isCue()) {
+                g2d.setColor(Constants.SR_CUE_BACKGROUND_COLOR);
+                g2d.fillRoundRect(x - 1, y + 1, width + 2, lineHeight - 2, 6, 6);
+                drawText(g2d, layout.text(), start, end, from, y, Constants.SR_CUE_COLOR, cueFont);
+            } else {
+                drawText(g2d, layout.text(), start, end, from, y, Constants.SR_TERM_COLOR, font);
+                g2d.drawLine(x, y + ascent + 1, x + width - 1, y + ascent + 1);
+            }
+            position = end;
+        }
+        drawText(g2d, layout.text(), position, to, from, y, Constants.SR_TEXT_COLOR, font);
+    }
+
+    private void drawText(Graphics2D g2d, String text, int start, int end, int rowStart, int y, Color color, Font textFont) {
+        if (end <= start) return;
+        g2d.setColor(color);
+        g2d.setFont(textFont);
+        g2d.drawString(text.substring(start, end), MARGIN + (start - rowStart) * charWidth, y + ascent);
+    }
+
+    // -- Layout --
+    /**
+     * Decodes, wraps and highlights a line, or takes it from the cache.
+     */
+    private Layout layout(int line) {
+        Layout layout = layouts.get(line);
+        if (layout == null) {
+            String text = document.line(index, line);
+            layout = new Layout(text, wrap(text, columns), spansOf(text));
+            layouts.put(line, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Breaks a line into rows of at most the given width, after a space where there is one.
+     */
+    private static int[] wrap(String text, int columns) {
+        List<Integer> starts = new ArrayList<>();
+        int start = 0;
+        starts.add(0);
+        while (text.length() - start > columns) {
+            int limit = start + columns;
+            int space = text.lastIndexOf(' ', limit);
+            int next = space > start ? space + 1 : limit;
+            starts.add(next);
+            start = next;
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Finds every {@code {Term}} and {@code <<CUE>>} in a line.
+     */
+    private static List<Span> spansOf(String text) {
+        List<Span> spans = new ArrayList<>();
+        int position = 0;
+        while (position < text.length()) {
+            int term = text.indexOf('{', position);
+            int cue = text.indexOf("<<", position);
+            if (term < 0 && cue < 0) break;
+            if (cue >= 0 && (term < 0 || cue < term)) {
+                int end = text.indexOf(">>", cue + 2);
+                if (end < 0) break;
+                spans.add(new Span(cue, end + 2, true));
+                position = end + 2;
+            } else {
+                int end = text.indexOf('}', term + 1);
+                if (end < 0) break;
+                spans.add(new Span(term, end + 1, false));
+                position = end + 1;
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * @return The name inside the {@code {Term}} under a point, or null if there is none
+     */
+    private String termAt(Point point) {
+        if (index == null || index.lineCount() == 0 || point.y < MARGIN) return null;
+        int row = (point.y - MARGIN) / lineHeight;
+        int line = rowMap.lineAtRow(row);
+        Layout layout = layouts.get(line);
+        int rowInLine = row - rowMap.rowsBefore(line);
+        if (layout == null || rowInLine >= layout.rowStarts().length) return null;
+        int offset = layout.rowStarts()[rowInLine] + Math.floorDiv(point.x - MARGIN, charWidth);
+        if (offset < layout.rowStarts()[rowInLine] || offset >= layout.rowEnd(rowInLine)) return null;
+        for (Span span : layout.spans()) {
+            if (!span.isCue() && offset >= span.start() && offset < span.end()) {
+                return layout.text().substring(span.start() + 1, span.end() - 1);
+            }
+        }
+        return null;
+    }
+
+    private int columnsFor(int width) {
+        return Math.max(MIN_COLUMNS, (width - 2 * MARGIN) / charWidth);
+    }
+
+    // -- Scrolling --
+    @Override
+    public Dimension getPreferredSize() {
+        int rows = index == null ? 0 : rowMap.total();
+        return new Dimension(2 * MARGIN + columns * charWidth, 2 * MARGIN + rows * lineHeight);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return lineHeight;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return Math.max(lineHeight, visibleRect.height - lineHeight);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    /**
+     * How many rows each line wraps to, as a Fenwick tree so prefix sums and searches by row take log time. The
+     * arrays grow by doubling, so a map extended every time a larger index is published stays linear overall.
+     * Package-private so {@link ScriptRowMapChecker} can check it against a plain scan.
+     */
+    static final class RowMap {
+        private int[] rows = new int[0];
+        private int[] tree = new int[1];
+        private int count;
+
+        /**
+         * Estimates every line afresh from its length.
+         */
+        void rebuild(ScriptDocument.Index index, int columns) {
+            count = 0;
+            extend(index, columns);
+        }
+
+        /**
+         * Estimates the lines added to the index since the map last saw it, leaving the rest as they are.
+         */
+        void extend(ScriptDocument.Index index, int columns) {
+            int newCount = index.lineCount();
+            if (newCount > rows.length) {
+                int capacity = Math.max(newCount, rows.length * 2);
+                rows = Arrays.copyOf(rows, capacity);
+                tree = Arrays.copyOf(tree, capacity + 1);
+            }
+            for (int line = count; line < newCount; line++) {
+                rows[line] = Math.max(1, (index.lineLengths()[line] + columns - 1) / columns);
+                // A node covers its own line plus the nodes below it down to its lowest set bit
+                int node = line + 1;
+                int sum = rows[line];
+                for (int child = node - 1, stop = node - (node & -node); child > stop; child -= child & -child) {
+                    sum += tree[child];
+                }
+                tree[node] = sum;
+            }
+            count = newCount;
+        }
+
+        int rowsOf(int line) {
+            return rows[line];
+        }
+
+        void set(int line, int lineRows) {
+            int delta = lineRows - rows[line];
+            if (delta == 0) return;
+            rows[line] = lineRows;
+            for (int i = line + 1; i <= count; i += i & -i) tree[i] += delta;
+        }
+
+        /**
+         * @return The rows taken by every line before this one
+         */
+        int rowsBefore(int line) {
+            int sum = 0;
+            for (int i = line; i > 0; i -= i & -i) sum += tree[i];
+            return sum;
+        }
+
+        int total() {
+            return rowsBefore(count);
+        }
+
+        /**
+         * @return The line covering a row, or the last line if the row is past the end
+         */
+        int lineAtRow(int row) {
+            int line = 0;
+            int remaining = row;
+            for (int step = Integer.highestOneBit(Math.max(1, count)); step > 0; step >>= 1) {
+                int next = line + step;
+                if (next <= count && tree[next] <= remaining) {
+                    line = next;
+                    remaining -= tree[next];
+                }
+            }
+            return Math.min(line, Math.max(0, count - 1));
+        }
+    }
+}
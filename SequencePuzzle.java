@@ -0,0 +1,124 @@
+/**
+ * A row of coloured orbs, each cycling through the same colours, to be set to a secret sequence. Touching a
+ * glyph moves one or more orbs on to their next colour, so the orbs have to be set together rather than one by
+ * one. The Chromatic Cypher is one of these.
+ * <p>
+ * Each orb is three bits of the state holding its colour, so there can be up to 21 orbs of up to 8 colours.
+ */
+public final class SequencePuzzle implements Puzzle {
+    private final String name;
+    private final int orbs;
+    private final int colours;
+    private final long start;
+    private final long target;
+    // The orbs each glyph moves on
+    private final int[][] glyphs;
+    private final String[] glyphNames;
+
+    /**
+     * @param name       What the puzzle is called
+     * @param colours    How many colours each orb cycles through, up to 8
+     * @param starts     Each orb's starting colour
+     * @param targets    Each orb's colour in the secret sequence
+     * @param glyphs     For each glyph, the orbs it moves on
+     * @param glyphNames What each glyph is called, for its button
+     */
+    public SequencePuzzle(String name, int colours, int[] starts, int[] targets, int[][] glyphs, String[] glyphNames) {
+        if (starts.length < 1 || starts.length > 21 || colours < 2 || colours > 8) {
+            throw new IllegalArgumentException("A puzzle has 1 to 21 orbs of 2 to 8 colours");
+        }
+        if (targets.length != starts.length || glyphNames.length != glyphs.length) {
+            throw new IllegalArgumentException("Every orb needs a target, and every glyph a name");
+        }
+        this.name = name;
+        this.orbs = starts.length;
+        this.colours = colours;
+        this.start = pack(starts, colours);
+        this.target = pack(targets, colours);
+        this.glyphs = new int[glyphs.length][];
+        for (int glyph = 0; glyph < glyphs.length; glyph++) this.glyphs[glyph] = glyphs[glyph].clone();
+        this.glyphNames = glyphNames.clone();
+    }
+
+    private static long pack(int[] values, int colours) {
+        long packed = 0;
+        for (int orb = 0; orb < values.length; orb++) packed |= (long) Math.floorMod(values[orb], colours) << (orb * 3);
+        return packed;
+    }
+
+    public int getOrbs() {
+        return orbs;
+    }
+
+    public int getColours() {
+        return colours;
+    }
+
+    /**
+     * @return The colour of an orb, from 0
+     */
+    public int colourOf(long state, int orb) {
+        return (int) (state >>> (orb * 3)) & 0x7;
+    }
+
+    /**
+     * @return The colour an orb has to be set to
+     */
+    public int targetOf(int orb) {
+        return colourOf(target, orb);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public long startState() {
+        return start;
+    }
+
+    @Override
+    public boolean isSolved(long state) {
+        return state == target;
+    }
+
+    @Override
+    public int moveCount() {
+        return glyphs.length;
+    }
+
+    @Override
+    public long apply(long state, int move) {
+        for (int orb : glyphs[move]) {
+            int shift = orb * 3;
+            long colour = ((state >>> shift) & 0x7) + 1;
+            if (colour == colours) colour = 0;
+            state = (state & ~(0x7L << shift)) | (colour << shift);
+        }
+        return state;
+    }
+
+    /**
+     * Colours only ever move forwards, one step per glyph touched, so the puzzle is at least as many touches from
+     * solved as the orb furthest behind its target colour.
+     */
+    @Override
+    public int lowerBound(long state) {
+        int furthest = 0;
+        for (int orb = 0; orb < orbs; orb++) {
+            furthest = Math.max(furthest, Math.floorMod(targetOf(orb) - colourOf(state, orb), colours));
+        }
+        return furthest;
+    }
+
+    @Override
+    public String moveLabel(int move) {
+        return glyphNames[move];
+    }
+
+    @Override
+    public String describeMove(long state, int move) {
+        return "Touch the " + glyphNames[move] + " glyph";
+    }
+}
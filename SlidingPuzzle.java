@@ -0,0 +1,200 @@
+import java.util.SplittableRandom;
+
+/**
+ * Numbered blocks in a grid with one gap, slid one at a time into the gap until they read in order with the gap
+ * last.
+ * <p>
+ * Each cell is four bits of the state holding its block's number, 0 for the gap, so a grid can have up to 16
+ * cells. A move slides the gap up, down, left or right, which is the block on that side sliding the other way.
+ */
+public final class SlidingPuzzle implements Puzzle {
+    private static final int UP = 0, DOWN = 1, LEFT = 2, RIGHT = 3;
+    private static final String[] LABELS = {"Block above", "Block below", "Block left", "Block right"};
+    // Nibble mask with the lowest bit of every cell
+    private static final long LOW_BITS = 0x1111_1111_1111_1111L;
+
+    private final String name;
+    private final int rows;
+    private final int columns;
+    private final int cells;
+    private final long solved;
+    private final long start;
+    // The lowest bit of each cell in use
+    private final long cellBits;
+    // How far block b is from its home if it sits in cell c, at [b * cells + c]
+    private final byte[] distances;
+
+    /**
+     * @param name    What the puzzle is called
+     * @param rows    The grid's height
+     * @param columns The grid's width
+     * @param start   The starting layout, packed, or {@link Puzzle#ILLEGAL} to start solved
+     */
+    public SlidingPuzzle(String name, int rows, int columns, long start) {
+        if (rows < 2 || columns < 2 || rows * columns > 16) throw new IllegalArgumentException("A grid has 4 to 16 cells");
+        this.name = name;
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = rows * columns;
+        long packed = 0;
+        for (int cell = 0; cell < cells - 1; cell++) packed |= (long) (cell + 1) << (cell * 4);
+        this.solved = packed;
+        this.start = start == ILLEGAL ? packed : start;
+        this.cellBits = cells == 16 ? LOW_BITS : LOW_BITS & ((1L << (cells * 4)) - 1);
+        this.distances = new byte[cells * cells];
+        for (int block = 1; block < cells; block++) {
+            for (int cell = 0; cell < cells; cell++) {
+                int home = block - 1;
+                distances[block * cells + cell] = (byte) (Math.abs(home / columns - cell / columns) + Math.abs(home % columns - cell % columns));
+            }
+        }
+    }
+
+    /**
+     * Makes a puzzle that starts a number of random slides away from solved, so it can always be solved.
+     *
+     * @param name    What the puzzle is called
+     * @param rows    The grid's height
+     * @param columns The grid's width
+     * @param slides  How many random slides to make
+     * @param seed    Seeds the slides, so the same puzzle comes out every time
+     * @return The puzzle
+     */
+    public static SlidingPuzzle scrambled(String name, int rows, int columns, int slides, long seed) {
+        SlidingPuzzle solvedPuzzle = new SlidingPuzzle(name, rows, columns, ILLEGAL);
+        SplittableRandom random = new SplittableRandom(seed);
+        long state = solvedPuzzle.solved;
+        int last = -1;
+        for (int made = 0; made < slides; ) {
+            int move = random.nextInt(4);
+            if (move == solvedPuzzle.inverseOf(last)) continue;
+            long next = solvedPuzzle.apply(state, move);
+            if (next == ILLEGAL) continue;
+            state = next;
+            last = move;
+            made++;
+        }
+        return new SlidingPuzzle(name, rows, columns, state);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param state A state
+     * @param cell  A cell, counted across then down
+     * @return The number of the block in the cell, 0 for the gap
+     */
+    public int blockAt(long state, int cell) {
+        return (int) (state >>> (cell * 4)) & 0xF;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public long startState() {
+        return start;
+    }
+
+    @Override
+    public boolean isSolved(long state) {
+        return state == solved;
+    }
+
+    @Override
+    public int moveCount() {
+        return 4;
+    }
+
+    @Override
+    public long apply(long state, int move) {
+        int gap = gapOf(state);
+        int row = gap / columns, column = gap % columns;
+        int target;
+        switch (move) {
+            case UP -> target = row > 0 ? gap - columns : -1;
+            case DOWN -> target = row < rows - 1 ? gap + columns : -1;
+            case LEFT -> target = column > 0 ? gap - 1 : -1;
+            default -> target = column < columns - 1 ? gap + 1 : -1;
+        }
+        if (target < 0) return ILLEGAL;
+        long block = (state >>> (target * 4)) & 0xF;
+        // The gap's cell is 0, so the block can be or-ed straight in
+        return (state & ~(0xFL << (target * 4))) | (block << (gap * 4));
+    }
+
+    @Override
+    public int inverseOf(int move) {
+        return move < 0 ? -1 : move ^ 1;
+    }
+
+    /**
+     * Adds up how far each block is from home, counting rows and columns. Each slide moves one block one cell,
+     * so the puzzle is at least that many slides from solved.
+     */
+    @Override
+    public int lowerBound(long state) {
+        int total = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int block = (int) (state >>> (cell * 4)) & 0xF;
+            if (block != 0) total += distances[block * cells + cell];
+        }
+        return total;
+    }
+
+    /**
+     * Half of all layouts can never be solved. Which half a layout is in never changes with a slide, and is
+     * read from how many pairs of blocks are out of order and, on even widths, which row the gap is on.
+     */
+    @Override
+    public boolean mightBeSolvable(long state) {
+        int inversions = 0;
+        for (int i = 0; i < cells; i++) {
+            int a = blockAt(state, i);
+            if (a == 0) continue;
+            for (int j = i + 1; j < cells; j++) {
+                int b = blockAt(state, j);
+                if (b != 0 && b < a) inversions++;
+            }
+        }
+        if (columns % 2 == 1) return inversions % 2 == 0;
+        int gapRowFromBottom = rows - 1 - gapOf(state) / columns;
+        return (inversions + gapRowFromBottom) % 2 == 0;
+    }
+
+    @Override
+    public String moveLabel(int move) {
+        return LABELS[move];
+    }
+
+    @Override
+    public String describeMove(long state, int move) {
+        long next = apply(state, move);
+        if (next == ILLEGAL) return moveLabel(move);
+        int block = blockAt(state, gapOf(next));
+        String direction = switch (move) {
+            case UP -> "down";
+            case DOWN -> "up";
+            case LEFT -> "right";
+            default -> "left";
+        };
+        return "Slide " + block + " " + direction;
+    }
+
+    /**
+     * Finds the gap, the one cell of the grid holding 0, by checking every cell's four bits at once.
+     */
+    private int gapOf(long state) {
+        long empty = ~state;
+        long zeroCells = empty & (empty >>> 1) & (empty >>> 2) & (empty >>> 3) & cellBits;
+        return Long.numberOfTrailingZeros(zeroCells) >>> 2;
+    }
+}
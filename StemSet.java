@@ -0,0 +1,157 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Several same-length tracks played as one, such as the drums, strings and choir of one piece.
+ * <p>
+ * The set is itself a {@link PcmSource}: the engine reads it at a single position, so every stem stays on
+ * the same frame through seeks and loop jumps. Each stem has its own gain, which glides to new values
+ * instead of jumping, so stems can be faded in and out while the music plays.
+ */
+public class StemSet implements PcmSource {
+    // How long a gain change takes to glide to its new value
+    private static final float GAIN_RAMP_SECONDS = 0.05f;
+    // Stems may differ by up to this much, as MP3 encoders pad the ends differently
+    private static final float LENGTH_TOLERANCE_SECONDS = 0.1f;
+
+    private final PcmSource[] stems;
+    private final float frameRate;
+    private final long frameCount;
+    private final int rampFrames;
+    // Target gains, written by the UI and read by the render thread. Stored as float bits so setting one never locks
+    private final AtomicIntegerArray targetGains;
+    // -- Render thread only --
+    private final float[] gains;
+    private final float[] rampTargets;
+    private final float[] rampSteps;
+    private final int[] rampRemaining;
+    // One stem's frames at a time, made with the set so reading never allocates
+    private final float[] stemBuffer = new float[Constants.GB_RENDER_BLOCK_FRAMES * 2];
+
+    /**
+     * @param stems The decoded stems, all at the same frame rate and of about the same length
+     * @throws IllegalArgumentException if the stems cannot be played together
+     */
+    public StemSet(List<? extends PcmSource> stems) {
+        if (stems.isEmpty()) throw new IllegalArgumentException("A stem set needs at least one stem");
+        this.stems = stems.toArray(new PcmSource[0]);
+        this.frameRate = this.stems[0].frameRate();
+
+        long shortest = Long.MAX_VALUE;
+        long longest = 0;
+        for (PcmSource stem : this.stems) {
+            if (stem.frameRate() != frameRate) {
+                throw new IllegalArgumentException("Stems must share the same sample rate");
+            }
+            shortest = Math.min(shortest, stem.frameCount());
+            longest = Math.max(longest, stem.frameCount());
+        }
+        if (longest - shortest > frameRate * LENGTH_TOLERANCE_SECONDS) {
+            throw new IllegalArgumentException("Stems must be the same length");
+        }
+        this.frameCount = shortest;
+        this.rampFrames = Math.max(1, (int) (frameRate * GAIN_RAMP_SECONDS));
+
+        int count = this.stems.length;
+        targetGains = new AtomicIntegerArray(count);
+        gains = new float[count];
+        rampTargets = new float[count];
+        rampSteps = new float[count];
+        rampRemaining = new int[count];
+        for (int i = 0; i < count; i++) {
+            targetGains.set(i, Float.floatToIntBits(1f));
+            gains[i] = 1f;
+            rampTargets[i] = 1f;
+        }
+    }
+
+    /**
+     * Fades a stem towards a new gain. Safe to call from any thread.
+     *
+     * @param stem The index of the stem
+     * @param gain 0 for silent, 1 for the stem's original level
+     */
+    public void setGain(int stem, float gain) {
+        targetGains.set(stem, Float.floatToIntBits(Math.max(0f, gain)));
+    }
+
+    /**
+     * @param stem The index of the stem
+     * @return The gain the stem is heading towards
+     */
+    public float getGain(int stem) {
+        return Float.intBitsToFloat(targetGains.get(stem));
+    }
+
+    /**
+     * @return How many stems are in the set
+     */
+    public int size() {
+        return stems.length;
+    }
+
+    @Override
+    public int channels() {
+        return 2;
+    }
+
+    @Override
+    public float frameRate() {
+        return frameRate;
+    }
+
+    @Override
+    public long frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Mixes every stem at the given frame, a render block at a time. Stems that are silent and staying silent are
+     * skipped entirely.
+     */
+    @Override
+    public void read(long frame, float[] dst, int dstOffset, int frames) {
+        while (frames > 0) {
+            int chunk = Math.min(frames, Constants.GB_RENDER_BLOCK_FRAMES);
+            mix(frame, dst, dstOffset, chunk);
+            frame += chunk;
+            dstOffset += chunk;
+            frames -= chunk;
+        }
+    }
+
+    private void mix(long frame, float[] dst, int dstOffset, int frames) {
+        int out = dstOffset * 2;
+        Arrays.fill(dst, out, out + frames * 2, 0f);
+
+        for (int s = 0; s < stems.length; s++) {
+            startRampIfChanged(s);
+            if (gains[s] == 0f && rampRemaining[s] == 0) continue;
+
+            stems[s].read(frame, stemBuffer, 0, frames);
+            float gain = gains[s];
+            int ramped = Math.min(frames, rampRemaining[s]);
+            float step = rampSteps[s];
+            for (int i = 0; i < ramped; i++) {
+                gain += step;
+                dst[out + i * 2] += stemBuffer[i * 2] * gain;
+                dst[out + i * 2 + 1] += stemBuffer[i * 2 + 1] * gain;
+            }
+            if (ramped == rampRemaining[s]) gain = rampTargets[s];
+            for (int i = ramped * 2; i < frames * 2; i++) {
+                dst[out + i] += stemBuffer[i] * gain;
+            }
+            gains[s] = gain;
+            rampRemaining[s] -= ramped;
+        }
+    }
+
+    private void startRampIfChanged(int stem) {
+        float target = Float.intBitsToFloat(targetGains.get(stem));
+        if (target == rampTargets[stem]) return;
+        rampTargets[stem] = target;
+        rampSteps[stem] = (target - gains[stem]) / rampFrames;
+        rampRemaining[stem] = rampFrames;
+    }
+}
@@ -0,0 +1,311 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs background work (decoding, prefetching, indexing) on a small shared pool, in priority lanes.
+ * <p>
+ * A free worker always takes the oldest task from the highest priority lane that is under its concurrency limit.
+ * Every lane has at least one worker to itself, so the selected track never waits behind a folder being indexed.
+ * <p>
+ * Cancelling is cooperative: a cancelled task that has not started is dropped, and a running one sees
+ * {@link Token#isCancelled()} turn true and is expected to stop at its next check. Cancelling a whole lane is how
+ * a new selection in the file list throws away work for the old one.
+ */
+public class TaskScheduler {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(TaskScheduler.class.getName());
+
+    /**
+     * The lanes, highest priority first
+     */
+    public enum Lane {
+        // The track the user just picked
+        SELECTED(1, Thread.MAX_PRIORITY - 1),
+        // Scenes queued to play next, which a change of selection must not throw away
+        SCENE(1, Thread.NORM_PRIORITY + 1),
+        // Tracks next to the selected one, decoded in case they are picked next
+        PREFETCH(1, Thread.NORM_PRIORITY),
+        // Tracks already decoded and playing, compressed into the cache
+        CACHE(1, Thread.NORM_PRIORITY - 1),
+        // Whole-folder work, such as analysing every track
+        INDEX(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), Thread.MIN_PRIORITY);
+
+        private final int maxConcurrent;
+        private final int threadPriority;
+
+        Lane(int maxConcurrent, int threadPriority) {
+            this.maxConcurrent = maxConcurrent;
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    /**
+     * Lets a running task check whether it is still wanted
+     */
+    public interface Token {
+        /**
+         * @return true once the task has been cancelled, meaning it should stop as soon as it can
+         */
+        boolean isCancelled();
+
+        /**
+         * Stops the task by throwing if it has been cancelled
+         *
+         * @throws CancellationException if the task has been cancelled
+         */
+        default void throwIfCancelled() {
+            if (isCancelled()) throw new CancellationException();
+        }
+    }
+
+    /**
+     * A piece of background work
+     *
+     * @param <T> What the work produces
+     */
+    @FunctionalInterface
+    public interface Job<T> {
+        /**
+         * @param token Checked regularly by long jobs, which should stop once it is cancelled
+         * @return The result
+         * @throws Exception if the work fails
+         */
+        T run(Token token) throws Exception;
+    }
+
+    /**
+     * Totals for one lane since the scheduler started
+     *
+     * @param started      Tasks that were picked up by a worker
+     * @param completed    Tasks that ran to the end
+     * @param cancelled    Tasks cancelled before or while running
+     * @param failed       Tasks that threw
+     * @param waitNanos    Time spent queued, summed over every task that started
+     * @param maxWaitNanos The longest any task was queued
+     * @param runNanos     Time spent running, summed over every task that started
+     */
+    public record LaneStats(long started, long completed, long cancelled, long failed,
+                            long waitNanos, long maxWaitNanos, long runNanos) {
+        /**
+         * @return The average time a task spent queued, in milliseconds
+         */
+        public double averageWaitMillis() {
+            return started == 0 ? 0 : waitNanos / 1e6 / started;
+        }
+
+        /**
+         * @return The average time a task spent running, in milliseconds
+         */
+        public double averageRunMillis() {
+            return started == 0 ? 0 : runNanos / 1e6 / started;
+        }
+    }
+
+    /**
+     * A queued or running task, which is also its own cancellation token
+     */
+    private static final class Task<T> implements Token {
+        private final Lane lane;
+        private final String name;
+        private final Job<T> job;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long queuedNanos = System.nanoTime();
+
+        private Task(Lane lane, String name, Job<T> job) {
+            this.lane = lane;
+            this.name = name;
+            this.job = job;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        private void run() {
+            try {
+                future.complete(job.run(this));
+            } catch (CancellationException e) {
+                future.cancel(false);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Map<Lane, ArrayDeque<Task<?>>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, List<Task<?>>> running = new EnumMap<>(Lane.class);
+    // -- Statistics, guarded by the lock --
+    private final Map<Lane, long[]> stats = new EnumMap<>(Lane.class);
+    private static final int STAT_STARTED = 0, STAT_COMPLETED = 1, STAT_CANCELLED = 2, STAT_FAILED = 3,
+            STAT_WAIT = 4, STAT_MAX_WAIT = 5, STAT_RUN = 6;
+
+    /**
+     * Starts one worker per slot across all lanes. The workers are daemons, so they never keep the app open.
+     */
+    public TaskScheduler() {
+        int workers = 0;
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            running.put(lane, new ArrayList<>());
+            stats.put(lane, new long[7]);
+            workers += lane.maxConcurrent;
+        }
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::workLoop, "GrooveBuddy-Worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues a task.
+     *
+     * @param lane The lane to run it in
+     * @param name A short description, for the logs
+     * @param job  The work to do
+     * @return A future for the result. Cancelling it cancels the task.
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, String name, Job<T> job) {
+        Task<T> task = new Task<>(lane, name, job);
+        lock.lock();
+        try {
+            queues.get(lane).addLast(task);
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return task.future;
+    }
+
+    /**
+     * Cancels every queued and running task in a lane.
+     *
+     * @param lane The lane to clear
+     */
+    public void cancelLane(Lane lane) {
+        lock.lock();
+        try {
+            ArrayDeque<Task<?>> queue = queues.get(lane);
+            stats.get(lane)[STAT_CANCELLED] += queue.size();
+            for (Task<?> task : queue) task.future.cancel(false);
+            queue.clear();
+            for (Task<?> task : running.get(lane)) task.future.cancel(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param lane The lane to report on
+     * @return The lane's totals so far
+     */
+    public LaneStats getStats(Lane lane) {
+        lock.lock();
+        try {
+            long[] s = stats.get(lane);
+            return new LaneStats(s[STAT_STARTED], s[STAT_COMPLETED], s[STAT_CANCELLED], s[STAT_FAILED], s[STAT_WAIT], s[STAT_MAX_WAIT], s[STAT_RUN]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every lane's totals to the log.
+     */
+    public void logStats() {
+        for (Lane lane : Lane.values()) {
+            LaneStats s = getStats(lane);
+            LOGGER.log(Level.INFO, String.format("%s lane: %d started, %d done, %d cancelled, %d failed, wait avg %.1f ms max %.1f ms, run avg %.1f ms",
+                    lane, s.started(), s.completed(), s.cancelled(), s.failed(), s.averageWaitMillis(), s.maxWaitNanos() / 1e6, s.averageRunMillis()));
+        }
+    }
+
+    // -- Workers --
+    private void workLoop() {
+        while (true) {
+            Task<?> task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long startNanos = System.nanoTime();
+            Thread.currentThread().setPriority(task.lane.threadPriority);
+            task.run();
+            finish(task, startNanos - task.queuedNanos, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Waits for the highest priority task a lane has room to run. Tasks cancelled while queued are skipped.
+     */
+    private Task<?> take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                for (Lane lane : Lane.values()) {
+                    List<Task<?>> active = running.get(lane);
+                    if (active.size() >= lane.maxConcurrent) continue;
+                    Task<?> task = pollLive(lane);
+                    if (task == null) continue;
+                    active.add(task);
+                    return task;
+                }
+                workAvailable.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the oldest task in a lane that has not been cancelled while it waited.
+     */
+    private Task<?> pollLive(Lane lane) {
+        ArrayDeque<Task<?>> queue = queues.get(lane);
+        Task<?> task;
+        while ((task = queue.pollFirst()) != null) {
+            if (!task.isCancelled()) return task;
+            stats.get(lane)[STAT_CANCELLED]++;
+        }
+        return null;
+    }
+
+    private void finish(Task<?> task, long waitNanos, long runNanos) {
+        lock.lock();
+        try {
+            running.get(task.lane).remove(task);
+            long[] s = stats.get(task.lane);
+            s[STAT_STARTED]++;
+            if (task.future.isCancelled()) {
+                s[STAT_CANCELLED]++;
+            } else if (task.future.isCompletedExceptionally()) {
+                s[STAT_FAILED]++;
+                LOGGER.log(Level.FINE, "Background task failed: " + task.name);
+            } else {
+                s[STAT_COMPLETED]++;
+            }
+            s[STAT_WAIT] += waitNanos;
+            s[STAT_MAX_WAIT] = Math.max(s[STAT_MAX_WAIT], waitNanos);
+            s[STAT_RUN] += runNanos;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.log(Level.FINE, "{0} task {1} waited {2} ms, ran {3} ms", new Object[]{task.lane, task.name,
+                waitNanos / 1_000_000, runNanos / 1_000_000});
+    }
+}
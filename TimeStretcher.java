@@ -0,0 +1,273 @@
+import java.util.Arrays;
+
+/**
+ * Changes the tempo of a stereo stream without changing its pitch, using WSOLA
+ * (waveform similarity overlap-add).
+ * <p>
+ * Each output hop copies a Hann-windowed slice of the input, advancing through the input by
+ * {@code tempo} times the output hop. Before each copy, the slice start is nudged within a small
+ * search range to the point whose waveform best lines up with what the previous slice would have played
+ * next, so the overlapping slices add up without phasing or clicks.
+ * <p>
+ * Input is pushed in with {@link #supply(float[], int, int)} and output pulled with
+ * {@link #receive(float[], int, int)}. All buffers are allocated up front, so nothing is allocated
+ * while rendering. Most of the time goes on the similarity search. The JIT will not vectorise its sums, as it
+ * must keep float additions in order, so it is unrolled by hand into independent partial sums instead.
+ */
+public class TimeStretcher {
+    // Length of each slice. Long enough to hold a few periods of a bass note, short enough not to smear drums
+    private static final double WINDOW_SECONDS = 0.025;
+    // The coarse similarity search only looks at every Nth candidate and sample, then refines around the winner
+    private static final int SEARCH_DECIMATION = 4;
+    public static final double MIN_TEMPO = 0.5;
+    public static final double MAX_TEMPO = 2.0;
+
+    private final float frameRate;
+    private final int windowFrames;
+    private final int hopFrames;
+    private final int searchFrames;
+    private final float[] window;
+    // -- Input FIFO, stereo and a mono mix for the similarity search --
+    private final int inputCapacity;
+    private final float[] input;
+    private final float[] inputMono;
+    private long inputStart;
+    private int inputFrames;
+    private boolean isInputEnded;
+    // -- Output, one hop at a time --
+    private final float[] overlap;
+    private final float[] output;
+    private int outputRead;
+    private int outputFrames;
+    // -- Position in the input --
+    private double analysisPosition;
+    private long previousStart;
+    private double tempo = 1.0;
+
+    /**
+     * @param frameRate The frame rate of the audio being stretched, used to size the slices
+     */
+    public TimeStretcher(float frameRate) {
+        this.frameRate = frameRate;
+        windowFrames = Math.max(64, (int) (frameRate * WINDOW_SECONDS) & ~(SEARCH_DECIMATION * 2 - 1));
+        hopFrames = windowFrames / 2;
+        searchFrames = windowFrames / 4;
+
+        window = new float[windowFrames];
+        for (int i = 0; i < windowFrames; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / windowFrames));
+        }
+
+        // Enough for a window, both ends of the search range and the furthest hop at the fastest tempo
+        inputCapacity = windowFrames * 3 + 2 * searchFrames;
+        input = new float[inputCapacity * 2];
+        inputMono = new float[inputCapacity];
+        overlap = new float[windowFrames * 2];
+        output = new float[hopFrames * 2];
+        reset();
+    }
+
+    /**
+     * Forgets all buffered audio, ready to start stretching from a new position.
+     */
+    public void reset() {
+        inputStart = 0;
+        inputFrames = 0;
+        isInputEnded = false;
+        Arrays.fill(overlap, 0f);
+        outputRead = 0;
+        outputFrames = 0;
+        analysisPosition = 0;
+        previousStart = -1;
+    }
+
+    /**
+     * Sets the playback speed, taking effect from the next hop.
+     *
+     * @param tempo 1.0 for the original speed, 1.2 for 20% faster, and so on
+     */
+    public void setTempo(double tempo) {
+        this.tempo = Math.max(MIN_TEMPO, Math.min(MAX_TEMPO, tempo));
+    }
+
+    /**
+     * @return The current tempo
+     */
+    public double getTempo() {
+        return tempo;
+    }
+
+    /**
+     * @return The frame rate the slices were sized for
+     */
+    public float getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * @return How many more input frames are needed before the next hop can be produced
+     */
+    public int inputNeeded() {
+        if (isInputEnded) return 0;
+        long needEnd = Math.round(analysisPosition) + searchFrames + windowFrames;
+        long need = needEnd - (inputStart + inputFrames);
+        return (int) Math.max(0, Math.min(need, inputCapacity - inputFrames));
+    }
+
+    /**
+     * Appends input frames.
+     *
+     * @param src    Interleaved stereo input
+     * @param offset The first frame in the buffer to take
+     * @param frames How many frames to take, no more than {@link #inputNeeded()}
+     */
+    public void supply(float[] src, int offset, int frames) {
+        System.arraycopy(src, offset * 2, input, inputFrames * 2, frames * 2);
+        for (int i = 0; i < frames; i++) {
+            inputMono[inputFrames + i] = (src[(offset + i) * 2] + src[(offset + i) * 2 + 1]) * 0.5f;
+        }
+        inputFrames += frames;
+    }
+
+    /**
+     * Marks the input as finished, so what is left in the buffer can be played out.
+     */
+    public void endOfInput() {
+        isInputEnded = true;
+    }
+
+    /**
+     * @return true once the input has ended and all of it has been played out
+     */
+    public boolean isDrained() {
+        return isInputEnded && outputRead == outputFrames && Math.round(analysisPosition) >= inputStart + inputFrames;
+    }
+
+    /**
+     * Copies stretched output into a buffer.
+     *
+     * @param dst    The buffer to fill with interleaved stereo
+     * @param offset The first frame in the buffer to fill
+     * @param frames How many frames are wanted
+     * @return How many frames were written. Fewer than asked means more input is needed, or the input is drained.
+     */
+    public int receive(float[] dst, int offset, int frames) {
+        int written = 0;
+        while (written < frames) {
+            if (outputRead == outputFrames && !synthesize()) break;
+            int count = Math.min(frames - written, outputFrames - outputRead);
+            System.arraycopy(output, outputRead * 2, dst, (offset + written) * 2, count * 2);
+            outputRead += count;
+            written += count;
+        }
+        return written;
+    }
+
+    /**
+     * Produces the next hop of output, if there is enough input for it.
+     */
+    private boolean synthesize() {
+        long nominal = Math.round(analysisPosition);
+        long inputEnd = inputStart + inputFrames;
+        if (!isInputEnded && inputEnd < nominal + searchFrames + windowFrames) return false;
+        if (isInputEnded && nominal >= inputEnd) return false;
+
+        long start = previousStart < 0 ? nominal : findBestStart(nominal, inputEnd);
+        overlapAdd((int) (start - inputStart), (int) Math.min(windowFrames, inputEnd - start));
+
+        // Hand over the finished first half of the overlap, and slide the second half down
+        System.arraycopy(overlap, 0, output, 0, hopFrames * 2);
+        System.arraycopy(overlap, hopFrames * 2, overlap, 0, (windowFrames - hopFrames) * 2);
+        Arrays.fill(overlap, (windowFrames - hopFrames) * 2, windowFrames * 2, 0f);
+        outputRead = 0;
+        outputFrames = hopFrames;
+
+        previousStart = start;
+        analysisPosition += tempo * hopFrames;
+        discardBefore(Math.min(start + hopFrames, Math.round(analysisPosition) - searchFrames));
+        return true;
+    }
+
+    /**
+     * Finds the slice start near the nominal position that best continues the previous slice.
+     */
+    private long findBestStart(long nominal, long inputEnd) {
+        long lowest = Math.max(nominal - searchFrames, inputStart);
+        long highest = Math.min(nominal + searchFrames, inputEnd - windowFrames);
+        if (highest < lowest) return Math.max(inputStart, Math.min(nominal, inputEnd - 1));
+
+        // What the previous slice would have played next, over the region the slices overlap
+        int template = (int) (previousStart + hopFrames - inputStart);
+        int overlapFrames = windowFrames - hopFrames;
+
+        long best = lowest;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (long candidate = lowest; candidate <= highest; candidate += SEARCH_DECIMATION) {
+            float score = similarity(template, (int) (candidate - inputStart), overlapFrames, SEARCH_DECIMATION);
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+
+        long coarseBest = best;
+        for (long candidate = Math.max(lowest, coarseBest - SEARCH_DECIMATION + 1);
+             candidate <= Math.min(highest, coarseBest + SEARCH_DECIMATION - 1); candidate++) {
+            float score = similarity(template, (int) (candidate - inputStart), overlapFrames, 1);
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Normalised cross-correlation of two stretches of the mono mix. Four samples are taken a pass, each into sums
+     * of its own, so no add waits on the one before it.
+     */
+    private float similarity(int a, int b, int frames, int step) {
+        float correlation0 = 0f, correlation1 = 0f, correlation2 = 0f, correlation3 = 0f;
+        float energy0 = 1e-9f, energy1 = 0f, energy2 = 0f, energy3 = 0f;
+        int i = 0;
+        for (int last = frames - 3 * step; i < last; i += 4 * step) {
+            float x0 = inputMono[b + i];
+            float x1 = inputMono[b + i + step];
+            float x2 = inputMono[b + i + 2 * step];
+            float x3 = inputMono[b + i + 3 * step];
+            correlation0 += inputMono[a + i] * x0;
+            correlation1 += inputMono[a + i + step] * x1;
+            correlation2 += inputMono[a + i + 2 * step] * x2;
+            correlation3 += inputMono[a + i + 3 * step] * x3;
+            energy0 += x0 * x0;
+            energy1 += x1 * x1;
+            energy2 += x2 * x2;
+            energy3 += x3 * x3;
+        }
+        for (; i < frames; i += step) {
+            float x = inputMono[b + i];
+            correlation0 += inputMono[a + i] * x;
+            energy0 += x * x;
+        }
+        float correlation = (correlation0 + correlation1) + (correlation2 + correlation3);
+        return correlation / (float) Math.sqrt((energy0 + energy1) + (energy2 + energy3));
+    }
+
+    private void overlapAdd(int from, int frames) {
+        int base = from * 2;
+        for (int i = 0; i < frames; i++) {
+            float weight = window[i];
+            overlap[i * 2] += weight * input[base + i * 2];
+            overlap[i * 2 + 1] += weight * input[base + i * 2 + 1];
+        }
+    }
+
+    private void discardBefore(long frame) {
+        int drop = (int) Math.max(0, Math.min(frame - inputStart, inputFrames));
+        if (drop == 0) return;
+        System.arraycopy(input, drop * 2, input, 0, (inputFrames - drop) * 2);
+        System.arraycopy(inputMono, drop, inputMono, 0, inputFrames - drop);
+        inputFrames -= drop;
+        inputStart += drop;
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.Arrays;
+
+/**
+ * Keeps track of when a set of events are next due, to the frame, on the audio clock.
+ * <p>
+ * Events are numbered from 0 up to the wheel's capacity and each is either scheduled for one frame or not at all,
+ * so the caller keeps whatever the number stands for in an array of its own. Scheduling, rescheduling and
+ * cancelling take the same short time however many events are waiting, and nothing is allocated after the wheel
+ * is made.
+ * <p>
+ * The wheel is hierarchical, like a clock with several hands. The first level has a slot for each of the next
+ * {@value #SLOTS} frames; each level above has slots {@value #SLOTS} times wider, and an event waits in the
+ * coarsest slot that fits how far away it is. Whenever the clock passes into a new slot of a level, the events
+ * waiting there are moved down into the finer level below, until they reach the first level and come due.
+ * A bit per slot marks the slots holding anything at every level, so stretches with nothing due are stepped over
+ * in one go however long they are, straight to the next slot that holds something.
+ * <p>
+ * Not thread safe: the engine only uses it from the render thread.
+ */
+public class TimingWheel {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // Four levels reach 2^24 frames, nearly six minutes at the engine rate. Anything further waits in overflow
+    private static final int LEVELS = 4;
+    private static final int OVERFLOW = LEVELS * SLOTS;
+    private static final int NONE = -1;
+
+    // The head of each slot's list, followed by the overflow list
+    private final int[] heads = new int[LEVELS * SLOTS + 1];
+    // A bit per slot, set while the slot holds anything
+    private final long[] occupied = new long[LEVELS];
+    // -- Per event --
+    private final long[] frames;
+    private final int[] next;
+    private final int[] previous;
+    // Which list the event is in, or NONE when it is not scheduled
+    private final int[] listOf;
+    private int size;
+
+    // The earliest frame not yet handed out by poll
+    private long now;
+    // The frame whose slots have already been moved down, so they are only moved once
+    private long cascadedAt = NONE;
+    private long lastFrame;
+
+    /**
+     * @param capacity   How many events there can be, numbered from 0
+     * @param startFrame The frame the clock starts at
+     */
+    public TimingWheel(int capacity, long startFrame) {
+        frames = new long[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+        listOf = new int[capacity];
+        Arrays.fill(heads, NONE);
+        Arrays.fill(listOf, NONE);
+        now = startFrame;
+    }
+
+    /**
+     * @return How many events can be numbered
+     */
+    public int capacity() {
+        return frames.length;
+    }
+
+    /**
+     * @return How many events are scheduled
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The earliest frame that has not been polled past yet
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Moves the clock straight on to a frame while nothing is scheduled, so a clock left idle catches up in one
+     * step rather than being walked on by the next poll. Does nothing if the clock is already past the frame.
+     *
+     * @param frame The frame to move on to
+     * @throws IllegalStateException if any event is still scheduled
+     */
+    public void advanceTo(long frame) {
+        if (size != 0) throw new IllegalStateException(size + " events are still scheduled");
+        if (frame > now) now = frame;
+    }
+
+    /**
+     * Schedules an event, moving it if it was already scheduled. An event for a frame already polled past comes
+     * due straight away.
+     *
+     * @param event The event's number
+     * @param frame The frame it is due on
+     */
+    public void schedule(int event, long frame) {
+        if (listOf[event] != NONE) unlink(event);
+        frames[event] = frame;
+        link(event, listFor(frame));
+        size++;
+    }
+
+    /**
+     * Unschedules an event, if it was scheduled.
+     *
+     * @param event The event's number
+     */
+    public void cancel(int event) {
+        if (listOf[event] == NONE) return;
+        unlink(event);
+    }
+
+    /**
+     * Unschedules every event.
+     */
+    public void cancelAll() {
+        for (int event = 0; event < listOf.length; event++) cancel(event);
+    }
+
+    /**
+     * @param event The event's number
+     * @return true if the event is waiting to come due
+     */
+    public boolean isScheduled(int event) {
+        return listOf[event] != NONE;
+    }
+
+    /**
+     * Moves the clock on to the next event due before a frame, and takes it off the wheel. Events come out in
+     * the order they are due. Call it until it returns -1 to collect everything due in a block; events scheduled
+     * along the way are included if they fall inside it.
+     *
+     * @param untilFrame The frame to stop short of
+     * @return The event that came due, or -1 once the clock has reached untilFrame with nothing left due before it
+     */
+    public int poll(long untilFrame) {
+        while (now < untilFrame) {
+            int slot = (int) (now & SLOT_MASK);
+            if (slot == 0 && cascadedAt != now) {
+                cascade();
+                cascadedAt = now;
+            }
+            int event = heads[slot];
+            if (event != NONE) {
+                unlink(event);
+                lastFrame = frames[event];
+                return event;
+            }
+            now = Math.min(nextBusyFrame(slot), untilFrame);
+        }
+        return NONE;
+    }
+
+    /**
+     * @return The frame the event last returned by {@link #poll} was due on. Earlier than the clock if it was
+     * scheduled for a frame already passed
+     */
+    public long lastFrame() {
+        return lastFrame;
+    }
+
+    /**
+     * Finds the next frame anything can happen on: the next occupied slot of this turn of the first level, or
+     * else the start of the next occupied slot of the finest level above that has one in its current turn, where
+     * its events are moved down. Nothing can happen in between, so the clock can go straight there.
+     *
+     * @param slot The clock's slot in the first level
+     * @return The frame, or Long.MAX_VALUE if nothing is scheduled
+     */
+    private long nextBusyFrame(int slot) {
+        long later = slot == SLOT_MASK ? 0 : occupied[0] & (-1L << (slot + 1));
+        if (later != 0) return now - slot + Long.numberOfTrailingZeros(later);
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = BITS * level;
+            int current = (int) ((now >>> shift) & SLOT_MASK);
+            later = current == SLOT_MASK ? 0 : occupied[level] & (-1L << (current + 1));
+            if (later != 0) {
+                long turnStart = (now >>> (shift + BITS)) << (shift + BITS);
+                return turnStart + ((long) Long.numberOfTrailingZeros(later) << shift);
+            }
+        }
+        if (heads[OVERFLOW] != NONE) return ((now >>> (BITS * LEVELS)) + 1) << (BITS * LEVELS);
+        return Long.MAX_VALUE;
+    }
+
+    // -- Lists --
+    /**
+     * Finds the list for an event, from the coarsest level whose current turn the frame falls in.
+     */
+    private int listFor(long frame) {
+        if (frame <= now) return (int) (now & SLOT_MASK);
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * (level + 1);
+            if ((frame ^ now) >>> shift == 0) return level * SLOTS + (int) ((frame >>> (BITS * level)) & SLOT_MASK);
+        }
+        return OVERFLOW;
+    }
+
+    /**
+     * Moves the events in the slots the clock has just entered down to finer levels, coarsest first, so events
+     * moved down from one level are moved again if they land in a slot the clock has also just entered.
+     */
+    private void cascade() {
+        if ((now & ((1L << (BITS * LEVELS)) - 1)) == 0) relink(OVERFLOW);
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            if ((now & ((1L << (BITS * level)) - 1)) != 0) continue;
+            relink(level * SLOTS + (int) ((now >>> (BITS * level)) & SLOT_MASK));
+        }
+    }
+
+    private void relink(int list) {
+        int event = heads[list];
+        while (event != NONE) {
+            int following = next[event];
+            unlink(event);
+            link(event, listFor(frames[event]));
+            size++;
+            event = following;
+        }
+    }
+
+    private void link(int event, int list) {
+        int head = heads[list];
+        next[event] = head;
+        previous[event] = NONE;
+        if (head != NONE) previous[head] = event;
+        heads[list] = event;
+        listOf[event] = list;
+        if (list != OVERFLOW) occupied[list >>> BITS] |= 1L << (list & SLOT_MASK);
+    }
+
+    private void unlink(int event) {
+        int list = listOf[event];
+        if (previous[event] != NONE) next[previous[event]] = next[event];
+        else heads[list] = next[event];
+        if (next[event] != NONE) previous[next[event]] = previous[event];
+        listOf[event] = NONE;
+        size--;
+        if (heads[list] == NONE && list != OVERFLOW) occupied[list >>> BITS] &= ~(1L << (list & SLOT_MASK));
+    }
+}
@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A harness for checking that {@link TimingWheel} hands out events on the frames they are due, in order.
+ * <p>
+ * Each trial drives a wheel and a brute-force scheduler, which looks through every event for the earliest one due,
+ * with the same random mix of scheduling, rescheduling, cancelling and polling. Events are due from just behind the
+ * clock to far enough ahead to wait in the coarsest levels or in overflow, and blocks are polled from a few frames
+ * to millions long, rescheduling some events as they come out the way the ambience player re-arms its pools. Every
+ * event polled must be one the brute-force scheduler says is due next, on the frame it was scheduled for.
+ * <p>
+ * Run with {@code ant simulate}, alongside the playback scenarios. An optional argument is the seed.
+ */
+public class TimingWheelChecker {
+    private static final int TRIALS = 200;
+    private static final int STEPS = 400;
+
+    private int checksRun;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Runs every check, and exits with a failure code if any failed.
+     *
+     * @param args [seed]
+     */
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1L;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        TimingWheelChecker checker = new TimingWheelChecker();
+        for (int trial = 0; trial < TRIALS; trial++) {
+            checker.checkTrial(trial, random);
+        }
+        checker.checkIdleClock();
+
+        System.out.printf("Ran %d timing wheel checks%n", checker.checksRun);
+        if (checker.failures.isEmpty()) {
+            System.out.println("All checks passed.");
+        } else {
+            checker.failures.stream().limit(20).forEach(System.out::println);
+            System.out.printf("%d checks FAILED%n", checker.failures.size());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The brute-force scheduler: each event's frame, and the clock
+     */
+    private static final class Reference {
+        private final long[] frames;
+        private final boolean[] isScheduled;
+        private long clock;
+
+        private Reference(int capacity, long startFrame) {
+            frames = new long[capacity];
+            isScheduled = new boolean[capacity];
+            clock = startFrame;
+        }
+
+        /**
+         * @return When an event comes out, which is straight away if it was due before the clock
+         */
+        private long dueAt(int event) {
+            return Math.max(frames[event], clock);
+        }
+
+        /**
+         * @return The earliest frame any event comes out on, or Long.MAX_VALUE if none is scheduled
+         */
+        private long nextDue() {
+            long earliest = Long.MAX_VALUE;
+            for (int event = 0; event < frames.length; event++) {
+                if (isScheduled[event]) earliest = Math.min(earliest, dueAt(event));
+            }
+            return earliest;
+        }
+
+        private int size() {
+            int size = 0;
+            for (boolean scheduled : isScheduled) if (scheduled) size++;
+            return size;
+        }
+    }
+
+    private void checkTrial(int trial, SplittableRandom random) {
+        int capacity = 1 + random.nextInt(40);
+        long startFrame = random.nextLong(1L << 30);
+        TimingWheel wheel = new TimingWheel(capacity, startFrame);
+        Reference reference = new Reference(capacity, startFrame);
+        String name = "trial " + trial;
+
+        for (int step = 0; step < STEPS; step++) {
+            int action = random.nextInt(10);
+            if (action < 4) {
+                int event = random.nextInt(capacity);
+                long frame = randomFrame(reference.clock, random);
+                wheel.schedule(event, frame);
+                reference.frames[event] = frame;
+                reference.isScheduled[event] = true;
+            } else if (action < 5) {
+                int event = random.nextInt(capacity);
+                wheel.cancel(event);
+                reference.isScheduled[event] = false;
+            } else if (action == 5 && random.nextInt(20) == 0) {
+                wheel.cancelAll();
+                Arrays.fill(reference.isScheduled, false);
+                // An emptied wheel can skip ahead, as the ambience player's does when its bed is stopped
+                long frame = reference.clock + random.nextLong(1L << 32);
+                wheel.advanceTo(frame);
+                reference.clock = frame;
+            } else {
+                long untilFrame = reference.clock + (random.nextInt(5) == 0 ? random.nextLong(1L << 26) : random.nextInt(2000));
+                if (!checkPolls(name + " step " + step, wheel, reference, untilFrame, random)) return;
+            }
+
+            checksRun++;
+            for (int event = 0; event < capacity; event++) {
+                if (wheel.isScheduled(event) != reference.isScheduled[event]) {
+                    failures.add(name + " step " + step + ": event " + event + (reference.isScheduled[event] ? " went missing" : " is still scheduled"));
+                    return;
+                }
+            }
+            if (wheel.size() != reference.size()) {
+                failures.add(name + " step " + step + ": " + wheel.size() + " events scheduled, not " + reference.size());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Mostly a few thousand frames ahead, sometimes as far as the second level reaches or well past the last, and
+     * sometimes a little behind the clock.
+     */
+    private static long randomFrame(long clock, SplittableRandom random) {
+        long ahead = switch (random.nextInt(8)) {
+            case 0 -> random.nextLong(1L << 27);
+            case 1 -> random.nextInt(1 << 12);
+            case 2 -> -random.nextInt(100);
+            default -> random.nextInt(5000);
+        };
+        return clock + ahead;
+    }
+
+    /**
+     * Polls a block the way the engine does, until nothing more is due before its end.
+     *
+     * @return false if a check failed, so the rest of the trial would only repeat it
+     */
+    private boolean checkPolls(String name, TimingWheel wheel, Reference reference, long untilFrame, SplittableRandom random) {
+        int event;
+        while ((event = wheel.poll(untilFrame)) >= 0) {
+            checksRun++;
+            long expected = reference.nextDue();
+            if (!reference.isScheduled[event]) {
+                failures.add(name + ": event " + event + " came out but was not scheduled");
+                return false;
+            }
+            if (reference.dueAt(event) != expected || expected >= untilFrame) {
+                failures.add(String.format("%s: event %d came out at %d, but the next due is at %d before %d",
+                        name, event, reference.dueAt(event), expected, untilFrame));
+                return false;
+            }
+            if (wheel.lastFrame() != reference.frames[event] || wheel.now() != expected) {
+                failures.add(String.format("%s: event %d came out for frame %d with the clock at %d, not %d at %d",
+                        name, event, wheel.lastFrame(), wheel.now(), reference.frames[event], expected));
+                return false;
+            }
+            reference.clock = expected;
+            reference.isScheduled[event] = false;
+
+            // Re-arm some events straight away, which may fall inside the block being polled
+            if (random.nextInt(3) == 0) {
+                long frame = reference.frames[event] + random.nextInt(3000);
+                wheel.schedule(event, frame);
+                reference.frames[event] = frame;
+                reference.isScheduled[event] = true;
+            }
+        }
+
+        checksRun++;
+        long missed = reference.nextDue();
+        reference.clock = Math.max(reference.clock, untilFrame);
+        if (missed < untilFrame) {
+            failures.add(String.format("%s: an event due at %d never came out before %d", name, missed, untilFrame));
+            return false;
+        }
+        if (wheel.now() != reference.clock) {
+            failures.add(name + ": the clock stopped at " + wheel.now() + ", not " + reference.clock);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * A wheel left idle for hours, or skipped far ahead, must still bring its next event out on time.
+     */
+    private void checkIdleClock() {
+        checksRun++;
+        TimingWheel wheel = new TimingWheel(4, 0);
+        wheel.schedule(0, 10_000_000L);
+        if (wheel.poll(20_000_000L) != 0 || wheel.lastFrame() != 10_000_000L) {
+            failures.add("idle wheel: an event ten million frames away did not come out on time");
+        }
+        checksRun++;
+        wheel.cancelAll();
+        wheel.advanceTo(1L << 40);
+        wheel.schedule(1, (1L << 40) + 5);
+        if (wheel.poll((1L << 40) + 10) != 1 || wheel.lastFrame() != (1L << 40) + 5) {
+            failures.add("skipped wheel: an event five frames after skipping ahead did not come out on time");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps recently played tracks decoded and converted to the engine rate, so going back to one skips
+ * the decode and the conversion. Tracks are held losslessly compressed, which roughly doubles how many fit.
+ * The least recently used tracks are dropped once the cache is over budget.
+ * A file changed on disk since it was cached is decoded again.
+ */
+public class TrackCache {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(TrackCache.class.getName());
+
+    private final long maxBytes;
+    // In access order, so the first entry is always the least recently used
+    private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    /**
+     * @param maxBytes The most compressed audio to hold, in bytes
+     */
+    public TrackCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A cached track, along with the file state it was decoded from
+     */
+    private record Entry(CompressedTrack track, long lastModified, long length) {
+    }
+
+    /**
+     * @param file The file the track was decoded from
+     * @return The cached track, or null if it is not cached or the file has changed since
+     */
+    public synchronized CompressedTrack get(File file) {
+        Entry entry = entries.get(file);
+        if (entry == null) return null;
+        if (entry.lastModified() != file.lastModified() || entry.length() != file.length()) {
+            remove(file);
+            return null;
+        }
+        return entry.track();
+    }
+
+    /**
+     * Adds a track, dropping the least recently used ones to make room. A track bigger than the whole budget is not kept.
+     *
+     * @param file  The file the track was decoded from
+     * @param track The compressed track at the engine rate
+     */
+    public synchronized void put(File file, CompressedTrack track) {
+        remove(file);
+        long size = track.sizeInBytes();
+        if (size > maxBytes) return;
+
+        Iterator<Map.Entry<File, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes + size > maxBytes && eldest.hasNext()) {
+            Map.Entry<File, Entry> dropped = eldest.next();
+            usedBytes -= dropped.getValue().track().sizeInBytes();
+            eldest.remove();
+            LOGGER.log(Level.FINE, "Dropped {0} from the track cache", dropped.getKey().getName());
+        }
+        entries.put(file, new Entry(track, file.lastModified(), file.length()));
+        usedBytes += size;
+    }
+
+    /**
+     * Forgets a track, if it is cached.
+     *
+     * @param file The file the track was decoded from
+     */
+    public synchronized void remove(File file) {
+        Entry removed = entries.remove(file);
+        if (removed != null) usedBytes -= removed.track().sizeInBytes();
+    }
+
+    /**
+     * @param count The most files to return
+     * @return The files of the most recently used tracks, most recent first
+     */
+    public synchronized List<File> mostRecent(int count) {
+        List<File> files = new ArrayList<>(entries.keySet());
+        List<File> recent = new ArrayList<>();
+        for (int i = files.size() - 1; i >= 0 && recent.size() < count; i--) recent.add(files.get(i));
+        return recent;
+    }
+
+    /**
+     * Forgets every track.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * @return How many bytes of compressed audio are held
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+}
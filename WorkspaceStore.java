@@ -0,0 +1,232 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The Groove Buddy workspace as it was left on exit: the open folder, the selected track and where it was up to,
+ * and which tracks were hot in the decode cache. It is saved under {@code ~/.dndbuddy}, with the compressed audio
+ * of each hot track beside it, so the next launch maps those tracks straight back into the cache instead of
+ * decoding them again. A track changed on disk since it was saved is left out and decoded as usual.
+ * <p>
+ * {@link #load} and the output settings are used from the EDT. {@link #save} runs on the GrooveBuddy-WorkspaceSaver
+ * thread started by {@link AudioService#saveWorkspace()}, as writing the hot tracks can take a while. That is safe
+ * because the store holds nothing but its directory, the workspace and track list it is handed are built for it
+ * and never touched again, the cache it reads the tracks from is synchronized, and it writes only the workspace
+ * file and the tracks beside it, which nothing else writes and which are only read again by the next launch.
+ */
+public class WorkspaceStore {
+    // A logger for logging messages for this class
+    private static final Logger LOGGER = Logger.getLogger(WorkspaceStore.class.getName());
+    private static final String WORKSPACE_FILE_NAME = "groovebuddy_workspace.properties";
+    private static final String OUTPUT_FILE_NAME = "groovebuddy_output.properties";
+    private static final String CACHE_DIRECTORY_NAME = "groovebuddy_tracks";
+    private static final String TRACK_EXTENSION = ".gbt";
+
+    /**
+     * What was open when Groove Buddy was last closed
+     *
+     * @param folder               The open folder
+     * @param selectedTrack        The loaded track, or null if none was loaded or it was a stem set
+     * @param playheadMicroseconds Where the loaded track was up to
+     * @param isLoopEnabled        Whether looping was switched on
+     * @param tempoPercent         The tempo slider's setting
+     */
+    public record Workspace(File folder, File selectedTrack, long playheadMicroseconds, boolean isLoopEnabled,
+                            int tempoPercent) {
+    }
+
+    private final File directory;
+
+    /**
+     * @param directory Where the workspace and its cached tracks are kept
+     */
+    public WorkspaceStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return The store in the user's home directory
+     */
+    public static WorkspaceStore inHomeDirectory() {
+        return new WorkspaceStore(new File(System.getProperty("user.home"), Constants.GB_WORKSPACE_DIRECTORY));
+    }
+
+    /**
+     * Saves a workspace along with the audio of its hot tracks. A track already saved by an earlier session is
+     * kept as it is rather than written again, and tracks that are no longer hot are deleted.
+     *
+     * @param workspace What is open
+     * @param hotTracks The tracks to keep, most wanted first
+     * @param cache     Where the hot tracks' audio is found
+     */
+    public void save(Workspace workspace, List<File> hotTracks, TrackCache cache) {
+        long startNanos = System.nanoTime();
+        File cacheDirectory = new File(directory, CACHE_DIRECTORY_NAME);
+        if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            LOGGER.log(Level.WARNING, "Could not create {0}, the workspace will not be saved", cacheDirectory);
+            return;
+        }
+
+        Properties props = new Properties();
+        props.setProperty("folder", workspace.folder().getAbsolutePath());
+        if (workspace.selectedTrack() != null) props.setProperty("track", workspace.selectedTrack().getAbsolutePath());
+        props.setProperty("playhead", String.valueOf(workspace.playheadMicroseconds()));
+        props.setProperty("loop", String.valueOf(workspace.isLoopEnabled()));
+        props.setProperty("tempo", String.valueOf(workspace.tempoPercent()));
+
+        Set<String> kept = new HashSet<>();
+        int written = 0;
+        for (File file : hotTracks) {
+            String cacheName = cacheNameOf(file);
+            if (kept.contains(cacheName)) continue;
+            File cached = new File(cacheDirectory, cacheName);
+            if (!cached.exists()) {
+                CompressedTrack track = cache.get(file);
+                if (track == null) continue;
+                try {
+                    // Written beside the final name first, so a crash part way never leaves half a track behind
+                    File partial = new File(cacheDirectory, cacheName + ".part");
+                    track.write(partial);
+                    Files.move(partial.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    written++;
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not save " + file.getName() + " for the next session", e);
+                    continue;
+                }
+            }
+            int slot = kept.size();
+            kept.add(cacheName);
+            props.setProperty("hot." + slot, file.getAbsolutePath());
+            props.setProperty("hot." + slot + ".cache", cacheName);
+        }
+        props.setProperty("hot.count", String.valueOf(kept.size()));
+
+        File[] stale = cacheDirectory.listFiles((dir, name) -> !kept.contains(name));
+        if (stale != null) {
+            for (File file : stale) {
+                // A track mapped by this session may not be deletable on every system, so it goes next time
+                if (!file.delete()) LOGGER.log(Level.FINE, "Could not delete {0} yet", file.getName());
+            }
+        }
+
+        try (OutputStream output = new FileOutputStream(new File(directory, WORKSPACE_FILE_NAME))) {
+            props.store(output, "Groove Buddy Workspace");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error saving the workspace", e);
+            return;
+        }
+        LOGGER.log(Level.INFO, "Saved the workspace with {0} hot tracks ({1} newly written) in {2} ms",
+                new Object[]{kept.size(), written, (System.nanoTime() - startNanos) / 1_000_000});
+    }
+
+    /**
+     * Reads the saved workspace and maps its hot tracks back into the cache.
+     *
+     * @param cache Where the hot tracks go
+     * @return The workspace, or null if none was saved, it cannot be read or its folder has gone
+     */
+    public Workspace load(TrackCache cache) {
+        long startNanos = System.nanoTime();
+        File workspaceFile = new File(directory, WORKSPACE_FILE_NAME);
+        if (!workspaceFile.exists()) return null;
+
+        Properties props = new Properties();
+        Workspace workspace;
+        int count;
+        try (InputStream input = new FileInputStream(workspaceFile)) {
+            props.load(input);
+            String track = props.getProperty("track");
+            workspace = new Workspace(new File(props.getProperty("folder", "")), track == null ? null : new File(track),
+                    Long.parseLong(props.getProperty("playhead", "0")), Boolean.parseBoolean(props.getProperty("loop")),
+                    Integer.parseInt(props.getProperty("tempo", "100")));
+            count = Integer.parseInt(props.getProperty("hot.count", "0"));
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Could not read the saved workspace, starting fresh", e);
+            return null;
+        }
+        if (!workspace.folder().isDirectory()) {
+            LOGGER.log(Level.INFO, "The last workspace folder {0} has gone, starting fresh", workspace.folder());
+            return null;
+        }
+
+        File cacheDirectory = new File(directory, CACHE_DIRECTORY_NAME);
+        int mapped = 0;
+        // Oldest first, so the cache ends up in the same order it was left in
+        for (int slot = count - 1; slot >= 0; slot--) {
+            File file = new File(props.getProperty("hot." + slot, ""));
+            String cacheName = props.getProperty("hot." + slot + ".cache", "");
+            File cached = new File(cacheDirectory, cacheName);
+            // The name is built from the file's size and date, so an edited track no longer matches it
+            if (!file.exists() || !cached.exists() || !cacheName.equals(cacheNameOf(file))) continue;
+            try {
+                cache.put(file, CompressedTrack.map(cached));
+                mapped++;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not map the saved audio for " + file.getName(), e);
+            }
+        }
+        LOGGER.log(Level.INFO, "Restored the workspace and mapped {0} of {1} hot tracks in {2} ms",
+                new Object[]{mapped, count, (System.nanoTime() - startNanos) / 1_000_000});
+        return workspace;
+    }
+
+    // -- Output --
+    /**
+     * Saves the chosen output device and preset. They are kept apart from the workspace, as they belong to the
+     * machine rather than to whatever folder is open.
+     *
+     * @param settings The output settings
+     */
+    public void saveOutputSettings(AudioOutput.Settings settings) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.log(Level.WARNING, "Could not create {0}, the output settings will not be saved", directory);
+            return;
+        }
+        Properties props = new Properties();
+        if (settings.deviceName() != null) props.setProperty("device", settings.deviceName());
+        props.setProperty("preset", settings.preset().name());
+        try (OutputStream output = new FileOutputStream(new File(directory, OUTPUT_FILE_NAME))) {
+            props.store(output, "Groove Buddy Output");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error saving the output settings", e);
+        }
+    }
+
+    /**
+     * @return The saved output settings, or the defaults if none were saved or they cannot be read
+     */
+    public AudioOutput.Settings loadOutputSettings() {
+        File outputFile = new File(directory, OUTPUT_FILE_NAME);
+        if (!outputFile.exists()) return AudioOutput.Settings.DEFAULT;
+        Properties props = new Properties();
+        try (InputStream input = new FileInputStream(outputFile)) {
+            props.load(input);
+            return new AudioOutput.Settings(props.getProperty("device"),
+                    AudioOutput.Preset.valueOf(props.getProperty("preset", AudioOutput.Preset.SAFE.name())));
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Could not read the output settings, using the defaults", e);
+            return AudioOutput.Settings.DEFAULT;
+        }
+    }
+
+    /**
+     * @return The name a track's audio is saved under, unique to its path, size and modification time
+     */
+    private static String cacheNameOf(File file) {
+        String identity = file.getAbsolutePath() + '\n' + file.lastModified() + '\n' + file.length();
+        return UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)) + TRACK_EXTENSION;
+    }
+}
@@ -0,0 +1,391 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+
+/**
+ * Calls into the application classes, which live in the default package and so cannot be
+ * imported by JMH benchmarks. The handles are static final, so the JIT inlines them and a call
+ * costs the same as a direct one.
+ */
+public final class App {
+    // Do not use the constructor. There is nothing to use
+    private App() {}
+
+    private static final MethodHandle PARSE_TIME = findStatic("AudioService", "parseTime", long.class, String.class);
+    private static final MethodHandle FORMAT_TIME = findStatic("AudioService", "formatTime", String.class, long.class);
+    private static final MethodHandle CONVERT_MP3 = findStatic("AudioService", "convertMp3ToAudioInputStream",
+            javax.sound.sampled.AudioInputStream.class, File.class);
+    private static final MethodHandle LIST_AUDIO_FILES = findStatic("AudioService", "listAudioFiles", File[].class, File.class);
+    private static final MethodHandle READ_CONFIGS = findStatic("AudioService", "readConfigs", Map.class, File.class);
+    private static final MethodHandle WRITE_CONFIGS = findStatic("AudioService", "writeConfigs", void.class, File.class, Map.class);
+    private static final MethodHandle LOOP_CONFIG_FROM_STRING = findStatic("LoopConfig", "fromString",
+            appClass("LoopConfig"), String.class).asType(MethodType.methodType(Object.class, String.class));
+
+    // -- TimeStretcher, typed as Object --
+    private static final MethodHandle NEW_TIME_STRETCHER = findConstructor("TimeStretcher", float.class);
+    private static final MethodHandle STRETCHER_SET_TEMPO = findVirtual("TimeStretcher", "setTempo", void.class, double.class);
+    private static final MethodHandle STRETCHER_RESET = findVirtual("TimeStretcher", "reset", void.class);
+    private static final MethodHandle STRETCHER_INPUT_NEEDED = findVirtual("TimeStretcher", "inputNeeded", int.class);
+    private static final MethodHandle STRETCHER_SUPPLY = findVirtual("TimeStretcher", "supply", void.class, float[].class, int.class, int.class);
+    private static final MethodHandle STRETCHER_RECEIVE = findVirtual("TimeStretcher", "receive", int.class, float[].class, int.class, int.class);
+
+    // -- PcmTrack and Resampler, typed as Object --
+    private static final MethodHandle NEW_PCM_TRACK = findConstructor("PcmTrack", short[].class, int.class, float.class);
+    private static final MethodHandle TRACK_READ = findVirtual("PcmTrack", "read", void.class, long.class, float[].class, int.class, int.class);
+    private static final MethodHandle TRACK_FRAME_COUNT = findVirtual("PcmTrack", "frameCount", long.class);
+    private static final MethodHandle TRACK_SIZE = findVirtual("PcmTrack", "sizeInBytes", long.class);
+    private static final MethodHandle RESAMPLER_FOR_RATES = eraseAppTypes(findStatic("Resampler", "forRates",
+            appClass("Resampler"), int.class, int.class));
+    private static final MethodHandle RESAMPLER_CONVERT = findVirtual("Resampler", "convert", appClass("PcmTrack"), appClass("PcmTrack"));
+    private static final MethodHandle RESAMPLER_PROCESS = findVirtual("Resampler", "process", void.class,
+            short[].class, int.class, int.class, short[].class, int.class, int.class);
+
+    public static long parseTime(String timeString) throws Throwable {
+        return (long) PARSE_TIME.invokeExact(timeString);
+    }
+
+    public static String formatTime(long microseconds) throws Throwable {
+        return (String) FORMAT_TIME.invokeExact(microseconds);
+    }
+
+    public static javax.sound.sampled.AudioInputStream convertMp3ToAudioInputStream(File mp3File) throws Throwable {
+        return (javax.sound.sampled.AudioInputStream) CONVERT_MP3.invokeExact(mp3File);
+    }
+
+    public static File[] listAudioFiles(File folder) throws Throwable {
+        return (File[]) LIST_AUDIO_FILES.invokeExact(folder);
+    }
+
+    public static Map<File, Object> readConfigs(File folder) throws Throwable {
+        @SuppressWarnings("unchecked")
+        Map<File, Object> configs = (Map<File, Object>) READ_CONFIGS.invokeExact(folder);
+        return configs;
+    }
+
+    public static void writeConfigs(File folder, Map<File, Object> configs) throws Throwable {
+        WRITE_CONFIGS.invokeExact(folder, (Map<?, ?>) configs);
+    }
+
+    /**
+     * @param savedConfig A config in the format LoopConfig.toString writes
+     * @return A LoopConfig, typed as Object because the class cannot be named here
+     */
+    public static Object loopConfigFromString(String savedConfig) throws Throwable {
+        return (Object) LOOP_CONFIG_FROM_STRING.invokeExact(savedConfig);
+    }
+
+    public static Object newTimeStretcher(float frameRate) throws Throwable {
+        return (Object) NEW_TIME_STRETCHER.invokeExact(frameRate);
+    }
+
+    public static void stretcherSetTempo(Object stretcher, double tempo) throws Throwable {
+        STRETCHER_SET_TEMPO.invokeExact(stretcher, tempo);
+    }
+
+    public static void stretcherReset(Object stretcher) throws Throwable {
+        STRETCHER_RESET.invokeExact(stretcher);
+    }
+
+    public static int stretcherInputNeeded(Object stretcher) throws Throwable {
+        return (int) STRETCHER_INPUT_NEEDED.invokeExact(stretcher);
+    }
+
+    public static void stretcherSupply(Object stretcher, float[] src, int offset, int frames) throws Throwable {
+        STRETCHER_SUPPLY.invokeExact(stretcher, src, offset, frames);
+    }
+
+    public static int stretcherReceive(Object stretcher, float[] dst, int offset, int frames) throws Throwable {
+        return (int) STRETCHER_RECEIVE.invokeExact(stretcher, dst, offset, frames);
+    }
+
+    public static Object newPcmTrack(short[] samples, int channels, float frameRate) throws Throwable {
+        return (Object) NEW_PCM_TRACK.invokeExact(samples, channels, frameRate);
+    }
+
+    public static void trackRead(Object track, long frame, float[] dst, int dstOffset, int frames) throws Throwable {
+        TRACK_READ.invokeExact(track, frame, dst, dstOffset, frames);
+    }
+
+    public static long trackFrameCount(Object track) throws Throwable {
+        return (long) TRACK_FRAME_COUNT.invokeExact(track);
+    }
+
+    public static long trackSizeInBytes(Object track) throws Throwable {
+        return (long) TRACK_SIZE.invokeExact(track);
+    }
+
+    public static Object resamplerForRates(int inputRate, int outputRate) throws Throwable {
+        return (Object) RESAMPLER_FOR_RATES.invokeExact(inputRate, outputRate);
+    }
+
+    public static Object resamplerConvert(Object resampler, Object track) throws Throwable {
+        return (Object) RESAMPLER_CONVERT.invokeExact(resampler, track);
+    }
+
+    public static void resamplerProcess(Object resampler, short[] input, int inputFrames, int channels,
+                                        short[] output, int fromFrame, int toFrame) throws Throwable {
+        RESAMPLER_PROCESS.invokeExact(resampler, input, inputFrames, channels, output, fromFrame, toFrame);
+    }
+
+    // -- CompressedTrack, typed as Object --
+    private static final MethodHandle COMPRESS_TRACK = eraseAppTypes(findStatic("CompressedTrack", "compress",
+            appClass("CompressedTrack"), appClass("PcmTrack")));
+    private static final MethodHandle COMPRESSED_READ = findVirtual("CompressedTrack", "read", void.class,
+            long.class, float[].class, int.class, int.class);
+    private static final MethodHandle COMPRESSED_SIZE = findVirtual("CompressedTrack", "sizeInBytes", long.class);
+
+    public static Object compressTrack(Object track) throws Throwable {
+        return (Object) COMPRESS_TRACK.invokeExact(track);
+    }
+
+    public static void compressedRead(Object track, long frame, float[] dst, int dstOffset, int frames) throws Throwable {
+        COMPRESSED_READ.invokeExact(track, frame, dst, dstOffset, frames);
+    }
+
+    public static long compressedSizeInBytes(Object track) throws Throwable {
+        return (long) COMPRESSED_SIZE.invokeExact(track);
+    }
+
+    // -- CharacterSheet and CharacterRepository, typed as Object --
+    private static final MethodHandle PARSE_SHEET = eraseAppTypes(findStatic("CharacterSheet", "parse",
+            appClass("CharacterSheet"), java.util.List.class, String.class));
+    private static final MethodHandle NEW_CHARACTER_REPOSITORY = findConstructor("CharacterRepository");
+    private static final MethodHandle REPOSITORY_PUT = findVirtual("CharacterRepository", "put", void.class,
+            java.nio.file.Path.class, appClass("CharacterSheet"));
+    private static final MethodHandle REPOSITORY_QUERY = findVirtual("CharacterRepository", "query", appClass("CharacterRepository$Query"));
+    private static final MethodHandle QUERY_WHERE = findVirtual("CharacterRepository$Query", "where", appClass("CharacterRepository$Query"),
+            appClass("CharacterSheet$Attribute"), appClass("CharacterRepository$Comparison"), int.class);
+    private static final MethodHandle QUERY_ROLE = findVirtual("CharacterRepository$Query", "role", appClass("CharacterRepository$Query"), String.class);
+    private static final MethodHandle QUERY_COUNT = findVirtual("CharacterRepository$Query", "count", int.class);
+
+    public static Object parseCharacterSheet(java.util.List<String> lines, String sourceName) throws Throwable {
+        return (Object) PARSE_SHEET.invokeExact(lines, sourceName);
+    }
+
+    public static Object newCharacterRepository() throws Throwable {
+        return (Object) NEW_CHARACTER_REPOSITORY.invokeExact();
+    }
+
+    public static void repositoryPut(Object repository, java.nio.file.Path source, Object sheet) throws Throwable {
+        REPOSITORY_PUT.invokeExact(repository, source, sheet);
+    }
+
+    /**
+     * Counts the sheets matching a filter, with or without a role, such as {@code ("WIS", "LESS", 10, null)}.
+     */
+    public static int countCharacters(Object repository, String attribute, String comparison, int value, String role) throws Throwable {
+        Object query = (Object) REPOSITORY_QUERY.invokeExact(repository);
+        query = (Object) QUERY_WHERE.invokeExact(query, appEnum("CharacterSheet$Attribute", attribute),
+                appEnum("CharacterRepository$Comparison", comparison), value);
+        if (role != null) query = (Object) QUERY_ROLE.invokeExact(query, role);
+        return (int) QUERY_COUNT.invokeExact(query);
+    }
+
+    // -- FileNameIndex, typed as Object --
+    private static final MethodHandle BUILD_FILE_NAME_INDEX = eraseAppTypes(findStatic("FileNameIndex", "build",
+            appClass("FileNameIndex"), String[].class));
+    private static final MethodHandle FILE_NAME_ROWS_CONTAINING = findVirtual("FileNameIndex", "rowsContaining", long[].class, String.class);
+
+    public static Object buildFileNameIndex(String[] names) throws Throwable {
+        return (Object) BUILD_FILE_NAME_INDEX.invokeExact(names);
+    }
+
+    public static long[] fileNameRowsContaining(Object index, String word) throws Throwable {
+        return (long[]) FILE_NAME_ROWS_CONTAINING.invokeExact(index, word);
+    }
+
+    // -- EffectChain, typed as Object --
+    private static final MethodHandle NEW_EFFECT_CHAIN = findConstructor("EffectChain", float.class);
+    private static final MethodHandle EFFECT_PRESET_SETTINGS = findVirtual("EffectChain$Preset", "getSettings", appClass("EffectChain$Settings"));
+    private static final MethodHandle EFFECT_SETTINGS_WITH_LOW_PASS = findVirtual("EffectChain$Settings", "withLowPassHz",
+            appClass("EffectChain$Settings"), double.class);
+    private static final MethodHandle EFFECT_SET_TARGET = findVirtual("EffectChain", "setTarget", void.class, appClass("EffectChain$Settings"));
+    private static final MethodHandle EFFECT_PROCESS = findVirtual("EffectChain", "process", void.class, float[].class, int.class);
+
+    public static Object newEffectChain(float frameRate) throws Throwable {
+        return (Object) NEW_EFFECT_CHAIN.invokeExact(frameRate);
+    }
+
+    /**
+     * @param preset The name of an EffectChain.Preset, such as "CAVERN"
+     */
+    public static Object effectPresetSettings(String preset) throws Throwable {
+        return (Object) EFFECT_PRESET_SETTINGS.invokeExact(appEnum("EffectChain$Preset", preset));
+    }
+
+    public static Object effectSettingsWithLowPass(Object settings, double hz) throws Throwable {
+        return (Object) EFFECT_SETTINGS_WITH_LOW_PASS.invokeExact(settings, hz);
+    }
+
+    public static void effectSetTarget(Object chain, Object settings) throws Throwable {
+        EFFECT_SET_TARGET.invokeExact(chain, settings);
+    }
+
+    public static void effectProcess(Object chain, float[] interleaved, int frames) throws Throwable {
+        EFFECT_PROCESS.invokeExact(chain, interleaved, frames);
+    }
+
+    // -- TimingWheel, typed as Object --
+    private static final MethodHandle NEW_TIMING_WHEEL = findConstructor("TimingWheel", int.class, long.class);
+    private static final MethodHandle WHEEL_SCHEDULE = findVirtual("TimingWheel", "schedule", void.class, int.class, long.class);
+    private static final MethodHandle WHEEL_POLL = findVirtual("TimingWheel", "poll", int.class, long.class);
+    private static final MethodHandle WHEEL_LAST_FRAME = findVirtual("TimingWheel", "lastFrame", long.class);
+
+    public static Object newTimingWheel(int capacity, long startFrame) throws Throwable {
+        return (Object) NEW_TIMING_WHEEL.invokeExact(capacity, startFrame);
+    }
+
+    public static void wheelSchedule(Object wheel, int event, long frame) throws Throwable {
+        WHEEL_SCHEDULE.invokeExact(wheel, event, frame);
+    }
+
+    public static int wheelPoll(Object wheel, long untilFrame) throws Throwable {
+        return (int) WHEEL_POLL.invokeExact(wheel, untilFrame);
+    }
+
+    public static long wheelLastFrame(Object wheel) throws Throwable {
+        return (long) WHEEL_LAST_FRAME.invokeExact(wheel);
+    }
+
+    // -- Puzzle and PuzzleSolver, typed as Object --
+    private static final MethodHandle SCRAMBLED_SLIDING_PUZZLE = eraseAppTypes(findStatic("SlidingPuzzle", "scrambled",
+            appClass("SlidingPuzzle"), String.class, int.class, int.class, int.class, long.class));
+    private static final MethodHandle PUZZLE_START_STATE = findVirtual("Puzzle", "startState", long.class);
+    private static final MethodHandle PUZZLE_APPLY = findVirtual("Puzzle", "apply", long.class, long.class, int.class);
+    private static final MethodHandle PUZZLE_SOLVE = eraseAppTypes(findStatic("PuzzleSolver", "solve",
+            appClass("PuzzleSolver$Analysis"), appClass("Puzzle"), long.class));
+    private static final MethodHandle PUZZLE_ANALYSE = eraseAppTypes(findStatic("PuzzleSolver", "analyse",
+            appClass("PuzzleSolver$Analysis"), appClass("Puzzle"), long.class));
+    private static final MethodHandle ANALYSIS_MIN_MOVES = findVirtual("PuzzleSolver$Analysis", "minMoves", int.class);
+
+    public static Object scrambledSlidingPuzzle(int rows, int columns, int slides, long seed) throws Throwable {
+        return (Object) SCRAMBLED_SLIDING_PUZZLE.invokeExact("Benchmark", rows, columns, slides, seed);
+    }
+
+    public static long puzzleStartState(Object puzzle) throws Throwable {
+        return (long) PUZZLE_START_STATE.invokeExact(puzzle);
+    }
+
+    public static long puzzleApply(Object puzzle, long state, int move) throws Throwable {
+        return (long) PUZZLE_APPLY.invokeExact(puzzle, state, move);
+    }
+
+    /**
+     * @return The fewest moves PuzzleSolver.solve finds from a state
+     */
+    public static int puzzleSolve(Object puzzle, long state) throws Throwable {
+        return (int) ANALYSIS_MIN_MOVES.invokeExact((Object) PUZZLE_SOLVE.invokeExact(puzzle, state));
+    }
+
+    /**
+     * @return The fewest moves PuzzleSolver.analyse finds from a state
+     */
+    public static int puzzleAnalyse(Object puzzle, long state) throws Throwable {
+        return (int) ANALYSIS_MIN_MOVES.invokeExact((Object) PUZZLE_ANALYSE.invokeExact(puzzle, state));
+    }
+
+    // -- DiceExpression and EncounterSimulator, typed as Object --
+    private static final MethodHandle PARSE_DICE = eraseAppTypes(findStatic("DiceExpression", "parse",
+            appClass("DiceExpression"), String.class));
+    private static final MethodHandle DICE_ROLL = findVirtual("DiceExpression", "roll", int.class,
+            java.util.SplittableRandom.class, int[].class);
+    private static final MethodHandle PARSE_ENCOUNTER = eraseAppTypes(findStatic("Encounter", "parse",
+            appClass("Encounter"), java.util.List.class, String.class, appClass("CharacterRepository")));
+    private static final MethodHandle RUN_ENCOUNTER = eraseAppTypes(findStatic("EncounterSimulator", "run",
+            appClass("EncounterSimulator$Result"), appClass("Encounter"), long.class, long.class,
+            java.util.concurrent.ForkJoinPool.class));
+    private static final MethodHandle RESULT_PARTY_WINS = findVirtual("EncounterSimulator$Result", "partyWins", long.class);
+
+    public static Object parseDice(String expression) throws Throwable {
+        return (Object) PARSE_DICE.invokeExact(expression);
+    }
+
+    public static int diceRoll(Object dice, java.util.SplittableRandom random, int[] scratch) throws Throwable {
+        return (int) DICE_ROLL.invokeExact(dice, random, scratch);
+    }
+
+    public static Object parseEncounter(java.util.List<String> lines, String name, Object repository) throws Throwable {
+        return (Object) PARSE_ENCOUNTER.invokeExact(lines, name, repository);
+    }
+
+    /**
+     * @return How many of the fights the party won
+     */
+    public static long runEncounter(Object encounter, long fights, long seed, java.util.concurrent.ForkJoinPool pool) throws Throwable {
+        return (long) RESULT_PARTY_WINS.invokeExact((Object) RUN_ENCOUNTER.invokeExact(encounter, fights, seed, pool));
+    }
+
+    /**
+     * @return The constant of an application enum, typed as Object
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object appEnum(String className, String constant) {
+        return Enum.valueOf((Class) appClass(className), constant);
+    }
+
+    private static Class<?> appClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application classes are missing from the benchmark classpath", e);
+        }
+    }
+
+    /**
+     * Finds a public constructor, adapted to return Object.
+     */
+    private static MethodHandle findConstructor(String className, Class<?>... parameters) {
+        try {
+            Class<?> owner = appClass(className);
+            MethodHandle constructor = MethodHandles.lookup().findConstructor(owner, MethodType.methodType(void.class, parameters));
+            return eraseAppTypes(constructor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find a constructor for " + className, e);
+        }
+    }
+
+    /**
+     * Finds a public instance method, adapted to take its receiver and any application class arguments as Object.
+     */
+    private static MethodHandle findVirtual(String className, String methodName, Class<?> returnType, Class<?>... parameters) {
+        try {
+            Class<?> owner = appClass(className);
+            MethodHandle method = MethodHandles.lookup().findVirtual(owner, methodName, MethodType.methodType(returnType, parameters));
+            return eraseAppTypes(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + methodName, e);
+        }
+    }
+
+    /**
+     * Retypes every application class in a handle's signature as Object, leaving JDK types alone.
+     */
+    private static MethodHandle eraseAppTypes(MethodHandle handle) {
+        MethodType type = handle.type();
+        if (type.returnType().getPackageName().isEmpty() && !type.returnType().isPrimitive()) {
+            type = type.changeReturnType(Object.class);
+        }
+        for (int i = 0; i < type.parameterCount(); i++) {
+            Class<?> parameter = type.parameterType(i);
+            if (parameter.getPackageName().isEmpty() && !parameter.isPrimitive()) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        return handle.asType(type);
+    }
+
+    private static MethodHandle findStatic(String className, String methodName, Class<?> returnType, Class<?>... parameters) {
+        try {
+            Class<?> owner = appClass(className);
+            // The methods are package-private, so look them up with the owner's own access
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            return lookup.findStatic(owner, methodName, MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + methodName, e);
+        }
+    }
+}
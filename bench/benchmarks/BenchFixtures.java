@@ -0,0 +1,182 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Generates the files the benchmarks run against, so results never depend on what happens
+ * to be in someone's music folder.
+ */
+public final class BenchFixtures {
+    // Do not use the constructor. There is nothing to use
+    private BenchFixtures() {}
+
+    // MPEG-1 Layer III, 128 kbps, 44.1 kHz, joint stereo with mid/side on, no CRC, no padding
+    private static final byte[] MP3_FRAME_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, (byte) 0x64};
+    private static final int MP3_FRAME_BYTES = 417;
+    private static final int MP3_SIDE_INFO_BYTES = 32;
+    private static final int MP3_FRAME_SAMPLES = 1152;
+    private static final int MP3_SAMPLE_RATE = 44_100;
+    // Pairs of spectral lines coded in each granule, up to about 12 kHz, as an encoder at this bitrate keeps
+    private static final int MP3_CODED_PAIRS = 160;
+    // What each granule of each channel may spend, so the four always fit in the frame
+    private static final int MP3_GRANULE_BITS = (MP3_FRAME_BYTES - MP3_FRAME_HEADER.length - MP3_SIDE_INFO_BYTES) * 8 / 4;
+
+    /**
+     * Writes an MP3 that decodes like music: every granule carries a Huffman coded spectrum, busier at low
+     * frequencies than high, so the decoder does all of its usual work, from Huffman decoding and requantising
+     * through mid/side stereo to the inverse MDCT and synthesis filterbank. What it plays is shaped noise.
+     *
+     * @param seconds How long the file should play for
+     * @return The generated file, deleted when the JVM exits
+     * @throws IOException if the file cannot be written
+     */
+    public static File encodedMp3(int seconds) throws IOException {
+        File file = File.createTempFile("bench-", ".mp3");
+        file.deleteOnExit();
+        long frames = (long) seconds * MP3_SAMPLE_RATE / MP3_FRAME_SAMPLES;
+        SplittableRandom random = new SplittableRandom(11);
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (long i = 0; i < frames; i++) out.write(encodedMp3Frame(random));
+        }
+        return file;
+    }
+
+    /**
+     * Codes one frame of two granules of two channels, each spectrum with Huffman table 1 (values of 0 and 1)
+     * and no scale factors, its main data starting straight after the side info.
+     */
+    private static byte[] encodedMp3Frame(SplittableRandom random) {
+        BitWriter mainData = new BitWriter(MP3_FRAME_BYTES - MP3_FRAME_HEADER.length - MP3_SIDE_INFO_BYTES);
+        BitWriter sideInfo = new BitWriter(MP3_SIDE_INFO_BYTES);
+        sideInfo.put(0, 9);     // main_data_begin: none in the reservoir
+        sideInfo.put(0, 3);     // private bits
+        sideInfo.put(0, 8);     // scfsi, for both channels
+        for (int granule = 0; granule < 2; granule++) {
+            for (int channel = 0; channel < 2; channel++) {
+                int startBits = mainData.bits();
+                codeSpectrum(mainData, random, channel == 0 ? 0.5 : 0.2);
+                sideInfo.put(mainData.bits() - startBits, 12);  // part2_3_length
+                sideInfo.put(MP3_CODED_PAIRS, 9);                // big_values
+                sideInfo.put(channel == 0 ? 189 : 181, 8);       // global_gain, the side quieter than the mid
+                sideInfo.put(0, 4);                              // scalefac_compress: no scale factors
+                sideInfo.put(0, 1);                              // window_switching_flag: long blocks
+                for (int region = 0; region < 3; region++) sideInfo.put(1, 5);  // table_select
+                sideInfo.put(7, 4);                              // region0_count
+                sideInfo.put(7, 3);                              // region1_count
+                sideInfo.put(0, 3);                              // preflag, scalefac_scale, count1table_select
+            }
+        }
+
+        byte[] frame = new byte[MP3_FRAME_BYTES];
+        System.arraycopy(MP3_FRAME_HEADER, 0, frame, 0, MP3_FRAME_HEADER.length);
+        System.arraycopy(sideInfo.bytes, 0, frame, MP3_FRAME_HEADER.length, MP3_SIDE_INFO_BYTES);
+        System.arraycopy(mainData.bytes, 0, frame, MP3_FRAME_HEADER.length + MP3_SIDE_INFO_BYTES, mainData.bytes.length);
+        return frame;
+    }
+
+    /**
+     * Codes one granule's spectral lines in pairs, each line more likely to sound the lower it is, until the
+     * granule's share of the frame runs out and the rest are coded silent.
+     *
+     * @param loudness How likely the lowest line is to sound
+     */
+    private static void codeSpectrum(BitWriter out, SplittableRandom random, double loudness) {
+        int budget = out.bits() + MP3_GRANULE_BITS;
+        for (int pair = 0; pair < MP3_CODED_PAIRS; pair++) {
+            double chance = loudness * (1 - (double) pair / MP3_CODED_PAIRS) + 0.02;
+            int x = random.nextDouble() < chance ? 1 : 0;
+            int y = random.nextDouble() < chance ? 1 : 0;
+            // The longest a pair can take is 3 bits of code and 2 of sign, and every pair after it needs 1
+            if (out.bits() + 5 + (MP3_CODED_PAIRS - pair) > budget) x = y = 0;
+            // Table 1: 1 for (0, 0), 01 for (1, 0), 001 for (0, 1) and 000 for (1, 1), then a sign bit per 1
+            if (x == 0 && y == 0) out.put(1, 1);
+            else if (y == 0) out.put(1, 2);
+            else if (x == 0) out.put(1, 3);
+            else out.put(0, 3);
+            if (x != 0) out.put(random.nextInt(2), 1);
+            if (y != 0) out.put(random.nextInt(2), 1);
+        }
+    }
+
+    /**
+     * Packs fields most significant bit first, as MP3 frames are laid out
+     */
+    private static final class BitWriter {
+        private final byte[] bytes;
+        private int bitCount;
+
+        private BitWriter(int size) {
+            bytes = new byte[size];
+        }
+
+        private void put(int value, int bits) {
+            for (int bit = bits - 1; bit >= 0; bit--, bitCount++) {
+                if (((value >>> bit) & 1) != 0) bytes[bitCount >>> 3] |= (byte) (0x80 >>> (bitCount & 7));
+            }
+        }
+
+        private int bits() {
+            return bitCount;
+        }
+    }
+
+    /**
+     * Creates a folder of empty files, a third each of audio, other audio types and non-audio files,
+     * shaped like a large sound library.
+     *
+     * @param fileCount How many files to create
+     * @return The folder
+     * @throws IOException if the files cannot be created
+     */
+    public static File audioFolder(int fileCount) throws IOException {
+        File folder = Files.createTempDirectory("bench-folder-").toFile();
+        String[] extensions = {".mp3", ".wav", ".AU", ".txt", ".jpg", ".properties"};
+        for (int i = 0; i < fileCount; i++) {
+            new File(folder, "Track " + i + extensions[i % extensions.length]).createNewFile();
+        }
+        return folder;
+    }
+
+    /**
+     * Builds loop configurations for audio files in a folder
+     *
+     * @param folder The folder the configurations belong to
+     * @param count  How many configurations to build
+     * @return Each audio file mapped to a LoopConfig with varied values
+     * @throws Throwable if the application classes cannot be reached
+     */
+    public static Map<File, Object> loopConfigs(File folder, int count) throws Throwable {
+        Map<File, Object> configs = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String savedConfig = String.join("|", App.formatTime(i * 1_000L), App.formatTime(i * 7_000L + 3_000_000L),
+                    String.valueOf(i % 10), String.valueOf(i % 7 == 0));
+            configs.put(new File(folder, "Track " + i + ".mp3"), App.loopConfigFromString(savedConfig));
+        }
+        return configs;
+    }
+
+    /**
+     * Deletes a fixture folder and everything in it.
+     *
+     * @param folder The folder to delete
+     * @throws IOException if something cannot be deleted
+     */
+    public static void delete(File folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
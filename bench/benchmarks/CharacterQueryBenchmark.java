@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures filtering a campaign's worth of character sheets, and parsing one sheet, which is the whole cost
+ * of a sheet changing on disk. The sheets are generated with random scores and roles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharacterQueryBenchmark {
+    private static final String[] ROLES = {"NPC", "Villain", "Ally", "Merchant"};
+    private static final String[] ATTRIBUTES = {"STR", "DEX", "CON", "INT", "WIS", "CHA"};
+
+    @Param({"500", "5000"})
+    public int sheets;
+
+    private Object repository;
+    private List<String> sheetLines;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        repository = App.newCharacterRepository();
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < sheets; i++) {
+            List<String> lines = sheetText("Character " + i, ROLES[random.nextInt(ROLES.length)], random);
+            if (i == 0) sheetLines = lines;
+            App.repositoryPut(repository, Path.of("sheet" + i + ".txt"), App.parseCharacterSheet(lines, "sheet" + i));
+        }
+    }
+
+    private static List<String> sheetText(String name, String role, SplittableRandom random) {
+        List<String> lines = new ArrayList<>(List.of("Name: " + name, "Role: " + role, "Race: Human", "Background:",
+                "  Lives in the village and knows everyone.", "", "Attributes:"));
+        for (String attribute : ATTRIBUTES) lines.add("  " + attribute + ": " + random.nextInt(3, 19));
+        lines.addAll(List.of("", "Abilities:", "  \u2022 Keen Eye: Spots hidden doors.", "  \u2022 Haggle: Sells for more.",
+                "", "Notes:", "  Owes the party a favour."));
+        return lines;
+    }
+
+    @Benchmark
+    public int wisdomBelow10() throws Throwable {
+        return App.countCharacters(repository, "WIS", "LESS", 10, null);
+    }
+
+    @Benchmark
+    public int charismaticVillains() throws Throwable {
+        return App.countCharacters(repository, "CHA", "GREATER", 14, "Villain");
+    }
+
+    @Benchmark
+    public Object parseSheet() throws Throwable {
+        return App.parseCharacterSheet(sheetLines, "sheet0");
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weighs the memory the track cache saves by holding tracks compressed against what it costs in CPU.
+ * Each operation handles ten seconds of 48 kHz stereo, so ten times the score in ops/s is how many seconds
+ * of audio are handled per second. {@code readPcm} and {@code readCompressed} read the whole track in
+ * render-sized blocks, as playback does; {@code compress} is the one-off cost paid when a track is cached.
+ * The size of the compressed track against the plain one is printed at the end of each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressedTrackBenchmark {
+    private static final int FRAME_RATE = 48_000;
+    private static final int SECONDS = 10;
+    private static final int BLOCK_FRAMES = 512;
+
+    // A chord swelling and fading with a light noise floor, like most music, and a much noisier mix
+    @Param({"tonal", "noisy"})
+    public String material;
+
+    private Object track;
+    private Object compressed;
+    private int frames;
+    private final float[] block = new float[BLOCK_FRAMES * 2];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        frames = FRAME_RATE * SECONDS;
+        short[] samples = new short[frames * 2];
+        double noise = material.equals("noisy") ? 0.3 : 0.01;
+        SplittableRandom random = new SplittableRandom(5);
+        for (int i = 0; i < frames; i++) {
+            double t = (double) i / FRAME_RATE;
+            double swell = 0.5 + 0.5 * Math.sin(2 * Math.PI * 0.25 * t);
+            double chord = 0.3 * Math.sin(2 * Math.PI * 220 * t) + 0.2 * Math.sin(2 * Math.PI * 277 * t)
+                    + 0.1 * Math.sin(2 * Math.PI * 1_650 * t);
+            samples[i * 2] = (short) ((swell * chord + noise * (random.nextDouble() - 0.5)) * 32767);
+            samples[i * 2 + 1] = (short) ((swell * chord * 0.8 + noise * (random.nextDouble() - 0.5)) * 32767);
+        }
+        track = App.newPcmTrack(samples, 2, FRAME_RATE);
+        compressed = App.compressTrack(track);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() throws Throwable {
+        long plain = App.trackSizeInBytes(track);
+        long packed = App.compressedSizeInBytes(compressed);
+        System.out.printf("%n%s: %d KB as plain PCM, %d KB compressed (%.1f%%), saving %.1f MB per hour of audio%n",
+                material, plain / 1024, packed / 1024, packed * 100.0 / plain,
+                (plain - packed) * 3600.0 / SECONDS / (1024 * 1024));
+    }
+
+    @Benchmark
+    public Object compress() throws Throwable {
+        return App.compressTrack(track);
+    }
+
+    @Benchmark
+    public float[] readPcm() throws Throwable {
+        for (int frame = 0; frame < frames; frame += BLOCK_FRAMES) {
+            App.trackRead(track, frame, block, 0, Math.min(BLOCK_FRAMES, frames - frame));
+        }
+        return block;
+    }
+
+    @Benchmark
+    public float[] readCompressed() throws Throwable {
+        for (int frame = 0; frame < frames; frame += BLOCK_FRAMES) {
+            App.compressedRead(compressed, frame, block, 0, Math.min(BLOCK_FRAMES, frames - frame));
+        }
+        return block;
+    }
+}
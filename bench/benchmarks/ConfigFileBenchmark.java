@@ -0,0 +1,48 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving and loading the loop config file of a folder with 10k configured tracks.
+ * Groove Buddy saves the whole file on every loop edit, so the save time is paid per keystroke.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigFileBenchmark {
+    @Param({"10000"})
+    public int entries;
+
+    private File folder;
+    private Map<File, Object> configs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        folder = BenchFixtures.audioFolder(0);
+        configs = BenchFixtures.loopConfigs(folder, entries);
+        App.writeConfigs(folder, configs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchFixtures.delete(folder);
+    }
+
+    @Benchmark
+    public void saveConfigs() throws Throwable {
+        App.writeConfigs(folder, configs);
+    }
+
+    @Benchmark
+    public Map<File, Object> loadConfigs() throws Throwable {
+        return App.readConfigs(folder);
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many voices one core could run through the scene effects in real time. Each operation
+ * colours one second of 48 kHz stereo in render-sized blocks, so the score in ops/s is that number of voices.
+ * <p>
+ * {@code automated} sweeps the low-pass cutoff every block, as dragging the Muffle slider would, so the
+ * parameters never settle and the filters are redesigned at every control step. Run with
+ * {@code -Dbench.args="-prof gc"} to confirm neither allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EffectChainBenchmark {
+    private static final float FRAME_RATE = 48_000f;
+    private static final int BLOCK_FRAMES = 512;
+
+    @Param({"MUFFLED_DOOR", "CAVERN"})
+    public String preset;
+
+    private Object chain;
+    private Object[] sweep;
+    private float[] source;
+    private final float[] block = new float[BLOCK_FRAMES * 2];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        source = new float[(int) FRAME_RATE * 2];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < source.length / 2; i++) {
+            double t = i / FRAME_RATE;
+            float sample = (float) (0.3 * Math.sin(2 * Math.PI * 220 * t) + 0.1 * (random.nextDouble() - 0.5));
+            source[i * 2] = sample;
+            source[i * 2 + 1] = sample;
+        }
+        Object settings = App.effectPresetSettings(preset);
+        chain = App.newEffectChain(FRAME_RATE);
+        App.effectSetTarget(chain, settings);
+        // Built up front, as the UI builds them, so only the chain's own work is measured
+        sweep = new Object[16];
+        for (int i = 0; i < sweep.length; i++) {
+            sweep[i] = App.effectSettingsWithLowPass(settings, 300 * Math.pow(2, i * 5.0 / sweep.length));
+        }
+    }
+
+    @Benchmark
+    public float colourOneSecond() throws Throwable {
+        float last = 0;
+        for (int frame = 0; frame + BLOCK_FRAMES <= source.length / 2; frame += BLOCK_FRAMES) {
+            System.arraycopy(source, frame * 2, block, 0, BLOCK_FRAMES * 2);
+            App.effectProcess(chain, block, BLOCK_FRAMES);
+            last += block[0];
+        }
+        return last;
+    }
+
+    @Benchmark
+    public float automated() throws Throwable {
+        float last = 0;
+        int step = 0;
+        for (int frame = 0; frame + BLOCK_FRAMES <= source.length / 2; frame += BLOCK_FRAMES) {
+            App.effectSetTarget(chain, sweep[step++ % sweep.length]);
+            System.arraycopy(source, frame * 2, block, 0, BLOCK_FRAMES * 2);
+            App.effectProcess(chain, block, BLOCK_FRAMES);
+            last += block[0];
+        }
+        return last;
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Battle Buddy's encounter simulator. {@code rollDice} rolls the expressions a fight rolls most, and
+ * should not allocate. {@code fight} runs 100,000 fights of the ford ambush, two of the party against two
+ * goblins and their boss, on a pool of the given number of threads; the score falls in step with the threads added, up to the
+ * number of cores.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncounterSimulatorBenchmark {
+    private static final int FIGHTS = 100_000;
+
+    private Object[] dice;
+    private SplittableRandom random;
+    private int[] scratch;
+    private Object encounter;
+
+    /**
+     * The threads fights run on, kept apart so only {@code fight} is measured at each count
+     */
+    @State(Scope.Benchmark)
+    public static class Threads {
+        @Param({"1", "2", "4", "8"})
+        public int threads;
+
+        private ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        dice = new Object[]{App.parseDice("4d6kh3"), App.parseDice("1d20+5 adv"), App.parseDice("2d6+3")};
+        random = new SplittableRandom(5);
+        scratch = new int[100];
+
+        Object repository = App.newCharacterRepository();
+        App.repositoryPut(repository, Path.of("mira.txt"), App.parseCharacterSheet(List.of("Name: Mira", "Attributes:",
+                "  STR: 16", "  DEX: 12", "  CON: 14", "Abilities:", "  - Longsword: Deals 1d8+3 slashing damage."), "mira"));
+        encounter = App.parseEncounter(List.of(
+                "[Mira]", "level = 3",
+                "[Sellsword]", "level = 4", "str = 16", "con = 14", "ac = 16", "damage = 1d8+3",
+                "[Goblin]", "side = foes", "count = 2", "hp = 2d6", "ac = 15", "attack = +4", "damage = 1d6+2",
+                "[Goblin Boss]", "side = foes", "hp = 4d6", "ac = 15", "attack = +4 adv", "damage = 1d8+2"),
+                "ford ambush", repository);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(3)
+    public int rollDice() throws Throwable {
+        return App.diceRoll(dice[0], random, scratch) + App.diceRoll(dice[1], random, scratch) + App.diceRoll(dice[2], random, scratch);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long fight(Threads threads) throws Throwable {
+        return App.runEncounter(encounter, FIGHTS, 42, threads.pool);
+    }
+}
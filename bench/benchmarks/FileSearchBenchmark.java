@@ -0,0 +1,75 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the file browser's search: building the name index when a folder opens, and answering one
+ * keystroke from it. Checking every name in turn is measured alongside, as the cost the index saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileSearchBenchmark {
+    private static final String[] WORDS = {"ambient", "battle", "tavern", "forest", "boss", "theme", "loop",
+            "intro", "rain", "cave", "drums", "strings", "dark", "village", "chase"};
+
+    @Param({"1000", "10000"})
+    public int files;
+
+    @Param({"dar", "boss loop"})
+    public String query;
+
+    private String[] names;
+    private String[] lowerNames;
+    private Object index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        SplittableRandom random = new SplittableRandom(5);
+        names = new String[files];
+        lowerNames = new String[files];
+        for (int i = 0; i < files; i++) {
+            names[i] = WORDS[random.nextInt(WORDS.length)] + "_" + WORDS[random.nextInt(WORDS.length)] + " " + i + ".mp3";
+            lowerNames[i] = names[i].toLowerCase(Locale.ROOT);
+        }
+        index = App.buildFileNameIndex(names);
+    }
+
+    @Benchmark
+    public Object buildIndex() throws Throwable {
+        return App.buildFileNameIndex(names);
+    }
+
+    @Benchmark
+    public long[] searchIndex() throws Throwable {
+        long[] matches = null;
+        for (String word : query.split(" ")) {
+            long[] wordMatches = App.fileNameRowsContaining(index, word);
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                for (int i = 0; i < matches.length; i++) matches[i] &= wordMatches[i];
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public long[] searchByScan() {
+        long[] matches = new long[(files + 63) / 64];
+        String[] words = query.split(" ");
+        for (int row = 0; row < files; row++) {
+            boolean isMatch = true;
+            for (String word : words) isMatch &= lowerNames[row].contains(word);
+            if (isMatch) matches[row >>> 6] |= 1L << row;
+        }
+        return matches;
+    }
+}
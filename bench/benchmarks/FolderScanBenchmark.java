@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures picking the audio files out of a large folder, the first thing "Open Folder" does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FolderScanBenchmark {
+    @Param({"1000", "10000"})
+    public int files;
+
+    private File folder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = BenchFixtures.audioFolder(files);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchFixtures.delete(folder);
+    }
+
+    @Benchmark
+    public File[] listAudioFiles() throws Throwable {
+        return App.listAudioFiles(folder);
+    }
+}
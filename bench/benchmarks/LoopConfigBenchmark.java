@@ -0,0 +1,34 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting a single loop configuration to and from its saved form.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoopConfigBenchmark {
+    private final String savedConfig = "01:02.345|02:03.456|4|false";
+    private Object config;
+
+    @Setup
+    public void setUp() throws Throwable {
+        config = App.loopConfigFromString(savedConfig);
+    }
+
+    @Benchmark
+    public String loopConfigToString() {
+        return config.toString();
+    }
+
+    @Benchmark
+    public Object loopConfigFromString() throws Throwable {
+        return App.loopConfigFromString(savedConfig);
+    }
+}
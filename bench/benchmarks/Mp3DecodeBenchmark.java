@@ -0,0 +1,43 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to decode a whole MP3 into PCM, which is what the user waits on
+ * every time they click a track.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Mp3DecodeBenchmark {
+    @Param({"10", "60"})
+    public int seconds;
+
+    private File mp3File;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mp3File = BenchFixtures.encodedMp3(seconds);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mp3File.delete();
+    }
+
+    @Benchmark
+    public long convertMp3ToAudioInputStream() throws Throwable {
+        try (AudioInputStream stream = App.convertMp3ToAudioInputStream(mp3File)) {
+            return stream.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Puzzle Buddy's solver. {@code applyEveryMove} is raw move generation, every move from a run of 4x4
+ * sliding puzzle states, and should not allocate. {@code solveDeep} is the check made after every move during
+ * play, a shortest solution of a 4x4 scramble 40 moves from solved; {@code analyseFull} is the full search made
+ * when preparing a puzzle, every state of a 3x3 scramble out to 26 moves.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PuzzleSolverBenchmark {
+    private Object smallPuzzle;
+    private Object largePuzzle;
+    private long[] states;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        smallPuzzle = App.scrambledSlidingPuzzle(3, 3, 60, 3);
+        largePuzzle = App.scrambledSlidingPuzzle(4, 4, 60, 4);
+        // A random walk, so every state is one a search could meet
+        SplittableRandom random = new SplittableRandom(7);
+        states = new long[1024];
+        long state = App.puzzleStartState(largePuzzle);
+        for (int i = 0; i < states.length; ) {
+            long next = App.puzzleApply(largePuzzle, state, random.nextInt(4));
+            if (next == -1L) continue;
+            states[i++] = state = next;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(4096)
+    public long applyEveryMove() throws Throwable {
+        long checksum = 0;
+        for (long state : states) {
+            for (int move = 0; move < 4; move++) checksum += App.puzzleApply(largePuzzle, state, move);
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int solveDeep() throws Throwable {
+        return App.puzzleSolve(largePuzzle, App.puzzleStartState(largePuzzle));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int analyseFull() throws Throwable {
+        return App.puzzleAnalyse(smallPuzzle, App.puzzleStartState(smallPuzzle));
+    }
+}
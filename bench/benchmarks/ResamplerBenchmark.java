@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast decoded tracks are converted to the engine rate. Each operation converts ten seconds
+ * of stereo, so ten times the score in ops/s is how many seconds of audio are converted per second.
+ * {@code singleThread} converts on one core, {@code convert} splits the track across every core as loading does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResamplerBenchmark {
+    private static final int ENGINE_RATE = 48_000;
+    private static final int SECONDS = 10;
+
+    // 44.1 kHz is the common case, 22.05 kHz upsamples further, 96 kHz downsamples, 44.056 kHz needs interpolated phases
+    @Param({"44100", "22050", "96000", "44056"})
+    public int inputRate;
+
+    private Object resampler;
+    private Object track;
+    private short[] samples;
+    private short[] output;
+    private int inputFrames;
+    private int outputFrames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        inputFrames = inputRate * SECONDS;
+        samples = new short[inputFrames * 2];
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < inputFrames; i++) {
+            double t = (double) i / inputRate;
+            double sample = 0.4 * Math.sin(2 * Math.PI * 440 * t) + 0.2 * Math.sin(2 * Math.PI * 3_150 * t)
+                    + 0.05 * (random.nextDouble() - 0.5);
+            samples[i * 2] = (short) (sample * 32767);
+            samples[i * 2 + 1] = (short) (-sample * 32767);
+        }
+        track = App.newPcmTrack(samples, 2, inputRate);
+        resampler = App.resamplerForRates(inputRate, ENGINE_RATE);
+        outputFrames = (int) ((long) inputFrames * ENGINE_RATE / inputRate);
+        output = new short[outputFrames * 2];
+    }
+
+    @Benchmark
+    public Object convert() throws Throwable {
+        return App.resamplerConvert(resampler, track);
+    }
+
+    @Benchmark
+    public short[] singleThread() throws Throwable {
+        App.resamplerProcess(resampler, samples, inputFrames, 2, output, 0, outputFrames);
+        return output;
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+/**
+ * Reports how cleanly tracks are converted to the engine rate, for each common input rate.
+ * <ul>
+ *     <li>SNR: a full-scale sine in the passband is converted and compared with the ideal sine at the new rate.
+ *     Everything that is not the sine counts as noise, so filter ripple, imaging and rounding all count against it.</li>
+ *     <li>Alias rejection: when downsampling, a tone above the new Nyquist frequency should vanish.
+ *     This is how far below the original level what is left of it sits.</li>
+ * </ul>
+ * Run it with {@code ant bench-quality}.
+ */
+public final class ResamplerQuality {
+    private static final int ENGINE_RATE = 48_000;
+    private static final int[] INPUT_RATES = {8_000, 22_050, 32_000, 44_100, 44_056, 88_200, 96_000};
+    private static final double[] TEST_FREQUENCIES = {100, 1_000, 5_000, 15_000};
+    private static final double AMPLITUDE = 0.5;
+    // Frames at each end skipped when measuring, as the filter starts and ends against silence
+    private static final int EDGE_FRAMES = 1_000;
+
+    // Do not use the constructor. There is nothing to use
+    private ResamplerQuality() {}
+
+    public static void main(String[] args) throws Throwable {
+        System.out.printf("%-10s %-10s %12s%n", "input Hz", "tone Hz", "result");
+        for (int inputRate : INPUT_RATES) {
+            for (double frequency : TEST_FREQUENCIES) {
+                if (frequency >= Math.min(inputRate, ENGINE_RATE) * 0.45) continue;
+                System.out.printf("%-10d %-10.0f %9.1f dB SNR%n", inputRate, frequency, snr(inputRate, frequency));
+            }
+            if (inputRate > ENGINE_RATE) {
+                double alias = ENGINE_RATE * 0.55;
+                System.out.printf("%-10d %-10.0f %9.1f dB alias rejection%n", inputRate, alias, aliasRejection(inputRate, alias));
+            }
+        }
+    }
+
+    private static double snr(int inputRate, double frequency) throws Throwable {
+        float[] converted = convertSine(inputRate, frequency);
+        double signal = 0;
+        double noise = 0;
+        for (int i = EDGE_FRAMES; i < converted.length / 2 - EDGE_FRAMES; i++) {
+            double ideal = AMPLITUDE * Math.sin(2 * Math.PI * frequency * i / ENGINE_RATE);
+            double error = converted[i * 2] - ideal;
+            signal += ideal * ideal;
+            noise += error * error;
+        }
+        return 10 * Math.log10(signal / noise);
+    }
+
+    private static double aliasRejection(int inputRate, double frequency) throws Throwable {
+        float[] converted = convertSine(inputRate, frequency);
+        double energy = 0;
+        int frames = 0;
+        for (int i = EDGE_FRAMES; i < converted.length / 2 - EDGE_FRAMES; i++) {
+            energy += converted[i * 2] * converted[i * 2];
+            frames++;
+        }
+        double remaining = Math.sqrt(energy / frames);
+        double original = AMPLITUDE / Math.sqrt(2);
+        return 20 * Math.log10(original / Math.max(remaining, 1e-12));
+    }
+
+    /**
+     * Converts one second of a sine to the engine rate, returning it as interleaved stereo floats.
+     */
+    private static float[] convertSine(int inputRate, double frequency) throws Throwable {
+        short[] samples = new short[inputRate * 2];
+        for (int i = 0; i < inputRate; i++) {
+            short sample = (short) Math.round(AMPLITUDE * 32767 * Math.sin(2 * Math.PI * frequency * i / inputRate));
+            samples[i * 2] = sample;
+            samples[i * 2 + 1] = sample;
+        }
+        Object converted = App.resamplerConvert(App.resamplerForRates(inputRate, ENGINE_RATE),
+                App.newPcmTrack(samples, 2, inputRate));
+        int frames = (int) App.trackFrameCount(converted);
+        float[] out = new float[frames * 2];
+        App.trackRead(converted, 0, out, 0, frames);
+        return out;
+    }
+}
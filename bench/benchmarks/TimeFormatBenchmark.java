@@ -0,0 +1,36 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time string conversions the timeline and loop fields go through on every tick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeFormatBenchmark {
+    @Param({"00:00.000", "03:27.125", "59:59.9"})
+    public String timeString;
+
+    private long microseconds;
+
+    @Setup
+    public void setUp() throws Throwable {
+        microseconds = App.parseTime(timeString);
+    }
+
+    @Benchmark
+    public long parseTime() throws Throwable {
+        return App.parseTime(timeString);
+    }
+
+    @Benchmark
+    public String formatTime() throws Throwable {
+        return App.formatTime(microseconds);
+    }
+}
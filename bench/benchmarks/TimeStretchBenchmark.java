@@ -0,0 +1,61 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how much audio the tempo stage can stretch per second on one core. Each operation stretches
+ * one second of 48 kHz stereo in render-sized blocks, so the score in ops/s is how many streams one core
+ * could stretch in real time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeStretchBenchmark {
+    private static final float FRAME_RATE = 48_000f;
+    private static final int BLOCK_FRAMES = 512;
+
+    @Param({"1.1", "1.2"})
+    public double tempo;
+
+    private Object stretcher;
+    private float[] source;
+    private final float[] block = new float[BLOCK_FRAMES * 2];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        // A chord with a little noise on top, so the similarity search has real work to do
+        source = new float[(int) FRAME_RATE * 2];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < source.length / 2; i++) {
+            double t = i / FRAME_RATE;
+            float sample = (float) (0.3 * Math.sin(2 * Math.PI * 220 * t) + 0.2 * Math.sin(2 * Math.PI * 277 * t)
+                    + 0.05 * (random.nextDouble() - 0.5));
+            source[i * 2] = sample;
+            source[i * 2 + 1] = sample;
+        }
+        stretcher = App.newTimeStretcher(FRAME_RATE);
+        App.stretcherSetTempo(stretcher, tempo);
+    }
+
+    @Benchmark
+    public int stretchOneSecond() throws Throwable {
+        App.stretcherReset(stretcher);
+        int supplied = 0;
+        int totalFrames = source.length / 2;
+        int produced = 0;
+        while (supplied < totalFrames) {
+            int needed = Math.min(App.stretcherInputNeeded(stretcher), totalFrames - supplied);
+            App.stretcherSupply(stretcher, source, supplied, needed);
+            supplied += needed;
+            int received;
+            while ((received = App.stretcherReceive(stretcher, block, 0, BLOCK_FRAMES)) > 0) produced += received;
+        }
+        return produced;
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ambience scheduler's share of rendering. Each operation runs one second of the audio clock in
+ * render-sized blocks over a wheel of recurring events, each rescheduled a random 0.5 to 5 seconds after it
+ * fires, as an ambient bed's pools are. The score in ops/s is how many times faster than real time the wheel
+ * keeps up with that many events.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimingWheelBenchmark {
+    private static final int FRAME_RATE = 48_000;
+    private static final int BLOCK_FRAMES = 512;
+
+    @Param({"100", "1000", "10000"})
+    public int events;
+
+    private Object wheel;
+    private long clock;
+    private long[] waits;
+    private int nextWait;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        SplittableRandom random = new SplittableRandom(7);
+        // Drawn up front, so only the wheel is measured
+        waits = new long[1 << 16];
+        for (int i = 0; i < waits.length; i++) waits[i] = FRAME_RATE / 2 + random.nextInt(FRAME_RATE * 9 / 2);
+        wheel = App.newTimingWheel(events, 0);
+        for (int event = 0; event < events; event++) App.wheelSchedule(wheel, event, random.nextInt(FRAME_RATE * 5));
+    }
+
+    @Benchmark
+    public int runOneSecond() throws Throwable {
+        int fired = 0;
+        for (int block = 0; block < FRAME_RATE / BLOCK_FRAMES; block++) {
+            clock += BLOCK_FRAMES;
+            int event;
+            while ((event = App.wheelPoll(wheel, clock)) >= 0) {
+                App.wheelSchedule(wheel, event, App.wheelLastFrame(wheel) + waits[nextWait++ & (waits.length - 1)]);
+                fired++;
+            }
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class CharacterQueryBenchmark_jmhType extends CharacterQueryBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class CompressedTrackBenchmark_jmhType extends CompressedTrackBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class ConfigFileBenchmark_jmhType extends ConfigFileBenchmark_jmhType_B3 {
+}
+
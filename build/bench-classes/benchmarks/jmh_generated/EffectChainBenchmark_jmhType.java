@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class EffectChainBenchmark_jmhType extends EffectChainBenchmark_jmhType_B3 {
+}
+
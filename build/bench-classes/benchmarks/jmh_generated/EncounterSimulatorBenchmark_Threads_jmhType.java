@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class EncounterSimulatorBenchmark_Threads_jmhType extends EncounterSimulatorBenchmark_Threads_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class EncounterSimulatorBenchmark_jmhType extends EncounterSimulatorBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class FileSearchBenchmark_jmhType extends FileSearchBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class FolderScanBenchmark_jmhType extends FolderScanBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class LoopConfigBenchmark_jmhType extends LoopConfigBenchmark_jmhType_B3 {
+}
+
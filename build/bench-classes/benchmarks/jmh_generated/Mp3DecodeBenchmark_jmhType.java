@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class Mp3DecodeBenchmark_jmhType extends Mp3DecodeBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class PuzzleSolverBenchmark_jmhType extends PuzzleSolverBenchmark_jmhType_B3 {
+}
+
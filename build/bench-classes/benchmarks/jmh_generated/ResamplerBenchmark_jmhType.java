@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class ResamplerBenchmark_jmhType extends ResamplerBenchmark_jmhType_B3 {
+}
+
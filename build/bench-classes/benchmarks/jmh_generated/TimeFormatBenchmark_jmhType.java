@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class TimeFormatBenchmark_jmhType extends TimeFormatBenchmark_jmhType_B3 {
+}
+
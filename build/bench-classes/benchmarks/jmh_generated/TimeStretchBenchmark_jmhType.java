@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class TimeStretchBenchmark_jmhType extends TimeStretchBenchmark_jmhType_B3 {
+}
+
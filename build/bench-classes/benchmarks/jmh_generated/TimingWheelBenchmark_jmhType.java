@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class TimingWheelBenchmark_jmhType extends TimingWheelBenchmark_jmhType_B3 {
+}
+